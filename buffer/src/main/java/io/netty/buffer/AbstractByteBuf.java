@@ -1252,6 +1252,9 @@ public abstract class AbstractByteBuf extends ByteBuf {
     public int forEachByte(ByteProcessor processor) {
         ensureAccessible();
         try {
+            if (isSwarSearch(processor, writerIndex - readerIndex)) {
+                return ByteBufUtil.swarIndexOf(this, readerIndex, writerIndex, (byte) ByteBufUtil.byteToFind(processor));
+            }
             return forEachByteAsc0(readerIndex, writerIndex, processor);
         } catch (Exception e) {
             PlatformDependent.throwException(e);
@@ -1263,6 +1266,9 @@ public abstract class AbstractByteBuf extends ByteBuf {
     public int forEachByte(int index, int length, ByteProcessor processor) {
         checkIndex(index, length);
         try {
+            if (isSwarSearch(processor, length)) {
+                return ByteBufUtil.swarIndexOf(this, index, index + length, (byte) ByteBufUtil.byteToFind(processor));
+            }
             return forEachByteAsc0(index, index + length, processor);
         } catch (Exception e) {
             PlatformDependent.throwException(e);
@@ -1270,6 +1276,14 @@ public abstract class AbstractByteBuf extends ByteBuf {
         }
     }
 
+    /**
+     * Returns {@code true} if {@code processor} searches a single byte and {@code length} bytes of this buffer can be
+     * scanned word-wise instead.
+     */
+    private boolean isSwarSearch(ByteProcessor processor, int length) {
+        return ByteBufUtil.isSwarAccessible(this, length) && ByteBufUtil.byteToFind(processor) >= 0;
+    }
+
     private int forEachByteAsc0(int start, int end, ByteProcessor processor) throws Exception {
         for (; start < end; ++start) {
             if (!processor.process(_getByte(start))) {
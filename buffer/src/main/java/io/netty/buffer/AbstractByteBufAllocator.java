@@ -80,6 +80,7 @@ public abstract class AbstractByteBufAllocator implements ByteBufAllocator {
 
     private final boolean directByDefault;
     private final ByteBuf emptyBuf;
+    private volatile AllocationProfiler allocationProfiler;
 
     /**
      * Instance use heap buffers by default
@@ -171,7 +172,7 @@ public abstract class AbstractByteBufAllocator implements ByteBufAllocator {
 //        参数验证
         validate(initialCapacity, maxCapacity);
 //        创建堆缓冲区
-        return newHeapBuffer(initialCapacity, maxCapacity);
+        return profile(newHeapBuffer(initialCapacity, maxCapacity));
     }
 
     @Override
@@ -191,7 +192,35 @@ public abstract class AbstractByteBufAllocator implements ByteBufAllocator {
             return emptyBuf;
         }
         validate(initialCapacity, maxCapacity);
-        return newDirectBuffer(initialCapacity, maxCapacity);
+        return profile(newDirectBuffer(initialCapacity, maxCapacity));
+    }
+
+    private ByteBuf profile(ByteBuf buf) {
+        AllocationProfiler profiler = allocationProfiler;
+        return profiler == null ? buf : profiler.sample(this, buf);
+    }
+
+    /**
+     * Set the {@link AllocationProfiler} which samples the heap and direct buffers allocated by this instance, or
+     * {@code null} to stop sampling.
+     */
+    public void setAllocationProfiler(AllocationProfiler allocationProfiler) {
+        this.allocationProfiler = allocationProfiler;
+    }
+
+    /**
+     * Returns the {@link AllocationProfiler} of this instance or {@code null} if none is used.
+     */
+    public AllocationProfiler allocationProfiler() {
+        return allocationProfiler;
+    }
+
+    /**
+     * Returns the name of the size class of an allocation of {@code capacity} bytes, reported by
+     * {@link AllocationSample#sizeClass()}.
+     */
+    String sizeClass(int capacity) {
+        return "Unpooled";
     }
 
     @Override
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.ResourceLeakHint;
+import io.netty.util.ResourceLeakTracker;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * Samples the allocations of an {@link AbstractByteBufAllocator} to find out which code is responsible for the
+ * memory usage. Set it via {@link AbstractByteBufAllocator#setAllocationProfiler(AllocationProfiler)}.
+ * <p>
+ * One out of {@link #samplingInterval()} allocations is sampled. A sampled buffer records the stack trace of its
+ * allocation and the last hint it was touched with, like the {@link ResourceLeakHint} of the
+ * {@code ChannelHandlerContext} that handled it last. Once it is released
+ * {@link #onRelease(AllocationSample)} is called. Buffers that are not sampled are returned as they are, so a big
+ * sampling interval like {@code 10000} is cheap enough to be used in production.
+ */
+public abstract class AllocationProfiler {
+
+    private final int samplingInterval;
+
+    /**
+     * Create a new instance.
+     *
+     * @param samplingInterval one out of {@code samplingInterval} allocations is sampled.
+     */
+    protected AllocationProfiler(int samplingInterval) {
+        this.samplingInterval = ObjectUtil.checkPositive(samplingInterval, "samplingInterval");
+    }
+
+    /**
+     * Returns the number of allocations per sampled allocation.
+     */
+    public final int samplingInterval() {
+        return samplingInterval;
+    }
+
+    /**
+     * Called once a sampled buffer was released. This is called by the thread that released the buffer, and so must
+     * be thread-safe and should be fast.
+     */
+    protected abstract void onRelease(AllocationSample sample);
+
+    final ByteBuf sample(AbstractByteBufAllocator allocator, ByteBuf buf) {
+        if (samplingInterval > 1 && PlatformDependent.threadLocalRandom().nextInt(samplingInterval) != 0) {
+            return buf;
+        }
+        // The AdvancedLeakAwareByteBuf passes the hints of touch(...) to the tracker and closes it on release.
+        return new AdvancedLeakAwareByteBuf(buf, new SampleTracker(
+                this, allocator.sizeClass(buf.capacity()), buf.capacity(), buf.isDirect()));
+    }
+
+    private static final class SampleTracker extends Throwable implements ResourceLeakTracker<ByteBuf> {
+        private static final long serialVersionUID = -5937734289327372458L;
+
+        private final AllocationProfiler profiler;
+        private final String sizeClass;
+        private final int capacity;
+        private final boolean direct;
+        private final long allocationNanos = System.nanoTime();
+        private volatile Object lastHint;
+
+        SampleTracker(AllocationProfiler profiler, String sizeClass, int capacity, boolean direct) {
+            this.profiler = profiler;
+            this.sizeClass = sizeClass;
+            this.capacity = capacity;
+            this.direct = direct;
+        }
+
+        @Override
+        public void record() {
+            // Only hints are of interest.
+        }
+
+        @Override
+        public void record(Object hint) {
+            if (hint != null) {
+                lastHint = hint;
+            }
+        }
+
+        @Override
+        public boolean close(ByteBuf trackedObject) {
+            Object hint = lastHint;
+            String hintString = hint instanceof ResourceLeakHint ?
+                    ((ResourceLeakHint) hint).toHintString() : hint == null ? null : hint.toString();
+            profiler.onRelease(new AllocationSample(getStackTrace(), hintString, sizeClass, capacity, direct,
+                    System.nanoTime() - allocationNanos));
+            return true;
+        }
+    }
+}
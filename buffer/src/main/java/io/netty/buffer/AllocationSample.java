@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.StringUtil;
+
+/**
+ * A sampled allocation which was released, see {@link AllocationProfiler}.
+ */
+public final class AllocationSample {
+    private static final String BUFFER_PACKAGE_PREFIX = "io.netty.buffer.";
+    private static final String PROFILER_CLASS_NAME = AllocationProfiler.class.getName();
+
+    private final StackTraceElement[] stackTrace;
+    private final String hint;
+    private final String sizeClass;
+    private final int capacity;
+    private final boolean direct;
+    private final long lifetimeNanos;
+
+    AllocationSample(StackTraceElement[] stackTrace, String hint, String sizeClass, int capacity, boolean direct,
+                     long lifetimeNanos) {
+        this.stackTrace = stackTrace;
+        this.hint = hint;
+        this.sizeClass = sizeClass;
+        this.capacity = capacity;
+        this.direct = direct;
+        this.lifetimeNanos = lifetimeNanos;
+    }
+
+    /**
+     * Returns the stack trace of the allocation, starting at the first frame outside of the allocator.
+     */
+    public StackTraceElement[] allocationSite() {
+        int i = 0;
+        while (i < stackTrace.length - 1 && isAllocatorFrame(stackTrace[i].getClassName())) {
+            i++;
+        }
+        StackTraceElement[] site = new StackTraceElement[stackTrace.length - i];
+        System.arraycopy(stackTrace, i, site, 0, site.length);
+        return site;
+    }
+
+    private static boolean isAllocatorFrame(String className) {
+        return className.startsWith(BUFFER_PACKAGE_PREFIX) && (className.endsWith("Allocator") ||
+                className.equals(PROFILER_CLASS_NAME) || className.startsWith(PROFILER_CLASS_NAME + '$'));
+    }
+
+    /**
+     * Returns the last hint the buffer was touched with, which is usually the handler that processed it last, or
+     * {@code null} if it was never touched.
+     */
+    public String hint() {
+        return hint;
+    }
+
+    /**
+     * Returns the size class of the allocation, like {@code "Tiny"}, {@code "Small"}, {@code "Normal"} or
+     * {@code "Huge"} for a {@link PooledByteBufAllocator} and {@code "Unpooled"} for other allocators.
+     */
+    public String sizeClass() {
+        return sizeClass;
+    }
+
+    /**
+     * Returns the capacity of the buffer when it was allocated.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns {@code true} if a direct buffer was allocated.
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * Returns the time between the allocation and the release of the buffer in nanoseconds.
+     */
+    public long lifetimeNanos() {
+        return lifetimeNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder(256)
+                .append(StringUtil.simpleClassName(this))
+                .append("(sizeClass: ").append(sizeClass)
+                .append(", capacity: ").append(capacity)
+                .append(", direct: ").append(direct)
+                .append(", lifetimeNanos: ").append(lifetimeNanos)
+                .append(", hint: ").append(hint)
+                .append(')');
+        for (StackTraceElement element: allocationSite()) {
+            buf.append(StringUtil.NEWLINE).append("\tat ").append(element);
+        }
+        return buf.toString();
+    }
+}
@@ -64,6 +64,10 @@ public final class ByteBufUtil {
     private static final int MAX_BYTES_PER_CHAR_UTF8 =
             (int) CharsetUtil.encoder(CharsetUtil.UTF_8).maxBytesPerChar();
 
+    // Scan and compare 8 bytes at a time (SWAR, SIMD within a register) if the memory can be read via Unsafe.
+    private static final boolean SWAR;
+    private static final int SWAR_MIN_LENGTH = 16;
+
     static final ByteBufAllocator DEFAULT_ALLOCATOR;
 
     static {
@@ -90,6 +94,10 @@ public final class ByteBufUtil {
 
         MAX_CHAR_BUFFER_SIZE = SystemPropertyUtil.getInt("io.netty.maxThreadLocalCharBufferSize", 16 * 1024);
         logger.debug("-Dio.netty.maxThreadLocalCharBufferSize: {}", MAX_CHAR_BUFFER_SIZE);
+
+        SWAR = SystemPropertyUtil.getBoolean("io.netty.buffer.swar", true) &&
+                PlatformDependent.hasUnsafe() && PlatformDependent.isUnaligned();
+        logger.debug("-Dio.netty.buffer.swar: {}", SWAR);
     }
 
     /**
@@ -168,6 +176,9 @@ public final class ByteBufUtil {
 
         int hashCode = 1;
         int arrayIndex = buffer.readerIndex();
+        if (isSwarAccessible(buffer, aLen)) {
+            return swarHashCode((AbstractByteBuf) buffer, arrayIndex, aLen);
+        }
         if (buffer.order() == ByteOrder.BIG_ENDIAN) {
             for (int i = intCount; i > 0; i --) {
                 hashCode = 31 * hashCode + buffer.getInt(arrayIndex);
@@ -195,13 +206,26 @@ public final class ByteBufUtil {
      * Returns the reader index of needle in haystack, or -1 if needle is not in haystack.返回干草堆中指针的读取器索引，如果指针不在干草堆中，则返回-1。
      */
     public static int indexOf(ByteBuf needle, ByteBuf haystack) {
-        // TODO: maybe use Boyer Moore for efficiency.
-        int attempts = haystack.readableBytes() - needle.readableBytes() + 1;
-        for (int i = 0; i < attempts; i++) {
-            if (equals(needle, needle.readerIndex(),
-                       haystack, haystack.readerIndex() + i,
-                       needle.readableBytes())) {
-                return haystack.readerIndex() + i;
+        final int needleLength = needle.readableBytes();
+        if (needleLength > haystack.readableBytes()) {
+            return -1;
+        }
+        if (needleLength == 0) {
+            return haystack.readerIndex();
+        }
+
+        // Find the candidates via the first byte of the needle, which scans word-wise if possible, and only compare
+        // the rest of the needle for them.
+        final int needleIndex = needle.readerIndex();
+        final byte first = needle.getByte(needleIndex);
+        final int end = haystack.writerIndex() - needleLength + 1;
+        for (int i = haystack.readerIndex(); i < end; i++) {
+            i = firstIndexOf(haystack, i, end, first);
+            if (i < 0) {
+                break;
+            }
+            if (equals(needle, needleIndex + 1, haystack, i + 1, needleLength - 1)) {
+                return i;
             }
         }
         return -1;
@@ -223,6 +247,10 @@ public final class ByteBufUtil {
             return false;
         }
 
+        if (isSwarAccessible(a, length) && isSwarAccessible(b, length)) {
+            return swarEquals((AbstractByteBuf) a, aStartIndex, (AbstractByteBuf) b, bStartIndex, length);
+        }
+
         final int longCount = length >>> 3;
         final int byteCount = length & 7;
 
@@ -446,7 +474,13 @@ public final class ByteBufUtil {
             return -1;
         }
 
-        return buffer.forEachByte(fromIndex, toIndex - fromIndex, new ByteProcessor.IndexOfProcessor(value));
+        final int length = toIndex - fromIndex;
+        if (isSwarAccessible(buffer, length)) {
+            AbstractByteBuf buf = (AbstractByteBuf) buffer;
+            buf.checkIndex(fromIndex, length);
+            return swarIndexOf(buf, fromIndex, toIndex, value);
+        }
+        return buffer.forEachByte(fromIndex, length, new ByteProcessor.IndexOfProcessor(value));
     }
 
     private static int lastIndexOf(ByteBuf buffer, int fromIndex, int toIndex, byte value) {
@@ -458,6 +492,151 @@ public final class ByteBufUtil {
         return buffer.forEachByteDesc(toIndex, fromIndex - toIndex, new ByteProcessor.IndexOfProcessor(value));
     }
 
+    /**
+     * Returns the byte which is searched by {@code processor} if it is one of the {@code FIND_*} constants of
+     * {@link ByteProcessor} which search a single byte, {@code -1} otherwise.
+     */
+    static int byteToFind(ByteProcessor processor) {
+        if (processor == ByteProcessor.FIND_LF) {
+            return '\n';
+        }
+        if (processor == ByteProcessor.FIND_CR) {
+            return '\r';
+        }
+        if (processor == ByteProcessor.FIND_NUL) {
+            return 0;
+        }
+        if (processor == ByteProcessor.FIND_ASCII_SPACE) {
+            return ' ';
+        }
+        if (processor == ByteProcessor.FIND_SEMI_COLON) {
+            return ';';
+        }
+        if (processor == ByteProcessor.FIND_COMMA) {
+            return ',';
+        }
+        return -1;
+    }
+
+    /**
+     * Returns {@code true} if {@code length} bytes of {@code buffer} are worth to be scanned word-wise and its memory
+     * can be read directly.
+     */
+    static boolean isSwarAccessible(ByteBuf buffer, int length) {
+        return SWAR && length >= SWAR_MIN_LENGTH && buffer instanceof AbstractByteBuf &&
+                (buffer.hasMemoryAddress() || buffer.hasArray());
+    }
+
+    /**
+     * Word-wise version of {@link #firstIndexOf(ByteBuf, int, int, byte)}, the caller must check the indexes and
+     * {@link #isSwarAccessible(ByteBuf, int)}.
+     */
+    static int swarIndexOf(AbstractByteBuf buffer, int fromIndex, int toIndex, byte value) {
+        final long pattern = (value & 0xFFL) * 0x0101010101010101L;
+        final int wordEnd = toIndex - 7;
+        int i = fromIndex;
+        if (buffer.hasMemoryAddress()) {
+            final long address = buffer.memoryAddress();
+            for (; i < wordEnd; i += 8) {
+                int found = firstMatchingByte(PlatformDependent.getLong(address + i), pattern);
+                if (found < 8) {
+                    return i + found;
+                }
+            }
+            for (; i < toIndex; i++) {
+                if (PlatformDependent.getByte(address + i) == value) {
+                    return i;
+                }
+            }
+        } else {
+            final byte[] array = buffer.array();
+            final int arrayOffset = buffer.arrayOffset();
+            for (; i < wordEnd; i += 8) {
+                int found = firstMatchingByte(PlatformDependent.getLong(array, arrayOffset + i), pattern);
+                if (found < 8) {
+                    return i + found;
+                }
+            }
+            for (; i < toIndex; i++) {
+                if (array[arrayOffset + i] == value) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the position in memory of the first byte of {@code word} which is equal to the byte repeated in
+     * {@code pattern}, or {@code 8} if there is none. {@code word} must be read in native byte order.
+     */
+    private static int firstMatchingByte(long word, long pattern) {
+        long input = word ^ pattern;
+        // The high bit of a byte is set if and only if the byte of input is zero, there are no false positives.
+        long tmp = (input & 0x7F7F7F7F7F7F7F7FL) + 0x7F7F7F7F7F7F7F7FL;
+        tmp = ~(tmp | input | 0x7F7F7F7F7F7F7F7FL);
+        return (PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ?
+                Long.numberOfLeadingZeros(tmp) : Long.numberOfTrailingZeros(tmp)) >>> 3;
+    }
+
+    private static boolean swarEquals(AbstractByteBuf a, int aStartIndex, AbstractByteBuf b, int bStartIndex,
+                                      int length) {
+        a.checkIndex(aStartIndex, length);
+        b.checkIndex(bStartIndex, length);
+        final Object aArray = a.hasMemoryAddress() ? null : a.array();
+        final long aBase = aArray == null ? a.memoryAddress() + aStartIndex : a.arrayOffset() + aStartIndex;
+        final Object bArray = b.hasMemoryAddress() ? null : b.array();
+        final long bBase = bArray == null ? b.memoryAddress() + bStartIndex : b.arrayOffset() + bStartIndex;
+        final int wordEnd = length & ~7;
+        int i = 0;
+        for (; i < wordEnd; i += 8) {
+            if (getLong(aArray, aBase + i) != getLong(bArray, bBase + i)) {
+                return false;
+            }
+        }
+        for (; i < length; i++) {
+            if (getByte(aArray, aBase + i) != getByte(bArray, bBase + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int swarHashCode(AbstractByteBuf buffer, int index, int length) {
+        buffer.checkIndex(index, length);
+        final Object array = buffer.hasMemoryAddress() ? null : buffer.array();
+        final long base = array == null ? buffer.memoryAddress() + index : buffer.arrayOffset() + index;
+        final int wordEnd = length & ~7;
+        int hashCode = 1;
+        int i = 0;
+        for (; i < wordEnd; i += 8) {
+            long word = getLong(array, base + i);
+            if (!PlatformDependent.BIG_ENDIAN_NATIVE_ORDER) {
+                word = Long.reverseBytes(word);
+            }
+            // Same as hashing the two big-endian ints one after the other.
+            hashCode = 961 * hashCode + 31 * (int) (word >>> 32) + (int) word;
+        }
+        if (length - i >= 4) {
+            int value = array == null ? PlatformDependent.getInt(base + i) :
+                    PlatformDependent.getInt((byte[]) array, (int) (base + i));
+            hashCode = 31 * hashCode + (PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? value : swapInt(value));
+            i += 4;
+        }
+        for (; i < length; i++) {
+            hashCode = 31 * hashCode + getByte(array, base + i);
+        }
+        return hashCode == 0 ? 1 : hashCode;
+    }
+
+    private static long getLong(Object array, long index) {
+        return array == null ? PlatformDependent.getLong(index) : PlatformDependent.getLong((byte[]) array, (int) index);
+    }
+
+    private static byte getByte(Object array, long index) {
+        return array == null ? PlatformDependent.getByte(index) : PlatformDependent.getByte((byte[]) array, (int) index);
+    }
+
     /**
      * Encode a {@link CharSequence} in <a href="http://en.wikipedia.org/wiki/UTF-8">UTF-8</a> and write
      * it to a {@link ByteBuf} allocated with {@code alloc}.用UTF-8编码CharSequence，并将其写入分配给alloc的ByteBuf。
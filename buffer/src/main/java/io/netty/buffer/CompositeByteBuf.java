@@ -31,7 +31,6 @@ import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.NoSuchElementException;
 
 import static io.netty.util.internal.ObjectUtil.checkNotNull;
@@ -48,9 +47,22 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     private final ByteBufAllocator alloc;
     private final boolean direct;
-    private final ComponentList components;
     private final int maxNumComponents;
 
+    // The components are kept in parallel arrays so adding a component does not need to allocate anything besides
+    // growing the arrays once in a while. The readable bytes of components[i] are mapped to
+    // [offsets[i], endOffsets[i]) of this buffer and index + adjustments[i] is the index in components[i].
+    private ByteBuf[] components;
+    private int[] adjustments;
+    private int[] offsets;
+    private int[] endOffsets;
+    // Slices of the components, the array and the slices are only created on demand by internalComponent(int) and
+    // friends.
+    private ByteBuf[] slices;
+    private int componentCount;
+    // The component which was accessed last, sequential reads and writes hit it most of the time.
+    private int lastAccessed;
+
     private boolean freed;
 
     public CompositeByteBuf(ByteBufAllocator alloc, boolean direct, int maxNumComponents) {
@@ -61,7 +73,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         this.alloc = alloc;
         this.direct = direct;
         this.maxNumComponents = maxNumComponents;
-        components = newList(maxNumComponents);
+        initComponents(initialComponentCapacity(maxNumComponents));
     }
 
     public CompositeByteBuf(ByteBufAllocator alloc, boolean direct, int maxNumComponents, ByteBuf... buffers) {
@@ -82,7 +94,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         this.alloc = alloc;
         this.direct = direct;
         this.maxNumComponents = maxNumComponents;
-        components = newList(maxNumComponents);
+        initComponents(Math.max(len - offset, initialComponentCapacity(maxNumComponents)));
 
         addComponents0(false, 0, buffers, offset, len);
         consolidateIfNeeded();
@@ -103,15 +115,22 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         this.alloc = alloc;
         this.direct = direct;
         this.maxNumComponents = maxNumComponents;
-        components = newList(maxNumComponents);
+        initComponents(initialComponentCapacity(maxNumComponents));
 
         addComponents0(false, 0, buffers);
         consolidateIfNeeded();
         setIndex(0, capacity());
     }
 
-    private static ComponentList newList(int maxNumComponents) {
-        return new ComponentList(Math.min(AbstractByteBufAllocator.DEFAULT_MAX_COMPONENTS, maxNumComponents));
+    private static int initialComponentCapacity(int maxNumComponents) {
+        return Math.max(1, Math.min(AbstractByteBufAllocator.DEFAULT_MAX_COMPONENTS, maxNumComponents));
+    }
+
+    private void initComponents(int initialCapacity) {
+        components = new ByteBuf[initialCapacity];
+        adjustments = new int[initialCapacity];
+        offsets = new int[initialCapacity];
+        endOffsets = new int[initialCapacity];
     }
 
     // Special constructor used by WrappedCompositeByteBuf
@@ -120,7 +139,6 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         this.alloc = alloc;
         direct = false;
         maxNumComponents = 0;
-        components = null;
     }
 
     /**
@@ -199,7 +217,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      */
     public CompositeByteBuf addComponent(boolean increaseWriterIndex, ByteBuf buffer) {
         checkNotNull(buffer, "buffer");
-        addComponent0(increaseWriterIndex, components.size(), buffer);
+        addComponent0(increaseWriterIndex, componentCount, buffer);
         consolidateIfNeeded();
         return this;
     }
@@ -215,7 +233,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      *                添加给定的ByteBufs，如果递增的writerIndex为true，则增加writerIndex。ByteBuf.release()将缓冲区中所有ByteBuf对象的所有权转移到这个CompositeByteBuf。
      */
     public CompositeByteBuf addComponents(boolean increaseWriterIndex, ByteBuf... buffers) {
-        addComponents0(increaseWriterIndex, components.size(), buffers, 0, buffers.length);
+        addComponents0(increaseWriterIndex, componentCount, buffers, 0, buffers.length);
         consolidateIfNeeded();
         return this;
     }
@@ -230,7 +248,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      * ownership of all {@link ByteBuf} objects is transfered to this {@link CompositeByteBuf}.
      */
     public CompositeByteBuf addComponents(boolean increaseWriterIndex, Iterable<ByteBuf> buffers) {
-        addComponents0(increaseWriterIndex, components.size(), buffers);
+        addComponents0(increaseWriterIndex, componentCount, buffers);
         consolidateIfNeeded();
         return this;
     }
@@ -262,27 +280,20 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
             int readableBytes = buffer.readableBytes();
 
-            // No need to consolidate - just add a component to the list.不需要合并——只需要向列表中添加一个组件。
-            @SuppressWarnings("deprecation")
-            Component c = new Component(buffer.order(ByteOrder.BIG_ENDIAN).slice());
-            if (cIndex == components.size()) {
-                wasAdded = components.add(c);
-                if (cIndex == 0) {
-                    c.endOffset = readableBytes;
-                } else {
-                    Component prev = components.get(cIndex - 1);
-                    c.offset = prev.endOffset;
-                    c.endOffset = c.offset + readableBytes;
-                }
+            // No need to consolidate - just add a component to the arrays.不需要合并——只需要向数组中添加一个组件。
+            insertComponentSlots(cIndex, 1);
+            setComponent(cIndex, buffer);
+            wasAdded = true;
+            if (cIndex == componentCount - 1) {
+                int offset = cIndex == 0 ? 0 : endOffsets[cIndex - 1];
+                offsets[cIndex] = offset;
+                endOffsets[cIndex] = offset + readableBytes;
+                adjustments[cIndex] -= offset;
             } else {
-                components.add(cIndex, c);
-                wasAdded = true;
-                if (readableBytes != 0) {
-                    updateComponentOffsets(cIndex);
-                }
+                updateComponentOffsets(cIndex);
             }
             if (increaseWriterIndex) {
-                writerIndex(writerIndex() + buffer.readableBytes());
+                writerIndex(writerIndex() + readableBytes);
             }
             return cIndex;
         } finally {
@@ -318,20 +329,28 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         try {
             checkComponentIndex(cIndex);
 
-            // No need for consolidation不需要合并
-            while (i < len) {
-                // Increment i now to prepare for the next iteration and prevent a duplicate release (addComponent0
-                // will release if an exception occurs, and we also release in the finally block here).//增量i现在为下一次迭代做准备，并防止一个重复的版本(addComponent0
-                //如果发生异常，//将释放，我们也在这里的finally块释放)。
+            // Everything after the first null buffer is released in the finally block.
+            int end = offset;
+            while (end < len && buffers[end] != null) {
+                end ++;
+            }
+            if (end == offset) {
+                return cIndex;
+            }
+
+            // No need for consolidation, the arrays are grown once and the offsets are updated in one pass.
+            // 不需要合并，数组只增长一次，偏移量一次性更新。
+            insertComponentSlots(cIndex, end - offset);
+            int readableBytes = 0;
+            while (i < end) {
+                // Increment i now to prevent a duplicate release in the finally block.
                 ByteBuf b = buffers[i++];
-                if (b == null) {
-                    break;
-                }
-                cIndex = addComponent0(increaseWriterIndex, cIndex, b) + 1;
-                int size = components.size();
-                if (cIndex > size) {
-                    cIndex = size;
-                }
+                readableBytes += b.readableBytes();
+                setComponent(cIndex++, b);
+            }
+            updateComponentOffsets(cIndex - (end - offset));
+            if (increaseWriterIndex) {
+                writerIndex(writerIndex() + readableBytes);
             }
             return cIndex;
         } finally {
@@ -408,66 +427,166 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         // Consolidate if the number of components will exceed the allowed maximum by the current
         // operation.//如果组件的数量超过当前允许的最大数量，则进行合并
 //操作。
-        final int numComponents = components.size();
+        final int numComponents = componentCount;
         if (numComponents > maxNumComponents) {
-            final int capacity = components.get(numComponents - 1).endOffset;
+            final int capacity = endOffsets[numComponents - 1];
 
             ByteBuf consolidated = allocBuffer(capacity);
 
-            // We're not using foreach to avoid creating an iterator.我们没有使用foreach来避免创建迭代器。
             for (int i = 0; i < numComponents; i ++) {
-                Component c = components.get(i);
-                ByteBuf b = c.buf;
-                consolidated.writeBytes(b);
-                c.freeIfNecessary();
+                writeComponentTo(i, consolidated);
+                components[i].release();
             }
-            Component c = new Component(consolidated);
-            c.endOffset = c.length;
-            components.clear();
-            components.add(c);
+            removeComponentSlots(1, numComponents);
+            setComponent(0, consolidated);
+            updateComponentOffsets(0);
         }
     }
 
     private void checkComponentIndex(int cIndex) {
         ensureAccessible();
-        if (cIndex < 0 || cIndex > components.size()) {
+        if (cIndex < 0 || cIndex > componentCount) {
             throw new IndexOutOfBoundsException(String.format(
                     "cIndex: %d (expected: >= 0 && <= numComponents(%d))",
-                    cIndex, components.size()));
+                    cIndex, componentCount));
         }
     }
 
     private void checkComponentIndex(int cIndex, int numComponents) {
         ensureAccessible();
-        if (cIndex < 0 || cIndex + numComponents > components.size()) {
+        if (cIndex < 0 || cIndex + numComponents > componentCount) {
             throw new IndexOutOfBoundsException(String.format(
                     "cIndex: %d, numComponents: %d " +
                     "(expected: cIndex >= 0 && cIndex + numComponents <= totalNumComponents(%d))",
-                    cIndex, numComponents, components.size()));
+                    cIndex, numComponents, componentCount));
+        }
+    }
+
+    /**
+     * Make room for {@code count} components at {@code cIndex}, growing the arrays if needed.
+     */
+    private void insertComponentSlots(int cIndex, int count) {
+        int size = componentCount;
+        int newSize = size + count;
+        if (newSize > components.length) {
+            int newCapacity = Math.max(newSize, size << 1);
+            components = copyOf(components, newCapacity, cIndex, count);
+            if (slices != null) {
+                slices = copyOf(slices, newCapacity, cIndex, count);
+            }
+            adjustments = copyOf(adjustments, newCapacity, cIndex, count);
+            offsets = copyOf(offsets, newCapacity, cIndex, count);
+            endOffsets = copyOf(endOffsets, newCapacity, cIndex, count);
+        } else if (cIndex < size) {
+            int moved = size - cIndex;
+            System.arraycopy(components, cIndex, components, cIndex + count, moved);
+            if (slices != null) {
+                System.arraycopy(slices, cIndex, slices, cIndex + count, moved);
+            }
+            System.arraycopy(adjustments, cIndex, adjustments, cIndex + count, moved);
+            System.arraycopy(offsets, cIndex, offsets, cIndex + count, moved);
+            System.arraycopy(endOffsets, cIndex, endOffsets, cIndex + count, moved);
         }
+        componentCount = newSize;
+    }
+
+    private ByteBuf[] copyOf(ByteBuf[] array, int newCapacity, int cIndex, int count) {
+        ByteBuf[] newArray = new ByteBuf[newCapacity];
+        System.arraycopy(array, 0, newArray, 0, cIndex);
+        System.arraycopy(array, cIndex, newArray, cIndex + count, componentCount - cIndex);
+        return newArray;
+    }
+
+    private int[] copyOf(int[] array, int newCapacity, int cIndex, int count) {
+        int[] newArray = new int[newCapacity];
+        System.arraycopy(array, 0, newArray, 0, cIndex);
+        System.arraycopy(array, cIndex, newArray, cIndex + count, componentCount - cIndex);
+        return newArray;
+    }
+
+    /**
+     * Remove the components in the range {@code [fromIndex, toIndex)} without releasing them.
+     */
+    private void removeComponentSlots(int fromIndex, int toIndex) {
+        int size = componentCount;
+        int moved = size - toIndex;
+        if (moved > 0) {
+            System.arraycopy(components, toIndex, components, fromIndex, moved);
+            if (slices != null) {
+                System.arraycopy(slices, toIndex, slices, fromIndex, moved);
+            }
+            System.arraycopy(adjustments, toIndex, adjustments, fromIndex, moved);
+            System.arraycopy(offsets, toIndex, offsets, fromIndex, moved);
+            System.arraycopy(endOffsets, toIndex, endOffsets, fromIndex, moved);
+        }
+        int newSize = size - (toIndex - fromIndex);
+        for (int i = newSize; i < size; i ++) {
+            components[i] = null;
+            clearSlice(i);
+        }
+        componentCount = newSize;
+        lastAccessed = 0;
+    }
+
+    /**
+     * Store the readable bytes of {@code buffer} at {@code cIndex}. The offsets must be updated via
+     * {@link #updateComponentOffsets(int)} afterwards.
+     */
+    private void setComponent(int cIndex, ByteBuf buffer) {
+        @SuppressWarnings("deprecation")
+        ByteBuf buf = buffer.order(ByteOrder.BIG_ENDIAN);
+        int readerIndex = buffer.readerIndex();
+        components[cIndex] = buf;
+        clearSlice(cIndex);
+        adjustments[cIndex] = readerIndex;
+        offsets[cIndex] = 0;
+        endOffsets[cIndex] = buffer.writerIndex() - readerIndex;
     }
 
     private void updateComponentOffsets(int cIndex) {
-        int size = components.size();
+        int size = componentCount;
         if (size <= cIndex) {
             return;
         }
 
-        Component c = components.get(cIndex);
-        if (cIndex == 0) {
-            c.offset = 0;
-            c.endOffset = c.length;
-            cIndex ++;
+        int offset = cIndex == 0 ? 0 : endOffsets[cIndex - 1];
+        for (int i = cIndex; i < size; i ++) {
+            int oldOffset = offsets[i];
+            int length = endOffsets[i] - oldOffset;
+            adjustments[i] += oldOffset - offset;
+            offsets[i] = offset;
+            offset += length;
+            endOffsets[i] = offset;
+        }
+    }
+
+    /**
+     * Returns the slice of the readable bytes of the component at {@code cIndex}.
+     */
+    private ByteBuf componentSlice(int cIndex) {
+        if (slices == null) {
+            slices = new ByteBuf[components.length];
+        }
+        ByteBuf slice = slices[cIndex];
+        if (slice == null) {
+            slice = components[cIndex].slice(offsets[cIndex] + adjustments[cIndex],
+                    endOffsets[cIndex] - offsets[cIndex]);
+            slices[cIndex] = slice;
         }
+        return slice;
+    }
 
-        for (int i = cIndex; i < size; i ++) {
-            Component prev = components.get(i - 1);
-            Component cur = components.get(i);
-            cur.offset = prev.endOffset;
-            cur.endOffset = cur.offset + cur.length;
+    private void clearSlice(int cIndex) {
+        if (slices != null) {
+            slices[cIndex] = null;
         }
     }
 
+    private void writeComponentTo(int cIndex, ByteBuf dst) {
+        int offset = offsets[cIndex];
+        dst.writeBytes(components[cIndex], offset + adjustments[cIndex], endOffsets[cIndex] - offset);
+    }
+
     /**
      * Remove the {@link ByteBuf} from the given index.
      *
@@ -475,9 +594,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      */
     public CompositeByteBuf removeComponent(int cIndex) {
         checkComponentIndex(cIndex);
-        Component comp = components.remove(cIndex);
-        comp.freeIfNecessary();
-        if (comp.length > 0) {
+        ByteBuf buf = components[cIndex];
+        boolean notEmpty = endOffsets[cIndex] != offsets[cIndex];
+        removeComponentSlots(cIndex, cIndex + 1);
+        buf.release();
+        if (notEmpty) {
             // Only need to call updateComponentOffsets if the length was > 0只需要调用updateComponentOffsets如果长度是> 0
             updateComponentOffsets(cIndex);
         }
@@ -499,13 +620,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int endIndex = cIndex + numComponents;
         boolean needsUpdate = false;
         for (int i = cIndex; i < endIndex; ++i) {
-            Component c = components.get(i);
-            if (c.length > 0) {
+            if (endOffsets[i] != offsets[i]) {
                 needsUpdate = true;
             }
-            c.freeIfNecessary();
+            components[i].release();
         }
-        components.removeRange(cIndex, endIndex);
+        removeComponentSlots(cIndex, endIndex);
 
         if (needsUpdate) {
             // Only need to call updateComponentOffsets if the length was > 0
@@ -517,7 +637,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     public Iterator<ByteBuf> iterator() {
         ensureAccessible();
-        if (components.isEmpty()) {
+        if (componentCount == 0) {
             return EMPTY_ITERATOR;
         }
         return new CompositeByteBufIterator();
@@ -533,12 +653,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         }
 
         int componentId = toComponentIndex(offset);
-        List<ByteBuf> slice = new ArrayList<ByteBuf>(components.size());
+        List<ByteBuf> slice = new ArrayList<ByteBuf>(componentCount);
 
         // The first component
-        Component firstC = components.get(componentId);
-        ByteBuf first = firstC.buf.duplicate();
-        first.readerIndex(offset - firstC.offset);
+        ByteBuf first = componentSlice(componentId).duplicate();
+        first.readerIndex(offset - offsets[componentId]);
 
         ByteBuf buf = first;
         int bytesToSlice = length;
@@ -556,7 +675,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
                 componentId ++;
 
                 // Fetch the next component.
-                buf = components.get(componentId).buf.duplicate();
+                buf = componentSlice(componentId).duplicate();
             }
         } while (bytesToSlice > 0);
 
@@ -570,12 +689,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public boolean isDirect() {
-        int size = components.size();
+        int size = componentCount;
         if (size == 0) {
             return false;
         }
         for (int i = 0; i < size; i++) {
-           if (!components.get(i).buf.isDirect()) {
+           if (!components[i].isDirect()) {
                return false;
            }
         }
@@ -584,11 +703,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public boolean hasArray() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return true;
         case 1:
-            return components.get(0).buf.hasArray();
+            return components[0].hasArray();
         default:
             return false;
         }
@@ -596,11 +715,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public byte[] array() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return EmptyArrays.EMPTY_BYTES;
         case 1:
-            return components.get(0).buf.array();
+            return components[0].array();
         default:
             throw new UnsupportedOperationException();
         }
@@ -608,11 +727,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public int arrayOffset() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return 0;
         case 1:
-            return components.get(0).buf.arrayOffset();
+            return componentSlice(0).arrayOffset();
         default:
             throw new UnsupportedOperationException();
         }
@@ -620,11 +739,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public boolean hasMemoryAddress() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return Unpooled.EMPTY_BUFFER.hasMemoryAddress();
         case 1:
-            return components.get(0).buf.hasMemoryAddress();
+            return components[0].hasMemoryAddress();
         default:
             return false;
         }
@@ -632,11 +751,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public long memoryAddress() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return Unpooled.EMPTY_BUFFER.memoryAddress();
         case 1:
-            return components.get(0).buf.memoryAddress();
+            return componentSlice(0).memoryAddress();
         default:
             throw new UnsupportedOperationException();
         }
@@ -644,11 +763,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public int capacity() {
-        final int numComponents = components.size();
+        final int numComponents = componentCount;
         if (numComponents == 0) {
             return 0;
         }
-        return components.get(numComponents - 1).endOffset;
+        return endOffsets[numComponents - 1];
     }
 
     @Override
@@ -660,35 +779,33 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         if (newCapacity > oldCapacity) {
             final int paddingLength = newCapacity - oldCapacity;
             ByteBuf padding;
-            int nComponents = components.size();
+            int nComponents = componentCount;
             if (nComponents < maxNumComponents) {
 //                分配内存
                 padding = allocBuffer(paddingLength);
                 padding.setIndex(0, paddingLength);
-                addComponent0(false, components.size(), padding);
+                addComponent0(false, componentCount, padding);
             } else {
                 padding = allocBuffer(paddingLength);
                 padding.setIndex(0, paddingLength);
                 // FIXME: No need to create a padding buffer and consolidate.不需要创建填充缓冲区和合并。
                 // Just create a big single buffer and put the current content there.只需创建一个大的缓冲区，并把当前的内容放在那里。
-                addComponent0(false, components.size(), padding);
+                addComponent0(false, componentCount, padding);
                 consolidateIfNeeded();
             }
         } else if (newCapacity < oldCapacity) {
             int bytesToTrim = oldCapacity - newCapacity;
-            for (ListIterator<Component> i = components.listIterator(components.size()); i.hasPrevious();) {
-                Component c = i.previous();
-                if (bytesToTrim >= c.length) {
-                    bytesToTrim -= c.length;
-                    i.remove();
+            for (int i = componentCount - 1; i >= 0; i --) {
+                int length = endOffsets[i] - offsets[i];
+                if (bytesToTrim >= length) {
+                    bytesToTrim -= length;
+                    removeComponentSlots(i, i + 1);
                     continue;
                 }
 
-                // Replace the last component with the trimmed slice.将最后一个组件替换为被修剪的片。
-                Component newC = new Component(c.buf.slice(0, c.length - bytesToTrim));
-                newC.offset = c.offset;
-                newC.endOffset = newC.offset + newC.length;
-                i.set(newC);
+                // Trim the last component.修剪最后一个组件。
+                endOffsets[i] -= bytesToTrim;
+                clearSlice(i);
                 break;
             }
 
@@ -716,7 +833,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      * 返回本实例中所组成的ByteBuf的当前数量
      */
     public int numComponents() {
-        return components.size();
+        return componentCount;
     }
 
     /**
@@ -730,26 +847,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      * Return the index for the given offset
      */
     public int toComponentIndex(int offset) {
-        checkIndex(offset);
-
-        for (int low = 0, high = components.size(); low <= high;) {
-            int mid = low + high >>> 1;
-            Component c = components.get(mid);
-            if (offset >= c.endOffset) {
-                low = mid + 1;
-            } else if (offset < c.offset) {
-                high = mid - 1;
-            } else {
-                return mid;
-            }
-        }
-
-        throw new Error("should not reach here");
+        return findComponent(offset);
     }
 
     public int toByteIndex(int cIndex) {
-        checkComponentIndex(cIndex);
-        return components.get(cIndex).offset;
+        checkComponentIndex(cIndex, 1);
+        return offsets[cIndex];
     }
 
     @Override
@@ -759,15 +862,15 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     protected byte _getByte(int index) {
-        Component c = findComponent(index);
-        return c.buf.getByte(index - c.offset);
+        int c = findComponent(index);
+        return components[c].getByte(index + adjustments[c]);
     }
 
     @Override
     protected short _getShort(int index) {
-        Component c = findComponent(index);
-        if (index + 2 <= c.endOffset) {
-            return c.buf.getShort(index - c.offset);
+        int c = findComponent(index);
+        if (index + 2 <= endOffsets[c]) {
+            return components[c].getShort(index + adjustments[c]);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (short) ((_getByte(index) & 0xff) << 8 | _getByte(index + 1) & 0xff);
         } else {
@@ -777,9 +880,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     protected short _getShortLE(int index) {
-        Component c = findComponent(index);
-        if (index + 2 <= c.endOffset) {
-            return c.buf.getShortLE(index - c.offset);
+        int c = findComponent(index);
+        if (index + 2 <= endOffsets[c]) {
+            return components[c].getShortLE(index + adjustments[c]);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (short) (_getByte(index) & 0xff | (_getByte(index + 1) & 0xff) << 8);
         } else {
@@ -789,9 +892,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     protected int _getUnsignedMedium(int index) {
-        Component c = findComponent(index);
-        if (index + 3 <= c.endOffset) {
-            return c.buf.getUnsignedMedium(index - c.offset);
+        int c = findComponent(index);
+        if (index + 3 <= endOffsets[c]) {
+            return components[c].getUnsignedMedium(index + adjustments[c]);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (_getShort(index) & 0xffff) << 8 | _getByte(index + 2) & 0xff;
         } else {
@@ -801,9 +904,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     protected int _getUnsignedMediumLE(int index) {
-        Component c = findComponent(index);
-        if (index + 3 <= c.endOffset) {
-            return c.buf.getUnsignedMediumLE(index - c.offset);
+        int c = findComponent(index);
+        if (index + 3 <= endOffsets[c]) {
+            return components[c].getUnsignedMediumLE(index + adjustments[c]);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return _getShortLE(index) & 0xffff | (_getByte(index + 2) & 0xff) << 16;
         } else {
@@ -813,9 +916,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     protected int _getInt(int index) {
-        Component c = findComponent(index);
-        if (index + 4 <= c.endOffset) {
-            return c.buf.getInt(index - c.offset);
+        int c = findComponent(index);
+        if (index + 4 <= endOffsets[c]) {
+            return components[c].getInt(index + adjustments[c]);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (_getShort(index) & 0xffff) << 16 | _getShort(index + 2) & 0xffff;
         } else {
@@ -825,9 +928,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     protected int _getIntLE(int index) {
-        Component c = findComponent(index);
-        if (index + 4 <= c.endOffset) {
-            return c.buf.getIntLE(index - c.offset);
+        int c = findComponent(index);
+        if (index + 4 <= endOffsets[c]) {
+            return components[c].getIntLE(index + adjustments[c]);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return _getShortLE(index) & 0xffff | (_getShortLE(index + 2) & 0xffff) << 16;
         } else {
@@ -837,9 +940,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     protected long _getLong(int index) {
-        Component c = findComponent(index);
-        if (index + 8 <= c.endOffset) {
-            return c.buf.getLong(index - c.offset);
+        int c = findComponent(index);
+        if (index + 8 <= endOffsets[c]) {
+            return components[c].getLong(index + adjustments[c]);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (_getInt(index) & 0xffffffffL) << 32 | _getInt(index + 4) & 0xffffffffL;
         } else {
@@ -849,9 +952,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     protected long _getLongLE(int index) {
-        Component c = findComponent(index);
-        if (index + 8 <= c.endOffset) {
-            return c.buf.getLongLE(index - c.offset);
+        int c = findComponent(index);
+        if (index + 8 <= endOffsets[c]) {
+            return components[c].getLongLE(index + adjustments[c]);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return _getIntLE(index) & 0xffffffffL | (_getIntLE(index + 4) & 0xffffffffL) << 32;
         } else {
@@ -868,11 +971,10 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex(index);
         while (length > 0) {
-            Component c = components.get(i);
-            ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
-            s.getBytes(index - adjustment, dst, dstIndex, localLength);
+            ByteBuf s = components[i];
+            int adjustment = adjustments[i];
+            int localLength = Math.min(length, endOffsets[i] - index);
+            s.getBytes(index + adjustment, dst, dstIndex, localLength);
             index += localLength;
             dstIndex += localLength;
             length -= localLength;
@@ -894,12 +996,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex(index);
         try {
             while (length > 0) {
-                Component c = components.get(i);
-                ByteBuf s = c.buf;
-                int adjustment = c.offset;
-                int localLength = Math.min(length, s.capacity() - (index - adjustment));
+                ByteBuf s = components[i];
+                int adjustment = adjustments[i];
+                int localLength = Math.min(length, endOffsets[i] - index);
                 dst.limit(dst.position() + localLength);
-                s.getBytes(index - adjustment, dst);
+                s.getBytes(index + adjustment, dst);
                 index += localLength;
                 length -= localLength;
                 i ++;
@@ -919,11 +1020,10 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex(index);
         while (length > 0) {
-            Component c = components.get(i);
-            ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
-            s.getBytes(index - adjustment, dst, dstIndex, localLength);
+            ByteBuf s = components[i];
+            int adjustment = adjustments[i];
+            int localLength = Math.min(length, endOffsets[i] - index);
+            s.getBytes(index + adjustment, dst, dstIndex, localLength);
             index += localLength;
             dstIndex += localLength;
             length -= localLength;
@@ -975,11 +1075,10 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex(index);
         while (length > 0) {
-            Component c = components.get(i);
-            ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
-            s.getBytes(index - adjustment, out, localLength);
+            ByteBuf s = components[i];
+            int adjustment = adjustments[i];
+            int localLength = Math.min(length, endOffsets[i] - index);
+            s.getBytes(index + adjustment, out, localLength);
             index += localLength;
             length -= localLength;
             i ++;
@@ -989,8 +1088,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public CompositeByteBuf setByte(int index, int value) {
-        Component c = findComponent(index);
-        c.buf.setByte(index - c.offset, value);
+        int c = findComponent(index);
+        components[c].setByte(index + adjustments[c], value);
         return this;
     }
 
@@ -1006,9 +1105,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     protected void _setShort(int index, int value) {
-        Component c = findComponent(index);
-        if (index + 2 <= c.endOffset) {
-            c.buf.setShort(index - c.offset, value);
+        int c = findComponent(index);
+        if (index + 2 <= endOffsets[c]) {
+            components[c].setShort(index + adjustments[c], value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setByte(index, (byte) (value >>> 8));
             _setByte(index + 1, (byte) value);
@@ -1020,9 +1119,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     protected void _setShortLE(int index, int value) {
-        Component c = findComponent(index);
-        if (index + 2 <= c.endOffset) {
-            c.buf.setShortLE(index - c.offset, value);
+        int c = findComponent(index);
+        if (index + 2 <= endOffsets[c]) {
+            components[c].setShortLE(index + adjustments[c], value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setByte(index, (byte) value);
             _setByte(index + 1, (byte) (value >>> 8));
@@ -1039,9 +1138,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     protected void _setMedium(int index, int value) {
-        Component c = findComponent(index);
-        if (index + 3 <= c.endOffset) {
-            c.buf.setMedium(index - c.offset, value);
+        int c = findComponent(index);
+        if (index + 3 <= endOffsets[c]) {
+            components[c].setMedium(index + adjustments[c], value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShort(index, (short) (value >> 8));
             _setByte(index + 2, (byte) value);
@@ -1053,9 +1152,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     protected void _setMediumLE(int index, int value) {
-        Component c = findComponent(index);
-        if (index + 3 <= c.endOffset) {
-            c.buf.setMediumLE(index - c.offset, value);
+        int c = findComponent(index);
+        if (index + 3 <= endOffsets[c]) {
+            components[c].setMediumLE(index + adjustments[c], value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShortLE(index, (short) value);
             _setByte(index + 2, (byte) (value >>> 16));
@@ -1072,9 +1171,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     protected void _setInt(int index, int value) {
-        Component c = findComponent(index);
-        if (index + 4 <= c.endOffset) {
-            c.buf.setInt(index - c.offset, value);
+        int c = findComponent(index);
+        if (index + 4 <= endOffsets[c]) {
+            components[c].setInt(index + adjustments[c], value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShort(index, (short) (value >>> 16));
             _setShort(index + 2, (short) value);
@@ -1086,9 +1185,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     protected void _setIntLE(int index, int value) {
-        Component c = findComponent(index);
-        if (index + 4 <= c.endOffset) {
-            c.buf.setIntLE(index - c.offset, value);
+        int c = findComponent(index);
+        if (index + 4 <= endOffsets[c]) {
+            components[c].setIntLE(index + adjustments[c], value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShortLE(index, (short) value);
             _setShortLE(index + 2, (short) (value >>> 16));
@@ -1105,9 +1204,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     protected void _setLong(int index, long value) {
-        Component c = findComponent(index);
-        if (index + 8 <= c.endOffset) {
-            c.buf.setLong(index - c.offset, value);
+        int c = findComponent(index);
+        if (index + 8 <= endOffsets[c]) {
+            components[c].setLong(index + adjustments[c], value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setInt(index, (int) (value >>> 32));
             _setInt(index + 4, (int) value);
@@ -1119,9 +1218,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     protected void _setLongLE(int index, long value) {
-        Component c = findComponent(index);
-        if (index + 8 <= c.endOffset) {
-            c.buf.setLongLE(index - c.offset, value);
+        int c = findComponent(index);
+        if (index + 8 <= endOffsets[c]) {
+            components[c].setLongLE(index + adjustments[c], value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setIntLE(index, (int) value);
             _setIntLE(index + 4, (int) (value >>> 32));
@@ -1140,11 +1239,10 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex(index);
         while (length > 0) {
-            Component c = components.get(i);
-            ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
-            s.setBytes(index - adjustment, src, srcIndex, localLength);
+            ByteBuf s = components[i];
+            int adjustment = adjustments[i];
+            int localLength = Math.min(length, endOffsets[i] - index);
+            s.setBytes(index + adjustment, src, srcIndex, localLength);
             index += localLength;
             srcIndex += localLength;
             length -= localLength;
@@ -1166,12 +1264,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex(index);
         try {
             while (length > 0) {
-                Component c = components.get(i);
-                ByteBuf s = c.buf;
-                int adjustment = c.offset;
-                int localLength = Math.min(length, s.capacity() - (index - adjustment));
+                ByteBuf s = components[i];
+                int adjustment = adjustments[i];
+                int localLength = Math.min(length, endOffsets[i] - index);
                 src.limit(src.position() + localLength);
-                s.setBytes(index - adjustment, src);
+                s.setBytes(index + adjustment, src);
                 index += localLength;
                 length -= localLength;
                 i ++;
@@ -1191,11 +1288,10 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex(index);
         while (length > 0) {
-            Component c = components.get(i);
-            ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
-            s.setBytes(index - adjustment, src, srcIndex, localLength);
+            ByteBuf s = components[i];
+            int adjustment = adjustments[i];
+            int localLength = Math.min(length, endOffsets[i] - index);
+            s.setBytes(index + adjustment, src, srcIndex, localLength);
             index += localLength;
             srcIndex += localLength;
             length -= localLength;
@@ -1215,16 +1311,15 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int readBytes = 0;
 
         do {
-            Component c = components.get(i);
-            ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
+            ByteBuf s = components[i];
+            int adjustment = adjustments[i];
+            int localLength = Math.min(length, endOffsets[i] - index);
             if (localLength == 0) {
                 // Skip empty buffer
                 i++;
                 continue;
             }
-            int localReadBytes = s.setBytes(index - adjustment, in, localLength);
+            int localReadBytes = s.setBytes(index + adjustment, in, localLength);
             if (localReadBytes < 0) {
                 if (readBytes == 0) {
                     return -1;
@@ -1258,16 +1353,15 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex(index);
         int readBytes = 0;
         do {
-            Component c = components.get(i);
-            ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
+            ByteBuf s = components[i];
+            int adjustment = adjustments[i];
+            int localLength = Math.min(length, endOffsets[i] - index);
             if (localLength == 0) {
                 // Skip empty buffer
                 i++;
                 continue;
             }
-            int localReadBytes = s.setBytes(index - adjustment, in, localLength);
+            int localReadBytes = s.setBytes(index + adjustment, in, localLength);
 
             if (localReadBytes == 0) {
                 break;
@@ -1306,16 +1400,15 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex(index);
         int readBytes = 0;
         do {
-            Component c = components.get(i);
-            ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
+            ByteBuf s = components[i];
+            int adjustment = adjustments[i];
+            int localLength = Math.min(length, endOffsets[i] - index);
             if (localLength == 0) {
                 // Skip empty buffer
                 i++;
                 continue;
             }
-            int localReadBytes = s.setBytes(index - adjustment, in, position + readBytes, localLength);
+            int localReadBytes = s.setBytes(index + adjustment, in, position + readBytes, localLength);
 
             if (localReadBytes == 0) {
                 break;
@@ -1359,11 +1452,10 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = componentId;
 
         while (length > 0) {
-            Component c = components.get(i);
-            ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
-            s.getBytes(index - adjustment, dst, dstIndex, localLength);
+            ByteBuf s = components[i];
+            int adjustment = adjustments[i];
+            int localLength = Math.min(length, endOffsets[i] - index);
+            s.getBytes(index + adjustment, dst, dstIndex, localLength);
             index += localLength;
             dstIndex += localLength;
             length -= localLength;
@@ -1400,8 +1492,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      * @param cIndex the index for which the {@link ByteBuf} should be returned
      */
     public ByteBuf internalComponent(int cIndex) {
-        checkComponentIndex(cIndex);
-        return components.get(cIndex).buf;
+        checkComponentIndex(cIndex, 1);
+        return componentSlice(cIndex);
     }
 
     /**
@@ -1411,22 +1503,25 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      * @param offset the offset for which the {@link ByteBuf} should be returned
      */
     public ByteBuf internalComponentAtOffset(int offset) {
-        return findComponent(offset).buf;
+        return componentSlice(findComponent(offset));
     }
 
-    private Component findComponent(int offset) {
+    private int findComponent(int offset) {
         checkIndex(offset);
 
-        for (int low = 0, high = components.size(); low <= high;) {
+        int last = lastAccessed;
+        if (last < componentCount && offset >= offsets[last] && offset < endOffsets[last]) {
+            return last;
+        }
+        for (int low = 0, high = componentCount - 1; low <= high;) {
             int mid = low + high >>> 1;
-            Component c = components.get(mid);
-            if (offset >= c.endOffset) {
+            if (offset >= endOffsets[mid]) {
                 low = mid + 1;
-            } else if (offset < c.offset) {
+            } else if (offset < offsets[mid]) {
                 high = mid - 1;
             } else {
-                assert c.length != 0;
-                return c;
+                lastAccessed = mid;
+                return mid;
             }
         }
 
@@ -1435,17 +1530,16 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public int nioBufferCount() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return 1;
         case 1:
-            return components.get(0).buf.nioBufferCount();
+            return components[0].nioBufferCount();
         default:
             int count = 0;
-            int componentsCount = components.size();
+            int componentsCount = componentCount;
             for (int i = 0; i < componentsCount; i++) {
-                Component c = components.get(i);
-                count += c.buf.nioBufferCount();
+                count += components[i].nioBufferCount();
             }
             return count;
         }
@@ -1453,11 +1547,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public ByteBuffer internalNioBuffer(int index, int length) {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return EMPTY_NIO_BUFFER;
         case 1:
-            return components.get(0).buf.internalNioBuffer(index, length);
+            return components[0].internalNioBuffer(index + adjustments[0], length);
         default:
             throw new UnsupportedOperationException();
         }
@@ -1467,13 +1561,13 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     public ByteBuffer nioBuffer(int index, int length) {
         checkIndex(index, length);
 
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return EMPTY_NIO_BUFFER;
         case 1:
-            ByteBuf buf = components.get(0).buf;
+            ByteBuf buf = components[0];
             if (buf.nioBufferCount() == 1) {
-                return components.get(0).buf.nioBuffer(index, length);
+                return buf.nioBuffer(index + adjustments[0], length);
             }
         }
 
@@ -1495,21 +1589,20 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return new ByteBuffer[] { EMPTY_NIO_BUFFER };
         }
 
-        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(components.size());
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(componentCount);
         int i = toComponentIndex(index);
         while (length > 0) {
-            Component c = components.get(i);
-            ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
+            ByteBuf s = components[i];
+            int adjustment = adjustments[i];
+            int localLength = Math.min(length, endOffsets[i] - index);
             switch (s.nioBufferCount()) {
                 case 0:
                     throw new UnsupportedOperationException();
                 case 1:
-                    buffers.add(s.nioBuffer(index - adjustment, localLength));
+                    buffers.add(s.nioBuffer(index + adjustment, localLength));
                     break;
                 default:
-                    Collections.addAll(buffers, s.nioBuffers(index - adjustment, localLength));
+                    Collections.addAll(buffers, s.nioBuffers(index + adjustment, localLength));
             }
 
             index += localLength;
@@ -1530,19 +1623,16 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return this;
         }
 
-        final Component last = components.get(numComponents - 1);
-        final int capacity = last.endOffset;
+        final int capacity = endOffsets[numComponents - 1];
         final ByteBuf consolidated = allocBuffer(capacity);
 
         for (int i = 0; i < numComponents; i ++) {
-            Component c = components.get(i);
-            ByteBuf b = c.buf;
-            consolidated.writeBytes(b);
-            c.freeIfNecessary();
+            writeComponentTo(i, consolidated);
+            components[i].release();
         }
 
-        components.clear();
-        components.add(new Component(consolidated));
+        removeComponentSlots(1, numComponents);
+        setComponent(0, consolidated);
         updateComponentOffsets(0);
         return this;
     }
@@ -1560,19 +1650,16 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         }
 
         final int endCIndex = cIndex + numComponents;
-        final Component last = components.get(endCIndex - 1);
-        final int capacity = last.endOffset - components.get(cIndex).offset;
+        final int capacity = endOffsets[endCIndex - 1] - offsets[cIndex];
         final ByteBuf consolidated = allocBuffer(capacity);
 
         for (int i = cIndex; i < endCIndex; i ++) {
-            Component c = components.get(i);
-            ByteBuf b = c.buf;
-            consolidated.writeBytes(b);
-            c.freeIfNecessary();
+            writeComponentTo(i, consolidated);
+            components[i].release();
         }
 
-        components.removeRange(cIndex + 1, endCIndex);
-        components.set(cIndex, new Component(consolidated));
+        removeComponentSlots(cIndex + 1, endCIndex);
+        setComponent(cIndex, consolidated);
         updateComponentOffsets(cIndex);
         return this;
     }
@@ -1590,11 +1677,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         // Discard everything if (readerIndex = writerIndex = capacity).
         int writerIndex = writerIndex();
         if (readerIndex == writerIndex && writerIndex == capacity()) {
-            int size = components.size();
+            int size = componentCount;
             for (int i = 0; i < size; i++) {
-                components.get(i).freeIfNecessary();
+                components[i].release();
             }
-            components.clear();
+            removeComponentSlots(0, size);
             setIndex(0, 0);
             adjustMarkers(readerIndex);
             return this;
@@ -1603,13 +1690,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         // Remove read components.
         int firstComponentId = toComponentIndex(readerIndex);
         for (int i = 0; i < firstComponentId; i ++) {
-            components.get(i).freeIfNecessary();
+            components[i].release();
         }
-        components.removeRange(0, firstComponentId);
+        removeComponentSlots(0, firstComponentId);
 
         // Update indexes and markers.
-        Component first = components.get(0);
-        int offset = first.offset;
+        int offset = offsets[0];
         updateComponentOffsets(0);
         setIndex(readerIndex - offset, writerIndex - offset);
         adjustMarkers(offset);
@@ -1627,11 +1713,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         // Discard everything if (readerIndex = writerIndex = capacity).
         int writerIndex = writerIndex();
         if (readerIndex == writerIndex && writerIndex == capacity()) {
-            int size = components.size();
+            int size = componentCount;
             for (int i = 0; i < size; i++) {
-                components.get(i).freeIfNecessary();
+                components[i].release();
             }
-            components.clear();
+            removeComponentSlots(0, size);
             setIndex(0, 0);
             adjustMarkers(readerIndex);
             return this;
@@ -1640,21 +1726,19 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         // Remove read components.
         int firstComponentId = toComponentIndex(readerIndex);
         for (int i = 0; i < firstComponentId; i ++) {
-            components.get(i).freeIfNecessary();
+            components[i].release();
         }
 
-        // Remove or replace the first readable component with a new slice.用一个新的片删除或替换第一个可读的组件。
-        Component c = components.get(firstComponentId);
-        int adjustment = readerIndex - c.offset;
-        if (adjustment == c.length) {
-            // new slice would be empty, so remove instead新的切片将是空的，所以删除
-            firstComponentId++;
+        // Remove or trim the first readable component.删除或修剪第一个可读的组件。
+        if (readerIndex == endOffsets[firstComponentId]) {
+            // trimmed component would be empty, so remove instead修剪后的组件将是空的，所以删除
+            components[firstComponentId++].release();
         } else {
-            Component newC = new Component(c.buf.slice(adjustment, c.length - adjustment));
-            components.set(firstComponentId, newC);
+            offsets[firstComponentId] = readerIndex;
+            clearSlice(firstComponentId);
         }
 
-        components.removeRange(0, firstComponentId);
+        removeComponentSlots(0, firstComponentId);
 
         // Update indexes and markers.
         updateComponentOffsets(0);
@@ -1671,23 +1755,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     public String toString() {
         String result = super.toString();
         result = result.substring(0, result.length() - 1);
-        return result + ", components=" + components.size() + ')';
-    }
-
-    private static final class Component {
-        final ByteBuf buf;
-        final int length;
-        int offset;
-        int endOffset;
-
-        Component(ByteBuf buf) {
-            this.buf = buf;
-            length = buf.readableBytes();
-        }
-
-        void freeIfNecessary() {
-            buf.release(); // We should not get a NPE here. If so, it must be a bug.这里不应该有NPE。如果是这样，那一定是一个bug。
-        }
+        return result + ", components=" + componentCount + ')';
     }
 
     @Override
@@ -1947,11 +2015,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         }
 
         freed = true;
-        int size = components.size();
+        int size = componentCount;
         // We're not using foreach to avoid creating an iterator.
         // see https://github.com/netty/netty/issues/2642
         for (int i = 0; i < size; i++) {
-            components.get(i).freeIfNecessary();
+            components[i].release();
         }
     }
 
@@ -1961,7 +2029,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     }
 
     private final class CompositeByteBufIterator implements Iterator<ByteBuf> {
-        private final int size = components.size();
+        private final int size = componentCount;
         private int index;
 
         @Override
@@ -1971,14 +2039,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         @Override
         public ByteBuf next() {
-            if (size != components.size()) {
+            if (size != componentCount) {
                 throw new ConcurrentModificationException();
             }
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
             try {
-                return components.get(index++).buf;
+                return componentSlice(index++);
             } catch (IndexOutOfBoundsException e) {
                 throw new ConcurrentModificationException();
             }
@@ -1989,17 +2057,4 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             throw new UnsupportedOperationException("Read-Only");
         }
     }
-
-    private static final class ComponentList extends ArrayList<Component> {
-
-        ComponentList(int initialCapacity) {
-            super(initialCapacity);
-        }
-
-        // Expose this methods so we not need to create a new subList just to remove a range of elements.公开这个方法，这样我们就不需要创建一个新的子列表来删除一系列元素。
-        @Override
-        public void removeRange(int fromIndex, int toIndex) {
-            super.removeRange(fromIndex, toIndex);
-        }
-    }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocates the memory of the chunks used by the direct arenas of a {@link PooledByteBufAllocator}, for example
+ * to back them by huge pages. Only chunks of {@code chunkSize} are allocated via this interface, huge allocations
+ * that are not pooled always use the default direct memory.
+ */
+public interface DirectChunkAllocator {
+
+    /**
+     * Allocate a direct {@link ByteBuffer} of {@code capacity} bytes. Returns {@code null} if the memory could not be
+     * allocated, in which case the default direct memory is used for the chunk.
+     */
+    ByteBuffer allocate(int capacity);
+
+    /**
+     * Free the memory that was returned by {@link #allocate(int)}.
+     */
+    void free(ByteBuffer memory);
+
+    /**
+     * Return the name of the memory backing, which is reported by {@link PoolChunkMetric#memoryBacking()} for chunks
+     * allocated by this instance.
+     */
+    String memoryBacking();
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A read-only {@link ByteBuf} whose content is a memory-mapped region of a file, so it can be written to a
+ * {@code Channel} or passed through handlers like the {@code SslHandler} without reading the file
+ * into another buffer first.
+ * <p>
+ * Files are mapped in segments of {@code -Dio.netty.buffer.mappedFileSegmentSize} bytes. The mapping of a segment is
+ * cached and shared by all {@link MappedFileByteBuf}s of the same file, and it is unmapped as soon as the last of
+ * them was released. Use {@link #map(File, long, int)} to obtain a buffer. Because the content is read lazily by the
+ * operating system, the file must not be truncated while it is mapped.
+ */
+public final class MappedFileByteBuf extends ReadOnlyByteBufferBuf {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(MappedFileByteBuf.class);
+
+    private static final int DEFAULT_SEGMENT_SIZE;
+    private static final ConcurrentMap<SegmentKey, Segment> SEGMENTS = PlatformDependent.newConcurrentHashMap();
+
+    static {
+        DEFAULT_SEGMENT_SIZE = Math.max(4096,
+                SystemPropertyUtil.getInt("io.netty.buffer.mappedFileSegmentSize", 64 * 1024 * 1024));
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.buffer.mappedFileSegmentSize: {}", DEFAULT_SEGMENT_SIZE);
+        }
+    }
+
+    private final Segment segment;
+    private final long fileOffset;
+
+    /**
+     * Returns a read-only buffer with the content of the whole file.
+     *
+     * @see #map(File, long, int)
+     */
+    public static ByteBuf map(File file) throws IOException {
+        long length = file.length();
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("file too big to be mapped at once: " + file + " (" + length + ')');
+        }
+        return map(file, 0, (int) length);
+    }
+
+    /**
+     * Returns a read-only buffer with {@code length} bytes of the file, starting at {@code position}. The returned
+     * buffer is a {@link MappedFileByteBuf} if the region is part of a single segment, and a {@link CompositeByteBuf}
+     * of {@link MappedFileByteBuf}s otherwise. It must be released once it is not used anymore.
+     */
+    public static ByteBuf map(File file, long position, int length) throws IOException {
+        return map(file, position, length, DEFAULT_SEGMENT_SIZE);
+    }
+
+    static ByteBuf map(File file, long position, int length, int segmentSize) throws IOException {
+        ObjectUtil.checkNotNull(file, "file");
+        ObjectUtil.checkPositiveOrZero(position, "position");
+        ObjectUtil.checkPositiveOrZero(length, "length");
+        long fileLength = file.length();
+        long lastModified = file.lastModified();
+        long end = position + length;
+        if (end > fileLength) {
+            throw new IllegalArgumentException("position + length: " + end +
+                    " (expected: <= file length " + fileLength + ')');
+        }
+        if (length == 0) {
+            return Unpooled.EMPTY_BUFFER;
+        }
+
+        String path = file.getAbsolutePath();
+        long firstSegment = position / segmentSize;
+        long lastSegment = (end - 1) / segmentSize;
+        if (firstSegment == lastSegment) {
+            return mapRegion(file, path, position, length, segmentSize, fileLength, lastModified);
+        }
+
+        ByteBuf[] buffers = new ByteBuf[(int) (lastSegment - firstSegment + 1)];
+        int i = 0;
+        try {
+            for (; i < buffers.length; i++) {
+                long segmentEnd = (firstSegment + i + 1) * segmentSize;
+                int bufferLength = (int) (Math.min(segmentEnd, end) - position);
+                buffers[i] = mapRegion(file, path, position, bufferLength, segmentSize, fileLength, lastModified);
+                position += bufferLength;
+            }
+        } finally {
+            if (i < buffers.length) {
+                for (int j = 0; j < i; j++) {
+                    buffers[j].release();
+                }
+            }
+        }
+        return Unpooled.wrappedBuffer(buffers.length, buffers);
+    }
+
+    private static MappedFileByteBuf mapRegion(File file, String path, long position, int length, int segmentSize,
+                                               long fileLength, long lastModified) throws IOException {
+        long segmentStart = position - position % segmentSize;
+        long segmentEnd = Math.min(segmentStart + segmentSize, fileLength);
+        SegmentKey key = new SegmentKey(path, segmentStart);
+        for (;;) {
+            Segment segment = SEGMENTS.get(key);
+            if (segment != null && segment.lastModified == lastModified &&
+                    segmentStart + segment.buffer.capacity() >= position + length && segment.tryRetain()) {
+                return new MappedFileByteBuf(segment, position, length);
+            }
+
+            // Not mapped yet, released concurrently or the file was modified since it was mapped.
+            Segment newSegment = new Segment(key, mapSegment(file, segmentStart, (int) (segmentEnd - segmentStart)),
+                    lastModified);
+            if (segment == null ? SEGMENTS.putIfAbsent(key, newSegment) == null :
+                    SEGMENTS.replace(key, segment, newSegment)) {
+                return new MappedFileByteBuf(newSegment, position, length);
+            }
+            newSegment.release();
+        }
+    }
+
+    private static MappedByteBuffer mapSegment(File file, long position, int length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            // The mapping stays valid after the file was closed.
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, position, length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Returns the number of segments which are currently mapped.
+     */
+    static int mappedSegments() {
+        return SEGMENTS.size();
+    }
+
+    private MappedFileByteBuf(Segment segment, long fileOffset, int length) {
+        super(UnpooledByteBufAllocator.DEFAULT, region(segment.buffer, (int) (fileOffset - segment.key.start), length));
+        this.segment = segment;
+        this.fileOffset = fileOffset;
+    }
+
+    private static ByteBuffer region(ByteBuffer buffer, int index, int length) {
+        ByteBuffer region = buffer.duplicate();
+        region.limit(index + length).position(index);
+        return region;
+    }
+
+    /**
+     * Returns the absolute path of the mapped file.
+     */
+    public String path() {
+        return segment.key.path;
+    }
+
+    /**
+     * Returns the offset in the file of the first byte of this buffer.
+     */
+    public long fileOffset() {
+        return fileOffset;
+    }
+
+    @Override
+    protected void deallocate() {
+        segment.release();
+    }
+
+    private static final class SegmentKey {
+        final String path;
+        final long start;
+
+        SegmentKey(String path, long start) {
+            this.path = path;
+            this.start = start;
+        }
+
+        @Override
+        public int hashCode() {
+            return path.hashCode() * 31 + (int) (start ^ start >>> 32);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof SegmentKey)) {
+                return false;
+            }
+            SegmentKey other = (SegmentKey) obj;
+            return start == other.start && path.equals(other.path);
+        }
+    }
+
+    private static final class Segment {
+        private static final AtomicIntegerFieldUpdater<Segment> refCntUpdater =
+                AtomicIntegerFieldUpdater.newUpdater(Segment.class, "refCnt");
+
+        final SegmentKey key;
+        final MappedByteBuffer buffer;
+        final long lastModified;
+        private volatile int refCnt = 1;
+
+        Segment(SegmentKey key, MappedByteBuffer buffer, long lastModified) {
+            this.key = key;
+            this.buffer = buffer;
+            this.lastModified = lastModified;
+        }
+
+        boolean tryRetain() {
+            for (;;) {
+                int refCnt = this.refCnt;
+                if (refCnt == 0) {
+                    // Already unmapped, never resurrect it.
+                    return false;
+                }
+                if (refCntUpdater.compareAndSet(this, refCnt, refCnt + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (refCntUpdater.decrementAndGet(this) == 0) {
+                SEGMENTS.remove(key, this);
+                PlatformDependent.freeDirectBuffer(buffer);
+            }
+        }
+    }
+}
@@ -65,6 +65,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     final int chunkSize;
     final int subpageOverflowMask;
     final int numSmallSubpagePools;
+    final int sizeClassShifts;
     final int directMemoryCacheAlignment;
     final int directMemoryCacheAlignmentMask;
     private final PoolSubpage<T>[] tinySubpagePools;
@@ -88,13 +89,32 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     private final LongCounter allocationsHuge = PlatformDependent.newLongCounter();
     private final LongCounter activeBytesHuge = PlatformDependent.newLongCounter();
 
-    private long deallocationsTiny;
-    private long deallocationsSmall;
+    // Bytes of the buffers in use which are lost to rounding the requested capacity up to its size class.
+    private final LongCounter wastedBytesTiny = PlatformDependent.newLongCounter();
+    private final LongCounter wastedBytesSmall = PlatformDependent.newLongCounter();
+    private final LongCounter wastedBytesNormal = PlatformDependent.newLongCounter();
+
     private long deallocationsNormal;
 
+    // We need to use the LongCounter here as subpage frees are not guarded via the synchronized block.
+    private final LongCounter deallocationsTiny = PlatformDependent.newLongCounter();
+    private final LongCounter deallocationsSmall = PlatformDependent.newLongCounter();
+
     // We need to use the LongCounter here as this is not guarded via synchronized block.
     private final LongCounter deallocationsHuge = PlatformDependent.newLongCounter();
 
+    // Chunks that were released by the idle / memory pressure release policy, guarded by the arena.
+    private long idleChunkReleases;
+    private long memoryPressureChunkReleases;
+    // The number of idle chunk sweeps, guarded by the arena. Chunks are stamped with it when they become free, so the
+    // free path does not need to read the clock.
+    private int emptyChunkSweeps;
+    private volatile long lastEmptyChunkSweepNanos;
+
+    private final long idleChunkReleaseNanos;
+    private final long directMemoryPressureThreshold;
+    private final boolean freeSubpageWithoutArenaLock;
+
     // Number of thread caches backed by this arena.这个舞台支持的线程缓存的数量。
     final AtomicInteger numThreadCaches = new AtomicInteger();
 
@@ -103,6 +123,11 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     protected PoolArena(PooledByteBufAllocator parent, int pageSize,
           int maxOrder, int pageShifts, int chunkSize, int cacheAlignment) {
+        this(parent, pageSize, maxOrder, pageShifts, chunkSize, cacheAlignment, 1);
+    }
+
+    protected PoolArena(PooledByteBufAllocator parent, int pageSize,
+          int maxOrder, int pageShifts, int chunkSize, int cacheAlignment, int sizeClassesPerDoubling) {
         this.parent = parent;
         this.pageSize = pageSize;
         this.maxOrder = maxOrder;
@@ -111,12 +136,25 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         directMemoryCacheAlignment = cacheAlignment;
         directMemoryCacheAlignmentMask = cacheAlignment - 1;
         subpageOverflowMask = ~(pageSize - 1);
+        sizeClassShifts = log2(sizeClassesPerDoubling);
+        if (parent != null) {
+            idleChunkReleaseNanos = parent.idleChunkReleaseNanos();
+            directMemoryPressureThreshold = parent.directMemoryPressureThreshold();
+            freeSubpageWithoutArenaLock = parent.freeSubpageWithoutArenaLock();
+        } else {
+            idleChunkReleaseNanos = 0;
+            directMemoryPressureThreshold = 0;
+            freeSubpageWithoutArenaLock = true;
+        }
+        lastEmptyChunkSweepNanos = System.nanoTime();
         tinySubpagePools = newSubpagePoolArray(numTinySubpagePools);
         for (int i = 0; i < tinySubpagePools.length; i ++) {
             tinySubpagePools[i] = newSubpagePoolHead(pageSize);
         }
 
-        numSmallSubpagePools = pageShifts - 9;
+        // One group of size classes per doubling in [512, pageSize / 2) plus pageSize / 2 itself, as anything
+        // bigger than pageSize / 2 can not share a page anyway.
+        numSmallSubpagePools = pageShifts > 9 ? ((pageShifts - 10) << sizeClassShifts) + 1 : 0;
         smallSubpagePools = newSubpagePoolArray(numSmallSubpagePools);
         for (int i = 0; i < smallSubpagePools.length; i ++) {
             smallSubpagePools[i] = newSubpagePoolHead(pageSize);
@@ -172,14 +210,23 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         return normCapacity >>> 4;
     }
 
-    static int smallIdx(int normCapacity) {
-        int tableIdx = 0;
-        int i = normCapacity >>> 10;
-        while (i != 0) {
-            i >>>= 1;
-            tableIdx ++;
+    int smallIdx(int normCapacity) {
+        int log2 = log2(normCapacity);
+        int groupIdx = (log2 - 9) << sizeClassShifts;
+        return groupIdx + ((normCapacity - (1 << log2)) >>> (log2 - sizeClassShifts));
+    }
+
+    int normalIdx(int normCapacity) {
+        int pages = normCapacity >>> pageShifts;
+        int log2 = log2(pages);
+        if (sizeClassShifts == 0) {
+            return log2;
         }
-        return tableIdx;
+        return (log2 << sizeClassShifts) + ((pages - (1 << log2)) >>> max(0, log2 - sizeClassShifts));
+    }
+
+    private static int log2(int val) {
+        return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(val);
     }
 
     // capacity < pageSize
@@ -202,6 +249,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 //            初始化内存是否小于512
             boolean tiny = isTiny(normCapacity);
             if (tiny) { // < 512
+                wastedBytesTiny.add(normCapacity - reqCapacity);
                 if (cache.allocateTiny(this, buf, reqCapacity, normCapacity)) {
                     // was able to allocate out of the cache so move on能够从缓存中进行分配吗
                     return;
@@ -209,6 +257,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
                 tableIdx = tinyIdx(normCapacity);
                 table = tinySubpagePools;
             } else { //大于512
+                wastedBytesSmall.add(normCapacity - reqCapacity);
                 if (cache.allocateSmall(this, buf, reqCapacity, normCapacity)) {
                     // was able to allocate out of the cache so move on能够从缓存中进行分配吗
                     return;
@@ -245,6 +294,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             return;
         }
         if (normCapacity <= chunkSize) {
+            wastedBytesNormal.add(normCapacity - reqCapacity);
 //            如果分配的正常内存大小小于chunkSize从本地线程缓存中分配
             if (cache.allocateNormal(this, buf, reqCapacity, normCapacity)) {
                 // was able to allocate out of the cache so move on能够从缓存中进行分配吗
@@ -295,7 +345,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         allocationsHuge.increment();
     }
 
-    void free(PoolChunk<T> chunk, long handle, int normCapacity, PoolThreadCache cache) {
+    void free(PoolChunk<T> chunk, long handle, int normCapacity, int capacity, PoolThreadCache cache) {
         if (chunk.unpooled) {
             int size = chunk.chunkSize();
             destroyChunk(chunk);
@@ -303,6 +353,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             deallocationsHuge.increment();
         } else {
             SizeClass sizeClass = sizeClass(normCapacity);
+            addWastedBytes(sizeClass, capacity - normCapacity);
             if (cache != null && cache.add(this, chunk, handle, normCapacity, sizeClass)) {
                 // cached so not free it.缓存，所以不能释放它。
                 return;
@@ -312,7 +363,30 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         }
     }
 
-    private SizeClass sizeClass(int normCapacity) {
+    /**
+     * Updates the wasted bytes of a buffer whose capacity was changed without reallocating its memory.
+     */
+    void capacityChanged(int normCapacity, int oldCapacity, int newCapacity) {
+        addWastedBytes(sizeClass(normCapacity), oldCapacity - newCapacity);
+    }
+
+    private void addWastedBytes(SizeClass sizeClass, int wastedBytes) {
+        switch (sizeClass) {
+        case Tiny:
+            wastedBytesTiny.add(wastedBytes);
+            break;
+        case Small:
+            wastedBytesSmall.add(wastedBytes);
+            break;
+        case Normal:
+            wastedBytesNormal.add(wastedBytes);
+            break;
+        default:
+            throw new Error();
+        }
+    }
+
+    SizeClass sizeClass(int normCapacity) {
         if (!isTinyOrSmall(normCapacity)) {
             return SizeClass.Normal;
         }
@@ -320,47 +394,120 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     }
 
     void freeChunk(PoolChunk<T> chunk, long handle, SizeClass sizeClass) {
+        switch (sizeClass) {
+        case Normal:
+            break;
+        case Small:
+            deallocationsSmall.increment();
+            break;
+        case Tiny:
+            deallocationsTiny.increment();
+            break;
+        default:
+            throw new Error();
+        }
+
+        // Freeing an element of a subpage only needs the lock of its subpage pool, which is striped per size class.
+        // The arena lock is only needed if the whole page needs to be given back to the chunk.
+        if (sizeClass != SizeClass.Normal && freeSubpageWithoutArenaLock && chunk.freeSubpage(handle)) {
+            return;
+        }
+
         final boolean destroyChunk;
+        final boolean becameEmpty;
+        final List<PoolChunk<T>> releasedChunks;
         synchronized (this) {
-            switch (sizeClass) {
-            case Normal:
+            if (sizeClass == SizeClass.Normal) {
                 ++deallocationsNormal;
-                break;
-            case Small:
-                ++deallocationsSmall;
-                break;
-            case Tiny:
-                ++deallocationsTiny;
-                break;
-            default:
-                throw new Error();
+            } else if (!freeSubpageWithoutArenaLock && chunk.freeSubpage(handle)) {
+                return;
             }
 //            删除poolChunkList中的poolChunk
             destroyChunk = !chunk.parent.free(chunk, handle);
+            becameEmpty = !destroyChunk && chunk.isEmpty();
+            if (becameEmpty) {
+                chunk.emptySinceSweep = emptyChunkSweeps;
+                releasedChunks = removeEmptyChunksUnderMemoryPressure();
+            } else {
+                releasedChunks = null;
+            }
         }
         if (destroyChunk) {
             // destroyChunk not need to be called while holding the synchronized lock.持有同步锁时不需要调用destroyChunk。
             destroyChunk(chunk);
         }
+        if (releasedChunks != null) {
+            destroyChunks(releasedChunks);
+        } else if (becameEmpty) {
+            trimEmptyChunks();
+        }
     }
 
-    PoolSubpage<T> findSubpagePoolHead(int elemSize) {
-        int tableIdx;
-        PoolSubpage<T>[] table;
-        if (isTiny(elemSize)) { // < 512
-            tableIdx = elemSize >>> 4;
-            table = tinySubpagePools;
-        } else {
-            tableIdx = 0;
-            elemSize >>>= 10;
-            while (elemSize != 0) {
-                elemSize >>>= 1;
-                tableIdx ++;
+    private void destroyChunks(List<PoolChunk<T>> chunks) {
+        for (int i = 0; i < chunks.size(); i++) {
+            destroyChunk(chunks.get(i));
+        }
+    }
+
+    /**
+     * Gives the chunks back to the system which stayed completely free for at least {@code idleChunkReleaseNanos}.
+     * This is checked at most once per {@code idleChunkReleaseNanos}, whenever a chunk became free and whenever a
+     * {@link PoolThreadCache} is trimmed, which it does periodically while it allocates.
+     */
+    void trimEmptyChunks() {
+        if (idleChunkReleaseNanos <= 0) {
+            return;
+        }
+        final long now = System.nanoTime();
+        if (now - lastEmptyChunkSweepNanos < idleChunkReleaseNanos) {
+            return;
+        }
+        final List<PoolChunk<T>> released = new ArrayList<PoolChunk<T>>(2);
+        synchronized (this) {
+            if (now - lastEmptyChunkSweepNanos < idleChunkReleaseNanos) {
+                return;
             }
-            table = smallSubpagePools;
+            lastEmptyChunkSweepNanos = now;
+            // Empty chunks are never destroyed by q000 as they would have been destroyed directly, so we only need to
+            // look into qInit. The chunks which were free before the previous sweep already, which happened at least
+            // idleChunkReleaseNanos ago, were not used since.
+            qInit.removeEmptyChunks(emptyChunkSweeps - 1, released);
+            emptyChunkSweeps++;
+            idleChunkReleases += released.size();
+        }
+        destroyChunks(released);
+    }
+
+    /**
+     * Removes all empty chunks if we are running out of direct memory.
+     *
+     * Method must be called inside synchronized(this) { ... } block
+     *
+     * @return the removed chunks which need to be destroyed by the caller or {@code null} if there are none.
+     */
+    private List<PoolChunk<T>> removeEmptyChunksUnderMemoryPressure() {
+        if (!isUnderMemoryPressure()) {
+            return null;
+        }
+        List<PoolChunk<T>> released = new ArrayList<PoolChunk<T>>(2);
+        qInit.removeEmptyChunks(emptyChunkSweeps, released);
+        memoryPressureChunkReleases += released.size();
+        return released;
+    }
+
+    private boolean isUnderMemoryPressure() {
+        if (directMemoryPressureThreshold <= 0 || !isDirect()) {
+            return false;
         }
+        long usedMemory = PlatformDependent.usedDirectMemory();
+        return usedMemory >= 0 && PlatformDependent.directMemoryLimit() - usedMemory < directMemoryPressureThreshold;
+    }
 
-        return table[tableIdx];
+    PoolSubpage<T> findSubpagePoolHead(int elemSize) {
+        if (isTiny(elemSize)) { // < 512
+            return tinySubpagePools[tinyIdx(elemSize)];
+        }
+        return smallSubpagePools[smallIdx(elemSize)];
     }
 
     int normalizeCapacity(int reqCapacity) {
@@ -375,6 +522,10 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
 //        如果分配内存大于512直接分配1024的倍数
         if (!isTiny(reqCapacity)) { // >= 512
+            if (sizeClassShifts != 0) {
+                return normalizeFineGrainedCapacity(reqCapacity);
+            }
+
             // Doubled
 
             int normalizedCapacity = reqCapacity;
@@ -406,6 +557,29 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         return (reqCapacity & ~15) + 16;
     }
 
+    /**
+     * Round up to the next size class when more than one size class per power of two is used. Every doubling
+     * {@code [2^k, 2^(k+1))} is split into {@code sizeClassesPerDoubling} equally spaced size classes, similar to
+     * what jemalloc does. Sizes {@code >= pageSize} are always a multiple of {@code pageSize}, and sizes above
+     * {@code pageSize / 2} are served by a whole page as they could not share it anyway.
+     */
+    private int normalizeFineGrainedCapacity(int reqCapacity) {
+        final int group = Integer.highestOneBit(reqCapacity);
+        if (group == reqCapacity) {
+            return reqCapacity;
+        }
+        if (group == pageSize >>> 1) {
+            return pageSize;
+        }
+
+        int spacing = group >>> sizeClassShifts;
+        if (group >= pageSize) {
+            spacing = max(spacing, pageSize);
+        }
+        spacing = max(spacing, directMemoryCacheAlignment);
+        return (reqCapacity + spacing - 1) & -spacing;
+    }
+
     int alignCapacity(int reqCapacity) {
         int delta = reqCapacity & directMemoryCacheAlignmentMask;
         return delta == 0 ? reqCapacity : reqCapacity + directMemoryCacheAlignment - delta;
@@ -450,7 +624,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         buf.setIndex(readerIndex, writerIndex);
 
         if (freeOldMemory) {
-            free(oldChunk, oldHandle, oldMaxLength, buf.cache);
+            free(oldChunk, oldHandle, oldMaxLength, oldCapacity, buf.cache);
         }
     }
 
@@ -535,19 +709,19 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     public long numDeallocations() {
         final long deallocs;
         synchronized (this) {
-            deallocs = deallocationsTiny + deallocationsSmall + deallocationsNormal;
+            deallocs = deallocationsNormal;
         }
-        return deallocs + deallocationsHuge.value();
+        return deallocs + deallocationsTiny.value() + deallocationsSmall.value() + deallocationsHuge.value();
     }
 
     @Override
-    public synchronized long numTinyDeallocations() {
-        return deallocationsTiny;
+    public long numTinyDeallocations() {
+        return deallocationsTiny.value();
     }
 
     @Override
-    public synchronized long numSmallDeallocations() {
-        return deallocationsSmall;
+    public long numSmallDeallocations() {
+        return deallocationsSmall.value();
     }
 
     @Override
@@ -568,9 +742,9 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     @Override
     public  long numActiveAllocations() {
         long val = allocationsTiny.value() + allocationsSmall.value() + allocationsHuge.value()
-                - deallocationsHuge.value();
+                - deallocationsTiny.value() - deallocationsSmall.value() - deallocationsHuge.value();
         synchronized (this) {
-            val += allocationsNormal - (deallocationsTiny + deallocationsSmall + deallocationsNormal);
+            val += allocationsNormal - deallocationsNormal;
         }
         return max(val, 0);
     }
@@ -599,6 +773,32 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         return max(numHugeAllocations() - numHugeDeallocations(), 0);
     }
 
+    /**
+     * Return the number of bytes of the buffers of the given size class in use which are lost to size class rounding.
+     */
+    long numWastedBytes(SizeClass sizeClass) {
+        switch (sizeClass) {
+        case Tiny:
+            return wastedBytesTiny.value();
+        case Small:
+            return wastedBytesSmall.value();
+        case Normal:
+            return wastedBytesNormal.value();
+        default:
+            throw new Error();
+        }
+    }
+
+    @Override
+    public synchronized long numIdleChunkReleases() {
+        return idleChunkReleases;
+    }
+
+    @Override
+    public synchronized long numMemoryPressureChunkReleases() {
+        return memoryPressureChunkReleases;
+    }
+
     @Override
     public long numActiveBytes() {
         long val = activeBytesHuge.value();
@@ -703,8 +903,13 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
         HeapArena(PooledByteBufAllocator parent, int pageSize, int maxOrder,
                 int pageShifts, int chunkSize, int directMemoryCacheAlignment) {
+            this(parent, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment, 1);
+        }
+
+        HeapArena(PooledByteBufAllocator parent, int pageSize, int maxOrder,
+                int pageShifts, int chunkSize, int directMemoryCacheAlignment, int sizeClassesPerDoubling) {
             super(parent, pageSize, maxOrder, pageShifts, chunkSize,
-                    directMemoryCacheAlignment);
+                    directMemoryCacheAlignment, sizeClassesPerDoubling);
         }
 
         private static byte[] newByteArray(int size) {
@@ -751,8 +956,16 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
         DirectArena(PooledByteBufAllocator parent, int pageSize, int maxOrder,
                 int pageShifts, int chunkSize, int directMemoryCacheAlignment) {
+            this(parent, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment, 1);
+        }
+
+        private final DirectChunkAllocator chunkAllocator;
+
+        DirectArena(PooledByteBufAllocator parent, int pageSize, int maxOrder,
+                int pageShifts, int chunkSize, int directMemoryCacheAlignment, int sizeClassesPerDoubling) {
             super(parent, pageSize, maxOrder, pageShifts, chunkSize,
-                    directMemoryCacheAlignment);
+                    directMemoryCacheAlignment, sizeClassesPerDoubling);
+            chunkAllocator = parent == null ? null : parent.directChunkAllocator();
         }
 
         @Override
@@ -771,6 +984,13 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         @Override
         protected PoolChunk<ByteBuffer> newChunk(int pageSize, int maxOrder,
                 int pageShifts, int chunkSize) {
+            if (chunkAllocator != null) {
+                PoolChunk<ByteBuffer> chunk = newChunk(chunkAllocator, pageSize, maxOrder, pageShifts, chunkSize);
+                if (chunk != null) {
+                    return chunk;
+                }
+                // Fallback to the default direct memory.
+            }
             if (directMemoryCacheAlignment == 0) {
                 return new PoolChunk<ByteBuffer>(this,
                         allocateDirect(chunkSize), pageSize, maxOrder,
@@ -783,6 +1003,18 @@ abstract class PoolArena<T> implements PoolArenaMetric {
                     offsetCacheLine(memory));
         }
 
+        private PoolChunk<ByteBuffer> newChunk(DirectChunkAllocator chunkAllocator, int pageSize, int maxOrder,
+                                               int pageShifts, int chunkSize) {
+            final ByteBuffer memory = chunkAllocator.allocate(chunkSize + directMemoryCacheAlignment);
+            if (memory == null) {
+                return null;
+            }
+            PoolChunk<ByteBuffer> chunk = new PoolChunk<ByteBuffer>(this, memory, pageSize, maxOrder, pageShifts,
+                    chunkSize, directMemoryCacheAlignment == 0 ? 0 : offsetCacheLine(memory));
+            chunk.chunkAllocator = chunkAllocator;
+            return chunk;
+        }
+
         @Override
         protected PoolChunk<ByteBuffer> newUnpooledChunk(int capacity) {
             if (directMemoryCacheAlignment == 0) {
@@ -802,7 +1034,9 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
         @Override
         protected void destroyChunk(PoolChunk<ByteBuffer> chunk) {
-            if (PlatformDependent.useDirectBufferNoCleaner()) {
+            if (chunk.chunkAllocator != null) {
+                chunk.chunkAllocator.free(chunk.memory);
+            } else if (PlatformDependent.useDirectBufferNoCleaner()) {
                 PlatformDependent.freeDirectNoCleaner(chunk.memory);
             } else {
                 PlatformDependent.freeDirectBuffer(chunk.memory);
@@ -133,6 +133,18 @@ public interface PoolArenaMetric {
      */
     long numActiveHugeAllocations();
 
+    /**
+     * Return the number of chunks that were given back to the system because they were not used for longer than
+     * the configured idle time.
+     */
+    long numIdleChunkReleases();
+
+    /**
+     * Return the number of chunks that were given back to the system because the remaining direct memory fell below
+     * the configured threshold.
+     */
+    long numMemoryPressureChunkReleases();
+
     /**
      * Return the number of active bytes that are currently allocated by the arena.返回竞技场当前分配的活动字节数。
      */
@@ -118,6 +118,7 @@ package io.netty.buffer;
 final class PoolChunk<T> implements PoolChunkMetric {
 
     private static final int INTEGER_SIZE_MINUS_ONE = Integer.SIZE - 1;
+    private static final long SUBPAGE_HANDLE_MASK = 0x4000000000000000L;
 
     final PoolArena<T> arena;
     final T memory;
@@ -144,6 +145,13 @@ final class PoolChunk<T> implements PoolChunkMetric {
     PoolChunk<T> prev;
     PoolChunk<T> next;
 
+    // The number of idle chunk sweeps of the arena when the chunk became completely free the last time, guarded by the
+    // arena.
+    int emptySinceSweep;
+
+    // Set by the DirectArena if the memory was allocated by a DirectChunkAllocator and so must be freed by it.
+    DirectChunkAllocator chunkAllocator;
+
     // TODO: Test if adding padding helps under contention
     //private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
 
@@ -320,6 +328,10 @@ final class PoolChunk<T> implements PoolChunkMetric {
      * @return index in memoryMap
      */
     private long allocateRun(int normCapacity) {
+        if ((normCapacity & normCapacity - 1) != 0) {
+            // Only possible if the arena uses more than one size class per power of two.
+            return allocateFineGrainedRun(normCapacity);
+        }
         int d = maxOrder - (log2(normCapacity) - pageShifts);
 //        分配树的节点并修改树的结构
         int id = allocateNode(d);
@@ -330,6 +342,80 @@ final class PoolChunk<T> implements PoolChunkMetric {
         return id;
     }
 
+    /**
+     * Allocate a run of pages whose size is not a power of two. We allocate the smallest node that can hold the run
+     * and give back the trailing pages that are not needed, so these can be used by other allocations.
+     *
+     * The number of pages is encoded in the upper 32 bits of the returned handle.
+     *
+     * @param normCapacity normalized capacity
+     * @return handle of the run
+     */
+    private long allocateFineGrainedRun(int normCapacity) {
+        int d = maxOrder - (log2(normCapacity) + 1 - pageShifts);
+        int id = allocateNode(d);
+        if (id < 0) {
+            return id;
+        }
+        int pages = normCapacity >>> pageShifts;
+        markRun(id, pages);
+        updateParentsAlloc(id);
+        freeBytes -= normCapacity;
+        return (long) pages << Integer.SIZE | id;
+    }
+
+    /**
+     * Mark the first {@code pages} pages of the subtree rooted at {@code id} as used and the rest as free.
+     */
+    private void markRun(int id, int pages) {
+        int runPages = runPages(id);
+        if (pages == runPages) {
+            setValue(id, unusable);
+            return;
+        }
+        int half = runPages >>> 1;
+        int left = id << 1;
+        int right = left ^ 1;
+        if (pages <= half) {
+            markRun(left, pages);
+        } else {
+            setValue(left, unusable);
+            markRun(right, pages - half);
+        }
+        byte val1 = value(left);
+        byte val2 = value(right);
+        setValue(id, val1 < val2 ? val1 : val2);
+    }
+
+    /**
+     * Mark the first {@code pages} pages of the subtree rooted at {@code id} as free again. The remaining pages of
+     * the subtree may have been allocated in the meantime and so are left untouched.
+     */
+    private void freeRun(int id, int pages) {
+        int runPages = runPages(id);
+        if (pages == runPages) {
+            setValue(id, depth(id));
+            return;
+        }
+        int half = runPages >>> 1;
+        int left = id << 1;
+        int right = left ^ 1;
+        if (pages <= half) {
+            freeRun(left, pages);
+        } else {
+            setValue(left, depth(left));
+            freeRun(right, pages - half);
+        }
+        byte val1 = value(left);
+        byte val2 = value(right);
+        byte childDepth = depth(left);
+        if (val1 == childDepth && val2 == childDepth) {
+            setValue(id, depth(id));
+        } else {
+            setValue(id, val1 < val2 ? val1 : val2);
+        }
+    }
+
     /**
      * Create/ initialize a new PoolSubpage of normCapacity
      * Any PoolSubpage created/ initialized here is added to subpage pool in the PoolArena that owns this PoolChunk
@@ -371,45 +457,66 @@ final class PoolChunk<T> implements PoolChunkMetric {
     }
 
     /**
-     * Free a subpage or a run of pages
+     * Free an element of a subpage. This only needs the lock of the subpage pool head and so can be called without
+     * holding the arena lock.
      * When a subpage is freed from PoolSubpage, it might be added back to subpage pool of the owning PoolArena
      * If the subpage pool in PoolArena has at least one other PoolSubpage of given elemSize, we can
      * completely free the owning Page so it is available for subsequent allocations
      *
      * @param handle handle to free
+     * @return {@code true} if the page is still used, {@code false} if the page needs to be freed via
+     *         {@link #free(long)}.
+     */
+    boolean freeSubpage(long handle) {
+        assert isSubpage(handle);
+        PoolSubpage<T> subpage = subpages[subpageIdx(memoryMapIdx(handle))];
+        assert subpage != null && subpage.doNotDestroy;
+
+        // Obtain the head of the PoolSubPage pool that is owned by the PoolArena and synchronize on it.
+        // This is need as we may add it back and so alter the linked-list structure.//获取PoolArena拥有的PoolSubPage池的头部并在其上进行同步。
+//这是必要的，因为我们可能会把它加回去，从而改变链表结构。
+        PoolSubpage<T> head = arena.findSubpagePoolHead(subpage.elemSize);
+        synchronized (head) {
+            return subpage.free(head, bitmapIdx(handle) & 0x3FFFFFFF);
+        }
+    }
+
+    /**
+     * Free a run of pages, or the page of a subpage once {@link #freeSubpage(long)} returned {@code false}.
+     *
+     * @param handle handle to free
      *               免费页或运行子页摆脱PoolSubpage子页时,它可能被添加回子页拥有PoolArena如果子页池的池PoolArena至少有一个其他PoolSubpage elemSize,我们可以完全免费拥有页面用于随后的分配
      */
     void free(long handle) {
         int memoryMapIdx = memoryMapIdx(handle);
         int bitmapIdx = bitmapIdx(handle);
 
-        if (bitmapIdx != 0) { // free a subpage
-            PoolSubpage<T> subpage = subpages[subpageIdx(memoryMapIdx)];
-            assert subpage != null && subpage.doNotDestroy;
-
-            // Obtain the head of the PoolSubPage pool that is owned by the PoolArena and synchronize on it.
-            // This is need as we may add it back and so alter the linked-list structure.//获取PoolArena拥有的PoolSubPage池的头部并在其上进行同步。
-//这是必要的，因为我们可能会把它加回去，从而改变链表结构。
-            PoolSubpage<T> head = arena.findSubpagePoolHead(subpage.elemSize);
-            synchronized (head) {
-                if (subpage.free(head, bitmapIdx & 0x3FFFFFFF)) {
-                    return;
-                }
-            }
+        // For fine grained runs the upper 32 bits of the handle hold the number of pages.
+        int pages = isSubpage(handle) ? 0 : bitmapIdx;
+        if (pages != 0) { // free a run allocated by allocateFineGrainedRun(...)
+            freeBytes += pages << pageShifts;
+            freeRun(memoryMapIdx, pages);
+        } else {
+            freeBytes += runLength(memoryMapIdx);
+            setValue(memoryMapIdx, depth(memoryMapIdx));
         }
-        freeBytes += runLength(memoryMapIdx);
-        setValue(memoryMapIdx, depth(memoryMapIdx));
         updateParentsFree(memoryMapIdx);
     }
 
     void initBuf(PooledByteBuf<T> buf, long handle, int reqCapacity) {
         int memoryMapIdx = memoryMapIdx(handle);
         int bitmapIdx = bitmapIdx(handle);
-        if (bitmapIdx == 0) {
-            byte val = value(memoryMapIdx);
-            assert val == unusable : String.valueOf(val);
+        if (!isSubpage(handle)) {
+            int runLength;
+            if (bitmapIdx == 0) {
+                byte val = value(memoryMapIdx);
+                assert val == unusable : String.valueOf(val);
+                runLength = runLength(memoryMapIdx);
+            } else {
+                runLength = bitmapIdx << pageShifts;
+            }
 //            buffer初始化
-            buf.init(this, handle, runOffset(memoryMapIdx) + offset, reqCapacity, runLength(memoryMapIdx),
+            buf.init(this, handle, runOffset(memoryMapIdx) + offset, reqCapacity, runLength,
                      arena.parent.threadCache());
         } else {
 //            初始化subpage的buffer
@@ -460,6 +567,11 @@ final class PoolChunk<T> implements PoolChunkMetric {
         return 1 << log2ChunkSize - depth(id);
     }
 
+    private int runPages(int id) {
+        // represents the number of pages supported by node 'id' in the tree
+        return 1 << maxOrder - depth(id);
+    }
+
     private int runOffset(int id) {
         // represents the 0-based offset in #bytes from start of the byte-array chunk表示从字节数组块开始的基于0的偏移量(以#字节为单位)
         int shift = id ^ 1 << depth(id);
@@ -478,6 +590,17 @@ final class PoolChunk<T> implements PoolChunkMetric {
         return (int) (handle >>> Integer.SIZE);
     }
 
+    private static boolean isSubpage(long handle) {
+        return (handle & SUBPAGE_HANDLE_MASK) != 0;
+    }
+
+    /**
+     * Returns {@code true} if nothing is allocated out of this chunk. Must be called while holding the arena lock.
+     */
+    boolean isEmpty() {
+        return freeBytes == chunkSize;
+    }
+
     @Override
     public int chunkSize() {
         return chunkSize;
@@ -490,6 +613,15 @@ final class PoolChunk<T> implements PoolChunkMetric {
         }
     }
 
+    @Override
+    public String memoryBacking() {
+        DirectChunkAllocator chunkAllocator = this.chunkAllocator;
+        if (chunkAllocator != null) {
+            return chunkAllocator.memoryBacking();
+        }
+        return arena.isDirect() ? "direct" : "heap";
+    }
+
     @Override
     public String toString() {
         final int freeBytes;
@@ -506,6 +638,8 @@ final class PoolChunk<T> implements PoolChunkMetric {
                 .append(chunkSize - freeBytes)
                 .append('/')
                 .append(chunkSize)
+                .append(", ")
+                .append(memoryBacking())
                 .append(')')
                 .toString();
     }
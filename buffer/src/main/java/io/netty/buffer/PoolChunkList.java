@@ -147,6 +147,22 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
         return prevList.move(chunk);
     }
 
+    /**
+     * Removes all {@link PoolChunk}s that are completely free since the idle chunk sweep {@code maxEmptySinceSweep} of
+     * the arena or an earlier one from this {@link PoolChunkList} and adds them to {@code released}.
+     */
+    void removeEmptyChunks(int maxEmptySinceSweep, List<PoolChunk<T>> released) {
+        PoolChunk<T> cur = head;
+        while (cur != null) {
+            PoolChunk<T> next = cur.next;
+            if (cur.isEmpty() && maxEmptySinceSweep - cur.emptySinceSweep >= 0) {
+                remove(cur);
+                released.add(cur);
+            }
+            cur = next;
+        }
+    }
+
     void add(PoolChunk<T> chunk) {
         if (chunk.usage() >= maxUsage) {
             nextList.add(chunk);
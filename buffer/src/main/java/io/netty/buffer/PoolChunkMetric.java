@@ -34,4 +34,11 @@ public interface PoolChunkMetric {
      * Return the number of free bytes in the chunk.返回块中的空闲字节数。
      */
     int freeBytes();
+
+    /**
+     * Return the name of the memory backing of the chunk. This is {@code "heap"} or {@code "direct"} for the memory
+     * allocated by the JDK, or {@link DirectChunkAllocator#memoryBacking()} if the chunk was allocated by a
+     * {@link DirectChunkAllocator}.
+     */
+    String memoryBacking();
 }
@@ -25,8 +25,10 @@ import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Acts a Thread cache for allocations. This implementation is moduled after
@@ -50,11 +52,15 @@ final class PoolThreadCache {
     private final MemoryRegionCache<byte[]>[] normalHeapCaches;
     private final MemoryRegionCache<ByteBuffer>[] normalDirectCaches;
 
-    // Used for bitshifting when calculate the index of normal caches later用于以后计算正常缓存的索引时的位移
-    private final int numShiftsNormalDirect;
-    private final int numShiftsNormalHeap;
     private final int freeSweepAllocationThreshold;
 
+    // Buffers released by other threads that did not fit into the caches. These are pushed on a lock-free stack and
+    // handed back in batches by the thread that owns this cache, so the releasing thread never takes an arena lock.
+    private final AtomicReference<PendingFree> pendingFrees = new AtomicReference<PendingFree>();
+    private final int maxPendingFrees;
+    // Only hold a weak reference as the Thread must be able to be collected so the cache can be freed.
+    private final WeakReference<Thread> ownerThread;
+
     private int allocations;
 
     // TODO: Test if adding padding helps under contention
@@ -63,11 +69,23 @@ final class PoolThreadCache {
     PoolThreadCache(PoolArena<byte[]> heapArena, PoolArena<ByteBuffer> directArena,
                     int tinyCacheSize, int smallCacheSize, int normalCacheSize,
                     int maxCachedBufferCapacity, int freeSweepAllocationThreshold) {
+        this(heapArena, directArena, tinyCacheSize, smallCacheSize, normalCacheSize,
+             maxCachedBufferCapacity, freeSweepAllocationThreshold, 0);
+    }
+
+    PoolThreadCache(PoolArena<byte[]> heapArena, PoolArena<ByteBuffer> directArena,
+                    int tinyCacheSize, int smallCacheSize, int normalCacheSize,
+                    int maxCachedBufferCapacity, int freeSweepAllocationThreshold, int maxPendingFrees) {
         if (maxCachedBufferCapacity < 0) {
             throw new IllegalArgumentException("maxCachedBufferCapacity: "
                     + maxCachedBufferCapacity + " (expected: >= 0)");
         }
+        if (maxPendingFrees < 0) {
+            throw new IllegalArgumentException("maxPendingFrees: "
+                    + maxPendingFrees + " (expected: >= 0)");
+        }
         this.freeSweepAllocationThreshold = freeSweepAllocationThreshold;
+        ownerThread = new WeakReference<Thread>(Thread.currentThread());
         this.heapArena = heapArena;
         this.directArena = directArena;
         if (directArena != null) {
@@ -76,7 +94,6 @@ final class PoolThreadCache {
             smallSubPageDirectCaches = createSubPageCaches(
                     smallCacheSize, directArena.numSmallSubpagePools, SizeClass.Small);
 
-            numShiftsNormalDirect = log2(directArena.pageSize);
             normalDirectCaches = createNormalCaches(
                     normalCacheSize, maxCachedBufferCapacity, directArena);
 
@@ -86,7 +103,6 @@ final class PoolThreadCache {
             tinySubPageDirectCaches = null;
             smallSubPageDirectCaches = null;
             normalDirectCaches = null;
-            numShiftsNormalDirect = -1;
         }
         if (heapArena != null) {
             // Create the caches for the heap allocations为堆分配创建缓存
@@ -95,7 +111,6 @@ final class PoolThreadCache {
             smallSubPageHeapCaches = createSubPageCaches(
                     smallCacheSize, heapArena.numSmallSubpagePools, SizeClass.Small);
 
-            numShiftsNormalHeap = log2(heapArena.pageSize);
             normalHeapCaches = createNormalCaches(
                     normalCacheSize, maxCachedBufferCapacity, heapArena);
 
@@ -105,7 +120,6 @@ final class PoolThreadCache {
             tinySubPageHeapCaches = null;
             smallSubPageHeapCaches = null;
             normalHeapCaches = null;
-            numShiftsNormalHeap = -1;
         }
 
         // Only check if there are caches in use.只检查是否有缓存在使用。
@@ -115,6 +129,9 @@ final class PoolThreadCache {
             throw new IllegalArgumentException("freeSweepAllocationThreshold: "
                     + freeSweepAllocationThreshold + " (expected: > 0)");
         }
+
+        // Pending frees are only drained from the allocation path, which is not used if there are no caches at all.
+        this.maxPendingFrees = freeSweepAllocationThreshold > 0 ? maxPendingFrees : 0;
     }
 
     private static <T> MemoryRegionCache<T>[] createSubPageCaches(
@@ -136,7 +153,8 @@ final class PoolThreadCache {
             int cacheSize, int maxCachedBufferCapacity, PoolArena<T> area) {
         if (cacheSize > 0 && maxCachedBufferCapacity > 0) {
             int max = Math.min(area.chunkSize, maxCachedBufferCapacity);
-            int arraySize = Math.max(1, log2(max / area.pageSize) + 1);
+            // The index of the biggest size class that is not bigger than max.
+            int arraySize = area.normalIdx(Math.max(max, area.pageSize)) + 1;
 
             @SuppressWarnings("unchecked")
             MemoryRegionCache<T>[] cache = new MemoryRegionCache[arraySize];
@@ -149,15 +167,6 @@ final class PoolThreadCache {
         }
     }
 
-    private static int log2(int val) {
-        int res = 0;
-        while (val > 1) {
-            val >>= 1;
-            res++;
-        }
-        return res;
-    }
-
     /**
      * Try to allocate a tiny buffer out of the cache. Returns {@code true} if successful {@code false} otherwise 尝试从缓存中分配一个小的缓冲区。如果成功则返回true
      */
@@ -186,6 +195,11 @@ final class PoolThreadCache {
             return false;
         }
         boolean allocated = cache.allocate(buf, reqCapacity);
+        if (!allocated && pendingFrees.get() != null) {
+            // Buffers released by other threads may refill the cache, so try again after handing them back.
+            drainPendingFrees();
+            allocated = cache.allocate(buf, reqCapacity);
+        }
 //        freeSweepAllocationThreshold 8192
         if (++ allocations >= freeSweepAllocationThreshold) {
             allocations = 0;
@@ -201,10 +215,80 @@ final class PoolThreadCache {
     @SuppressWarnings({ "unchecked", "rawtypes" })
     boolean add(PoolArena<?> area, PoolChunk chunk, long handle, int normCapacity, SizeClass sizeClass) {
         MemoryRegionCache<?> cache = cache(area, normCapacity, sizeClass);
-        if (cache == null) {
-            return false;
+        if (cache != null && cache.add(chunk, handle)) {
+            return true;
+        }
+        // If the buffer is released by another thread queue it for the owner so the arena lock is taken in batches.
+        return maxPendingFrees > 0 && Thread.currentThread() != ownerThread.get()
+                && addPendingFree(chunk, handle, normCapacity, sizeClass);
+    }
+
+    private boolean addPendingFree(PoolChunk<?> chunk, long handle, int normCapacity, SizeClass sizeClass) {
+        PendingFree pending = new PendingFree(chunk, handle, normCapacity, sizeClass);
+        for (;;) {
+            PendingFree head = pendingFrees.get();
+            if (head == PendingFree.CLOSED) {
+                // The cache was freed already.
+                return false;
+            }
+            int count = head == null ? 1 : head.count + 1;
+            if (count > maxPendingFrees) {
+                return false;
+            }
+            pending.next = head;
+            pending.count = count;
+            if (pendingFrees.compareAndSet(head, pending)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Hand back all buffers that were released by other threads since the last call. Buffers are put in the caches
+     * if there is enough room, the rest is freed to the arenas while holding each arena lock only once.
+     */
+    void drainPendingFrees() {
+        PendingFree head = pendingFrees.get();
+        if (head == null || head == PendingFree.CLOSED) {
+            return;
+        }
+        freePendingFrees(pendingFrees.getAndSet(null), true);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void freePendingFrees(PendingFree head, boolean addToCache) {
+        PendingFree remaining = null;
+        for (PendingFree pending = head; pending != null;) {
+            PendingFree next = pending.next;
+            MemoryRegionCache cache = addToCache ?
+                    cache(pending.chunk.arena, pending.normCapacity, pending.sizeClass) : null;
+            if (cache == null || !cache.add(pending.chunk, pending.handle)) {
+                pending.next = remaining;
+                remaining = pending;
+            }
+            pending = next;
+        }
+        if (remaining == null) {
+            return;
+        }
+
+        freePendingFrees(heapArena, remaining);
+        freePendingFrees(directArena, remaining);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void freePendingFrees(PoolArena arena, PendingFree head) {
+        if (arena == null) {
+            return;
+        }
+        synchronized (arena) {
+            // PoolArena.freeChunk(...) acquires the lock again, which is cheap as it is already held.
+            for (PendingFree pending = head; pending != null; pending = pending.next) {
+                if (pending.chunk.arena == arena) {
+                    arena.freeChunk(pending.chunk, pending.handle, pending.sizeClass);
+                }
+            }
         }
-        return cache.add(chunk, handle);
     }
 
     private MemoryRegionCache<?> cache(PoolArena<?> area, int normCapacity, SizeClass sizeClass) {
@@ -225,6 +309,12 @@ final class PoolThreadCache {
      *  如果使用此缓存的线程即将存在并将资源释放到缓存之外，应该调用它吗
      */
     void free() {
+        // Make sure no other thread can queue a buffer anymore and give back everything that is queued right now.
+        PendingFree pending = pendingFrees.getAndSet(PendingFree.CLOSED);
+        if (pending != null && pending != PendingFree.CLOSED) {
+            freePendingFrees(pending, false);
+        }
+
         int numFreed = free(tinySubPageDirectCaches) +
                 free(smallSubPageDirectCaches) +
                 free(normalDirectCaches) +
@@ -265,6 +355,7 @@ final class PoolThreadCache {
     }
 
     void trim() {
+        drainPendingFrees();
 //        小于512的直接缓冲区缓存
         trim(tinySubPageDirectCaches);
 //        大于521小于4096的直接缓冲区缓存
@@ -277,6 +368,14 @@ final class PoolThreadCache {
         trim(smallSubPageHeapCaches);
 //        大于4096的堆缓冲区缓存
         trim(normalHeapCaches);
+        // Also gives the arenas a chance to release the chunks which stayed free for long enough, as this is called
+        // periodically while the thread allocates.
+        if (directArena != null) {
+            directArena.trimEmptyChunks();
+        }
+        if (heapArena != null) {
+            heapArena.trimEmptyChunks();
+        }
     }
 
     private static void trim(MemoryRegionCache<?>[] caches) {
@@ -305,7 +404,7 @@ final class PoolThreadCache {
     }
 
     private MemoryRegionCache<?> cacheForSmall(PoolArena<?> area, int normCapacity) {
-        int idx = PoolArena.smallIdx(normCapacity);
+        int idx = area.smallIdx(normCapacity);
         if (area.isDirect()) {
             return cache(smallSubPageDirectCaches, idx);
         }
@@ -313,11 +412,10 @@ final class PoolThreadCache {
     }
 
     private MemoryRegionCache<?> cacheForNormal(PoolArena<?> area, int normCapacity) {
+        int idx = area.normalIdx(normCapacity);
         if (area.isDirect()) {
-            int idx = log2(normCapacity >> numShiftsNormalDirect);
             return cache(normalDirectCaches, idx);
         }
-        int idx = log2(normCapacity >> numShiftsNormalHeap);
         return cache(normalHeapCaches, idx);
     }
 
@@ -328,6 +426,29 @@ final class PoolThreadCache {
         return cache[idx];
     }
 
+    /**
+     * A buffer released by another thread than the one owning the {@link PoolThreadCache}.
+     */
+    private static final class PendingFree {
+        // Marks a freed cache, no buffers can be queued anymore.
+        static final PendingFree CLOSED = new PendingFree(null, -1, 0, null);
+
+        final PoolChunk<?> chunk;
+        final long handle;
+        final int normCapacity;
+        final SizeClass sizeClass;
+        PendingFree next;
+        // Number of queued buffers including this one.
+        int count;
+
+        PendingFree(PoolChunk<?> chunk, long handle, int normCapacity, SizeClass sizeClass) {
+            this.chunk = chunk;
+            this.handle = handle;
+            this.normCapacity = normCapacity;
+            this.sizeClass = sizeClass;
+        }
+    }
+
     /**
      * Cache used for buffers which are backed by TINY or SMALL size.缓存用于支持较小大小的缓冲区。
      */
@@ -95,19 +95,19 @@ abstract class PooledByteBuf<T> extends AbstractReferenceCountedByteBuf {
         } else {
             if (newCapacity > length) {
                 if (newCapacity <= maxLength) {
-                    length = newCapacity;
+                    setLength(newCapacity);
                     return this;
                 }
             } else if (newCapacity < length) {
                 if (newCapacity > maxLength >>> 1) {
                     if (maxLength <= 512) {
                         if (newCapacity > maxLength - 16) {
-                            length = newCapacity;
+                            setLength(newCapacity);
                             setIndex(Math.min(readerIndex(), newCapacity), Math.min(writerIndex(), newCapacity));
                             return this;
                         }
                     } else { // > 512 (i.e. >= 1024)
-                        length = newCapacity;
+                        setLength(newCapacity);
                         setIndex(Math.min(readerIndex(), newCapacity), Math.min(writerIndex(), newCapacity));
                         return this;
                     }
@@ -122,6 +122,11 @@ abstract class PooledByteBuf<T> extends AbstractReferenceCountedByteBuf {
         return this;
     }
 
+    private void setLength(int newCapacity) {
+        chunk.arena.capacityChanged(maxLength, length, newCapacity);
+        length = newCapacity;
+    }
+
     @Override
     public final ByteBufAllocator alloc() {
         return allocator;
@@ -170,7 +175,7 @@ abstract class PooledByteBuf<T> extends AbstractReferenceCountedByteBuf {
             this.handle = -1;
             memory = null;
             tmpNioBuf = null;
-            chunk.arena.free(chunk, handle, maxLength, cache);
+            chunk.arena.free(chunk, handle, maxLength, length, cache);
             chunk = null;
             recycle();
         }
@@ -16,6 +16,7 @@
 
 package io.netty.buffer;
 
+import io.netty.buffer.PoolArena.SizeClass;
 import io.netty.util.NettyRuntime;
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.concurrent.FastThreadLocalThread;
@@ -29,6 +30,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class PooledByteBufAllocator extends AbstractByteBufAllocator implements ByteBufAllocatorMetricProvider {
 
@@ -43,11 +45,16 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     private static final int DEFAULT_NORMAL_CACHE_SIZE;
     private static final int DEFAULT_MAX_CACHED_BUFFER_CAPACITY;
     private static final int DEFAULT_CACHE_TRIM_INTERVAL;
+    private static final int DEFAULT_MAX_PENDING_FREES;
     private static final boolean DEFAULT_USE_CACHE_FOR_ALL_THREADS;
     private static final int DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT;
+    private static final int DEFAULT_SIZE_CLASSES_PER_DOUBLING;
+    private static final long DEFAULT_IDLE_CHUNK_RELEASE_MILLIS;
+    private static final long DEFAULT_DIRECT_MEMORY_PRESSURE_THRESHOLD;
 
     private static final int MIN_PAGE_SIZE = 4096;
     private static final int MAX_CHUNK_SIZE = (int) (((long) Integer.MAX_VALUE + 1) / 2);//1073741824
+    private static final int MAX_SIZE_CLASSES_PER_DOUBLING = 8;
 
     static {
         int defaultPageSize = SystemPropertyUtil.getInt("io.netty.allocator.pageSize", 8192);
@@ -114,12 +121,37 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         DEFAULT_CACHE_TRIM_INTERVAL = SystemPropertyUtil.getInt(
                 "io.netty.allocator.cacheTrimInterval", 8192);
 
+        // the maximum number of buffers released by other threads that are queued for the thread which allocated them
+        // when its cache is full. 0 disables the queue.
+        DEFAULT_MAX_PENDING_FREES = Math.max(0, SystemPropertyUtil.getInt(
+                "io.netty.allocator.maxPendingFrees", 1024));
+
         DEFAULT_USE_CACHE_FOR_ALL_THREADS = SystemPropertyUtil.getBoolean(
                 "io.netty.allocator.useCacheForAllThreads", true);
 
         DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT = SystemPropertyUtil.getInt(
                 "io.netty.allocator.directMemoryCacheAlignment", 0);
 
+        int defaultSizeClassesPerDoubling = SystemPropertyUtil.getInt("io.netty.allocator.sizeClassesPerDoubling", 1);
+        Throwable sizeClassesPerDoublingFallbackCause = null;
+        try {
+            validateSizeClassesPerDoubling(defaultSizeClassesPerDoubling);
+        } catch (Throwable t) {
+            sizeClassesPerDoublingFallbackCause = t;
+            defaultSizeClassesPerDoubling = 1;
+        }
+        DEFAULT_SIZE_CLASSES_PER_DOUBLING = defaultSizeClassesPerDoubling;
+
+        // the time after which a completely free chunk is released, 0 means chunks are kept until they are moved
+        // out of the 0% - 25% usage list
+        DEFAULT_IDLE_CHUNK_RELEASE_MILLIS = Math.max(0, SystemPropertyUtil.getLong(
+                "io.netty.allocator.idleChunkReleaseMillis", 0));
+
+        // free chunks are released directly once less than this number of bytes of direct memory are left,
+        // 0 disables it
+        DEFAULT_DIRECT_MEMORY_PRESSURE_THRESHOLD = Math.max(0, SystemPropertyUtil.getLong(
+                "io.netty.allocator.directMemoryPressureThreshold", 0));
+
         if (logger.isDebugEnabled()) {
             logger.debug("-Dio.netty.allocator.numHeapArenas: {}", DEFAULT_NUM_HEAP_ARENA);
             logger.debug("-Dio.netty.allocator.numDirectArenas: {}", DEFAULT_NUM_DIRECT_ARENA);
@@ -139,7 +171,17 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             logger.debug("-Dio.netty.allocator.normalCacheSize: {}", DEFAULT_NORMAL_CACHE_SIZE);
             logger.debug("-Dio.netty.allocator.maxCachedBufferCapacity: {}", DEFAULT_MAX_CACHED_BUFFER_CAPACITY);
             logger.debug("-Dio.netty.allocator.cacheTrimInterval: {}", DEFAULT_CACHE_TRIM_INTERVAL);
+            logger.debug("-Dio.netty.allocator.maxPendingFrees: {}", DEFAULT_MAX_PENDING_FREES);
             logger.debug("-Dio.netty.allocator.useCacheForAllThreads: {}", DEFAULT_USE_CACHE_FOR_ALL_THREADS);
+            if (sizeClassesPerDoublingFallbackCause == null) {
+                logger.debug("-Dio.netty.allocator.sizeClassesPerDoubling: {}", DEFAULT_SIZE_CLASSES_PER_DOUBLING);
+            } else {
+                logger.debug("-Dio.netty.allocator.sizeClassesPerDoubling: {}", DEFAULT_SIZE_CLASSES_PER_DOUBLING,
+                        sizeClassesPerDoublingFallbackCause);
+            }
+            logger.debug("-Dio.netty.allocator.idleChunkReleaseMillis: {}", DEFAULT_IDLE_CHUNK_RELEASE_MILLIS);
+            logger.debug("-Dio.netty.allocator.directMemoryPressureThreshold: {}",
+                    DEFAULT_DIRECT_MEMORY_PRESSURE_THRESHOLD);
         }
     }
 
@@ -151,6 +193,11 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     private final int tinyCacheSize;
     private final int smallCacheSize;
     private final int normalCacheSize;
+    private final int sizeClassesPerDoubling;
+    private final long idleChunkReleaseNanos;
+    private final long directMemoryPressureThreshold;
+    private final DirectChunkAllocator directChunkAllocator;
+    private final boolean freeSubpageWithoutArenaLock;
     private final List<PoolArenaMetric> heapArenaMetrics;
     private final List<PoolArenaMetric> directArenaMetrics;
     private final PoolThreadLocalCache threadCache;
@@ -204,11 +251,101 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
                                   int tinyCacheSize, int smallCacheSize, int normalCacheSize,
                                   boolean useCacheForAllThreads, int directMemoryCacheAlignment) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+                tinyCacheSize, smallCacheSize, normalCacheSize,
+                useCacheForAllThreads, directMemoryCacheAlignment, DEFAULT_SIZE_CLASSES_PER_DOUBLING);
+    }
+
+    /**
+     * Create a new instance which keeps free chunks according to the default release policy, see
+     * {@link #PooledByteBufAllocator(boolean, int, int, int, int, int, int, int, boolean, int, int, long, long)}.
+     */
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int tinyCacheSize, int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads, int directMemoryCacheAlignment,
+                                  int sizeClassesPerDoubling) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+                tinyCacheSize, smallCacheSize, normalCacheSize,
+                useCacheForAllThreads, directMemoryCacheAlignment, sizeClassesPerDoubling,
+                DEFAULT_IDLE_CHUNK_RELEASE_MILLIS, DEFAULT_DIRECT_MEMORY_PRESSURE_THRESHOLD);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param sizeClassesPerDoubling the number of size classes used for each power of two between {@code 512} and
+     *                               {@code chunkSize}. {@code 1} rounds every allocation up to the next power of two,
+     *                               a bigger value (up to {@code 8}) reduces the memory lost to rounding at the cost
+     *                               of more size classes to cache.
+     * @param idleChunkReleaseMillis the number of milliseconds a chunk must stay completely free before it is given
+     *                               back to the system, or {@code 0} to keep free chunks.
+     * @param directMemoryPressureThreshold free chunks of direct arenas are given back to the system as soon as less
+     *                                      than this number of bytes of direct memory is left, or {@code 0} to
+     *                                      disable it. Only works if the direct memory usage is tracked, see
+     *                                      {@link PlatformDependent#usedDirectMemory()}.
+     */
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int tinyCacheSize, int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads, int directMemoryCacheAlignment,
+                                  int sizeClassesPerDoubling, long idleChunkReleaseMillis,
+                                  long directMemoryPressureThreshold) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+                tinyCacheSize, smallCacheSize, normalCacheSize,
+                useCacheForAllThreads, directMemoryCacheAlignment, sizeClassesPerDoubling,
+                idleChunkReleaseMillis, directMemoryPressureThreshold, null);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param directChunkAllocator allocates the memory of the chunks of the direct arenas, for example to back them
+     *                             by huge pages, or {@code null} to use the default direct memory. If it can not
+     *                             allocate a chunk the default direct memory is used for it.
+     * @see #PooledByteBufAllocator(boolean, int, int, int, int, int, int, int, boolean, int, int, long, long)
+     */
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int tinyCacheSize, int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads, int directMemoryCacheAlignment,
+                                  int sizeClassesPerDoubling, long idleChunkReleaseMillis,
+                                  long directMemoryPressureThreshold, DirectChunkAllocator directChunkAllocator) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+                tinyCacheSize, smallCacheSize, normalCacheSize,
+                useCacheForAllThreads, directMemoryCacheAlignment, sizeClassesPerDoubling,
+                idleChunkReleaseMillis, directMemoryPressureThreshold, directChunkAllocator, true);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param freeSubpageWithoutArenaLock {@code true} to free tiny and small buffers while only holding the lock of
+     *                                    their subpage pool, {@code false} to take the arena lock for every free.
+     * @see #PooledByteBufAllocator(boolean, int, int, int, int, int, int, int, boolean, int, int, long, long,
+     *      DirectChunkAllocator)
+     */
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int tinyCacheSize, int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads, int directMemoryCacheAlignment,
+                                  int sizeClassesPerDoubling, long idleChunkReleaseMillis,
+                                  long directMemoryPressureThreshold, DirectChunkAllocator directChunkAllocator,
+                                  boolean freeSubpageWithoutArenaLock) {
         super(preferDirect);
+        this.directChunkAllocator = directChunkAllocator;
+        this.freeSubpageWithoutArenaLock = freeSubpageWithoutArenaLock;
         threadCache = new PoolThreadLocalCache(useCacheForAllThreads);
         this.tinyCacheSize = tinyCacheSize;
         this.smallCacheSize = smallCacheSize;
         this.normalCacheSize = normalCacheSize;
+        this.sizeClassesPerDoubling = validateSizeClassesPerDoubling(sizeClassesPerDoubling);
+        if (idleChunkReleaseMillis < 0) {
+            throw new IllegalArgumentException("idleChunkReleaseMillis: "
+                    + idleChunkReleaseMillis + " (expected: >= 0)");
+        }
+        if (directMemoryPressureThreshold < 0) {
+            throw new IllegalArgumentException("directMemoryPressureThreshold: "
+                    + directMemoryPressureThreshold + " (expected: >= 0)");
+        }
+        idleChunkReleaseNanos = TimeUnit.MILLISECONDS.toNanos(idleChunkReleaseMillis);
+        this.directMemoryPressureThreshold = directMemoryPressureThreshold;
         chunkSize = validateAndCalculateChunkSize(pageSize, maxOrder);
 
         if (nHeapArena < 0) {
@@ -239,7 +376,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             for (int i = 0; i < heapArenas.length; i ++) {
                 PoolArena.HeapArena arena = new PoolArena.HeapArena(this,
                         pageSize, maxOrder, pageShifts, chunkSize,
-                        directMemoryCacheAlignment);
+                        directMemoryCacheAlignment, sizeClassesPerDoubling);
                 heapArenas[i] = arena;
                 metrics.add(arena);
             }
@@ -254,7 +391,8 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             List<PoolArenaMetric> metrics = new ArrayList<PoolArenaMetric>(directArenas.length);
             for (int i = 0; i < directArenas.length; i ++) {
                 PoolArena.DirectArena arena = new PoolArena.DirectArena(
-                        this, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment);
+                        this, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment,
+                        sizeClassesPerDoubling);
                 directArenas[i] = arena;
                 metrics.add(arena);
             }
@@ -301,6 +439,15 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         return chunkSize;
     }
 
+    private static int validateSizeClassesPerDoubling(int sizeClassesPerDoubling) {
+        if (sizeClassesPerDoubling < 1 || sizeClassesPerDoubling > MAX_SIZE_CLASSES_PER_DOUBLING ||
+                (sizeClassesPerDoubling & sizeClassesPerDoubling - 1) != 0) {
+            throw new IllegalArgumentException("sizeClassesPerDoubling: " + sizeClassesPerDoubling +
+                    " (expected: power of 2 between 1 and " + MAX_SIZE_CLASSES_PER_DOUBLING + ")");
+        }
+        return sizeClassesPerDoubling;
+    }
+
     @Override
     protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
 //        获取当前线程的内存缓存
@@ -406,6 +553,30 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         return DEFAULT_NORMAL_CACHE_SIZE;
     }
 
+    /**
+     * Default number of size classes per power of two - System Property: io.netty.allocator.sizeClassesPerDoubling
+     * - default 1
+     */
+    public static int defaultSizeClassesPerDoubling() {
+        return DEFAULT_SIZE_CLASSES_PER_DOUBLING;
+    }
+
+    /**
+     * Default time after which a free chunk is released - System Property: io.netty.allocator.idleChunkReleaseMillis
+     * - default 0 (never)
+     */
+    public static long defaultIdleChunkReleaseMillis() {
+        return DEFAULT_IDLE_CHUNK_RELEASE_MILLIS;
+    }
+
+    /**
+     * Default remaining direct memory below which free chunks are released - System Property:
+     * io.netty.allocator.directMemoryPressureThreshold - default 0 (disabled)
+     */
+    public static long defaultDirectMemoryPressureThreshold() {
+        return DEFAULT_DIRECT_MEMORY_PRESSURE_THRESHOLD;
+    }
+
     /**
      * Return {@code true} if direct memory cache alignment is supported, {@code false} otherwise.如果支持直接内存缓存对齐，则返回true，否则返回false。
      */
@@ -435,6 +606,22 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         threadCache.remove();
     }
 
+    /**
+     * Trims the cache of the calling {@link Thread}, which gives back the cached buffers that were not allocated
+     * frequently since the last trim, and releases the chunks of its arenas which stayed free for longer than
+     * {@code idleChunkReleaseMillis}. This is done periodically while the {@link Thread} allocates, but a
+     * {@link Thread} which stopped allocating can call this to give back its memory.
+     *
+     * @return {@code true} if the calling {@link Thread} has a cache which was trimmed, {@code false} otherwise.
+     */
+    public boolean trimCurrentThreadCache() {
+        if (!threadCache.isSet()) {
+            return false;
+        }
+        threadCache.get().trim();
+        return true;
+    }
+
     final class PoolThreadLocalCache extends FastThreadLocal<PoolThreadCache> {
         private final boolean useCacheForAllThreads;
 
@@ -451,7 +638,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             if (useCacheForAllThreads || current instanceof FastThreadLocalThread) {
                 return new PoolThreadCache(
                         heapArena, directArena, tinyCacheSize, smallCacheSize, normalCacheSize,
-                        DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL);
+                        DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL, DEFAULT_MAX_PENDING_FREES);
             }
             // No caching so just use 0 as sizes.没有缓存，所以只使用0作为大小。
             return new PoolThreadCache(heapArena, directArena, 0, 0, 0, 0, 0);
@@ -574,6 +761,35 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         return normalCacheSize;
     }
 
+    final int sizeClassesPerDoubling() {
+        return sizeClassesPerDoubling;
+    }
+
+    final long idleChunkReleaseNanos() {
+        return idleChunkReleaseNanos;
+    }
+
+    final long directMemoryPressureThreshold() {
+        return directMemoryPressureThreshold;
+    }
+
+    final boolean freeSubpageWithoutArenaLock() {
+        return freeSubpageWithoutArenaLock;
+    }
+
+    @Override
+    String sizeClass(int capacity) {
+        PoolArena<?> arena = heapArenas != null ? heapArenas[0] : directArenas != null ? directArenas[0] : null;
+        if (arena == null) {
+            return super.sizeClass(capacity);
+        }
+        return capacity > chunkSize ? "Huge" : arena.sizeClass(arena.normalizeCapacity(capacity)).name();
+    }
+
+    final DirectChunkAllocator directChunkAllocator() {
+        return directChunkAllocator;
+    }
+
     /**
      * Return the chunk size for an arena.
      *
@@ -606,6 +822,21 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         return used;
     }
 
+    final long wastedBytes(SizeClass sizeClass) {
+        return wastedBytes(heapArenas, sizeClass) + wastedBytes(directArenas, sizeClass);
+    }
+
+    private static long wastedBytes(PoolArena<?>[] arenas, SizeClass sizeClass) {
+        if (arenas == null) {
+            return 0;
+        }
+        long wasted = 0;
+        for (PoolArena<?> arena : arenas) {
+            wasted += arena.numWastedBytes(sizeClass);
+        }
+        return wasted;
+    }
+
     final PoolThreadCache threadCache() {
         PoolThreadCache cache =  threadCache.get();
         assert cache != null;
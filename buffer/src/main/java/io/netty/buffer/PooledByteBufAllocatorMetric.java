@@ -15,6 +15,7 @@
  */
 package io.netty.buffer;
 
+import io.netty.buffer.PoolArena.SizeClass;
 import io.netty.util.internal.StringUtil;
 
 import java.util.List;
@@ -94,6 +95,34 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
         return allocator.chunkSize();
     }
 
+    /**
+     * Return the number of size classes used for each power of two.
+     */
+    public int sizeClassesPerDoubling() {
+        return allocator.sizeClassesPerDoubling();
+    }
+
+    /**
+     * Return the number of bytes of the tiny buffers in use which are lost to size class rounding, for all arenas.
+     */
+    public long tinyWastedBytes() {
+        return allocator.wastedBytes(SizeClass.Tiny);
+    }
+
+    /**
+     * Return the number of bytes of the small buffers in use which are lost to size class rounding, for all arenas.
+     */
+    public long smallWastedBytes() {
+        return allocator.wastedBytes(SizeClass.Small);
+    }
+
+    /**
+     * Return the number of bytes of the normal buffers in use which are lost to size class rounding, for all arenas.
+     */
+    public long normalWastedBytes() {
+        return allocator.wastedBytes(SizeClass.Normal);
+    }
+
     @Override
     public long usedHeapMemory() {
         return allocator.usedHeapMemory();
@@ -116,7 +145,8 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
                 .append("; smallCacheSize: ").append(smallCacheSize())
                 .append("; normalCacheSize: ").append(normalCacheSize())
                 .append("; numThreadLocalCaches: ").append(numThreadLocalCaches())
-                .append("; chunkSize: ").append(chunkSize()).append(')');
+                .append("; chunkSize: ").append(chunkSize())
+                .append("; sizeClassesPerDoubling: ").append(sizeClassesPerDoubling()).append(')');
         return sb.toString();
     }
 }
@@ -1017,6 +1017,39 @@ public abstract class AbstractCompositeByteBufTest extends AbstractByteBufTest {
         cbuf.release();
     }
 
+    @Test
+    public void testAddManyComponentsInBulk() {
+        ByteBuf[] bufs = new ByteBuf[512];
+        for (int i = 0; i < bufs.length; i ++) {
+            // Skip the first byte so the components start at a non-zero readerIndex.
+            bufs[i] = buffer(3).writeByte(0).writeShort(i).skipBytes(1);
+        }
+        CompositeByteBuf cbuf = compositeBuffer(Integer.MAX_VALUE);
+        cbuf.addComponent(true, buffer().writeByte(1));
+        cbuf.addComponents(true, bufs);
+
+        assertEquals(bufs.length + 1, cbuf.numComponents());
+        assertEquals(1 + bufs.length * 2, cbuf.readableBytes());
+        assertEquals(1, cbuf.readByte());
+        for (int i = 0; i < bufs.length; i ++) {
+            assertEquals(i + 1, cbuf.toComponentIndex(cbuf.readerIndex()));
+            assertEquals(i, cbuf.readShort());
+        }
+        // Reads that span two components.
+        assertEquals(0x00010002, cbuf.getInt(3));
+
+        cbuf.readerIndex(4);
+        cbuf.discardReadBytes();
+        assertEquals(bufs.length - 1, cbuf.numComponents());
+        assertEquals(1, cbuf.getByte(0));
+        assertEquals(2, cbuf.getShort(1));
+        assertEquals(1, cbuf.internalComponent(0).capacity());
+        cbuf.release();
+        for (ByteBuf buf: bufs) {
+            assertEquals(0, buf.refCnt());
+        }
+    }
+
     @Test
     public void testIterator() {
         CompositeByteBuf cbuf = compositeBuffer();
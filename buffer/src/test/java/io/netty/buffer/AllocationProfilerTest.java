@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.ResourceLeakHint;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AllocationProfilerTest {
+
+    private static final class CollectingProfiler extends AllocationProfiler {
+        final List<AllocationSample> samples = new CopyOnWriteArrayList<AllocationSample>();
+
+        CollectingProfiler(int samplingInterval) {
+            super(samplingInterval);
+        }
+
+        @Override
+        protected void onRelease(AllocationSample sample) {
+            samples.add(sample);
+        }
+    }
+
+    @Test
+    public void testSampleRecordsHintAndSizeClass() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 1, 1, 8192, 11, 0, 0, 0, true);
+        CollectingProfiler profiler = new CollectingProfiler(1);
+        allocator.setAllocationProfiler(profiler);
+
+        ByteBuf buf = allocator.heapBuffer(600);
+        buf.touch("first");
+        buf.touch(new ResourceLeakHint() {
+            @Override
+            public String toHintString() {
+                return "handler";
+            }
+        });
+        buf.writeLong(1);
+        assertTrue(profiler.samples.isEmpty());
+        assertTrue(buf.release());
+
+        assertEquals(1, profiler.samples.size());
+        AllocationSample sample = profiler.samples.get(0);
+        assertEquals("handler", sample.hint());
+        assertEquals("Small", sample.sizeClass());
+        assertEquals(600, sample.capacity());
+        assertFalse(sample.isDirect());
+        assertTrue(sample.lifetimeNanos() >= 0);
+        assertEquals(AllocationProfilerTest.class.getName(), sample.allocationSite()[0].getClassName());
+    }
+
+    @Test
+    public void testSampleOfRetainedSliceIsReportedOnLastRelease() {
+        UnpooledByteBufAllocator allocator = new UnpooledByteBufAllocator(true);
+        CollectingProfiler profiler = new CollectingProfiler(1);
+        allocator.setAllocationProfiler(profiler);
+
+        ByteBuf buf = allocator.directBuffer(16).writeZero(16);
+        ByteBuf slice = buf.retainedSlice();
+        assertFalse(buf.release());
+        assertTrue(profiler.samples.isEmpty());
+        assertTrue(slice.release());
+
+        assertEquals(1, profiler.samples.size());
+        AllocationSample sample = profiler.samples.get(0);
+        assertNull(sample.hint());
+        assertEquals("Unpooled", sample.sizeClass());
+        assertTrue(sample.isDirect());
+    }
+}
@@ -16,6 +16,7 @@
 package io.netty.buffer;
 
 import io.netty.util.AsciiString;
+import io.netty.util.ByteProcessor;
 import io.netty.util.CharsetUtil;
 import org.junit.Test;
 
@@ -134,6 +135,91 @@ public class ByteBufUtilTest {
                 -1));
     }
 
+    @Test
+    public void testIndexOfByteWordWise() {
+        testIndexOfByteWordWise(Unpooled.buffer(67));
+        testIndexOfByteWordWise(Unpooled.directBuffer(67));
+        testIndexOfByteWordWise(Unpooled.wrappedBuffer(new byte[70], 3, 67).clear());
+    }
+
+    private static void testIndexOfByteWordWise(ByteBuf buf) {
+        try {
+            buf.writeZero(buf.capacity());
+            for (int i = 0; i < buf.capacity(); i++) {
+                buf.setByte(i, '\n');
+                assertEquals(i, ByteBufUtil.indexOf(buf, 0, buf.capacity(), (byte) '\n'));
+                assertEquals(i, buf.forEachByte(ByteProcessor.FIND_LF));
+                assertEquals(i < 3 ? -1 : i, buf.indexOf(3, buf.capacity(), (byte) '\n'));
+                assertEquals(-1, buf.indexOf(0, i, (byte) '\n'));
+                // The high bit of the bytes before must not lead to false positives.
+                buf.setByte(i, 0x8A);
+                assertEquals(-1, buf.indexOf(0, buf.capacity(), (byte) '\n'));
+            }
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testIndexOfNeedle() {
+        ByteBuf haystack = Unpooled.copiedBuffer("GET / HTTP/1.1\r\nHost: netty.io\r\n\r\n", CharsetUtil.US_ASCII);
+        ByteBuf crlf = Unpooled.copiedBuffer("\r\n", CharsetUtil.US_ASCII);
+        ByteBuf end = Unpooled.copiedBuffer("\r\n\r\n", CharsetUtil.US_ASCII);
+        ByteBuf missing = Unpooled.copiedBuffer("\r\n\r\n\r\n", CharsetUtil.US_ASCII);
+        try {
+            assertEquals(14, ByteBufUtil.indexOf(crlf, haystack));
+            assertEquals(30, ByteBufUtil.indexOf(end, haystack));
+            assertEquals(-1, ByteBufUtil.indexOf(missing, haystack));
+            assertEquals(0, ByteBufUtil.indexOf(Unpooled.EMPTY_BUFFER, haystack));
+            haystack.skipBytes(15);
+            assertEquals(30, ByteBufUtil.indexOf(crlf, haystack));
+        } finally {
+            haystack.release();
+            crlf.release();
+            end.release();
+            missing.release();
+        }
+    }
+
+    @Test
+    public void testEqualsAndHashCodeWordWise() {
+        Random random = new Random();
+        byte[] bytes = new byte[77];
+        random.nextBytes(bytes);
+        ByteBuf heap = Unpooled.wrappedBuffer(bytes);
+        ByteBuf direct = Unpooled.directBuffer(bytes.length).writeBytes(bytes);
+        try {
+            for (int length = 0; length <= bytes.length; length++) {
+                ByteBuf heapSlice = heap.slice(0, length);
+                ByteBuf directSlice = direct.slice(0, length);
+                assertTrue(ByteBufUtil.equals(heapSlice, directSlice));
+                assertEquals(expectedHashCode(bytes, length), ByteBufUtil.hashCode(heapSlice));
+                assertEquals(expectedHashCode(bytes, length), ByteBufUtil.hashCode(directSlice));
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                direct.setByte(i, bytes[i] ^ 0x80);
+                assertFalse(ByteBufUtil.equals(heap, direct));
+                direct.setByte(i, bytes[i]);
+            }
+        } finally {
+            heap.release();
+            direct.release();
+        }
+    }
+
+    private static int expectedHashCode(byte[] bytes, int length) {
+        int hashCode = 1;
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            hashCode = 31 * hashCode + ((bytes[i] & 0xFF) << 24 | (bytes[i + 1] & 0xFF) << 16 |
+                    (bytes[i + 2] & 0xFF) << 8 | bytes[i + 3] & 0xFF);
+        }
+        for (; i < length; i++) {
+            hashCode = 31 * hashCode + bytes[i];
+        }
+        return hashCode == 0 ? 1 : hashCode;
+    }
+
     @SuppressWarnings("deprecation")
     @Test
     public void writeShortBE() {
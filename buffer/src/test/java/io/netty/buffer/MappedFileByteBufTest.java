@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MappedFileByteBufTest {
+
+    private static final byte[] BYTES = new byte[3 * 4096 + 100];
+
+    static {
+        for (int i = 0; i < BYTES.length; i++) {
+            BYTES[i] = (byte) i;
+        }
+    }
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("netty-mapped-", ".tmp");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(BYTES);
+        } finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        assertEquals(0, MappedFileByteBuf.mappedSegments());
+        file.delete();
+    }
+
+    @Test
+    public void testMapWholeFile() throws IOException {
+        ByteBuf buf = MappedFileByteBuf.map(file);
+        assertTrue(buf instanceof MappedFileByteBuf);
+        assertTrue(buf.isReadOnly());
+        assertTrue(buf.isDirect());
+        assertEquals(Unpooled.wrappedBuffer(BYTES), buf);
+        assertTrue(buf.release());
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void testWrite() throws IOException {
+        ByteBuf buf = MappedFileByteBuf.map(file, 0, 16);
+        try {
+            buf.setByte(0, 1);
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testMappingIsSharedAndUnmappedOnLastRelease() throws IOException {
+        MappedFileByteBuf first = (MappedFileByteBuf) MappedFileByteBuf.map(file, 10, 100, 4096);
+        MappedFileByteBuf second = (MappedFileByteBuf) MappedFileByteBuf.map(file, 200, 100, 4096);
+        assertEquals(1, MappedFileByteBuf.mappedSegments());
+        assertEquals(10, first.fileOffset());
+        assertEquals(200, second.fileOffset());
+        assertEquals(file.getAbsolutePath(), first.path());
+        assertEquals(Unpooled.wrappedBuffer(BYTES, 10, 100), first);
+        assertEquals(Unpooled.wrappedBuffer(BYTES, 200, 100), second);
+
+        ByteBuf slice = first.retainedSlice(0, 10);
+        assertFalse(first.release());
+        assertEquals(1, MappedFileByteBuf.mappedSegments());
+        assertTrue(second.release());
+        assertEquals(1, MappedFileByteBuf.mappedSegments());
+        assertEquals(Unpooled.wrappedBuffer(BYTES, 10, 10), slice);
+        assertTrue(slice.release());
+        assertEquals(0, MappedFileByteBuf.mappedSegments());
+
+        // Mapped again after it was evicted.
+        ByteBuf third = MappedFileByteBuf.map(file, 10, 100, 4096);
+        assertEquals(1, MappedFileByteBuf.mappedSegments());
+        assertEquals(Unpooled.wrappedBuffer(BYTES, 10, 100), third);
+        assertTrue(third.release());
+    }
+
+    @Test
+    public void testMapAcrossSegments() throws IOException {
+        ByteBuf buf = MappedFileByteBuf.map(file, 100, BYTES.length - 100, 4096);
+        assertTrue(buf instanceof CompositeByteBuf);
+        assertEquals(4, ((CompositeByteBuf) buf).numComponents());
+        assertEquals(4, MappedFileByteBuf.mappedSegments());
+        assertTrue(buf.isDirect());
+        assertEquals(Unpooled.wrappedBuffer(BYTES, 100, BYTES.length - 100), buf);
+        assertTrue(buf.release());
+    }
+
+    @Test
+    public void testAddToCompositeByteBuf() throws IOException {
+        CompositeByteBuf composite = Unpooled.compositeBuffer();
+        composite.addComponent(true, Unpooled.copiedBuffer(new byte[] { 1, 2, 3 }));
+        composite.addComponent(true, MappedFileByteBuf.map(file, 0, 4096));
+        assertEquals(2, composite.nioBufferCount());
+        assertEquals(1, composite.getByte(0));
+        assertEquals(BYTES[4095], composite.getByte(3 + 4095));
+        assertTrue(composite.release());
+    }
+
+    @Test
+    public void testMapEmptyRegion() throws IOException {
+        assertEquals(0, MappedFileByteBuf.map(file, BYTES.length, 0).capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMapBeyondEndOfFile() throws IOException {
+        MappedFileByteBuf.map(file, 1, BYTES.length);
+    }
+}
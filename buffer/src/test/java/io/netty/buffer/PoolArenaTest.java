@@ -43,6 +43,48 @@ public class PoolArenaTest {
         }
     }
 
+    @Test
+    public void testNormalizeFineGrainedCapacity() throws Exception {
+        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, 8192, 11, 13, 8192 << 11, 0, 4);
+        int[] reqCapacities = {0, 15, 512, 513, 1025, 3000, 4096, 5000, 9216, 20000, 40000, 65536};
+        int[] expectedResult = {0, 16, 512, 640, 1280, 3072, 4096, 8192, 16384, 24576, 40960, 65536};
+        for (int i = 0; i < reqCapacities.length; i ++) {
+            Assert.assertEquals(expectedResult[i], arena.normalizeCapacity(reqCapacities[i]));
+        }
+    }
+
+    @Test
+    public void testFineGrainedSizeClassIndexes() throws Exception {
+        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, 8192, 11, 13, 8192 << 11, 0, 4);
+        int lastIdx = -1;
+        int lastNormCapacity = -1;
+        for (int reqCapacity = 512; reqCapacity < arena.pageSize; reqCapacity += 16) {
+            int normCapacity = arena.normalizeCapacity(reqCapacity);
+            if (normCapacity == lastNormCapacity || !arena.isTinyOrSmall(normCapacity)) {
+                continue;
+            }
+            int idx = arena.smallIdx(normCapacity);
+            Assert.assertTrue(idx > lastIdx);
+            Assert.assertTrue(idx < arena.numSmallSubpagePools);
+            lastIdx = idx;
+            lastNormCapacity = normCapacity;
+        }
+        Assert.assertEquals(arena.numSmallSubpagePools - 1, lastIdx);
+
+        lastIdx = -1;
+        lastNormCapacity = -1;
+        for (int reqCapacity = arena.pageSize; reqCapacity <= arena.chunkSize; reqCapacity += arena.pageSize) {
+            int normCapacity = arena.normalizeCapacity(reqCapacity);
+            if (normCapacity == lastNormCapacity) {
+                continue;
+            }
+            int idx = arena.normalIdx(normCapacity);
+            Assert.assertTrue(idx > lastIdx);
+            lastIdx = idx;
+            lastNormCapacity = normCapacity;
+        }
+    }
+
     @Test
     public final void testAllocationCounter() {
         final PooledByteBufAllocator allocator = new PooledByteBufAllocator(
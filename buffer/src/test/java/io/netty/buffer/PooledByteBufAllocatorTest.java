@@ -23,12 +23,15 @@ import io.netty.util.internal.SystemPropertyUtil;
 import org.junit.Assume;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.Random;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.LockSupport;
 
@@ -240,6 +243,266 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         assertFalse(lists.get(5).iterator().hasNext());
     }
 
+    @Test
+    public void testFreeSubpageWithoutArenaLock() {
+        testFreeSubpage(true);
+    }
+
+    @Test
+    public void testFreeSubpageWithArenaLock() {
+        testFreeSubpage(false);
+    }
+
+    private static void testFreeSubpage(boolean freeSubpageWithoutArenaLock) {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 1, 0, 8192, 11, 0, 0, 0, true, 0, 1, 0,
+                0, null, freeSubpageWithoutArenaLock);
+        List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+        // Enough buffers to fill several pages per size class, so whole pages are given back to the chunk as well.
+        for (int i = 0; i < 1024; i++) {
+            buffers.add(allocator.heapBuffer(64));
+            buffers.add(allocator.heapBuffer(1024));
+        }
+        PoolArenaMetric metric = allocator.metric().heapArenas().get(0);
+        assertEquals(1024, metric.numActiveTinyAllocations());
+        assertEquals(1024, metric.numActiveSmallAllocations());
+
+        for (ByteBuf buffer: buffers) {
+            assertTrue(buffer.release());
+        }
+        assertEquals(0, metric.numActiveTinyAllocations());
+        assertEquals(0, metric.numActiveSmallAllocations());
+        // Only the last page of each size class stays with its subpage pool, all others went back to the chunk.
+        for (PoolChunkListMetric list: metric.chunkLists()) {
+            for (PoolChunkMetric chunk: list) {
+                assertEquals(chunk.chunkSize() - 2 * 8192, chunk.freeBytes());
+            }
+        }
+    }
+
+    @Test
+    public void testFineGrainedSizeClasses() {
+        testFineGrainedSizeClasses(0);
+    }
+
+    @Test
+    public void testFineGrainedSizeClassesWithCache() {
+        testFineGrainedSizeClasses(64);
+    }
+
+    private static void testFineGrainedSizeClasses(int cacheSize) {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                false, 1, 0, 8192, 11, cacheSize, cacheSize, cacheSize, true, 0, 4);
+        int[] capacities = { 600, 3000, 9216, 20000, 40000, 81920, 1000000 };
+        List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+        for (int i = 0; i < 8; i++) {
+            for (int capacity : capacities) {
+                ByteBuf buffer = allocator.heapBuffer(capacity);
+                assertEquals(capacity, buffer.capacity());
+                for (int j = 0; j < capacity; j++) {
+                    buffer.writeByte((byte) (capacity + j));
+                }
+                buffers.add(buffer);
+            }
+        }
+        PooledByteBufAllocatorMetric metric = allocator.metric();
+        assertEquals(4, metric.sizeClassesPerDoubling());
+        assertEquals(8 * ((640 - 600) + (3072 - 3000)), metric.smallWastedBytes());
+        assertEquals(8 * ((16384 - 9216) + (24576 - 20000) + (40960 - 40000) + (1048576 - 1000000)),
+                metric.normalWastedBytes());
+
+        for (ByteBuf buffer : buffers) {
+            int capacity = buffer.capacity();
+            for (int j = 0; j < capacity; j++) {
+                assertEquals((byte) (capacity + j), buffer.getByte(j));
+            }
+            assertTrue(buffer.release());
+        }
+        // The wasted bytes only count the buffers in use.
+        assertEquals(0, metric.smallWastedBytes());
+        assertEquals(0, metric.normalWastedBytes());
+
+        // Once all caches are released only the last subpage of each of the two small size classes is still used,
+        // the runs of the normal allocations must be completely free again.
+        allocator.freeThreadLocalCache();
+        int usedBytes = 0;
+        for (PoolChunkListMetric list : metric.heapArenas().get(0).chunkLists()) {
+            for (PoolChunkMetric chunk : list) {
+                usedBytes += chunk.chunkSize() - chunk.freeBytes();
+            }
+        }
+        assertEquals(2 * 8192, usedBytes);
+    }
+
+    @Test
+    public void testWastedBytes() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 1, 0, 8192, 11, 0, 0, 0);
+        PooledByteBufAllocatorMetric metric = allocator.metric();
+        ByteBuf buffer = allocator.heapBuffer(100);
+        assertEquals(112 - 100, metric.tinyWastedBytes());
+
+        // Still fits into the same memory.
+        buffer.capacity(110);
+        assertEquals(112 - 110, metric.tinyWastedBytes());
+
+        // Moves the buffer to a small size class.
+        buffer.capacity(1000);
+        assertEquals(0, metric.tinyWastedBytes());
+        assertEquals(1024 - 1000, metric.smallWastedBytes());
+        buffer.capacity(600);
+        assertEquals(1024 - 600, metric.smallWastedBytes());
+
+        ByteBuf normal = allocator.heapBuffer(10000);
+        assertEquals(16384 - 10000, metric.normalWastedBytes());
+
+        assertTrue(buffer.release());
+        assertTrue(normal.release());
+        assertEquals(0, metric.tinyWastedBytes());
+        assertEquals(0, metric.smallWastedBytes());
+        assertEquals(0, metric.normalWastedBytes());
+    }
+
+    @Test
+    public void testFineGrainedSizeClassesDoNotOverlap() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 1, 0, 8192, 9, 0, 0, 0, true, 0, 8);
+        Random random = new Random(42);
+        List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+        for (int i = 0; i < 2000; i++) {
+            if (!buffers.isEmpty() && random.nextBoolean()) {
+                ByteBuf buffer = buffers.remove(random.nextInt(buffers.size()));
+                assertFineGrainedBuffer(buffer);
+                assertTrue(buffer.release());
+            } else {
+                ByteBuf buffer = allocator.heapBuffer(1 + random.nextInt(allocator.metric().chunkSize() / 2));
+                buffer.writeInt(buffer.capacity());
+                buffer.writerIndex(buffer.capacity() - 4);
+                buffer.writeInt(~buffer.capacity());
+                buffers.add(buffer);
+            }
+        }
+        for (ByteBuf buffer : buffers) {
+            assertFineGrainedBuffer(buffer);
+            assertTrue(buffer.release());
+        }
+    }
+
+    private static void assertFineGrainedBuffer(ByteBuf buffer) {
+        assertEquals(buffer.capacity(), buffer.getInt(0));
+        assertEquals(~buffer.capacity(), buffer.getInt(buffer.capacity() - 4));
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleChunkRelease() throws InterruptedException {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                false, 1, 0, 8192, 11, 0, 0, 0, true, 0, 1, 1, 0);
+        int chunkSize = allocator.metric().chunkSize();
+        // Fills the first chunk, so the other buffer is allocated out of a second one.
+        ByteBuf inUse1 = allocator.heapBuffer(chunkSize / 2);
+        ByteBuf inUse2 = allocator.heapBuffer(chunkSize / 2);
+        ByteBuf buffer = allocator.heapBuffer(64 * 1024);
+        PoolArenaMetric arena = allocator.metric().heapArenas().get(0);
+        assertEquals(2, numChunks(arena));
+
+        // The chunk is kept in qInit after the release, as it needs to stay free for idleChunkReleaseMillis.
+        assertTrue(buffer.release());
+        assertTrue(arena.chunkLists().get(0).iterator().hasNext());
+        assertEquals(0, arena.numIdleChunkReleases());
+
+        // Trimming gives the arena a chance to release the chunk once it is idle for long enough.
+        while (arena.numIdleChunkReleases() == 0) {
+            Thread.sleep(1);
+            assertTrue(allocator.trimCurrentThreadCache());
+        }
+        assertEquals(1, arena.numIdleChunkReleases());
+        assertEquals(0, arena.numMemoryPressureChunkReleases());
+        assertEquals(1, numChunks(arena));
+
+        assertTrue(inUse1.release());
+        assertTrue(inUse2.release());
+    }
+
+    private static int numChunks(PoolArenaMetric arena) {
+        int chunks = 0;
+        for (PoolChunkListMetric list : arena.chunkLists()) {
+            for (PoolChunkMetric ignored : list) {
+                chunks++;
+            }
+        }
+        return chunks;
+    }
+
+    @Test
+    public void testMemoryPressureChunkRelease() {
+        Assume.assumeTrue(PlatformDependent.usedDirectMemory() >= 0);
+
+        // Use a threshold that makes us always think we are running out of direct memory.
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                true, 0, 1, 8192, 11, 0, 0, 0, true, 0, 1, 0, Long.MAX_VALUE);
+        ByteBuf buffer = allocator.directBuffer(64 * 1024);
+        PoolArenaMetric arena = allocator.metric().directArenas().get(0);
+        assertTrue(buffer.release());
+
+        assertEquals(1, arena.numMemoryPressureChunkReleases());
+        assertEquals(0, arena.numIdleChunkReleases());
+        for (PoolChunkListMetric list : arena.chunkLists()) {
+            assertFalse(list.iterator().hasNext());
+        }
+    }
+
+    @Test
+    public void testDirectChunkAllocator() {
+        final AtomicInteger allocated = new AtomicInteger();
+        final AtomicInteger freed = new AtomicInteger();
+        final AtomicBoolean available = new AtomicBoolean(true);
+        DirectChunkAllocator chunkAllocator = new DirectChunkAllocator() {
+            @Override
+            public ByteBuffer allocate(int capacity) {
+                if (!available.get()) {
+                    return null;
+                }
+                allocated.incrementAndGet();
+                return ByteBuffer.allocateDirect(capacity);
+            }
+
+            @Override
+            public void free(ByteBuffer memory) {
+                freed.incrementAndGet();
+            }
+
+            @Override
+            public String memoryBacking() {
+                return "test";
+            }
+        };
+        // Release free chunks at once so we can check they are given back to the DirectChunkAllocator.
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                true, 0, 1, 8192, 11, 0, 0, 0, true, 0, 1, 0, Long.MAX_VALUE, chunkAllocator);
+        PoolArenaMetric arena = allocator.metric().directArenas().get(0);
+
+        ByteBuf buffer = allocator.directBuffer(64 * 1024);
+        assertEquals(1, allocated.get());
+        assertEquals("test", arena.chunkLists().get(0).iterator().next().memoryBacking());
+
+        // A chunk which can not be allocated by the DirectChunkAllocator uses the default direct memory.
+        available.set(false);
+        ByteBuf fallbackBuffer = allocator.directBuffer(allocator.metric().chunkSize());
+        List<String> backings = new ArrayList<String>();
+        for (PoolChunkListMetric list : arena.chunkLists()) {
+            for (PoolChunkMetric chunk : list) {
+                backings.add(chunk.memoryBacking());
+            }
+        }
+        assertEquals(2, backings.size());
+        assertTrue(backings.contains("test"));
+        assertTrue(backings.contains("direct"));
+
+        assertTrue(fallbackBuffer.release());
+        assertTrue(buffer.release());
+        if (PlatformDependent.usedDirectMemory() >= 0) {
+            // Chunks are only released under memory pressure if the direct memory usage is tracked.
+            assertEquals(1, freed.get());
+        }
+    }
+
     @Test (timeout = 4000)
     public void testThreadCacheDestroyedByThreadCleaner() throws InterruptedException {
         testThreadCacheDestroyed(false);
@@ -364,6 +627,44 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         assertEquals(0, allocator.metric().directArenas().get(1).numThreadCaches());
     }
 
+    @Test(timeout = 3000)
+    public void testReleaseFromOtherThreadIsQueuedForOwner() throws Exception {
+        final PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 1, 0, 8192, 11, 1, 0, 0, true);
+        final List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+        for (int i = 0; i < 10; i++) {
+            buffers.add(allocator.heapBuffer(16));
+        }
+
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (ByteBuf buffer: buffers) {
+                    assertTrue(buffer.release());
+                }
+            }
+        });
+        t.start();
+        t.join();
+
+        // One buffer fits into the cache of the allocating thread, the others are queued for it. Nothing is
+        // given back to the arena by the releasing thread.
+        PoolArenaMetric arena = allocator.metric().heapArenas().get(0);
+        assertEquals(0, arena.numTinyDeallocations());
+
+        // The first allocation is served by the cache, the second one misses and so drains the queue which refills
+        // the cache and frees the rest.
+        ByteBuf first = allocator.heapBuffer(16);
+        assertEquals(0, arena.numTinyDeallocations());
+        ByteBuf second = allocator.heapBuffer(16);
+        assertEquals(8, arena.numTinyDeallocations());
+        assertEquals(10, arena.numTinyAllocations());
+
+        assertTrue(first.release());
+        assertTrue(second.release());
+        allocator.freeThreadLocalCache();
+        assertEquals(0, arena.numActiveAllocations());
+    }
+
     private static ThreadCache createNewThreadCache(final PooledByteBufAllocator allocator)
             throws InterruptedException {
         final CountDownLatch latch = new CountDownLatch(1);
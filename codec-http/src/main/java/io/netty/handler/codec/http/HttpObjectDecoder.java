@@ -839,12 +839,21 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         public AppendableCharSequence parse(ByteBuf buffer) {
             final int oldSize = size;
             seq.reset();
-            int i = buffer.forEachByte(this);
-            if (i == -1) {
+            final int readerIndex = buffer.readerIndex();
+            final int writerIndex = buffer.writerIndex();
+            // Search the end of the line first, which is done word-wise, so an incomplete line is not processed
+            // byte by byte again and again until it is complete.
+            final int lfIndex = buffer.indexOf(readerIndex, writerIndex, HttpConstants.LF);
+            if (lfIndex == -1) {
+                if (writerIndex - readerIndex > maxLength - oldSize) {
+                    // The line may be too long already, let process(byte) decide.
+                    buffer.forEachByte(this);
+                }
                 size = oldSize;
                 return null;
             }
-            buffer.readerIndex(i + 1);
+            buffer.forEachByte(readerIndex, lfIndex - readerIndex, this);
+            buffer.readerIndex(lfIndex + 1);
             return seq;
         }
 
@@ -0,0 +1,743 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.netty.util.internal.StringUtil.simpleClassName;
+
+/**
+ * A {@link Timer} for a large number of approximated timeouts, based on a hierarchy of timing wheels.
+ *
+ * <h3>Tick Duration</h3>
+ *
+ * Like {@link HashedWheelTimer}, this timer does not execute the scheduled {@link TimerTask}s on time, but checks on
+ * every tick if there are any {@link TimerTask}s behind the schedule and executes them. The default tick duration
+ * is 100 milliseconds.
+ *
+ * <h3>Wheels</h3>
+ *
+ * Each wheel has {@code ticksPerWheel} buckets, which is {@code 64} by default. A bucket of the first wheel holds
+ * the timeouts of one tick, a bucket of the second wheel the timeouts of {@code ticksPerWheel} ticks, and so on.
+ * A timeout is put into the wheel whose bucket size matches the distance to its deadline. Whenever a wheel has
+ * turned once, the next bucket of the wheel above is moved down to the lower wheels.
+ * <p>
+ * Unlike the single wheel of {@link HashedWheelTimer}, which visits every timeout again on every turn of the wheel
+ * until its deadline is reached, a timeout is moved at most once per wheel here, so timeouts far in the future
+ * cost nothing until they come close. Adding and cancelling a timeout is {@code O(1)}.
+ *
+ * <h3>Do not create many instances.</h3>
+ *
+ * {@link HierarchicalWheelTimer} creates a new thread whenever it is instantiated and started. Therefore, you
+ * should make sure to create only one instance and share it across your application.
+ *
+ * <h3>Implementation Details</h3>
+ *
+ * {@link HierarchicalWheelTimer} is based on the hierarchical timing wheels of
+ * <a href="http://cseweb.ucsd.edu/users/varghese/">George Varghese</a> and Tony Lauck's paper,
+ * <a href="http://cseweb.ucsd.edu/users/varghese/PAPERS/twheel.ps.Z">'Hashed and Hierarchical Timing Wheels: data
+ * structures to efficiently implement a timer facility'</a>.
+ */
+public class HierarchicalWheelTimer implements Timer {
+
+    static final InternalLogger logger =
+            InternalLoggerFactory.getInstance(HierarchicalWheelTimer.class);
+
+    private static final AtomicInteger INSTANCE_COUNTER = new AtomicInteger();
+    private static final AtomicBoolean WARNED_TOO_MANY_INSTANCES = new AtomicBoolean();
+    private static final int INSTANCE_COUNT_LIMIT = 64;
+    private static final ResourceLeakDetector<HierarchicalWheelTimer> leakDetector =
+            ResourceLeakDetectorFactory.instance().newResourceLeakDetector(HierarchicalWheelTimer.class, 1);
+
+    private static final AtomicIntegerFieldUpdater<HierarchicalWheelTimer> WORKER_STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(HierarchicalWheelTimer.class, "workerState");
+
+    private static final int WORKER_STATE_INIT = 0;
+    private static final int WORKER_STATE_STARTED = 1;
+    private static final int WORKER_STATE_SHUTDOWN = 2;
+
+    private final ResourceLeakTracker<HierarchicalWheelTimer> leak;
+    private final Worker worker = new Worker();
+    private final Thread workerThread;
+
+    @SuppressWarnings({ "unused", "FieldMayBeFinal" })
+    private volatile int workerState; // 0 - init, 1 - started, 2 - shut down
+
+    private final long tickDuration;
+    // wheels[level][bucket], the ticks of a bucket at level n are ticksPerWheel^n.
+    private final Bucket[][] wheels;
+    private final int wheelShift;
+    private final int mask;
+    private final CountDownLatch startTimeInitialized = new CountDownLatch(1);
+    private final Queue<HierarchicalWheelTimeout> timeouts = PlatformDependent.newMpscQueue();
+    private final Queue<HierarchicalWheelTimeout> cancelledTimeouts = PlatformDependent.newMpscQueue();
+    private final AtomicLong pendingTimeouts = new AtomicLong(0);
+    private final long maxPendingTimeouts;
+
+    private volatile long startTime;
+
+    /**
+     * Creates a new timer with the default thread factory ({@link Executors#defaultThreadFactory()}), default tick
+     * duration, and default number of ticks per wheel.
+     */
+    public HierarchicalWheelTimer() {
+        this(Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Creates a new timer with the default thread factory ({@link Executors#defaultThreadFactory()}) and default
+     * number of ticks per wheel.
+     *
+     * @param tickDuration   the duration between tick
+     * @param unit           the time unit of the {@code tickDuration}
+     * @throws NullPointerException     if {@code unit} is {@code null}
+     * @throws IllegalArgumentException if {@code tickDuration} is &lt;= 0
+     */
+    public HierarchicalWheelTimer(long tickDuration, TimeUnit unit) {
+        this(Executors.defaultThreadFactory(), tickDuration, unit);
+    }
+
+    /**
+     * Creates a new timer with the default tick duration and default number of ticks per wheel.
+     *
+     * @param threadFactory  a {@link ThreadFactory} that creates a background {@link Thread} which is dedicated to
+     *                       {@link TimerTask} execution.
+     * @throws NullPointerException if {@code threadFactory} is {@code null}
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory) {
+        this(threadFactory, 100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new timer with the default number of ticks per wheel.
+     *
+     * @param threadFactory  a {@link ThreadFactory} that creates a background {@link Thread} which is dedicated to
+     *                       {@link TimerTask} execution.
+     * @param tickDuration   the duration between tick
+     * @param unit           the time unit of the {@code tickDuration}
+     * @throws NullPointerException     if either of {@code threadFactory} and {@code unit} is {@code null}
+     * @throws IllegalArgumentException if {@code tickDuration} is &lt;= 0
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit) {
+        this(threadFactory, tickDuration, unit, 64);
+    }
+
+    /**
+     * Creates a new timer.
+     *
+     * @param threadFactory  a {@link ThreadFactory} that creates a background {@link Thread} which is dedicated to
+     *                       {@link TimerTask} execution.
+     * @param tickDuration   the duration between tick
+     * @param unit           the time unit of the {@code tickDuration}
+     * @param ticksPerWheel  the size of each wheel, rounded up to a power of two
+     * @throws NullPointerException     if either of {@code threadFactory} and {@code unit} is {@code null}
+     * @throws IllegalArgumentException if {@code tickDuration} is &lt;= 0 or {@code ticksPerWheel} is not between
+     *                                  {@code 2} and {@code 2^16}
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        this(threadFactory, tickDuration, unit, ticksPerWheel, true, -1);
+    }
+
+    /**
+     * Creates a new timer.
+     *
+     * @param threadFactory        a {@link ThreadFactory} that creates a background {@link Thread} which is
+     *                             dedicated to {@link TimerTask} execution.
+     * @param tickDuration         the duration between tick
+     * @param unit                 the time unit of the {@code tickDuration}
+     * @param ticksPerWheel        the size of each wheel, rounded up to a power of two
+     * @param leakDetection        {@code true} if leak detection should be enabled always, if false it will only be
+     *                             enabled if the worker thread is not a daemon thread.
+     * @param maxPendingTimeouts   The maximum number of pending timeouts after which call to {@code newTimeout}
+     *                             will result in {@link RejectedExecutionException} being thrown. No maximum pending
+     *                             timeouts limit is assumed if this value is 0 or negative.
+     * @throws NullPointerException     if either of {@code threadFactory} and {@code unit} is {@code null}
+     * @throws IllegalArgumentException if {@code tickDuration} is &lt;= 0 or {@code ticksPerWheel} is not between
+     *                                  {@code 2} and {@code 2^16}
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel,
+                                  boolean leakDetection, long maxPendingTimeouts) {
+        if (threadFactory == null) {
+            throw new NullPointerException("threadFactory");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration);
+        }
+        if (ticksPerWheel < 2 || ticksPerWheel > 65536) {
+            throw new IllegalArgumentException("ticksPerWheel: " + ticksPerWheel + " (expected: 2-65536)");
+        }
+
+        wheelShift = 32 - Integer.numberOfLeadingZeros(ticksPerWheel - 1);
+        mask = (1 << wheelShift) - 1;
+        // Enough wheels to cover all non-negative ticks.
+        wheels = new Bucket[(63 + wheelShift - 1) / wheelShift][1 << wheelShift];
+        for (Bucket[] wheel: wheels) {
+            for (int i = 0; i < wheel.length; i ++) {
+                wheel[i] = new Bucket();
+            }
+        }
+
+        this.tickDuration = unit.toNanos(tickDuration);
+        workerThread = threadFactory.newThread(worker);
+
+        leak = leakDetection || !workerThread.isDaemon() ? leakDetector.track(this) : null;
+
+        this.maxPendingTimeouts = maxPendingTimeouts;
+
+        if (INSTANCE_COUNTER.incrementAndGet() > INSTANCE_COUNT_LIMIT &&
+            WARNED_TOO_MANY_INSTANCES.compareAndSet(false, true)) {
+            reportTooManyInstances();
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            super.finalize();
+        } finally {
+            // This object is going to be GCed and it is assumed the ship has sailed to do a proper shutdown. If
+            // we have not yet shutdown then we want to make sure we decrement the active instance count.
+            if (WORKER_STATE_UPDATER.getAndSet(this, WORKER_STATE_SHUTDOWN) != WORKER_STATE_SHUTDOWN) {
+                INSTANCE_COUNTER.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Starts the background thread explicitly.  The background thread will start automatically on demand even if
+     * you did not call this method.
+     *
+     * @throws IllegalStateException if this timer has been {@linkplain #stop() stopped} already
+     */
+    public void start() {
+        switch (WORKER_STATE_UPDATER.get(this)) {
+            case WORKER_STATE_INIT:
+                if (WORKER_STATE_UPDATER.compareAndSet(this, WORKER_STATE_INIT, WORKER_STATE_STARTED)) {
+                    workerThread.start();
+                }
+                break;
+            case WORKER_STATE_STARTED:
+                break;
+            case WORKER_STATE_SHUTDOWN:
+                throw new IllegalStateException("cannot be started once stopped");
+            default:
+                throw new Error("Invalid WorkerState");
+        }
+
+        // Wait until the startTime is initialized by the worker.
+        while (startTime == 0) {
+            try {
+                startTimeInitialized.await();
+            } catch (InterruptedException ignore) {
+                // Ignore - it will be ready very soon.
+            }
+        }
+    }
+
+    @Override
+    public Set<Timeout> stop() {
+        if (Thread.currentThread() == workerThread) {
+            throw new IllegalStateException(
+                    HierarchicalWheelTimer.class.getSimpleName() +
+                            ".stop() cannot be called from " +
+                            TimerTask.class.getSimpleName());
+        }
+
+        if (!WORKER_STATE_UPDATER.compareAndSet(this, WORKER_STATE_STARTED, WORKER_STATE_SHUTDOWN)) {
+            // workerState can be 0 or 2 at this moment - let it always be 2.
+            if (WORKER_STATE_UPDATER.getAndSet(this, WORKER_STATE_SHUTDOWN) != WORKER_STATE_SHUTDOWN) {
+                INSTANCE_COUNTER.decrementAndGet();
+                if (leak != null) {
+                    boolean closed = leak.close(this);
+                    assert closed;
+                }
+            }
+
+            return Collections.emptySet();
+        }
+
+        try {
+            boolean interrupted = false;
+            while (workerThread.isAlive()) {
+                workerThread.interrupt();
+                try {
+                    workerThread.join(100);
+                } catch (InterruptedException ignored) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            INSTANCE_COUNTER.decrementAndGet();
+            if (leak != null) {
+                boolean closed = leak.close(this);
+                assert closed;
+            }
+        }
+        return worker.unprocessedTimeouts();
+    }
+
+    @Override
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+
+        long pendingTimeoutsCount = pendingTimeouts.incrementAndGet();
+
+        if (maxPendingTimeouts > 0 && pendingTimeoutsCount > maxPendingTimeouts) {
+            pendingTimeouts.decrementAndGet();
+            throw new RejectedExecutionException("Number of pending timeouts ("
+                + pendingTimeoutsCount + ") is greater than or equal to maximum allowed pending "
+                + "timeouts (" + maxPendingTimeouts + ")");
+        }
+
+        start();
+
+        // Add the timeout to the timeout queue which will be processed on the next tick.
+        // During processing all the queued timeouts will be added to the correct wheel.
+        long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+        // Guard against overflow.
+        if (delay > 0 && deadline < 0) {
+            deadline = Long.MAX_VALUE;
+        }
+        HierarchicalWheelTimeout timeout = new HierarchicalWheelTimeout(this, task, deadline);
+        timeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the number of pending timeouts of this {@link Timer}.
+     */
+    public long pendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    private static void reportTooManyInstances() {
+        String resourceType = simpleClassName(HierarchicalWheelTimer.class);
+        logger.error("You are creating too many " + resourceType + " instances. " +
+                resourceType + " is a shared resource that must be reused across the JVM," +
+                "so that only a few instances are created.");
+    }
+
+    private final class Worker implements Runnable {
+        private final Set<Timeout> unprocessedTimeouts = new HashSet<Timeout>();
+
+        // The next tick to process, only accessed by the worker thread.
+        private long tick;
+
+        @Override
+        public void run() {
+            // Initialize the startTime.
+            startTime = System.nanoTime();
+            if (startTime == 0) {
+                // We use 0 as an indicator for the uninitialized value here, so make sure it's not 0 when initialized.
+                startTime = 1;
+            }
+
+            // Notify the other threads waiting for the initialization at start().
+            startTimeInitialized.countDown();
+
+            do {
+                final long deadline = waitForNextTick();
+                if (deadline > 0) {
+                    processCancelledTasks();
+                    transferTimeoutsToWheels();
+                    cascade();
+                    expireTimeouts(deadline);
+                    tick++;
+                }
+            } while (WORKER_STATE_UPDATER.get(HierarchicalWheelTimer.this) == WORKER_STATE_STARTED);
+
+            // Fill the unprocessedTimeouts so we can return them from stop() method.
+            for (Bucket[] wheel: wheels) {
+                for (Bucket bucket: wheel) {
+                    bucket.clearTimeouts(unprocessedTimeouts);
+                }
+            }
+            for (;;) {
+                HierarchicalWheelTimeout timeout = timeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (!timeout.isCancelled()) {
+                    unprocessedTimeouts.add(timeout);
+                }
+            }
+            processCancelledTasks();
+        }
+
+        private void transferTimeoutsToWheels() {
+            for (;;) {
+                HierarchicalWheelTimeout timeout = timeouts.poll();
+                if (timeout == null) {
+                    // all processed
+                    break;
+                }
+                if (timeout.state() == HierarchicalWheelTimeout.ST_CANCELLED) {
+                    // Was cancelled in the meantime.
+                    continue;
+                }
+                add(timeout);
+            }
+        }
+
+        /**
+         * Adds the timeout to the wheel of the highest digit in which its deadline tick differs from the current
+         * tick. All ticks up to the next turn of that wheel share the higher digits with the current tick, so the
+         * bucket of that digit is reached before the wheel wraps around.
+         */
+        private void add(HierarchicalWheelTimeout timeout) {
+            // Ensure we don't schedule for past.
+            final long ticks = Math.max(timeout.deadline / tickDuration, tick);
+            final long diff = ticks ^ tick;
+            final int level = diff == 0 ? 0 : (63 - Long.numberOfLeadingZeros(diff)) / wheelShift;
+            wheels[level][(int) (ticks >>> (level * wheelShift)) & mask].addTimeout(timeout);
+        }
+
+        /**
+         * Moves the timeouts of the buckets which are reached by the current tick down to the lower wheels,
+         * starting with the highest wheel which completed a turn.
+         */
+        private void cascade() {
+            final int level = Math.min(wheels.length - 1, Long.numberOfTrailingZeros(tick) / wheelShift);
+            for (int i = level; i > 0; i--) {
+                Bucket bucket = wheels[i][(int) (tick >>> (i * wheelShift)) & mask];
+                for (;;) {
+                    HierarchicalWheelTimeout timeout = bucket.pollTimeout();
+                    if (timeout == null) {
+                        break;
+                    }
+                    add(timeout);
+                }
+            }
+        }
+
+        private void expireTimeouts(long deadline) {
+            Bucket bucket = wheels[0][(int) tick & mask];
+            for (;;) {
+                HierarchicalWheelTimeout timeout = bucket.pollTimeout();
+                if (timeout == null) {
+                    break;
+                }
+                if (timeout.deadline <= deadline) {
+                    timeout.expire();
+                } else {
+                    // The timeout was placed into a wrong slot. This should never happen.
+                    throw new IllegalStateException(String.format(
+                            "timeout.deadline (%d) > deadline (%d)", timeout.deadline, deadline));
+                }
+            }
+        }
+
+        private void processCancelledTasks() {
+            for (;;) {
+                HierarchicalWheelTimeout timeout = cancelledTimeouts.poll();
+                if (timeout == null) {
+                    // all processed
+                    break;
+                }
+                try {
+                    timeout.remove();
+                } catch (Throwable t) {
+                    if (logger.isWarnEnabled()) {
+                        logger.warn("An exception was thrown while process a cancellation task", t);
+                    }
+                }
+            }
+        }
+
+        /**
+         * calculate goal nanoTime from startTime and current tick number,
+         * then wait until that goal has been reached.
+         * @return Long.MIN_VALUE if received a shutdown request,
+         * current time otherwise (with Long.MIN_VALUE changed by +1)
+         */
+        private long waitForNextTick() {
+            long deadline = tickDuration * (tick + 1);
+
+            for (;;) {
+                final long currentTime = System.nanoTime() - startTime;
+                long sleepTimeMs = (deadline - currentTime + 999999) / 1000000;
+
+                if (sleepTimeMs <= 0) {
+                    if (currentTime == Long.MIN_VALUE) {
+                        return -Long.MAX_VALUE;
+                    } else {
+                        return currentTime;
+                    }
+                }
+
+                // Check if we run on windows, as if thats the case we will need
+                // to round the sleepTime as workaround for a bug that only affect
+                // the JVM if it runs on windows.
+                //
+                // See https://github.com/netty/netty/issues/356
+                if (PlatformDependent.isWindows()) {
+                    sleepTimeMs = sleepTimeMs / 10 * 10;
+                }
+
+                try {
+                    Thread.sleep(sleepTimeMs);
+                } catch (InterruptedException ignored) {
+                    if (WORKER_STATE_UPDATER.get(HierarchicalWheelTimer.this) == WORKER_STATE_SHUTDOWN) {
+                        return Long.MIN_VALUE;
+                    }
+                }
+            }
+        }
+
+        public Set<Timeout> unprocessedTimeouts() {
+            return Collections.unmodifiableSet(unprocessedTimeouts);
+        }
+    }
+
+    private static final class HierarchicalWheelTimeout implements Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<HierarchicalWheelTimeout> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(HierarchicalWheelTimeout.class, "state");
+
+        private final HierarchicalWheelTimer timer;
+        private final TimerTask task;
+        private final long deadline;
+
+        @SuppressWarnings({"unused", "FieldMayBeFinal", "RedundantFieldInitialization" })
+        private volatile int state = ST_INIT;
+
+        // These are used to chain timeouts in Bucket via a double-linked-list.
+        // As only the workerThread will act on it there is no need for synchronization / volatile.
+        HierarchicalWheelTimeout next;
+        HierarchicalWheelTimeout prev;
+
+        // The bucket to which the timeout was added
+        Bucket bucket;
+
+        HierarchicalWheelTimeout(HierarchicalWheelTimer timer, TimerTask task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Timer timer() {
+            return timer;
+        }
+
+        @Override
+        public TimerTask task() {
+            return task;
+        }
+
+        @Override
+        public boolean cancel() {
+            // only update the state it will be removed from Bucket on next tick.
+            if (!compareAndSetState(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            // If a task should be canceled we put this to another queue which will be processed on each tick.
+            // So this means that we will have a GC latency of max. 1 tick duration which is good enough. This way
+            // we can make again use of our MpscLinkedQueue and so minimize the locking / overhead as much as
+            // possible.
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        void remove() {
+            Bucket bucket = this.bucket;
+            if (bucket != null) {
+                bucket.remove(this);
+            }
+            timer.pendingTimeouts.decrementAndGet();
+        }
+
+        boolean compareAndSetState(int expected, int state) {
+            return STATE_UPDATER.compareAndSet(this, expected, state);
+        }
+
+        int state() {
+            return state;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state() == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state() == ST_EXPIRED;
+        }
+
+        void expire() {
+            if (!compareAndSetState(ST_INIT, ST_EXPIRED)) {
+                // Cancelled in the meantime, the pending count is updated when the cancellation is processed.
+                return;
+            }
+            timer.pendingTimeouts.decrementAndGet();
+
+            try {
+                task.run(this);
+            } catch (Throwable t) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("An exception was thrown by " + TimerTask.class.getSimpleName() + '.', t);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            final long currentTime = System.nanoTime();
+            long remaining = deadline - currentTime + timer.startTime;
+
+            StringBuilder buf = new StringBuilder(192)
+               .append(simpleClassName(this))
+               .append('(')
+               .append("deadline: ");
+            if (remaining > 0) {
+                buf.append(remaining)
+                   .append(" ns later");
+            } else if (remaining < 0) {
+                buf.append(-remaining)
+                   .append(" ns ago");
+            } else {
+                buf.append("now");
+            }
+
+            if (isCancelled()) {
+                buf.append(", cancelled");
+            }
+
+            return buf.append(", task: ")
+                      .append(task())
+                      .append(')')
+                      .toString();
+        }
+    }
+
+    /**
+     * Bucket that stores HierarchicalWheelTimeouts in a double-linked-list, so they can be removed from the middle
+     * in {@code O(1)}. The timeouts act as nodes themselves, so no extra object creation is needed.
+     */
+    private static final class Bucket {
+        // Used for the linked-list datastructure
+        private HierarchicalWheelTimeout head;
+        private HierarchicalWheelTimeout tail;
+
+        void addTimeout(HierarchicalWheelTimeout timeout) {
+            assert timeout.bucket == null;
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(HierarchicalWheelTimeout timeout) {
+            HierarchicalWheelTimeout next = timeout.next;
+            // remove timeout that was either processed or cancelled by updating the linked-list
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+
+            if (timeout == head) {
+                // if timeout is also the tail we need to adjust the entry too
+                if (timeout == tail) {
+                    tail = null;
+                    head = null;
+                } else {
+                    head = next;
+                }
+            } else if (timeout == tail) {
+                // if the timeout is the tail modify the tail to be the prev node.
+                tail = timeout.prev;
+            }
+            // null out prev, next and bucket to allow for GC.
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        /**
+         * Clear this bucket and return all not expired / cancelled {@link Timeout}s.
+         */
+        void clearTimeouts(Set<Timeout> set) {
+            for (;;) {
+                HierarchicalWheelTimeout timeout = pollTimeout();
+                if (timeout == null) {
+                    return;
+                }
+                if (timeout.isExpired() || timeout.isCancelled()) {
+                    continue;
+                }
+                set.add(timeout);
+            }
+        }
+
+        HierarchicalWheelTimeout pollTimeout() {
+            HierarchicalWheelTimeout head = this.head;
+            if (head == null) {
+                return null;
+            }
+            HierarchicalWheelTimeout next = head.next;
+            if (next == null) {
+                tail = this.head =  null;
+            } else {
+                this.head = next;
+                next.prev = null;
+            }
+
+            // null out prev and next to allow for GC.
+            head.next = null;
+            head.prev = null;
+            head.bucket = null;
+            return head;
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package io.netty.util;
 
 import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
@@ -24,6 +25,7 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 import java.lang.ref.WeakReference;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Queue;
 import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -49,6 +51,7 @@ public abstract class Recycler<T> {
     };
     private static final AtomicInteger ID_GENERATOR = new AtomicInteger(Integer.MIN_VALUE);
     private static final int OWN_THREAD_ID = ID_GENERATOR.getAndIncrement();
+    private static final int SHARED_POOL_ID = ID_GENERATOR.getAndIncrement();
     private static final int DEFAULT_INITIAL_MAX_CAPACITY_PER_THREAD = 4 * 1024; // Use 4k instances as default.
     private static final int DEFAULT_MAX_CAPACITY_PER_THREAD;
     private static final int INITIAL_CAPACITY;
@@ -56,6 +59,7 @@ public abstract class Recycler<T> {
     private static final int MAX_DELAYED_QUEUES_PER_THREAD;
     private static final int LINK_CAPACITY;
     private static final int RATIO;
+    private static final boolean SHARED_POOL;
 
     static {
         // In the future, we might have different maxCapacity for different object types.
@@ -86,17 +90,21 @@ public abstract class Recycler<T> {
         // bursts.
         RATIO = safeFindNextPositivePowerOfTwo(SystemPropertyUtil.getInt("io.netty.recycler.ratio", 8));
 
+        SHARED_POOL = SystemPropertyUtil.getBoolean("io.netty.recycler.sharedPool", false);
+
         if (logger.isDebugEnabled()) {
             if (DEFAULT_MAX_CAPACITY_PER_THREAD == 0) {
                 logger.debug("-Dio.netty.recycler.maxCapacityPerThread: disabled");
                 logger.debug("-Dio.netty.recycler.maxSharedCapacityFactor: disabled");
                 logger.debug("-Dio.netty.recycler.linkCapacity: disabled");
                 logger.debug("-Dio.netty.recycler.ratio: disabled");
+                logger.debug("-Dio.netty.recycler.sharedPool: disabled");
             } else {
                 logger.debug("-Dio.netty.recycler.maxCapacityPerThread: {}", DEFAULT_MAX_CAPACITY_PER_THREAD);
                 logger.debug("-Dio.netty.recycler.maxSharedCapacityFactor: {}", MAX_SHARED_CAPACITY_FACTOR);
                 logger.debug("-Dio.netty.recycler.linkCapacity: {}", LINK_CAPACITY);
                 logger.debug("-Dio.netty.recycler.ratio: {}", RATIO);
+                logger.debug("-Dio.netty.recycler.sharedPool: {}", SHARED_POOL);
             }
         }
 
@@ -107,6 +115,7 @@ public abstract class Recycler<T> {
     private final int maxSharedCapacityFactor;
     private final int ratioMask;
     private final int maxDelayedQueuesPerThread;
+    private final SharedPool sharedPool;
 
     private final FastThreadLocal<Stack<T>> threadLocal = new FastThreadLocal<Stack<T>>() {
         @Override
@@ -140,15 +149,34 @@ public abstract class Recycler<T> {
 
     protected Recycler(int maxCapacityPerThread, int maxSharedCapacityFactor,
                        int ratio, int maxDelayedQueuesPerThread) {
+        this(maxCapacityPerThread, maxSharedCapacityFactor, ratio, maxDelayedQueuesPerThread, SHARED_POOL);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param sharedPool if {@code true} objects that are recycled by another thread than the one that created them
+     *                   are put into a bounded, striped pool which is shared by all threads. A thread takes objects
+     *                   from it once its own stack is empty, so objects are not lost when the thread that created
+     *                   them terminates and no {@link WeakHashMap} per thread is needed. In this case
+     *                   {@code maxDelayedQueuesPerThread} is not used, and each stripe of the pool holds up to
+     *                   {@code maxCapacityPerThread / maxSharedCapacityFactor} objects.
+     *                   If {@code false} the objects are queued until the thread that created them takes them back.
+     */
+    protected Recycler(int maxCapacityPerThread, int maxSharedCapacityFactor,
+                       int ratio, int maxDelayedQueuesPerThread, boolean sharedPool) {
         ratioMask = safeFindNextPositivePowerOfTwo(ratio) - 1;
         if (maxCapacityPerThread <= 0) {
             this.maxCapacityPerThread = 0;
             this.maxSharedCapacityFactor = 1;
             this.maxDelayedQueuesPerThread = 0;
+            this.sharedPool = null;
         } else {
             this.maxCapacityPerThread = maxCapacityPerThread;
             this.maxSharedCapacityFactor = max(1, maxSharedCapacityFactor);
             this.maxDelayedQueuesPerThread = max(0, maxDelayedQueuesPerThread);
+            this.sharedPool = sharedPool ?
+                    new SharedPool(max(maxCapacityPerThread / this.maxSharedCapacityFactor, LINK_CAPACITY)) : null;
         }
     }
 
@@ -216,6 +244,12 @@ public abstract class Recycler<T> {
             if (object != value) {
                 throw new IllegalArgumentException("object does not belong to handle");
             }
+            Stack<?> stack = this.stack;
+            // A handle which waits to be transferred to a stack, or sits in the shared pool without one, was
+            // recycled already.
+            if (lastRecycledId != recycleId || stack == null) {
+                throw new IllegalStateException("recycled already");
+            }
             stack.push(this);
         }
     }
@@ -422,6 +456,72 @@ public abstract class Recycler<T> {
         }
     }
 
+    /**
+     * Bounded pool for the objects which were recycled by foreign threads. It is split into stripes to reduce the
+     * contention between threads that recycle at the same time.
+     */
+    private static final class SharedPool {
+        private final Queue<DefaultHandle<?>>[] stripes;
+        private final int stripeMask;
+
+        @SuppressWarnings("unchecked")
+        SharedPool(int stripeCapacity) {
+            stripes = new Queue[safeFindNextPositivePowerOfTwo(NettyRuntime.availableProcessors())];
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i] = PlatformDependent.newFixedMpmcQueue(stripeCapacity);
+            }
+            stripeMask = stripes.length - 1;
+        }
+
+        private int stripe() {
+            return (int) Thread.currentThread().getId() & stripeMask;
+        }
+
+        void add(DefaultHandle<?> handle) {
+            handle.lastRecycledId = SHARED_POOL_ID;
+            // Do not keep the Stack (and so the thread) of the previous owner reachable while it is pooled.
+            handle.stack = null;
+            // If the stripe is full the object is just dropped.
+            stripes[stripe()].offer(handle);
+        }
+
+        @SuppressWarnings("rawtypes")
+        boolean transfer(Stack<?> dst) {
+            int start = stripe();
+            for (int i = 0; i < stripes.length; i++) {
+                Queue<DefaultHandle<?>> stripe = stripes[(start + i) & stripeMask];
+                boolean success = false;
+                for (int j = 0; j < LINK_CAPACITY; j++) {
+                    DefaultHandle element = stripe.poll();
+                    if (element == null) {
+                        break;
+                    }
+                    if (element.recycleId == 0) {
+                        element.recycleId = element.lastRecycledId;
+                    } else if (element.recycleId != element.lastRecycledId) {
+                        throw new IllegalStateException("recycled already");
+                    }
+                    if (dst.dropHandle(element)) {
+                        continue;
+                    }
+                    int size = dst.size;
+                    if (size == dst.elements.length && dst.increaseCapacity(size + 1) == size) {
+                        // The stack is full, drop the object like pushNow(...) does.
+                        return success;
+                    }
+                    element.stack = dst;
+                    dst.elements[size] = element;
+                    dst.size = size + 1;
+                    success = true;
+                }
+                if (success) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
     static final class Stack<T> {
 
         // we keep a queue of per-thread queues, which is appended to once only, each time a new thread other
@@ -502,6 +602,11 @@ public abstract class Recycler<T> {
         }
 
         boolean scavenge() {
+            SharedPool sharedPool = parent.sharedPool;
+            if (sharedPool != null) {
+                return sharedPool.transfer(this);
+            }
+
             // continue an existing scavenge, if any
             if (scavengeSome()) {
                 return true;
@@ -568,6 +673,8 @@ public abstract class Recycler<T> {
             if (threadRef.get() == currentThread) {
                 // The current Thread is the thread that belongs to the Stack, we can try to push the object now.当前线程是属于堆栈的线程，我们现在可以尝试推送对象。
                 pushNow(item);
+            } else if (parent.sharedPool != null) {
+                parent.sharedPool.add(item);
             } else {
                 // The current Thread is not the one that belongs to the Stack
                 // (or the Thread that belonged to the Stack was collected already), we need to signal that the push
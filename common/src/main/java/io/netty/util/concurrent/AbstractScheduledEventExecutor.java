@@ -30,7 +30,7 @@ import java.util.concurrent.TimeUnit;
  */
 public abstract class AbstractScheduledEventExecutor extends AbstractEventExecutor {
 
-    private static final Comparator<ScheduledFutureTask<?>> SCHEDULED_FUTURE_TASK_COMPARATOR =
+    static final Comparator<ScheduledFutureTask<?>> SCHEDULED_FUTURE_TASK_COMPARATOR =
             new Comparator<ScheduledFutureTask<?>>() {
                 @Override
                 public int compare(ScheduledFutureTask<?> o1, ScheduledFutureTask<?> o2) {
@@ -54,14 +54,21 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
     PriorityQueue<ScheduledFutureTask<?>> scheduledTaskQueue() {
 //        调度线程池使用优先级队列来管理任务的
         if (scheduledTaskQueue == null) {
-            scheduledTaskQueue = new DefaultPriorityQueue<ScheduledFutureTask<?>>(
-                    SCHEDULED_FUTURE_TASK_COMPARATOR,
-                    // Use same initial capacity as java.util.PriorityQueue使用与java.util.PriorityQueue相同的初始容量
-                    11);
+            scheduledTaskQueue = newScheduledTaskQueue();
         }
         return scheduledTaskQueue;
     }
 
+    /**
+     * Creates the store for the scheduled tasks, which is a binary heap by default.
+     */
+    PriorityQueue<ScheduledFutureTask<?>> newScheduledTaskQueue() {
+        return new DefaultPriorityQueue<ScheduledFutureTask<?>>(
+                SCHEDULED_FUTURE_TASK_COMPARATOR,
+                // Use same initial capacity as java.util.PriorityQueue使用与java.util.PriorityQueue相同的初始容量
+                11);
+    }
+
     private static boolean isNullOrEmpty(Queue<ScheduledFutureTask<?>> queue) {
         return queue == null || queue.isEmpty();
     }
@@ -125,12 +132,25 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
      * 当下一个计划任务准备好运行时，返回纳秒;如果没有计划任务，则返回-1。
      */
     protected final long nextScheduledTaskNano() {
-        Queue<ScheduledFutureTask<?>> scheduledTaskQueue = this.scheduledTaskQueue;
-        ScheduledFutureTask<?> scheduledTask = scheduledTaskQueue == null ? null : scheduledTaskQueue.peek();
-        if (scheduledTask == null) {
+        long deadlineNanos = nextScheduledTaskDeadlineNanos();
+        if (deadlineNanos == -1) {
             return -1;
         }
-        return Math.max(0, scheduledTask.deadlineNanos() - nanoTime());
+        return ScheduledFutureTask.deadlineToDelayNanos(deadlineNanos);
+    }
+
+    /**
+     * Returns the deadline of the next scheduled task or {@code -1} if no task is scheduled. The deadline may be
+     * earlier than the one of the task if the store only knows a lower bound, in which case the next scheduled task
+     * may not be ready yet when the deadline is reached.
+     */
+    final long nextScheduledTaskDeadlineNanos() {
+        PriorityQueue<ScheduledFutureTask<?>> scheduledTaskQueue = this.scheduledTaskQueue;
+        if (scheduledTaskQueue instanceof ScheduledTaskWheel) {
+            return ((ScheduledTaskWheel) scheduledTaskQueue).nextDeadlineNanos();
+        }
+        ScheduledFutureTask<?> scheduledTask = scheduledTaskQueue == null ? null : scheduledTaskQueue.peek();
+        return scheduledTask == null ? -1 : scheduledTask.deadlineNanos();
     }
 
     final ScheduledFutureTask<?> peekScheduledTask() {
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+/**
+ * The {@link EventExecutorMetric} of an {@link EventExecutorGroup}. The counters and histograms are the sums of the
+ * ones of all {@link EventExecutor}s, while {@link #maxPendingTasks()} and {@link #longestTaskTime()} are the
+ * maximum of them.
+ */
+final class AggregatedEventExecutorMetric implements EventExecutorMetric {
+
+    private final EventExecutorMetric[] metrics;
+
+    AggregatedEventExecutorMetric(EventExecutorMetric[] metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int pendingTasks() {
+        int pendingTasks = 0;
+        for (EventExecutorMetric metric: metrics) {
+            pendingTasks += metric.pendingTasks();
+        }
+        return pendingTasks;
+    }
+
+    @Override
+    public int maxPendingTasks() {
+        int maxPendingTasks = 0;
+        for (EventExecutorMetric metric: metrics) {
+            maxPendingTasks = Math.max(maxPendingTasks, metric.maxPendingTasks());
+        }
+        return maxPendingTasks;
+    }
+
+    @Override
+    public long completedTasks() {
+        long completedTasks = 0;
+        for (EventExecutorMetric metric: metrics) {
+            completedTasks += metric.completedTasks();
+        }
+        return completedTasks;
+    }
+
+    @Override
+    public long taskTime() {
+        long taskTime = 0;
+        for (EventExecutorMetric metric: metrics) {
+            taskTime += metric.taskTime();
+        }
+        return taskTime;
+    }
+
+    @Override
+    public long[] taskTimeHistogram() {
+        long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (EventExecutorMetric metric: metrics) {
+            add(histogram, metric.taskTimeHistogram());
+        }
+        return histogram;
+    }
+
+    @Override
+    public long longestTaskTime() {
+        EventExecutorMetric longest = longest();
+        return longest == null ? 0 : longest.longestTaskTime();
+    }
+
+    @Override
+    public String longestTask() {
+        EventExecutorMetric longest = longest();
+        return longest == null ? null : longest.longestTask();
+    }
+
+    private EventExecutorMetric longest() {
+        EventExecutorMetric longest = null;
+        for (EventExecutorMetric metric: metrics) {
+            if (longest == null || metric.longestTaskTime() > longest.longestTaskTime()) {
+                longest = metric;
+            }
+        }
+        return longest;
+    }
+
+    @Override
+    public long runAllTasksTime() {
+        long runAllTasksTime = 0;
+        for (EventExecutorMetric metric: metrics) {
+            runAllTasksTime += metric.runAllTasksTime();
+        }
+        return runAllTasksTime;
+    }
+
+    @Override
+    public long[] runAllTasksTimeHistogram() {
+        long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (EventExecutorMetric metric: metrics) {
+            add(histogram, metric.runAllTasksTimeHistogram());
+        }
+        return histogram;
+    }
+
+    @Override
+    public long wakeups() {
+        long wakeups = 0;
+        for (EventExecutorMetric metric: metrics) {
+            wakeups += metric.wakeups();
+        }
+        return wakeups;
+    }
+
+    @Override
+    public long ioWaitTime() {
+        long ioWaitTime = 0;
+        for (EventExecutorMetric metric: metrics) {
+            ioWaitTime += metric.ioWaitTime();
+        }
+        return ioWaitTime;
+    }
+
+    @Override
+    public long[] ioWaitTimeHistogram() {
+        long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (EventExecutorMetric metric: metrics) {
+            add(histogram, metric.ioWaitTimeHistogram());
+        }
+        return histogram;
+    }
+
+    @Override
+    public long busyWaitTime() {
+        long busyWaitTime = 0;
+        for (EventExecutorMetric metric: metrics) {
+            busyWaitTime += metric.busyWaitTime();
+        }
+        return busyWaitTime;
+    }
+
+    @Override
+    public int ioRatio() {
+        int sum = 0;
+        int count = 0;
+        for (EventExecutorMetric metric: metrics) {
+            int ioRatio = metric.ioRatio();
+            if (ioRatio >= 0) {
+                sum += ioRatio;
+                count++;
+            }
+        }
+        return count == 0 ? -1 : sum / count;
+    }
+
+    @Override
+    public long ioTime() {
+        long ioTime = 0;
+        for (EventExecutorMetric metric: metrics) {
+            ioTime += metric.ioTime();
+        }
+        return ioTime;
+    }
+
+    @Override
+    public long[] ioTimeHistogram() {
+        long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (EventExecutorMetric metric: metrics) {
+            add(histogram, metric.ioTimeHistogram());
+        }
+        return histogram;
+    }
+
+    private static void add(long[] sum, long[] histogram) {
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += histogram[i];
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@link EventExecutorMetric} of a {@link SingleThreadEventExecutor}. The values are only written by the thread
+ * of the executor, so no atomic read-modify-write operations are needed.
+ */
+final class DefaultEventExecutorMetric implements EventExecutorMetric {
+
+    private final SingleThreadEventExecutor executor;
+
+    private volatile int maxPendingTasks;
+    private volatile long completedTasks;
+    private volatile long taskTime;
+    private volatile long longestTaskTime;
+    private volatile String longestTask;
+    private volatile long runAllTasksTime;
+    private volatile long wakeups;
+    private volatile long ioWaitTime;
+    private volatile long busyWaitTime;
+    private volatile int ioRatio = -1;
+    private volatile long ioTime;
+    private final AtomicLongArray taskTimeHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+    private final AtomicLongArray runAllTasksTimeHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+    private final AtomicLongArray ioWaitTimeHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+    private final AtomicLongArray ioTimeHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+    DefaultEventExecutorMetric(SingleThreadEventExecutor executor) {
+        this.executor = executor;
+    }
+
+    void recordPendingTasks(int pendingTasks) {
+        if (pendingTasks > maxPendingTasks) {
+            maxPendingTasks = pendingTasks;
+        }
+    }
+
+    void recordTask(Runnable task, long nanos) {
+        completedTasks++;
+        taskTime += nanos;
+        increment(taskTimeHistogram, nanos);
+        if (nanos > longestTaskTime) {
+            longestTaskTime = nanos;
+            longestTask = task.getClass().getName();
+        }
+    }
+
+    void recordRunAllTasks(long nanos) {
+        runAllTasksTime += nanos;
+        increment(runAllTasksTimeHistogram, nanos);
+    }
+
+    void recordIoWait(long nanos) {
+        wakeups++;
+        ioWaitTime += nanos;
+        increment(ioWaitTimeHistogram, nanos);
+    }
+
+    void recordBusyWait(long nanos) {
+        busyWaitTime += nanos;
+    }
+
+    void recordIoRatio(int ioRatio) {
+        this.ioRatio = ioRatio;
+    }
+
+    void recordIo(long nanos) {
+        ioTime += nanos;
+        increment(ioTimeHistogram, nanos);
+    }
+
+    private static void increment(AtomicLongArray histogram, long nanos) {
+        int bucket = bucket(nanos);
+        histogram.lazySet(bucket, histogram.get(bucket) + 1);
+    }
+
+    static int bucket(long nanos) {
+        return Math.min(HISTOGRAM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos / 1000));
+    }
+
+    static long[] toArray(AtomicLongArray histogram) {
+        long[] array = new long[histogram.length()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = histogram.get(i);
+        }
+        return array;
+    }
+
+    @Override
+    public int pendingTasks() {
+        return executor.pendingTasks();
+    }
+
+    @Override
+    public int maxPendingTasks() {
+        return maxPendingTasks;
+    }
+
+    @Override
+    public long completedTasks() {
+        return completedTasks;
+    }
+
+    @Override
+    public long taskTime() {
+        return taskTime;
+    }
+
+    @Override
+    public long[] taskTimeHistogram() {
+        return toArray(taskTimeHistogram);
+    }
+
+    @Override
+    public long longestTaskTime() {
+        return longestTaskTime;
+    }
+
+    @Override
+    public String longestTask() {
+        return longestTask;
+    }
+
+    @Override
+    public long runAllTasksTime() {
+        return runAllTasksTime;
+    }
+
+    @Override
+    public long[] runAllTasksTimeHistogram() {
+        return toArray(runAllTasksTimeHistogram);
+    }
+
+    @Override
+    public long wakeups() {
+        return wakeups;
+    }
+
+    @Override
+    public long ioWaitTime() {
+        return ioWaitTime;
+    }
+
+    @Override
+    public long[] ioWaitTimeHistogram() {
+        return toArray(ioWaitTimeHistogram);
+    }
+
+    @Override
+    public long busyWaitTime() {
+        return busyWaitTime;
+    }
+
+    @Override
+    public int ioRatio() {
+        return ioRatio;
+    }
+
+    @Override
+    public long ioTime() {
+        return ioTime;
+    }
+
+    @Override
+    public long[] ioTimeHistogram() {
+        return toArray(ioTimeHistogram);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+/**
+ * Metrics of an {@link EventExecutor} or of all {@link EventExecutor}s of an {@link EventExecutorGroup}.
+ * <p>
+ * Except for {@link #pendingTasks()} the values are only recorded while the metrics are enabled, see
+ * {@link SingleThreadEventExecutor#setMetricsEnabled(boolean)}. All times are in nanoseconds.
+ * <p>
+ * The histograms have {@link #HISTOGRAM_BUCKETS} buckets. The bucket {@code 0} counts durations of less than one
+ * microsecond, the bucket {@code i} counts durations of at least {@code 2^(i - 1)} and less than {@code 2^i}
+ * microseconds, and the last bucket also counts all longer durations.
+ */
+public interface EventExecutorMetric {
+
+    /**
+     * The number of buckets of the histograms.
+     */
+    int HISTOGRAM_BUCKETS = 32;
+
+    /**
+     * Returns the number of tasks that are pending for processing right now.
+     */
+    int pendingTasks();
+
+    /**
+     * Returns the highest number of pending tasks that was seen when the tasks were run.
+     */
+    int maxPendingTasks();
+
+    /**
+     * Returns the number of tasks that were run.
+     */
+    long completedTasks();
+
+    /**
+     * Returns the time that was spent in the tasks.
+     */
+    long taskTime();
+
+    /**
+     * Returns the histogram of the time per task.
+     */
+    long[] taskTimeHistogram();
+
+    /**
+     * Returns the time the longest task took.
+     */
+    long longestTaskTime();
+
+    /**
+     * Returns the class name of the longest task, or {@code null} if no task was run.
+     */
+    String longestTask();
+
+    /**
+     * Returns the time that was spent in the phases which run the pending tasks, like
+     * {@link SingleThreadEventExecutor#runAllTasks()}.
+     */
+    long runAllTasksTime();
+
+    /**
+     * Returns the histogram of the time per phase which runs the pending tasks.
+     */
+    long[] runAllTasksTimeHistogram();
+
+    /**
+     * Returns the number of times an event loop woke up after it was waiting for I/O, like after a {@code select}.
+     */
+    long wakeups();
+
+    /**
+     * Returns the time an event loop was waiting for I/O.
+     */
+    long ioWaitTime();
+
+    /**
+     * Returns the histogram of the time per wait for I/O.
+     */
+    long[] ioWaitTimeHistogram();
+
+    /**
+     * Returns the time an event loop spent spinning on a non-blocking wait for I/O before it parked.
+     */
+    long busyWaitTime();
+
+    /**
+     * Returns the percentage of time an event loop currently gives to I/O compared to running tasks, which may be
+     * adjusted at runtime, or {@code -1} if the executor does not process I/O or nothing was recorded yet. For an
+     * {@link EventExecutorGroup} this is the average of its event loops.
+     */
+    int ioRatio();
+
+    /**
+     * Returns the time an event loop spent processing I/O events, like in {@code processSelectedKeys}.
+     */
+    long ioTime();
+
+    /**
+     * Returns the histogram of the time per processing of I/O events.
+     */
+    long[] ioTimeHistogram();
+}
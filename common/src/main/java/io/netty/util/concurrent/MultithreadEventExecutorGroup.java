@@ -15,9 +15,11 @@
  */
 package io.netty.util.concurrent;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
@@ -28,13 +30,15 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Abstract base class for {@link EventExecutorGroup} implementations that handles their tasks with multiple threads at
  * the same time.EventExecutorGroup实现的抽象基类，该实现同时处理多个线程的任务。
  */
-public abstract class MultithreadEventExecutorGroup extends AbstractEventExecutorGroup {
+public abstract class MultithreadEventExecutorGroup extends AbstractEventExecutorGroup
+        implements EventExecutorMetricProvider {
 
     private final EventExecutor[] children;
     private final Set<EventExecutor> readonlyChildren;
     private final AtomicInteger terminatedChildren = new AtomicInteger();
     private final Promise<?> terminationFuture = new DefaultPromise(GlobalEventExecutor.INSTANCE);
     private final EventExecutorChooserFactory.EventExecutorChooser chooser;
+    private final EventExecutorMetric metric;
 
     /**
      * Create a new instance.
@@ -134,6 +138,50 @@ public abstract class MultithreadEventExecutorGroup extends AbstractEventExecuto
         Set<EventExecutor> childrenSet = new LinkedHashSet<EventExecutor>(children.length);
         Collections.addAll(childrenSet, children);
         readonlyChildren = Collections.unmodifiableSet(childrenSet);
+
+        List<EventExecutorMetric> metrics = new ArrayList<EventExecutorMetric>(children.length);
+        for (EventExecutor e: children) {
+            if (e instanceof EventExecutorMetricProvider) {
+                metrics.add(((EventExecutorMetricProvider) e).metric());
+            }
+        }
+        metric = new AggregatedEventExecutorMetric(metrics.toArray(new EventExecutorMetric[0]));
+    }
+
+    /**
+     * Returns the {@link EventExecutorMetric} of all {@link EventExecutor}s of this group which provide one.
+     */
+    @Override
+    public EventExecutorMetric metric() {
+        return metric;
+    }
+
+    /**
+     * Enables or disables the recording of the {@link EventExecutorMetric} of all {@link SingleThreadEventExecutor}s
+     * of this group.
+     *
+     * @see SingleThreadEventExecutor#setMetricsEnabled(boolean)
+     */
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        for (EventExecutor e: children) {
+            if (e instanceof SingleThreadEventExecutor) {
+                ((SingleThreadEventExecutor) e).setMetricsEnabled(metricsEnabled);
+            }
+        }
+    }
+
+    /**
+     * Keeps the scheduled tasks of all {@link SingleThreadEventExecutor}s of this group in a timing wheel instead of a
+     * binary heap. Must be called before any task is scheduled.
+     *
+     * @see SingleThreadEventExecutor#setScheduledTaskWheelEnabled(boolean)
+     */
+    public void setScheduledTaskWheelEnabled(boolean scheduledTaskWheelEnabled) {
+        for (EventExecutor e: children) {
+            if (e instanceof SingleThreadEventExecutor) {
+                ((SingleThreadEventExecutor) e).setScheduledTaskWheelEnabled(scheduledTaskWheelEnabled);
+            }
+        }
     }
 
     protected ThreadFactory newDefaultThreadFactory() {
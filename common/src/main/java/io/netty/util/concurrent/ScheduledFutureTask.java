@@ -38,6 +38,14 @@ final class ScheduledFutureTask<V> extends PromiseTask<V> implements ScheduledFu
         return nanoTime() + delay;
     }
 
+    static long deadlineToDelayNanos(long deadlineNanos) {
+        return Math.max(0, deadlineNanos - nanoTime());
+    }
+
+    static long deadlineToDelayNanos(long deadlineNanos, long currentTimeNanos) {
+        return Math.max(0, deadlineNanos - (currentTimeNanos - START_TIME));
+    }
+
     private final long id = nextTaskId.getAndIncrement();
     private long deadlineNanos;
     /* 0 - no repeat, >0 - repeat at fixed rate, <0 - repeat with fixed delay */
@@ -45,6 +53,11 @@ final class ScheduledFutureTask<V> extends PromiseTask<V> implements ScheduledFu
 
     private int queueIndex = INDEX_NOT_IN_QUEUE;
 
+    // Used by ScheduledTaskWheel to link the tasks of a bucket.
+    ScheduledFutureTask<?> wheelPrev;
+    ScheduledFutureTask<?> wheelNext;
+    int wheelBucket = ScheduledTaskWheel.NOT_IN_WHEEL;
+
     ScheduledFutureTask(
             AbstractScheduledEventExecutor executor,
             Runnable runnable, V result, long nanoTime) {
@@ -83,11 +96,11 @@ final class ScheduledFutureTask<V> extends PromiseTask<V> implements ScheduledFu
     }
 
     public long delayNanos() {
-        return Math.max(0, deadlineNanos() - nanoTime());
+        return deadlineToDelayNanos(deadlineNanos());
     }
 
     public long delayNanos(long currentTimeNanos) {
-        return Math.max(0, deadlineNanos() - (currentTimeNanos - START_TIME));
+        return deadlineToDelayNanos(deadlineNanos(), currentTimeNanos);
     }
 
     @Override
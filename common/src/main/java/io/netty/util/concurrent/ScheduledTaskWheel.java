@@ -0,0 +1,298 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.DefaultPriorityQueue;
+import io.netty.util.internal.PriorityQueue;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A {@link PriorityQueue} for {@link ScheduledFutureTask}s which keeps the tasks that are not due yet in a
+ * hierarchical timing wheel, so that adding and removing them is {@code O(1)} instead of {@code O(log n)}.
+ * <p>
+ * Only the tasks whose deadline falls into the current tick are kept in a binary heap, which gives them the exact
+ * order. The others are linked into the bucket of the wheel that covers their tick, and are moved towards the heap
+ * when the current tick reaches the bucket. As the current tick never runs ahead of the {@link ScheduledFutureTask}
+ * clock, {@link #peek()} only returns a task once its tick has started and returns {@code null} while all tasks are
+ * still on the wheel. Use {@link #nextDeadlineNanos()} to find out how long to wait.
+ * <p>
+ * Tasks cancelled by another thread are removed through the task queue of the event loop like with the binary heap.
+ * Should one still be on the wheel when its bucket comes up, it is dropped there.
+ * <p>
+ * This class is not thread-safe and must only be used by the event loop.
+ */
+final class ScheduledTaskWheel extends AbstractQueue<ScheduledFutureTask<?>>
+        implements PriorityQueue<ScheduledFutureTask<?>> {
+
+    static final int NOT_IN_WHEEL = -1;
+
+    private static final int WHEEL_SHIFT = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_SHIFT;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    // Enough wheels to cover every positive tick.
+    private static final int WHEEL_LEVELS = (Long.SIZE - 1 + WHEEL_SHIFT - 1) / WHEEL_SHIFT;
+
+    private final DefaultPriorityQueue<ScheduledFutureTask<?>> dueQueue;
+    private final long tickNanos;
+    private final ScheduledFutureTask<?>[] heads = new ScheduledFutureTask<?>[WHEEL_LEVELS << WHEEL_SHIFT];
+    private final ScheduledFutureTask<?>[] tails = new ScheduledFutureTask<?>[WHEEL_LEVELS << WHEEL_SHIFT];
+    // One bit per non-empty bucket of each wheel.
+    private final long[] occupied = new long[WHEEL_LEVELS];
+
+    // All tasks up to and including this tick are in the dueQueue, all later ones are on the wheel.
+    private long currentTick;
+    private int wheelCount;
+    // Set by nextBucketStartTick() to avoid computing the level twice.
+    private int nextBucketLevel;
+
+    ScheduledTaskWheel(Comparator<ScheduledFutureTask<?>> comparator, long tickNanos) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("tickNanos: " + tickNanos + " (expected: > 0)");
+        }
+        // Use same initial capacity as java.util.PriorityQueue
+        dueQueue = new DefaultPriorityQueue<ScheduledFutureTask<?>>(comparator, 11);
+        this.tickNanos = tickNanos;
+        currentTick = ScheduledFutureTask.nanoTime() / tickNanos;
+    }
+
+    /**
+     * Returns the deadline of the next task, which may be a lower bound if the task is still on the wheel, or
+     * {@code -1} if there are no tasks.
+     */
+    long nextDeadlineNanos() {
+        ScheduledFutureTask<?> task = peek();
+        if (task != null) {
+            return task.deadlineNanos();
+        }
+        if (wheelCount == 0) {
+            return -1;
+        }
+        return nextBucketStartTick() * tickNanos;
+    }
+
+    @Override
+    public boolean offer(ScheduledFutureTask<?> task) {
+        long tick = task.deadlineNanos() / tickNanos;
+        if (tick <= currentTick) {
+            return dueQueue.offer(task);
+        }
+        addToWheel(task, tick);
+        return true;
+    }
+
+    @Override
+    public ScheduledFutureTask<?> poll() {
+        return peek() == null ? null : dueQueue.poll();
+    }
+
+    @Override
+    public ScheduledFutureTask<?> peek() {
+        ScheduledFutureTask<?> task;
+        while ((task = dueQueue.peek()) != null && task.isCancelled()) {
+            // Cancelled by another thread.
+            dueQueue.poll();
+        }
+        if (task == null && wheelCount != 0) {
+            advance(ScheduledFutureTask.nanoTime() / tickNanos);
+            task = dueQueue.peek();
+        }
+        return task;
+    }
+
+    @Override
+    public int size() {
+        return dueQueue.size() + wheelCount;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof ScheduledFutureTask && containsTyped((ScheduledFutureTask<?>) o);
+    }
+
+    @Override
+    public boolean containsTyped(ScheduledFutureTask<?> task) {
+        return task.wheelBucket != NOT_IN_WHEEL || dueQueue.containsTyped(task);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof ScheduledFutureTask && removeTyped((ScheduledFutureTask<?>) o);
+    }
+
+    @Override
+    public boolean removeTyped(ScheduledFutureTask<?> task) {
+        if (task.wheelBucket != NOT_IN_WHEEL) {
+            unlink(task);
+            return true;
+        }
+        return dueQueue.removeTyped(task);
+    }
+
+    @Override
+    public void priorityChanged(ScheduledFutureTask<?> task) {
+        if (removeTyped(task)) {
+            offer(task);
+        }
+    }
+
+    @Override
+    public void clear() {
+        dueQueue.clear();
+        clearWheel();
+    }
+
+    @Override
+    public void clearIgnoringIndexes() {
+        dueQueue.clearIgnoringIndexes();
+        // The links must be reset in any case, as they are used to find out if a task is on the wheel.
+        clearWheel();
+    }
+
+    @Override
+    public Iterator<ScheduledFutureTask<?>> iterator() {
+        List<ScheduledFutureTask<?>> tasks = new ArrayList<ScheduledFutureTask<?>>(size());
+        for (Object task : dueQueue.toArray()) {
+            tasks.add((ScheduledFutureTask<?>) task);
+        }
+        for (ScheduledFutureTask<?> head : heads) {
+            for (ScheduledFutureTask<?> task = head; task != null; task = task.wheelNext) {
+                tasks.add(task);
+            }
+        }
+        return Collections.unmodifiableList(tasks).iterator();
+    }
+
+    private void addToWheel(ScheduledFutureTask<?> task, long tick) {
+        // The wheel is the one of the highest digit in which the tick differs from the current tick.
+        int level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(tick ^ currentTick)) / WHEEL_SHIFT;
+        int slot = (int) (tick >>> level * WHEEL_SHIFT) & WHEEL_MASK;
+        int bucket = level << WHEEL_SHIFT | slot;
+
+        ScheduledFutureTask<?> tail = tails[bucket];
+        if (tail == null) {
+            heads[bucket] = task;
+            occupied[level] |= 1L << slot;
+        } else {
+            tail.wheelNext = task;
+            task.wheelPrev = tail;
+        }
+        tails[bucket] = task;
+        task.wheelBucket = bucket;
+        wheelCount++;
+    }
+
+    private void unlink(ScheduledFutureTask<?> task) {
+        final int bucket = task.wheelBucket;
+        final ScheduledFutureTask<?> prev = task.wheelPrev;
+        final ScheduledFutureTask<?> next = task.wheelNext;
+        if (prev == null) {
+            heads[bucket] = next;
+        } else {
+            prev.wheelNext = next;
+        }
+        if (next == null) {
+            tails[bucket] = prev;
+        } else {
+            next.wheelPrev = prev;
+        }
+        if (heads[bucket] == null) {
+            occupied[bucket >>> WHEEL_SHIFT] &= ~(1L << (bucket & WHEEL_MASK));
+        }
+        task.wheelPrev = null;
+        task.wheelNext = null;
+        task.wheelBucket = NOT_IN_WHEEL;
+        wheelCount--;
+    }
+
+    /**
+     * Moves the current tick forward to {@code tick} and moves all tasks up to it into the {@link #dueQueue}.
+     */
+    private void advance(long tick) {
+        while (wheelCount != 0) {
+            long start = nextBucketStartTick();
+            if (start > tick) {
+                break;
+            }
+            // Moving the current tick to the start of the earliest bucket keeps all other tasks in valid buckets.
+            currentTick = start;
+            int level = nextBucketLevel;
+            int bucket = level << WHEEL_SHIFT | (int) (start >>> level * WHEEL_SHIFT) & WHEEL_MASK;
+            ScheduledFutureTask<?> task = heads[bucket];
+            heads[bucket] = null;
+            tails[bucket] = null;
+            occupied[level] &= ~(1L << (bucket & WHEEL_MASK));
+            while (task != null) {
+                ScheduledFutureTask<?> next = task.wheelNext;
+                task.wheelPrev = null;
+                task.wheelNext = null;
+                task.wheelBucket = NOT_IN_WHEEL;
+                wheelCount--;
+                if (!task.isCancelled()) {
+                    // Either due now or placed on a lower wheel.
+                    offer(task);
+                }
+                task = next;
+            }
+        }
+        if (tick > currentTick) {
+            currentTick = tick;
+        }
+    }
+
+    /**
+     * Returns the first tick of the earliest non-empty bucket. Must only be called if the wheel is not empty.
+     */
+    private long nextBucketStartTick() {
+        for (int level = 0; level < WHEEL_LEVELS; level++) {
+            final int shift = level * WHEEL_SHIFT;
+            final int digit = (int) (currentTick >>> shift) & WHEEL_MASK;
+            // Only the slots after the digit of the current tick are in use.
+            final long ahead = occupied[level] & (-2L << digit);
+            if (ahead != 0) {
+                final int higherShift = shift + WHEEL_SHIFT;
+                final long higher = higherShift >= Long.SIZE ? 0 : currentTick >>> higherShift << higherShift;
+                nextBucketLevel = level;
+                return higher | (long) Long.numberOfTrailingZeros(ahead) << shift;
+            }
+        }
+        throw new IllegalStateException("wheel is empty");
+    }
+
+    private void clearWheel() {
+        for (int i = 0; i < heads.length; i++) {
+            ScheduledFutureTask<?> task = heads[i];
+            while (task != null) {
+                ScheduledFutureTask<?> next = task.wheelNext;
+                task.wheelPrev = null;
+                task.wheelNext = null;
+                task.wheelBucket = NOT_IN_WHEEL;
+                task = next;
+            }
+            heads[i] = null;
+            tails[i] = null;
+        }
+        for (int i = 0; i < occupied.length; i++) {
+            occupied[i] = 0;
+        }
+        wheelCount = 0;
+    }
+}
@@ -17,6 +17,7 @@ package io.netty.util.concurrent;
 
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.PriorityQueue;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.UnstableApi;
 import io.netty.util.internal.logging.InternalLogger;
@@ -46,7 +47,8 @@ import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
  * Abstract base class for {@link OrderedEventExecutor}'s that execute all its submitted tasks in a single thread.OrderedEventExecutor的抽象基类，它在一个线程中执行所有提交的任务。
  *
  */
-public abstract class SingleThreadEventExecutor extends AbstractScheduledEventExecutor implements OrderedEventExecutor {
+public abstract class SingleThreadEventExecutor extends AbstractScheduledEventExecutor
+        implements OrderedEventExecutor, EventExecutorMetricProvider {
 
     static final int DEFAULT_MAX_PENDING_EXECUTOR_TASKS = Math.max(16,
             SystemPropertyUtil.getInt("io.netty.eventexecutor.maxPendingTasks", Integer.MAX_VALUE));
@@ -54,6 +56,23 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
     private static final InternalLogger logger =
             InternalLoggerFactory.getInstance(SingleThreadEventExecutor.class);
 
+    private static final boolean DEFAULT_METRICS_ENABLED =
+            SystemPropertyUtil.getBoolean("io.netty.eventexecutor.metrics", false);
+
+    private static final boolean DEFAULT_SCHEDULED_TASK_WHEEL =
+            SystemPropertyUtil.getBoolean("io.netty.eventexecutor.scheduledTaskWheel", false);
+    private static final long SCHEDULED_TASK_WHEEL_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(Math.max(1,
+            SystemPropertyUtil.getLong("io.netty.eventexecutor.scheduledTaskWheelTickMillis", 1)));
+
+    static {
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.eventexecutor.metrics: {}", DEFAULT_METRICS_ENABLED);
+            logger.debug("-Dio.netty.eventexecutor.scheduledTaskWheel: {}", DEFAULT_SCHEDULED_TASK_WHEEL);
+            logger.debug("-Dio.netty.eventexecutor.scheduledTaskWheelTickMillis: {}",
+                    TimeUnit.NANOSECONDS.toMillis(SCHEDULED_TASK_WHEEL_TICK_NANOS));
+        }
+    }
+
     private static final int ST_NOT_STARTED = 1;
     private static final int ST_STARTED = 2;
     private static final int ST_SHUTTING_DOWN = 3;
@@ -95,6 +114,10 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
 
     private long lastExecutionTime;
 
+    private final DefaultEventExecutorMetric metric = new DefaultEventExecutorMetric(this);
+    private volatile boolean metricsEnabled = DEFAULT_METRICS_ENABLED;
+    private volatile boolean scheduledTaskWheelEnabled = DEFAULT_SCHEDULED_TASK_WHEEL;
+
     @SuppressWarnings({ "FieldMayBeFinal", "unused" })
     private volatile int state = ST_NOT_STARTED;
 
@@ -235,8 +258,8 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
 
         BlockingQueue<Runnable> taskQueue = (BlockingQueue<Runnable>) this.taskQueue;
         for (;;) {
-            ScheduledFutureTask<?> scheduledTask = peekScheduledTask();
-            if (scheduledTask == null) {
+            long deadlineNanos = nextScheduledTaskDeadlineNanos();
+            if (deadlineNanos == -1) {
                 Runnable task = null;
                 try {
 //                    从队列中查询任务找不到就阻塞
@@ -249,7 +272,7 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
                 }
                 return task;
             } else {
-                long delayNanos = scheduledTask.delayNanos();
+                long delayNanos = ScheduledFutureTask.deadlineToDelayNanos(deadlineNanos);
                 Runnable task = null;
                 if (delayNanos > 0) {
                     try {
@@ -361,6 +384,8 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         assert inEventLoop();
         boolean fetchedAll;
         boolean ranAtLeastOne = false;
+        final DefaultEventExecutorMetric metric = metricsEnabled ? this.metric : null;
+        final long startTime = metric != null ? startRunAllTasks() : 0;
 
         do {
 //            从定时任务队列中查询任务
@@ -376,6 +401,9 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         }
 //        运行任务完成之后的处理事件
         afterRunningAllTasks();
+        if (metric != null) {
+            metric.recordRunAllTasks(System.nanoTime() - startTime);
+        }
         return ranAtLeastOne;
     }
 
@@ -392,9 +420,10 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         if (task == null) {
             return false;
         }
+        final DefaultEventExecutorMetric metric = metricsEnabled ? this.metric : null;
         for (;;) {
 //            同步执行任务
-            safeExecute(task);
+            safeExecute(task, metric);
             task = pollTaskFrom(taskQueue);
             if (task == null) {
                 return true;
@@ -408,6 +437,8 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      * 从任务队列轮询所有任务，并通过runnabler .run()方法运行它们。此方法停止在任务队列中运行任务，如果运行时间超过timeoutNanos，则返回。
      */
     protected boolean runAllTasks(long timeoutNanos) {
+        final DefaultEventExecutorMetric metric = metricsEnabled ? this.metric : null;
+        final long startTime = metric != null ? startRunAllTasks() : 0;
 //        从任务队列中查询任务
         fetchFromScheduledTaskQueue();
 //        拉取任务
@@ -415,6 +446,9 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         if (task == null) {
 //            如果没有拉取到任务就处理失败的任务
             afterRunningAllTasks();
+            if (metric != null) {
+                metric.recordRunAllTasks(System.nanoTime() - startTime);
+            }
             return false;
         }
 
@@ -423,7 +457,7 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         long lastExecutionTime;
         for (;;) {
 //            同步执行任务
-            safeExecute(task);
+            safeExecute(task, metric);
 
             runTasks ++;
 
@@ -450,9 +484,122 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
 //        执行完任务队列中的任务去执行失败的任务
         afterRunningAllTasks();
         this.lastExecutionTime = lastExecutionTime;
+        if (metric != null) {
+            metric.recordRunAllTasks(System.nanoTime() - startTime);
+        }
         return true;
     }
 
+    private long startRunAllTasks() {
+        metric.recordPendingTasks(pendingTasks());
+        return System.nanoTime();
+    }
+
+    private static void safeExecute(Runnable task, DefaultEventExecutorMetric metric) {
+        if (metric == null) {
+            safeExecute(task);
+        } else {
+            final long startTime = System.nanoTime();
+            safeExecute(task);
+            metric.recordTask(task, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Runs the given task and records it if the metrics are enabled.
+     */
+    final void runTask(Runnable task) {
+        if (metricsEnabled) {
+            final long startTime = System.nanoTime();
+            task.run();
+            metric.recordTask(task, System.nanoTime() - startTime);
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * Returns the {@link EventExecutorMetric} of this executor. It only records values while the metrics are
+     * enabled, see {@link #setMetricsEnabled(boolean)}.
+     */
+    @Override
+    public EventExecutorMetric metric() {
+        return metric;
+    }
+
+    /**
+     * Returns {@code true} if the {@link #metric()} is recorded.
+     */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * Enables or disables the recording of the {@link #metric()}. It is disabled by default unless
+     * {@code -Dio.netty.eventexecutor.metrics=true} is set. While it is disabled the tasks are run without taking
+     * any timestamps.
+     */
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    /**
+     * Returns {@code true} if the scheduled tasks are kept in a timing wheel instead of a binary heap.
+     */
+    public boolean isScheduledTaskWheelEnabled() {
+        return scheduledTaskWheelEnabled;
+    }
+
+    /**
+     * Keeps the scheduled tasks in a timing wheel instead of a binary heap. It is disabled by default unless
+     * {@code -Dio.netty.eventexecutor.scheduledTaskWheel=true} is set. The store is created when the first task is
+     * scheduled, so this must be called before that.
+     *
+     * @throws IllegalStateException if a task was scheduled already
+     */
+    public void setScheduledTaskWheelEnabled(boolean scheduledTaskWheelEnabled) {
+        if (scheduledTaskQueue != null) {
+            throw new IllegalStateException("a task was scheduled already");
+        }
+        this.scheduledTaskWheelEnabled = scheduledTaskWheelEnabled;
+    }
+
+    /**
+     * Records the time the event loop was waiting for I/O. Must only be called from the event loop while
+     * {@link #isMetricsEnabled()} returns {@code true}.
+     */
+    @UnstableApi
+    protected final void recordIoWaitTime(long nanos) {
+        metric.recordIoWait(nanos);
+    }
+
+    /**
+     * Records the time the event loop spent spinning on a non-blocking wait for I/O. Must only be called from the
+     * event loop while {@link #isMetricsEnabled()} returns {@code true}.
+     */
+    @UnstableApi
+    protected final void recordBusyWaitTime(long nanos) {
+        metric.recordBusyWait(nanos);
+    }
+
+    /**
+     * Records the percentage of time the event loop currently gives to I/O. Must only be called from the event loop
+     * while {@link #isMetricsEnabled()} returns {@code true}.
+     */
+    @UnstableApi
+    protected final void recordIoRatio(int ioRatio) {
+        metric.recordIoRatio(ioRatio);
+    }
+
+    /**
+     * Records the time the event loop spent processing I/O events. Must only be called from the event loop while
+     * {@link #isMetricsEnabled()} returns {@code true}.
+     */
+    @UnstableApi
+    protected final void recordIoTime(long nanos) {
+        metric.recordIo(nanos);
+    }
+
     /**
      * Invoked before returning from {@link #runAllTasks()} and {@link #runAllTasks(long)}.在从runAllTasks()和runAllTasks(long)返回之前调用。
      */
@@ -462,12 +609,20 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      * Returns the amount of time left until the scheduled task with the closest dead line is executed.返回执行最近死线的计划任务之前所剩的时间量。
      */
     protected long delayNanos(long currentTimeNanos) {
-        ScheduledFutureTask<?> scheduledTask = peekScheduledTask();
-        if (scheduledTask == null) {
+        long deadlineNanos = nextScheduledTaskDeadlineNanos();
+        if (deadlineNanos == -1) {
             return SCHEDULE_PURGE_INTERVAL;
         }
 
-        return scheduledTask.delayNanos(currentTimeNanos);
+        return ScheduledFutureTask.deadlineToDelayNanos(deadlineNanos, currentTimeNanos);
+    }
+
+    @Override
+    PriorityQueue<ScheduledFutureTask<?>> newScheduledTaskQueue() {
+        if (scheduledTaskWheelEnabled) {
+            return new ScheduledTaskWheel(SCHEDULED_FUTURE_TASK_COMPARATOR, SCHEDULED_TASK_WHEEL_TICK_NANOS);
+        }
+        return super.newScheduledTaskQueue();
     }
 
     /**
@@ -0,0 +1,469 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link EventExecutorGroup} for handlers which block, like handlers which call JDBC, that runs the tasks on
+ * virtual threads if the JVM supports them.
+ * <p>
+ * Every {@link EventExecutor} returned by {@link #next()} executes its tasks in order, but not on a dedicated
+ * {@link Thread}. Whenever it has tasks to run it starts a new {@link Thread} which runs them until there are none
+ * left, so a blocking task only parks its virtual thread instead of occupying one of a fixed number of platform
+ * threads. As a handler which is added to the {@link io.netty.channel.ChannelPipeline} with this group gets its own
+ * {@link EventExecutor}, the tasks of one channel never run concurrently. {@link FastThreadLocal}s can be used by
+ * the tasks and are removed once the {@link Thread} is done.
+ * <p>
+ * Instead of virtual threads any {@link ThreadFactory} can be used to create a {@link Thread} per batch of tasks.
+ * If neither is available, as on JVMs before Java 19, it behaves like a {@link DefaultEventExecutorGroup}.
+ * <p>
+ * The {@link EventExecutor}s returned by {@link #next()} hand their scheduled tasks to the timer of the
+ * {@link GlobalEventExecutor}, which submits them to the {@link EventExecutor} once they are due. {@link #iterator()}
+ * does not return them, unless the group falls back to a {@link DefaultEventExecutorGroup}.
+ */
+@UnstableApi
+public final class VirtualThreadEventExecutorGroup extends AbstractEventExecutorGroup {
+
+    private static final InternalLogger logger =
+            InternalLoggerFactory.getInstance(VirtualThreadEventExecutorGroup.class);
+
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = newVirtualThreadFactory();
+
+    private final ThreadFactory threadFactory;
+    private final EventExecutorGroup fallback;
+
+    private final AtomicInteger runningExecutors = new AtomicInteger();
+    private final Promise<Void> terminationFuture = new DefaultPromise<Void>(GlobalEventExecutor.INSTANCE);
+    private volatile boolean shuttingDown;
+
+    private static ThreadFactory newVirtualThreadFactory() {
+        ThreadFactory factory = null;
+        if (PlatformDependent.javaVersion() >= 19) {
+            try {
+                // Thread.ofVirtual().name("virtualThreadEventExecutor-", 0).factory()
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                builder = builderClass.getMethod("name", String.class, long.class)
+                        .invoke(builder, "virtualThreadEventExecutor-", 0L);
+                factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+                // Fails if virtual threads are a preview feature which is not enabled.
+                factory.newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Do nothing.
+                    }
+                });
+            } catch (Throwable t) {
+                logger.debug("Virtual threads: unavailable", t);
+                factory = null;
+            }
+        }
+        logger.debug("Virtual threads: {}", factory != null ? "available" : "unavailable");
+        return factory;
+    }
+
+    /**
+     * Returns {@code true} if the JVM supports virtual threads, in which case the instances created with
+     * {@link #VirtualThreadEventExecutorGroup(int)} use them.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    /**
+     * Creates a new instance which uses virtual threads if the JVM supports them, or behaves like a
+     * {@link DefaultEventExecutorGroup} with the given number of threads otherwise.
+     */
+    public VirtualThreadEventExecutorGroup(int nFallbackThreads) {
+        if (VIRTUAL_THREAD_FACTORY != null) {
+            threadFactory = VIRTUAL_THREAD_FACTORY;
+            fallback = null;
+        } else {
+            threadFactory = null;
+            fallback = new DefaultEventExecutorGroup(nFallbackThreads);
+        }
+    }
+
+    /**
+     * Creates a new instance which uses the given {@link ThreadFactory} to create a new {@link Thread} for every
+     * batch of tasks, instead of virtual threads.
+     */
+    public VirtualThreadEventExecutorGroup(ThreadFactory threadFactory) {
+        this.threadFactory = ObjectUtil.checkNotNull(threadFactory, "threadFactory");
+        fallback = null;
+    }
+
+    @Override
+    public EventExecutor next() {
+        if (fallback != null) {
+            return fallback.next();
+        }
+        return new ThreadPerTaskOrderedEventExecutor(this);
+    }
+
+    @Override
+    public Iterator<EventExecutor> iterator() {
+        if (fallback != null) {
+            return fallback.iterator();
+        }
+        return Collections.<EventExecutor>emptyList().iterator();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        if (fallback != null) {
+            return fallback.isShuttingDown();
+        }
+        return shuttingDown;
+    }
+
+    /**
+     * Stops accepting new tasks and completes the {@link #terminationFuture()} once the tasks which were accepted
+     * before are done. Unless the group falls back to a {@link DefaultEventExecutorGroup} the quiet period is not
+     * used.
+     */
+    @Override
+    public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        if (fallback != null) {
+            return fallback.shutdownGracefully(quietPeriod, timeout, unit);
+        }
+        shuttingDown = true;
+        if (runningExecutors.get() == 0) {
+            terminationFuture.trySuccess(null);
+        }
+        return terminationFuture;
+    }
+
+    @Override
+    public Future<?> terminationFuture() {
+        if (fallback != null) {
+            return fallback.terminationFuture();
+        }
+        return terminationFuture;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void shutdown() {
+        if (fallback != null) {
+            fallback.shutdown();
+        } else {
+            shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public boolean isShutdown() {
+        if (fallback != null) {
+            return fallback.isShutdown();
+        }
+        return shuttingDown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminationFuture().isDone();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminationFuture().await(timeout, unit);
+    }
+
+    private void executorStarted() {
+        runningExecutors.incrementAndGet();
+    }
+
+    private void executorStopped() {
+        if (runningExecutors.decrementAndGet() == 0 && shuttingDown) {
+            terminationFuture.trySuccess(null);
+        }
+    }
+
+    private static final class ThreadPerTaskOrderedEventExecutor extends AbstractEventExecutor
+            implements OrderedEventExecutor, Runnable {
+
+        private static final int NONE = 0;
+        private static final int SUBMITTED = 1;
+        private static final int RUNNING = 2;
+
+        private final VirtualThreadEventExecutorGroup group;
+        // Not a MPSC queue, as there is one instance per channel and most of them are empty.
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        private final AtomicInteger state = new AtomicInteger();
+        private volatile Thread thread;
+
+        ThreadPerTaskOrderedEventExecutor(VirtualThreadEventExecutorGroup group) {
+            super(group);
+            this.group = group;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(SUBMITTED, RUNNING)) {
+                return;
+            }
+            thread = Thread.currentThread();
+            try {
+                for (;;) {
+                    Runnable task = tasks.poll();
+                    if (task == null) {
+                        // Cleared before NONE is published, as another thread may start running the tasks right
+                        // after that.
+                        thread = null;
+                        state.set(NONE);
+                        // A task may have been added after the last poll, while the state was still RUNNING.
+                        if (tasks.isEmpty() || !state.compareAndSet(NONE, RUNNING)) {
+                            break;
+                        }
+                        thread = Thread.currentThread();
+                        continue;
+                    }
+                    safeExecute(task);
+                }
+            } finally {
+                group.executorStopped();
+            }
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            ObjectUtil.checkNotNull(command, "command");
+            if (group.shuttingDown) {
+                throw new RejectedExecutionException("event executor terminated");
+            }
+            if (!tasks.offer(command)) {
+                throw new RejectedExecutionException();
+            }
+            if (state.compareAndSet(NONE, SUBMITTED)) {
+                group.executorStarted();
+                try {
+                    group.threadFactory.newThread(FastThreadLocalRunnable.wrap(this)).start();
+                } catch (Throwable cause) {
+                    tasks.remove(command);
+                    state.set(NONE);
+                    group.executorStopped();
+                    throw new RejectedExecutionException(cause);
+                }
+            }
+        }
+
+        @Override
+        public boolean inEventLoop(Thread thread) {
+            return thread == this.thread;
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            ObjectUtil.checkNotNull(command, "command");
+            ObjectUtil.checkNotNull(unit, "unit");
+            return schedule(new TimerTask<Void>(this, Executors.<Void>callable(command, null),
+                    deadlineNanos(unit.toNanos(delay)), 0));
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            ObjectUtil.checkNotNull(callable, "callable");
+            ObjectUtil.checkNotNull(unit, "unit");
+            return schedule(new TimerTask<V>(this, callable, deadlineNanos(unit.toNanos(delay)), 0));
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period,
+                                                      TimeUnit unit) {
+            ObjectUtil.checkNotNull(command, "command");
+            ObjectUtil.checkNotNull(unit, "unit");
+            if (initialDelay < 0) {
+                throw new IllegalArgumentException(
+                        String.format("initialDelay: %d (expected: >= 0)", initialDelay));
+            }
+            if (period <= 0) {
+                throw new IllegalArgumentException(
+                        String.format("period: %d (expected: > 0)", period));
+            }
+            return schedule(new TimerTask<Void>(this, Executors.<Void>callable(command, null),
+                    deadlineNanos(unit.toNanos(initialDelay)), unit.toNanos(period)));
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+                                                         TimeUnit unit) {
+            ObjectUtil.checkNotNull(command, "command");
+            ObjectUtil.checkNotNull(unit, "unit");
+            if (initialDelay < 0) {
+                throw new IllegalArgumentException(
+                        String.format("initialDelay: %d (expected: >= 0)", initialDelay));
+            }
+            if (delay <= 0) {
+                throw new IllegalArgumentException(
+                        String.format("delay: %d (expected: > 0)", delay));
+            }
+            return schedule(new TimerTask<Void>(this, Executors.<Void>callable(command, null),
+                    deadlineNanos(unit.toNanos(initialDelay)), -unit.toNanos(delay)));
+        }
+
+        private <V> ScheduledFuture<V> schedule(TimerTask<V> task) {
+            if (group.shuttingDown) {
+                throw new RejectedExecutionException("event executor terminated");
+            }
+            task.startTimer();
+            return task;
+        }
+
+        private static long deadlineNanos(long delayNanos) {
+            return System.nanoTime() + Math.max(0, delayNanos);
+        }
+
+        @Override
+        public boolean isShuttingDown() {
+            return group.isShuttingDown();
+        }
+
+        @Override
+        public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+            return group.shutdownGracefully(quietPeriod, timeout, unit);
+        }
+
+        @Override
+        public Future<?> terminationFuture() {
+            return group.terminationFuture();
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        public void shutdown() {
+            group.shutdown();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return group.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return group.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return group.awaitTermination(timeout, unit);
+        }
+    }
+
+    /**
+     * A task which is scheduled on a {@link ThreadPerTaskOrderedEventExecutor}. The timer of the
+     * {@link GlobalEventExecutor} submits it to the executor once it is due, as the executor has no thread which could
+     * wait for it.
+     */
+    private static final class TimerTask<V> extends PromiseTask<V> implements ScheduledFuture<V> {
+
+        // 0 for a one-shot task, > 0 for a task at a fixed rate and < 0 for a task with a fixed delay.
+        private final long periodNanos;
+        private volatile long deadlineNanos;
+        private volatile Future<?> timer;
+
+        private final Runnable submitTask = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executor().execute(TimerTask.this);
+                } catch (RejectedExecutionException e) {
+                    tryFailureInternal(e);
+                }
+            }
+        };
+
+        TimerTask(ThreadPerTaskOrderedEventExecutor executor, Callable<V> callable, long deadlineNanos,
+                  long periodNanos) {
+            super(executor, callable);
+            this.deadlineNanos = deadlineNanos;
+            this.periodNanos = periodNanos;
+        }
+
+        void startTimer() {
+            timer = GlobalEventExecutor.INSTANCE.schedule(
+                    submitTask, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (isCancelled()) {
+                // Cancelled before the timer was set.
+                timer.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (periodNanos == 0) {
+                super.run();
+                return;
+            }
+            try {
+                if (!isCancelled()) {
+                    task.call();
+                    if (!executor().isShutdown()) {
+                        long p = periodNanos;
+                        deadlineNanos = p > 0 ? deadlineNanos + p : System.nanoTime() - p;
+                        if (!isCancelled()) {
+                            startTimer();
+                        }
+                    }
+                }
+            } catch (Throwable cause) {
+                setFailureInternal(cause);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean canceled = super.cancel(mayInterruptIfRunning);
+            Future<?> timer = this.timer;
+            if (canceled && timer != null) {
+                timer.cancel(false);
+            }
+            return canceled;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            if (this == o) {
+                return 0;
+            }
+            long d = getDelay(TimeUnit.NANOSECONDS) - o.getDelay(TimeUnit.NANOSECONDS);
+            return d < 0 ? -1 : d > 0 ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link EventExecutorGroup} whose {@link #next()} returns {@link OrderedEventExecutor}s which execute their tasks in
+ * order, but are not pinned to a single thread.
+ * <p>
+ * Every {@link EventExecutor} returned by {@link #next()} has its own task queue. Once it has tasks it is queued on
+ * the thread it last ran on, which executes at most {@code maxBatchSize} of its tasks before it queues it again. A
+ * thread which has nothing to do steals whole {@link EventExecutor}s from the queues of the other threads, so a few
+ * busy channels whose handlers were added with this group are spread over all threads instead of saturating the
+ * thread they were assigned to, as it happens with a {@link DefaultEventExecutorGroup}.
+ * <p>
+ * The {@link EventExecutor}s returned by {@link #next()} do not support scheduling. The {@link EventExecutor}s
+ * returned by {@link #iterator()} are the threads of this group.
+ */
+@UnstableApi
+public final class WorkStealingEventExecutorGroup extends MultithreadEventExecutorGroup {
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+
+    private final Worker[] workers;
+    private final int maxBatchSize;
+
+    /**
+     * @see #WorkStealingEventExecutorGroup(int, ThreadFactory, int)
+     */
+    public WorkStealingEventExecutorGroup(int nThreads) {
+        this(nThreads, null);
+    }
+
+    /**
+     * @see #WorkStealingEventExecutorGroup(int, ThreadFactory, int)
+     */
+    public WorkStealingEventExecutorGroup(int nThreads, ThreadFactory threadFactory) {
+        this(nThreads, threadFactory, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param nThreads          the number of threads that will be used by this instance.
+     * @param threadFactory     the ThreadFactory to use, or {@code null} if the default should be used.
+     * @param maxBatchSize      the maximum number of tasks of one {@link EventExecutor} that are executed before a
+     *                          thread moves on to the next one.
+     */
+    public WorkStealingEventExecutorGroup(int nThreads, ThreadFactory threadFactory, int maxBatchSize) {
+        super(nThreads, threadFactory);
+        this.maxBatchSize = ObjectUtil.checkPositive(maxBatchSize, "maxBatchSize");
+        workers = new Worker[executorCount()];
+        int i = 0;
+        for (EventExecutor executor: this) {
+            Worker worker = (Worker) executor;
+            worker.index = i;
+            workers[i++] = worker;
+        }
+    }
+
+    @Override
+    protected EventExecutor newChild(Executor executor, Object... args) throws Exception {
+        return new Worker(this, executor);
+    }
+
+    @Override
+    public EventExecutor next() {
+        return new WorkStealingOrderedEventExecutor(this, (Worker) super.next(), maxBatchSize);
+    }
+
+    /**
+     * Removes an {@link EventExecutor} with pending tasks from the queue of another thread.
+     */
+    private WorkStealingOrderedEventExecutor steal(Worker thief) {
+        final Worker[] workers = this.workers;
+        final int start = thief.index + 1;
+        for (int i = 0; i < workers.length - 1; i++) {
+            WorkStealingOrderedEventExecutor executor = workers[(start + i) % workers.length].readyQueue.poll();
+            if (executor != null) {
+                return executor;
+            }
+        }
+        return null;
+    }
+
+    private boolean hasReadyExecutors() {
+        for (Worker worker: workers) {
+            if (!worker.readyQueue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wakes up a waiting thread other than the given busy one, so that it steals from it.
+     */
+    private void wakeupThief(Worker busy) {
+        for (Worker worker: workers) {
+            if (worker != busy && worker.wakeupIfWaiting()) {
+                return;
+            }
+        }
+    }
+
+    private static final class Worker extends SingleThreadEventExecutor {
+
+        private static final Runnable WAKEUP_TASK = new Runnable() {
+            @Override
+            public void run() {
+                // Do nothing.
+            }
+        };
+
+        private final WorkStealingEventExecutorGroup group;
+        // Set by the group before the thread is started.
+        private int index;
+        private final Queue<WorkStealingOrderedEventExecutor> readyQueue =
+                new ConcurrentLinkedQueue<WorkStealingOrderedEventExecutor>();
+        // true until the thread was started, and while it waits for work.
+        private final AtomicBoolean waiting = new AtomicBoolean(true);
+
+        Worker(WorkStealingEventExecutorGroup group, Executor executor) {
+            super(group, executor, true);
+            this.group = group;
+        }
+
+        void ready(WorkStealingOrderedEventExecutor executor) {
+            readyQueue.offer(executor);
+            if (!wakeupIfWaiting()) {
+                group.wakeupThief(this);
+            }
+        }
+
+        boolean wakeupIfWaiting() {
+            if (waiting.compareAndSet(true, false)) {
+                try {
+                    execute(WAKEUP_TASK);
+                } catch (RejectedExecutionException ignore) {
+                    // Shutting down.
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        protected void run() {
+            for (;;) {
+                WorkStealingOrderedEventExecutor executor = readyQueue.poll();
+                if (executor == null) {
+                    executor = group.steal(this);
+                }
+                if (executor != null) {
+                    executor.run(this);
+                    if (hasTasks()) {
+                        runAllTasks(0);
+                    }
+                    updateLastExecutionTime();
+                } else {
+                    waiting.set(true);
+                    if (group.hasReadyExecutors()) {
+                        waiting.set(false);
+                        continue;
+                    }
+                    Runnable task = takeTask();
+                    waiting.set(false);
+                    if (task != null) {
+                        runTask(task);
+                        updateLastExecutionTime();
+                    }
+                }
+
+                if (confirmShutdown()) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static final class WorkStealingOrderedEventExecutor extends AbstractEventExecutor
+            implements OrderedEventExecutor {
+
+        private static final int NONE = 0;
+        private static final int SUBMITTED = 1;
+        private static final int RUNNING = 2;
+
+        private final Queue<Runnable> tasks = PlatformDependent.newMpscQueue();
+        private final AtomicInteger state = new AtomicInteger();
+        private final int maxBatchSize;
+        // The thread the tasks were queued on last.
+        private volatile Worker worker;
+        private volatile Thread thread;
+
+        WorkStealingOrderedEventExecutor(WorkStealingEventExecutorGroup group, Worker worker, int maxBatchSize) {
+            super(group);
+            this.worker = worker;
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        void run(Worker worker) {
+            if (!state.compareAndSet(SUBMITTED, RUNNING)) {
+                return;
+            }
+            this.worker = worker;
+            thread = Thread.currentThread();
+            int i = 0;
+            try {
+                for (; i < maxBatchSize; i++) {
+                    Runnable task = tasks.poll();
+                    if (task == null) {
+                        break;
+                    }
+                    safeExecute(task);
+                }
+            } finally {
+                thread = null;
+                if (i == maxBatchSize) {
+                    // Queue again so that other executors get their turn, or another thread steals this one.
+                    state.set(SUBMITTED);
+                    worker.ready(this);
+                } else {
+                    state.set(NONE);
+                    // A task may have been added after the last poll, while the state was still RUNNING.
+                    if (!tasks.isEmpty() && state.compareAndSet(NONE, SUBMITTED)) {
+                        worker.ready(this);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean inEventLoop(Thread thread) {
+            return thread == this.thread;
+        }
+
+        @Override
+        public boolean isShuttingDown() {
+            return parent().isShuttingDown();
+        }
+
+        @Override
+        public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+            return parent().shutdownGracefully(quietPeriod, timeout, unit);
+        }
+
+        @Override
+        public Future<?> terminationFuture() {
+            return parent().terminationFuture();
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        public void shutdown() {
+            parent().shutdown();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return parent().isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return parent().isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return parent().awaitTermination(timeout, unit);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            ObjectUtil.checkNotNull(command, "command");
+            final Worker worker = this.worker;
+            if (worker.isShutdown()) {
+                throw new RejectedExecutionException("event executor terminated");
+            }
+            if (!tasks.offer(command)) {
+                throw new RejectedExecutionException();
+            }
+            if (state.compareAndSet(NONE, SUBMITTED)) {
+                worker.ready(this);
+            }
+        }
+    }
+}
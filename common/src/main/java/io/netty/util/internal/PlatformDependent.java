@@ -17,10 +17,12 @@ package io.netty.util.internal;
 
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
+import org.jctools.queues.MpmcArrayQueue;
 import org.jctools.queues.MpscArrayQueue;
 import org.jctools.queues.MpscChunkedArrayQueue;
 import org.jctools.queues.MpscUnboundedArrayQueue;
 import org.jctools.queues.SpscLinkedQueue;
+import org.jctools.queues.atomic.MpmcAtomicArrayQueue;
 import org.jctools.queues.atomic.MpscAtomicArrayQueue;
 import org.jctools.queues.atomic.MpscGrowableAtomicArrayQueue;
 import org.jctools.queues.atomic.MpscUnboundedAtomicArrayQueue;
@@ -420,6 +422,14 @@ public final class PlatformDependent {
         return PlatformDependent0.getInt(address);
     }
 
+    /**
+     * Reads the {@code int} at the given native memory address with volatile semantics, for memory which is shared
+     * with the kernel or another process.
+     */
+    public static int getIntVolatile(long address) {
+        return PlatformDependent0.getIntVolatile(address);
+    }
+
     public static long getLong(long address) {
         return PlatformDependent0.getLong(address);
     }
@@ -548,6 +558,14 @@ public final class PlatformDependent {
         PlatformDependent0.putInt(address, value);
     }
 
+    /**
+     * Writes the {@code int} to the given native memory address with release semantics, so all writes before are
+     * visible to whoever reads the value.
+     */
+    public static void putIntOrdered(long address, int value) {
+        PlatformDependent0.putIntOrdered(address, value);
+    }
+
     public static void putLong(long address, long value) {
         PlatformDependent0.putLong(address, value);
     }
@@ -662,6 +680,22 @@ public final class PlatformDependent {
         return USE_DIRECT_BUFFER_NO_CLEANER;
     }
 
+    /**
+     * Returns the number of bytes of direct memory that were allocated via {@link #allocateDirectNoCleaner(int)} and
+     * not released yet, or {@code -1} if the direct memory usage is not tracked.
+     */
+    public static long usedDirectMemory() {
+        return DIRECT_MEMORY_COUNTER != null ? DIRECT_MEMORY_COUNTER.get() : -1;
+    }
+
+    /**
+     * Returns the maximum number of bytes that can be allocated via {@link #allocateDirectNoCleaner(int)} before an
+     * {@link OutOfDirectMemoryError} is thrown, or {@code -1} if the direct memory usage is not tracked.
+     */
+    public static long directMemoryLimit() {
+        return DIRECT_MEMORY_COUNTER != null ? DIRECT_MEMORY_LIMIT : -1;
+    }
+
     /**
      * Compare two {@code byte} arrays for equality. For performance reasons no bounds checking on the
      * parameters is performed.
@@ -906,6 +940,14 @@ public final class PlatformDependent {
         return hasUnsafe() ? new MpscArrayQueue<T>(capacity) : new MpscAtomicArrayQueue<T>(capacity);
     }
 
+    /**
+     * Create a new {@link Queue} which is safe to use for multiple producers (different threads) and multiple
+     * consumers (different threads) with the given fixes {@code capacity}.
+     */
+    public static <T> Queue<T> newFixedMpmcQueue(int capacity) {
+        return hasUnsafe() ? new MpmcArrayQueue<T>(capacity) : new MpmcAtomicArrayQueue<T>(capacity);
+    }
+
     /**
      * Return the {@link ClassLoader} for the given {@link Class}.
      */
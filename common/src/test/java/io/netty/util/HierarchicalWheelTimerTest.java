@@ -0,0 +1,163 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HierarchicalWheelTimerTest {
+
+    @Test
+    public void testScheduleTimeoutShouldNotRunBeforeDelay() throws InterruptedException {
+        final Timer timer = new HierarchicalWheelTimer();
+        final CountDownLatch barrier = new CountDownLatch(1);
+        final Timeout timeout = timer.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) throws Exception {
+                fail("This should not have run");
+                barrier.countDown();
+            }
+        }, 10, TimeUnit.SECONDS);
+        assertFalse(barrier.await(3, TimeUnit.SECONDS));
+        assertFalse("timer should not expire", timeout.isExpired());
+        timer.stop();
+    }
+
+    @Test(timeout = 10000)
+    public void testExpiresAcrossWheels() throws InterruptedException {
+        // Small wheels, so the timeouts are moved down through several of them.
+        final HierarchicalWheelTimer timer = new HierarchicalWheelTimer(
+                Executors.defaultThreadFactory(), 1, TimeUnit.MILLISECONDS, 4);
+        final int scheduledTasks = 10000;
+        final CountDownLatch latch = new CountDownLatch(scheduledTasks);
+        final AtomicInteger early = new AtomicInteger();
+        Random random = new Random();
+        for (int i = 0; i < scheduledTasks; i++) {
+            final long start = System.nanoTime();
+            final long delay = random.nextInt(2000);
+            timer.newTimeout(new TimerTask() {
+                @Override
+                public void run(Timeout timeout) throws Exception {
+                    if (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(delay)) {
+                        early.incrementAndGet();
+                    }
+                    latch.countDown();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        latch.await();
+        assertEquals(0, early.get());
+        assertEquals(0, timer.pendingTimeouts());
+        timer.stop();
+    }
+
+    @Test(timeout = 3000)
+    public void testStopTimer() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(3);
+        final Timer timerProcessed = new HierarchicalWheelTimer(10, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 3; i ++) {
+            timerProcessed.newTimeout(createCountDownLatchTimerTask(latch), 1, TimeUnit.MILLISECONDS);
+        }
+
+        latch.await();
+        assertEquals("Number of unprocessed timeouts should be 0", 0, timerProcessed.stop().size());
+
+        final Timer timerUnprocessed = new HierarchicalWheelTimer(10, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 5; i ++) {
+            timerUnprocessed.newTimeout(createNoOpTimerTask(), 5, TimeUnit.SECONDS);
+        }
+        Thread.sleep(100);
+        assertEquals(5, timerUnprocessed.stop().size());
+    }
+
+    @Test(timeout = 3000)
+    public void testTimerShouldThrowExceptionAfterShutdownForNewTimeouts() {
+        final Timer timer = new HierarchicalWheelTimer();
+        timer.newTimeout(createNoOpTimerTask(), 1, TimeUnit.MILLISECONDS);
+        timer.stop();
+
+        try {
+            timer.newTimeout(createNoOpTimerTask(), 1, TimeUnit.MILLISECONDS);
+            fail("Expected exception didn't occur.");
+        } catch (IllegalStateException ignored) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRejectedExecutionExceptionWhenTooManyTimeoutsAreAddedBackToBack() {
+        HierarchicalWheelTimer timer = new HierarchicalWheelTimer(Executors.defaultThreadFactory(), 100,
+            TimeUnit.MILLISECONDS, 32, true, 2);
+        timer.newTimeout(createNoOpTimerTask(), 5, TimeUnit.SECONDS);
+        timer.newTimeout(createNoOpTimerTask(), 5, TimeUnit.SECONDS);
+        try {
+            timer.newTimeout(createNoOpTimerTask(), 1, TimeUnit.MILLISECONDS);
+            fail("Timer allowed adding 3 timeouts when maxPendingTimeouts was 2");
+        } catch (RejectedExecutionException e) {
+            // Expected
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Test(timeout = 3000)
+    public void reportPendingTimeouts() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final HierarchicalWheelTimer timer = new HierarchicalWheelTimer(10, TimeUnit.MILLISECONDS);
+        final Timeout t1 = timer.newTimeout(createNoOpTimerTask(), 100, TimeUnit.MINUTES);
+        final Timeout t2 = timer.newTimeout(createNoOpTimerTask(), 100, TimeUnit.DAYS);
+        timer.newTimeout(createCountDownLatchTimerTask(latch), 90, TimeUnit.MILLISECONDS);
+
+        assertEquals(3, timer.pendingTimeouts());
+        assertTrue(t1.cancel());
+        assertTrue(t2.cancel());
+        latch.await();
+
+        // The cancellations are processed on the next tick.
+        while (timer.pendingTimeouts() != 0) {
+            Thread.sleep(10);
+        }
+        assertTrue(timer.stop().isEmpty());
+    }
+
+    private static TimerTask createNoOpTimerTask() {
+        return new TimerTask() {
+            @Override
+            public void run(final Timeout timeout) throws Exception {
+            }
+        };
+    }
+
+    private static TimerTask createCountDownLatchTimerTask(final CountDownLatch latch) {
+        return new TimerTask() {
+            @Override
+            public void run(final Timeout timeout) throws Exception {
+                latch.countDown();
+            }
+        };
+    }
+}
@@ -245,6 +245,97 @@ public class RecyclerTest {
                 " internally", array.length - maxCapacity / 2 <= instancesCount.get());
     }
 
+    private static Recycler<HandledObject> newSharedPoolRecycler(int max, final AtomicInteger instancesCount) {
+        return new Recycler<HandledObject>(max, 2, 1, 0, true) {
+            @Override
+            protected HandledObject newObject(Recycler.Handle<HandledObject> handle) {
+                instancesCount.incrementAndGet();
+                return new HandledObject(handle);
+            }
+        };
+    }
+
+    @Test
+    public void testRecycleAtDifferentThreadWithSharedPool() throws Exception {
+        final Recycler<HandledObject> recycler = newSharedPoolRecycler(256, new AtomicInteger());
+        final HandledObject o = recycler.get();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                o.recycle();
+            }
+        };
+        thread.start();
+        thread.join();
+
+        // The object can be taken by any thread, not only by the one that created it.
+        final AtomicReference<HandledObject> reference = new AtomicReference<HandledObject>();
+        thread = new Thread() {
+            @Override
+            public void run() {
+                HandledObject object = recycler.get();
+                reference.set(object);
+                // Recycled by the thread that took it.
+                object.recycle();
+                assertEquals(1, recycler.threadLocalSize());
+            }
+        };
+        thread.start();
+        thread.join();
+        assertSame(o, reference.get());
+    }
+
+    @Test
+    public void testMultipleRecycleAtDifferentThreadWithSharedPool() throws Exception {
+        Recycler<HandledObject> recycler = newSharedPoolRecycler(256, new AtomicInteger());
+        final HandledObject object = recycler.get();
+        final AtomicReference<Throwable> exceptionStore = new AtomicReference<Throwable>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                object.recycle();
+                try {
+                    object.recycle();
+                } catch (Throwable cause) {
+                    exceptionStore.set(cause);
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertTrue(exceptionStore.get() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testSharedPoolIsBounded() throws Exception {
+        final int maxCapacity = 32;
+        final AtomicInteger instancesCount = new AtomicInteger();
+        final Recycler<HandledObject> recycler = newSharedPoolRecycler(maxCapacity, instancesCount);
+
+        final HandledObject[] array = new HandledObject[1024];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = recycler.get();
+        }
+        instancesCount.set(0);
+
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                for (HandledObject object: array) {
+                    object.recycle();
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+
+        for (int i = 0; i < array.length; i++) {
+            recycler.get();
+        }
+        // A single thread recycles into a single stripe which holds maxCapacity / maxSharedCapacityFactor objects.
+        assertEquals(array.length - maxCapacity / 2, instancesCount.get());
+    }
+
     static final class HandledObject {
         Recycler.Handle<HandledObject> handle;
 
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.PriorityQueue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs a {@link SingleThreadEventExecutor} which keeps its scheduled tasks in a {@link ScheduledTaskWheel}.
+ */
+public class ScheduledTaskWheelEventExecutorTest {
+
+    private DefaultEventExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new DefaultEventExecutor();
+        executor.setScheduledTaskWheelEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS).syncUninterruptibly();
+    }
+
+    @Test(timeout = 10000)
+    public void testWheelIsUsed() throws Exception {
+        assertTrue(executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return executor.scheduledTaskQueue() instanceof ScheduledTaskWheel;
+            }
+        }).get());
+    }
+
+    @Test(timeout = 10000)
+    public void testCannotBeEnabledAfterScheduling() throws Exception {
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // NOOP
+            }
+        }, 1, TimeUnit.MILLISECONDS).sync();
+        try {
+            executor.setScheduledTaskWheelEnabled(false);
+            fail();
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        assertTrue(executor.isScheduledTaskWheelEnabled());
+    }
+
+    @Test(timeout = 10000)
+    public void testTasksDoNotRunBeforeDeadline() throws Exception {
+        // takeTask() only waits until the start of the bucket of a task, which is earlier than its deadline.
+        final int numTasks = 20;
+        final CountDownLatch latch = new CountDownLatch(numTasks);
+        final List<ScheduledFutureTask<?>> tasks = new ArrayList<ScheduledFutureTask<?>>();
+        final long[] runNanos = new long[numTasks];
+        final List<Integer> order = new ArrayList<Integer>();
+        for (int i = 0; i < numTasks; i++) {
+            final int index = i;
+            tasks.add((ScheduledFutureTask<?>) executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    runNanos[index] = ScheduledFutureTask.nanoTime();
+                    order.add(index);
+                    latch.countDown();
+                }
+            }, 7 * (numTasks - i) + 3, TimeUnit.MILLISECONDS));
+        }
+        latch.await();
+
+        for (int i = 0; i < numTasks; i++) {
+            long deadlineNanos = tasks.get(i).deadlineNanos();
+            assertTrue("task " + i + " ran " + (deadlineNanos - runNanos[i]) + "ns early",
+                    runNanos[i] >= deadlineNanos);
+            assertEquals(numTasks - 1 - i, (int) order.get(i));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testDelayNanosIsLowerBound() throws Exception {
+        final ScheduledFutureTask<?> task = (ScheduledFutureTask<?>) executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // NOOP
+            }
+        }, 10, TimeUnit.SECONDS);
+
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                long now = ScheduledFutureTask.nanoTime();
+                long delayNanos = executor.delayNanos(now);
+                assertTrue(delayNanos >= 0);
+                assertTrue(delayNanos <= task.delayNanos(now));
+                assertTrue(executor.nextScheduledTaskNano() <= task.delayNanos());
+                // Not due yet, so it must not be handed out even if the lower bound was reached.
+                assertNull(executor.pollScheduledTask(now));
+            }
+        }).sync();
+        assertTrue(task.cancel(false));
+    }
+
+    @Test(timeout = 10000)
+    public void testCancelFromOtherThread() throws Exception {
+        final AtomicBoolean cancelledTaskRun = new AtomicBoolean();
+        final ScheduledFuture<?> cancelled = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                cancelledTaskRun.set(true);
+            }
+        }, 500, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> later = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // NOOP
+            }
+        }, 600, TimeUnit.MILLISECONDS);
+
+        assertTrue(cancelled.cancel(false));
+        // The removal is queued before this task, so the cancelled task is neither linked nor counted anymore.
+        assertTrue(executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                PriorityQueue<ScheduledFutureTask<?>> queue = executor.scheduledTaskQueue();
+                return !queue.contains(cancelled) && queue.size() == 1;
+            }
+        }).get());
+
+        later.sync();
+        assertFalse(cancelledTaskRun.get());
+        assertTrue(cancelled.isCancelled());
+        assertEquals(0, executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return executor.scheduledTaskQueue().size();
+            }
+        }).get().intValue());
+    }
+
+    @Test(timeout = 10000)
+    public void testShutdownCancelsPendingWheelTasks() throws Exception {
+        final AtomicBoolean taskRun = new AtomicBoolean();
+        List<ScheduledFuture<?>> futures = new ArrayList<ScheduledFuture<?>>();
+        for (int i = 1; i <= 10; i++) {
+            futures.add(executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    taskRun.set(true);
+                }
+            }, i, TimeUnit.MINUTES));
+        }
+
+        assertTrue(executor.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS).await(5, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+        for (ScheduledFuture<?> future : futures) {
+            assertTrue(future.isCancelled());
+        }
+        assertFalse(taskRun.get());
+    }
+}
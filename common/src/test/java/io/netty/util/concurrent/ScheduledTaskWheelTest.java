@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ScheduledTaskWheelTest {
+
+    private static final Callable<Void> NOOP = new Callable<Void>() {
+        @Override
+        public Void call() {
+            return null;
+        }
+    };
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private DefaultEventExecutor executor;
+    private ScheduledTaskWheel wheel;
+
+    @Before
+    public void setUp() {
+        executor = new DefaultEventExecutor();
+        wheel = new ScheduledTaskWheel(AbstractScheduledEventExecutor.SCHEDULED_FUTURE_TASK_COMPARATOR, TICK_NANOS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS);
+    }
+
+    private ScheduledFutureTask<Void> newTask(long delay, TimeUnit unit) {
+        return new ScheduledFutureTask<Void>(
+                executor, NOOP, ScheduledFutureTask.deadlineNanos(unit.toNanos(delay)));
+    }
+
+    @Test(timeout = 10000)
+    public void testTasksAreReturnedInOrderOnceDue() throws Exception {
+        Random random = new Random(42);
+        List<ScheduledFutureTask<Void>> tasks = new ArrayList<ScheduledFutureTask<Void>>();
+        for (int i = 0; i < 1000; i++) {
+            ScheduledFutureTask<Void> task = newTask(random.nextInt(200), TimeUnit.MILLISECONDS);
+            tasks.add(task);
+            assertTrue(wheel.offer(task));
+        }
+        assertEquals(tasks.size(), wheel.size());
+        Collections.sort(tasks, AbstractScheduledEventExecutor.SCHEDULED_FUTURE_TASK_COMPARATOR);
+
+        int next = 0;
+        while (next < tasks.size()) {
+            long deadlineNanos = wheel.nextDeadlineNanos();
+            assertTrue(deadlineNanos <= tasks.get(next).deadlineNanos());
+            ScheduledFutureTask<?> task = wheel.peek();
+            if (task == null) {
+                Thread.sleep(1);
+                continue;
+            }
+            assertTrue(task.deadlineNanos() <= ScheduledFutureTask.nanoTime() + TICK_NANOS);
+            assertSame(tasks.get(next++), wheel.poll());
+        }
+        assertEquals(0, wheel.size());
+        assertEquals(-1, wheel.nextDeadlineNanos());
+    }
+
+    @Test
+    public void testFarFutureTasksStayOnWheel() {
+        ScheduledFutureTask<Void> task = newTask(1, TimeUnit.HOURS);
+        wheel.offer(task);
+        assertNull(wheel.peek());
+        assertEquals(1, wheel.size());
+        assertTrue(wheel.containsTyped(task));
+
+        long deadlineNanos = wheel.nextDeadlineNanos();
+        assertTrue(deadlineNanos > ScheduledFutureTask.nanoTime());
+        assertTrue(deadlineNanos <= task.deadlineNanos());
+
+        assertTrue(wheel.removeTyped(task));
+        assertFalse(wheel.containsTyped(task));
+        assertFalse(wheel.removeTyped(task));
+        assertEquals(0, wheel.size());
+        assertEquals(-1, wheel.nextDeadlineNanos());
+    }
+
+    @Test
+    public void testPastDeadlineIsDueImmediately() {
+        ScheduledFutureTask<Void> task = new ScheduledFutureTask<Void>(executor, NOOP, 0);
+        wheel.offer(task);
+        assertSame(task, wheel.peek());
+        assertEquals(0, wheel.nextDeadlineNanos());
+        assertSame(task, wheel.poll());
+        assertNull(wheel.poll());
+    }
+
+    @Test(timeout = 10000)
+    public void testCancelledTasksAreDropped() throws Exception {
+        ScheduledFutureTask<Void> cancelled = newTask(5, TimeUnit.MILLISECONDS);
+        ScheduledFutureTask<Void> task = newTask(10, TimeUnit.MILLISECONDS);
+        wheel.offer(cancelled);
+        wheel.offer(task);
+        assertTrue(cancelled.cancelWithoutRemove(false));
+
+        ScheduledFutureTask<?> next;
+        while ((next = wheel.poll()) == null) {
+            Thread.sleep(1);
+        }
+        assertSame(task, next);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testToArrayAndClear() {
+        ScheduledFutureTask<Void> due = new ScheduledFutureTask<Void>(executor, NOOP, 0);
+        ScheduledFutureTask<Void> minute = newTask(1, TimeUnit.MINUTES);
+        ScheduledFutureTask<Void> day = newTask(1, TimeUnit.DAYS);
+        wheel.offer(due);
+        wheel.offer(minute);
+        wheel.offer(day);
+
+        ScheduledFutureTask<?>[] tasks = wheel.toArray(new ScheduledFutureTask<?>[0]);
+        assertEquals(3, tasks.length);
+
+        wheel.clearIgnoringIndexes();
+        assertEquals(0, wheel.size());
+        assertFalse(wheel.containsTyped(minute));
+        assertFalse(wheel.containsTyped(day));
+        assertEquals(-1, wheel.nextDeadlineNanos());
+    }
+
+    @Test
+    public void testPriorityChanged() {
+        ScheduledFutureTask<Void> task = newTask(1, TimeUnit.HOURS);
+        wheel.offer(task);
+        wheel.priorityChanged(task);
+        assertEquals(1, wheel.size());
+        assertTrue(wheel.containsTyped(task));
+    }
+}
@@ -72,6 +72,78 @@ public class SingleThreadEventExecutorTest {
         }
     }
 
+    @Test(timeout = 10000)
+    public void testMetrics() throws Exception {
+        DefaultEventExecutorGroup group = new DefaultEventExecutorGroup(2);
+        try {
+            SingleThreadEventExecutor executor = (SingleThreadEventExecutor) group.next();
+            Assert.assertFalse(executor.isMetricsEnabled());
+            executor.submit(new SleepingTask(1)).sync();
+            Assert.assertEquals(0, executor.metric().completedTasks());
+
+            group.setMetricsEnabled(true);
+            Assert.assertTrue(executor.isMetricsEnabled());
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // Noop.
+                }
+            }).sync();
+            executor.submit(new SleepingTask(20)).sync();
+
+            EventExecutorMetric metric = executor.metric();
+            // The promise is completed before the task returns, so it may not be recorded yet.
+            while (metric.completedTasks() != 2) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(metric.longestTaskTime() >= TimeUnit.MILLISECONDS.toNanos(20));
+            Assert.assertTrue(metric.taskTime() >= metric.longestTaskTime());
+            // Submitted tasks are wrapped in a PromiseTask.
+            Assert.assertEquals(PromiseTask.class.getName(), metric.longestTask());
+            long[] histogram = metric.taskTimeHistogram();
+            Assert.assertEquals(EventExecutorMetric.HISTOGRAM_BUCKETS, histogram.length);
+            Assert.assertEquals(1, histogram[DefaultEventExecutorMetric.bucket(metric.longestTaskTime())]);
+            long sum = 0;
+            for (long count: histogram) {
+                sum += count;
+            }
+            Assert.assertEquals(2, sum);
+
+            Assert.assertEquals(2, group.metric().completedTasks());
+            Assert.assertEquals(metric.longestTaskTime(), group.metric().longestTaskTime());
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        Assert.assertEquals(0, DefaultEventExecutorMetric.bucket(999));
+        Assert.assertEquals(1, DefaultEventExecutorMetric.bucket(1000));
+        Assert.assertEquals(1, DefaultEventExecutorMetric.bucket(1999));
+        Assert.assertEquals(2, DefaultEventExecutorMetric.bucket(2000));
+        Assert.assertEquals(10, DefaultEventExecutorMetric.bucket(TimeUnit.MILLISECONDS.toNanos(1)));
+        Assert.assertEquals(EventExecutorMetric.HISTOGRAM_BUCKETS - 1,
+                DefaultEventExecutorMetric.bucket(Long.MAX_VALUE));
+    }
+
+    private static final class SleepingTask implements Runnable {
+        private final long millis;
+
+        SleepingTask(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     @Test
     public void testThreadProperties() {
         final AtomicReference<Thread> threadRef = new AtomicReference<Thread>();
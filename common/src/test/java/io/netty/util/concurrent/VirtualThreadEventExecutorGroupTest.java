@@ -0,0 +1,217 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VirtualThreadEventExecutorGroupTest {
+
+    @Test(timeout = 10000)
+    public void testOrderingWithThreadFactory() throws Throwable {
+        testOrdering(new VirtualThreadEventExecutorGroup(new DefaultThreadFactory("test")));
+    }
+
+    @Test(timeout = 10000)
+    public void testOrdering() throws Throwable {
+        // Uses virtual threads or falls back to a DefaultEventExecutorGroup, depending on the JVM.
+        testOrdering(new VirtualThreadEventExecutorGroup(4));
+    }
+
+    private static void testOrdering(EventExecutorGroup group) throws Throwable {
+        try {
+            final AtomicReference<Throwable> cause = new AtomicReference<Throwable>();
+            final int tasks = 1000;
+            final CountDownLatch latch = new CountDownLatch(tasks * 8);
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int i = 0; i < 8; i++) {
+                final EventExecutor executor = group.next();
+                assertTrue(executor instanceof OrderedEventExecutor);
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        final AtomicInteger last = new AtomicInteger();
+                        for (int id = 1; id <= tasks; id++) {
+                            final int expected = id;
+                            executor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (!executor.inEventLoop()) {
+                                        cause.compareAndSet(null, new AssertionError("Not in event loop"));
+                                    }
+                                    if (!last.compareAndSet(expected - 1, expected)) {
+                                        cause.compareAndSet(null, new AssertionError(
+                                                "Out of order execution id(" + expected + "), lastId(" + last + ')'));
+                                    }
+                                    latch.countDown();
+                                }
+                            });
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            latch.await();
+            assertNull(cause.get());
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFastThreadLocalIsRemoved() throws Exception {
+        final CountDownLatch removed = new CountDownLatch(1);
+        final FastThreadLocal<String> threadLocal = new FastThreadLocal<String>() {
+            @Override
+            protected void onRemoval(String value) {
+                removed.countDown();
+            }
+        };
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(new DefaultThreadFactory("test"));
+        try {
+            String value = group.next().submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    threadLocal.set("value");
+                    return threadLocal.get();
+                }
+            }).syncUninterruptibly().getNow();
+            assertEquals("value", value);
+            removed.await();
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testShutdownWaitsForTasks() throws Exception {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(new DefaultThreadFactory("test"));
+        EventExecutor executor = group.next();
+        final CountDownLatch unblock = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Future<?> terminationFuture = group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        assertTrue(group.isShuttingDown());
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // Do nothing.
+                }
+            });
+            fail();
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+        assertFalse(terminationFuture.isDone());
+        unblock.countDown();
+        terminationFuture.syncUninterruptibly();
+        assertTrue(group.isTerminated());
+    }
+
+    @Test(timeout = 10000)
+    public void testSchedule() throws Exception {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(new DefaultThreadFactory("test"));
+        try {
+            final EventExecutor executor = group.next();
+            long start = System.nanoTime();
+            ScheduledFuture<Boolean> future = executor.schedule(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return executor.inEventLoop();
+                }
+            }, 100, TimeUnit.MILLISECONDS);
+            assertTrue(future.getDelay(TimeUnit.MILLISECONDS) > 0);
+            assertTrue(future.get());
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testScheduleAtFixedRateAndCancel() throws Exception {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(new DefaultThreadFactory("test"));
+        try {
+            final EventExecutor executor = group.next();
+            final CountDownLatch latch = new CountDownLatch(3);
+            final AtomicInteger runs = new AtomicInteger();
+            ScheduledFuture<?> future = executor.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    assertTrue(executor.inEventLoop());
+                    runs.incrementAndGet();
+                    latch.countDown();
+                }
+            }, 0, 10, TimeUnit.MILLISECONDS);
+            latch.await();
+            assertTrue(future.cancel(false));
+            assertTrue(future.isCancelled());
+            // The submitted task may still run once, but it is not scheduled again.
+            Thread.sleep(50);
+            int count = runs.get();
+            Thread.sleep(50);
+            assertEquals(count, runs.get());
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCancelScheduled() throws Exception {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(new DefaultThreadFactory("test"));
+        try {
+            final AtomicInteger runs = new AtomicInteger();
+            ScheduledFuture<?> future = group.next().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    runs.incrementAndGet();
+                }
+            }, 50, TimeUnit.MILLISECONDS);
+            assertTrue(future.cancel(false));
+            Thread.sleep(100);
+            assertEquals(0, runs.get());
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WorkStealingEventExecutorGroupTest {
+
+    @Test(timeout = 10000)
+    public void testOrdering() throws Throwable {
+        final WorkStealingEventExecutorGroup group = new WorkStealingEventExecutorGroup(4, null, 16);
+        try {
+            final AtomicReference<Throwable> cause = new AtomicReference<Throwable>();
+            final int tasks = 10000;
+            final CountDownLatch latch = new CountDownLatch(tasks * 8);
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int i = 0; i < 8; i++) {
+                final EventExecutor executor = group.next();
+                assertTrue(executor instanceof OrderedEventExecutor);
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        final AtomicInteger last = new AtomicInteger();
+                        for (int id = 1; id <= tasks; id++) {
+                            final int expected = id;
+                            executor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (!executor.inEventLoop()) {
+                                        cause.compareAndSet(null, new AssertionError("Not in event loop"));
+                                    }
+                                    if (!last.compareAndSet(expected - 1, expected)) {
+                                        cause.compareAndSet(null, new AssertionError(
+                                                "Out of order execution id(" + expected + "), lastId(" + last + ')'));
+                                    }
+                                    latch.countDown();
+                                }
+                            });
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            latch.await();
+            assertNull(cause.get());
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleThreadStealsFromBusyThread() throws Exception {
+        final WorkStealingEventExecutorGroup group = new WorkStealingEventExecutorGroup(2);
+        try {
+            // The first and the third executor are assigned to the same thread.
+            EventExecutor blocked = group.next();
+            group.next();
+            EventExecutor stolen = group.next();
+
+            final CountDownLatch unblock = new CountDownLatch(1);
+            final CountDownLatch blocking = new CountDownLatch(1);
+            blocked.execute(new Runnable() {
+                @Override
+                public void run() {
+                    blocking.countDown();
+                    try {
+                        unblock.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            blocking.await();
+
+            final CountDownLatch done = new CountDownLatch(1);
+            stolen.execute(new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+            try {
+                assertTrue(done.await(5, TimeUnit.SECONDS));
+            } finally {
+                unblock.countDown();
+            }
+            assertFalse(stolen.inEventLoop());
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        }
+    }
+}
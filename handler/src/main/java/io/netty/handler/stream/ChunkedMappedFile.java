@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.stream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.MappedFileByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.FileRegion;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A {@link ChunkedInput} that fetches data from a file chunk by chunk as slices of a {@link MappedFileByteBuf}.
+ * Unlike {@link ChunkedFile} and {@link ChunkedNioFile} the chunks are not copied into a new buffer, and the
+ * mapping of the file is shared with all other {@link ChunkedMappedFile}s that serve the same file.
+ * <p>
+ * This is useful if the chunks need to pass through handlers like the {@code SslHandler} which can not handle a
+ * {@link FileRegion}. Otherwise you might want to use {@link FileRegion} instead.
+ */
+public class ChunkedMappedFile implements ChunkedInput<ByteBuf> {
+
+    // The number of bytes that are mapped at once, the chunks are slices of it.
+    private static final int WINDOW_SIZE = 4 * 1024 * 1024;
+
+    private final File file;
+    private final long startOffset;
+    private final long endOffset;
+    private final int chunkSize;
+    private long offset;
+    private ByteBuf window;
+    private long windowOffset;
+    private boolean closed;
+
+    /**
+     * Creates a new instance that fetches data from the specified file.
+     */
+    public ChunkedMappedFile(File file) throws IOException {
+        this(file, ChunkedStream.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a new instance that fetches data from the specified file.
+     *
+     * @param chunkSize the number of bytes to fetch on each
+     *                  {@link #readChunk(ChannelHandlerContext)} call
+     */
+    public ChunkedMappedFile(File file, int chunkSize) throws IOException {
+        this(file, 0, file.length(), chunkSize);
+    }
+
+    /**
+     * Creates a new instance that fetches data from the specified file.
+     *
+     * @param offset the offset of the file where the transfer begins
+     * @param length the number of bytes to transfer
+     * @param chunkSize the number of bytes to fetch on each
+     *                  {@link #readChunk(ChannelHandlerContext)} call
+     */
+    public ChunkedMappedFile(File file, long offset, long length, int chunkSize) throws IOException {
+        if (file == null) {
+            throw new NullPointerException("file");
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException(
+                    "offset: " + offset + " (expected: 0 or greater)");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException(
+                    "length: " + length + " (expected: 0 or greater)");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException(
+                    "chunkSize: " + chunkSize +
+                    " (expected: a positive integer)");
+        }
+        if (!file.isFile()) {
+            throw new IOException("not a file: " + file);
+        }
+
+        this.file = file;
+        this.chunkSize = chunkSize;
+        this.offset = startOffset = offset;
+        endOffset = offset + length;
+    }
+
+    /**
+     * Returns the offset in the file where the transfer began.
+     */
+    public long startOffset() {
+        return startOffset;
+    }
+
+    /**
+     * Returns the offset in the file where the transfer will end.
+     */
+    public long endOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Returns the offset in the file where the transfer is happening currently.
+     */
+    public long currentOffset() {
+        return offset;
+    }
+
+    @Override
+    public boolean isEndOfInput() throws Exception {
+        return closed || offset >= endOffset;
+    }
+
+    @Override
+    public void close() throws Exception {
+        closed = true;
+        releaseWindow();
+    }
+
+    @Deprecated
+    @Override
+    public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public ByteBuf readChunk(ByteBufAllocator allocator) throws Exception {
+        long offset = this.offset;
+        if (closed || offset >= endOffset) {
+            return null;
+        }
+
+        ByteBuf window = this.window;
+        if (window == null || offset >= windowOffset + window.capacity()) {
+            releaseWindow();
+            windowOffset = offset;
+            window = this.window = MappedFileByteBuf.map(file, offset, (int) Math.min(WINDOW_SIZE, endOffset - offset));
+        }
+        int chunkSize = (int) Math.min(this.chunkSize, windowOffset + window.capacity() - offset);
+        ByteBuf chunk = window.retainedSlice((int) (offset - windowOffset), chunkSize);
+        this.offset = offset + chunkSize;
+        return chunk;
+    }
+
+    private void releaseWindow() {
+        if (window != null) {
+            window.release();
+            window = null;
+        }
+    }
+
+    @Override
+    public long length() {
+        return endOffset - startOffset;
+    }
+
+    @Override
+    public long progress() {
+        return offset - startOffset;
+    }
+}
@@ -56,6 +56,8 @@ import java.util.Queue;
  * {@link Channel} ch = ...;
  * ch.write(new {@link ChunkedFile}(new File("video.mkv"));
  * </pre>
+ * If the chunks of a file need to pass through a handler like the {@code SslHandler}, write a
+ * {@link ChunkedMappedFile} instead so the file is not copied into a new buffer chunk by chunk.
  *
  * <h3>Sending a stream which generates a chunk intermittently</h3>
  *
@@ -25,6 +25,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.ChannelPromise;
+import io.netty.util.internal.UnstableApi;
 
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -94,6 +95,7 @@ import java.util.concurrent.TimeUnit;
  *
  * @see ReadTimeoutHandler
  * @see WriteTimeoutHandler
+ * @see IdleSweeper
  * 当通道暂时没有执行读、写或同时执行两个操作时，触发IdleStateEvent。
 支持空闲状态
 财产
@@ -117,6 +119,7 @@ public class IdleStateHandler extends ChannelDuplexHandler {
         }
     };
 
+    private final IdleSweeper sweeper;
     private final boolean observeOutput;
     private final long readerIdleTimeNanos;
     private final long writerIdleTimeNanos;
@@ -133,7 +136,12 @@ public class IdleStateHandler extends ChannelDuplexHandler {
     private ScheduledFuture<?> allIdleTimeout;
     private boolean firstAllIdleEvent = true;
 
-    private byte state; // 0 - none, 1 - initialized, 2 - destroyed
+    // Cancelled through the sweeper, if any, and rescheduled when the channel is registered again.
+    private AbstractIdleTask readerIdleTask;
+    private AbstractIdleTask writerIdleTask;
+    private AbstractIdleTask allIdleTask;
+
+    private byte state; // 0 - none, 1 - initialized, 2 - destroyed, 3 - deregistered
     private boolean reading;
 
     private long lastChangeCheckTimeStamp;
@@ -199,10 +207,54 @@ public class IdleStateHandler extends ChannelDuplexHandler {
     public IdleStateHandler(boolean observeOutput,
             long readerIdleTime, long writerIdleTime, long allIdleTime,
             TimeUnit unit) {
+        this(null, observeOutput, readerIdleTime, writerIdleTime, allIdleTime, unit);
+    }
+
+    /**
+     * @see #IdleStateHandler(IdleSweeper, boolean, long, long, long, TimeUnit)
+     */
+    @UnstableApi
+    public IdleStateHandler(IdleSweeper sweeper,
+            long readerIdleTime, long writerIdleTime, long allIdleTime,
+            TimeUnit unit) {
+        this(sweeper, false, readerIdleTime, writerIdleTime, allIdleTime, unit);
+    }
+
+    /**
+     * Creates a new instance firing {@link IdleStateEvent}s which are detected by the given {@link IdleSweeper}
+     * instead of tasks scheduled per channel.
+     *
+     * @param sweeper
+     *        the {@link IdleSweeper} which detects the idle channels, or {@code null}
+     *        to schedule tasks per channel.
+     * @param observeOutput
+     *        whether or not the consumption of {@code bytes} should be taken into
+     *        consideration when assessing write idleness. The default is {@code false}.
+     * @param readerIdleTime
+     *        an {@link IdleStateEvent} whose state is {@link IdleState#READER_IDLE}
+     *        will be triggered when no read was performed for the specified
+     *        period of time.  Specify {@code 0} to disable.
+     * @param writerIdleTime
+     *        an {@link IdleStateEvent} whose state is {@link IdleState#WRITER_IDLE}
+     *        will be triggered when no write was performed for the specified
+     *        period of time.  Specify {@code 0} to disable.
+     * @param allIdleTime
+     *        an {@link IdleStateEvent} whose state is {@link IdleState#ALL_IDLE}
+     *        will be triggered when neither read nor write was performed for
+     *        the specified period of time.  Specify {@code 0} to disable.
+     * @param unit
+     *        the {@link TimeUnit} of {@code readerIdleTime},
+     *        {@code writeIdleTime}, and {@code allIdleTime}
+     */
+    @UnstableApi
+    public IdleStateHandler(IdleSweeper sweeper, boolean observeOutput,
+            long readerIdleTime, long writerIdleTime, long allIdleTime,
+            TimeUnit unit) {
         if (unit == null) {
             throw new NullPointerException("unit");
         }
 
+        this.sweeper = sweeper;
         this.observeOutput = observeOutput;
 
         if (readerIdleTime <= 0) {
@@ -265,13 +317,27 @@ public class IdleStateHandler extends ChannelDuplexHandler {
 
     @Override
     public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
-        // Initialize early if channel is active already.
-        if (ctx.channel().isActive()) {
+        if (state == 3) {
+            // Registered again after it was deregistered, possibly with another EventLoop.
+            reschedule(ctx);
+        } else if (ctx.channel().isActive()) {
+            // Initialize early if channel is active already.
             initialize(ctx);
         }
         super.channelRegistered(ctx);
     }
 
+    @Override
+    public void channelUnregistered(ChannelHandlerContext ctx) throws Exception {
+        if (state == 1 && ctx.channel().isOpen()) {
+            // The channel was deregistered but not closed, so it may be registered with another EventLoop. Cancel the
+            // timeouts as they would run on the old EventLoop, but keep their deadlines.
+            state = 3;
+            cancelTimeouts();
+        }
+        super.channelUnregistered(ctx);
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         // This method will be invoked only if this handler was added
@@ -329,16 +395,16 @@ public class IdleStateHandler extends ChannelDuplexHandler {
 
         lastReadTime = lastWriteTime = ticksInNanos();
         if (readerIdleTimeNanos > 0) {
-            readerIdleTimeout = schedule(ctx, new ReaderIdleTimeoutTask(ctx),
-                    readerIdleTimeNanos, TimeUnit.NANOSECONDS);
+            readerIdleTask = new ReaderIdleTimeoutTask(ctx);
+            readerIdleTimeout = scheduleIdleTask(ctx, readerIdleTask, readerIdleTimeNanos);
         }
         if (writerIdleTimeNanos > 0) {
-            writerIdleTimeout = schedule(ctx, new WriterIdleTimeoutTask(ctx),
-                    writerIdleTimeNanos, TimeUnit.NANOSECONDS);
+            writerIdleTask = new WriterIdleTimeoutTask(ctx);
+            writerIdleTimeout = scheduleIdleTask(ctx, writerIdleTask, writerIdleTimeNanos);
         }
         if (allIdleTimeNanos > 0) {
-            allIdleTimeout = schedule(ctx, new AllIdleTimeoutTask(ctx),
-                    allIdleTimeNanos, TimeUnit.NANOSECONDS);
+            allIdleTask = new AllIdleTimeoutTask(ctx);
+            allIdleTimeout = scheduleIdleTask(ctx, allIdleTask, allIdleTimeNanos);
         }
     }
 
@@ -356,9 +422,48 @@ public class IdleStateHandler extends ChannelDuplexHandler {
         return ctx.executor().schedule(task, delay, unit);
     }
 
+    /**
+     * Schedules the tasks again with their remaining delays, see {@link #channelUnregistered(ChannelHandlerContext)}.
+     */
+    private void reschedule(ChannelHandlerContext ctx) {
+        state = 1;
+        long ticksInNanos = ticksInNanos();
+        if (readerIdleTask != null) {
+            readerIdleTimeout = scheduleIdleTask(ctx, readerIdleTask, readerIdleTask.deadlineNanos - ticksInNanos);
+        }
+        if (writerIdleTask != null) {
+            writerIdleTimeout = scheduleIdleTask(ctx, writerIdleTask, writerIdleTask.deadlineNanos - ticksInNanos);
+        }
+        if (allIdleTask != null) {
+            allIdleTimeout = scheduleIdleTask(ctx, allIdleTask, allIdleTask.deadlineNanos - ticksInNanos);
+        }
+    }
+
+    /**
+     * Schedules the given task with the {@link IdleSweeper}, if any, in which case {@code null} is returned.
+     */
+    private ScheduledFuture<?> scheduleIdleTask(ChannelHandlerContext ctx, AbstractIdleTask task, long delayNanos) {
+        task.deadlineNanos = ticksInNanos() + delayNanos;
+        if (sweeper != null) {
+            sweeper.schedule(ctx.executor(), task, delayNanos);
+            return null;
+        }
+        return schedule(ctx, task, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void cancelIdleTask(AbstractIdleTask task) {
+        if (sweeper != null && task != null) {
+            sweeper.cancel(task.ctx.executor(), task);
+        }
+    }
+
     private void destroy() {
         state = 2;
+        cancelTimeouts();
+        readerIdleTask = writerIdleTask = allIdleTask = null;
+    }
 
+    private void cancelTimeouts() {
         if (readerIdleTimeout != null) {
             readerIdleTimeout.cancel(false);
             readerIdleTimeout = null;
@@ -371,6 +476,10 @@ public class IdleStateHandler extends ChannelDuplexHandler {
             allIdleTimeout.cancel(false);
             allIdleTimeout = null;
         }
+
+        cancelIdleTask(readerIdleTask);
+        cancelIdleTask(writerIdleTask);
+        cancelIdleTask(allIdleTask);
     }
 
     /**
@@ -461,9 +570,11 @@ public class IdleStateHandler extends ChannelDuplexHandler {
         return false;
     }
 
-    private abstract static class AbstractIdleTask implements Runnable {
+    private abstract static class AbstractIdleTask extends IdleSweeper.Entry {
 
         private final ChannelHandlerContext ctx;
+        // In ticksInNanos().
+        long deadlineNanos;
 
         AbstractIdleTask(ChannelHandlerContext ctx) {
             this.ctx = ctx;
@@ -496,7 +607,7 @@ public class IdleStateHandler extends ChannelDuplexHandler {
 
             if (nextDelay <= 0) {
                 // Reader is idle - set a new timeout and notify the callback.
-                readerIdleTimeout = schedule(ctx, this, readerIdleTimeNanos, TimeUnit.NANOSECONDS);
+                readerIdleTimeout = scheduleIdleTask(ctx, this, readerIdleTimeNanos);
 
                 boolean first = firstReaderIdleEvent;
                 firstReaderIdleEvent = false;
@@ -509,7 +620,7 @@ public class IdleStateHandler extends ChannelDuplexHandler {
                 }
             } else {
                 // Read occurred before the timeout - set a new timeout with shorter delay.
-                readerIdleTimeout = schedule(ctx, this, nextDelay, TimeUnit.NANOSECONDS);
+                readerIdleTimeout = scheduleIdleTask(ctx, this, nextDelay);
             }
         }
     }
@@ -527,7 +638,7 @@ public class IdleStateHandler extends ChannelDuplexHandler {
             long nextDelay = writerIdleTimeNanos - (ticksInNanos() - lastWriteTime);
             if (nextDelay <= 0) {
                 // Writer is idle - set a new timeout and notify the callback.
-                writerIdleTimeout = schedule(ctx, this, writerIdleTimeNanos, TimeUnit.NANOSECONDS);
+                writerIdleTimeout = scheduleIdleTask(ctx, this, writerIdleTimeNanos);
 
                 boolean first = firstWriterIdleEvent;
                 firstWriterIdleEvent = false;
@@ -544,7 +655,7 @@ public class IdleStateHandler extends ChannelDuplexHandler {
                 }
             } else {
                 // Write occurred before the timeout - set a new timeout with shorter delay.
-                writerIdleTimeout = schedule(ctx, this, nextDelay, TimeUnit.NANOSECONDS);
+                writerIdleTimeout = scheduleIdleTask(ctx, this, nextDelay);
             }
         }
     }
@@ -565,7 +676,7 @@ public class IdleStateHandler extends ChannelDuplexHandler {
             if (nextDelay <= 0) {
                 // Both reader and writer are idle - set a new timeout and
                 // notify the callback.
-                allIdleTimeout = schedule(ctx, this, allIdleTimeNanos, TimeUnit.NANOSECONDS);
+                allIdleTimeout = scheduleIdleTask(ctx, this, allIdleTimeNanos);
 
                 boolean first = firstAllIdleEvent;
                 firstAllIdleEvent = false;
@@ -583,7 +694,7 @@ public class IdleStateHandler extends ChannelDuplexHandler {
             } else {
                 // Either read or write occurred before the timeout - set a new
                 // timeout with shorter delay.
-                allIdleTimeout = schedule(ctx, this, nextDelay, TimeUnit.NANOSECONDS);
+                allIdleTimeout = scheduleIdleTask(ctx, this, nextDelay);
             }
         }
     }
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.timeout;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects idle and timed out channels for {@link IdleStateHandler}s, {@link ReadTimeoutHandler}s and
+ * {@link WriteTimeoutHandler}s without scheduling a task per channel on the {@link EventExecutor}.
+ * <p>
+ * The handlers which were created with the same {@link IdleSweeper} only record their deadlines in a hashed wheel
+ * per {@link EventExecutor}, which is swept by a single periodic task that fires the events of all expired channels
+ * in bulk. Recording and cancelling a deadline is {@code O(1)} and does not allocate, which pays off when an event
+ * loop serves a large number of mostly idle connections.
+ * <p>
+ * The price is precision: a deadline is only detected by the first sweep after it, so the events are fired up to
+ * one sweep interval late. The sweep interval should therefore be small compared to the timeouts.
+ *
+ * <pre>
+ * {@link IdleSweeper} sweeper = new {@link IdleSweeper}(1, TimeUnit.SECONDS);
+ * ...
+ * channel.pipeline().addLast("idleStateHandler", new {@link IdleStateHandler}(sweeper, 60, 30, 0, TimeUnit.SECONDS));
+ * </pre>
+ *
+ * An instance can be shared by any number of handlers, channels and event loops.
+ */
+@UnstableApi
+public final class IdleSweeper {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(IdleSweeper.class);
+
+    private static final int WHEEL_SIZE = 512;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private final long sweepIntervalNanos;
+    private final ConcurrentMap<EventExecutor, Wheel> wheels = PlatformDependent.newConcurrentHashMap();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param sweepInterval the interval in which the channels are checked.
+     * @param unit the {@link TimeUnit} of {@code sweepInterval}.
+     */
+    public IdleSweeper(long sweepInterval, TimeUnit unit) {
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        if (sweepInterval <= 0) {
+            throw new IllegalArgumentException("sweepInterval: " + sweepInterval + " (expected: > 0)");
+        }
+        sweepIntervalNanos = Math.max(unit.toNanos(sweepInterval), TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /**
+     * Return the sweep interval in milliseconds.
+     */
+    public long getSweepIntervalInMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(sweepIntervalNanos);
+    }
+
+    /**
+     * Runs the given {@link Entry} on the {@link EventExecutor} once the delay passed. If the {@link Entry} is
+     * already scheduled it is moved to the new deadline. Must be called from the {@link EventExecutor}.
+     */
+    void schedule(EventExecutor executor, Entry entry, long delayNanos) {
+        assert executor.inEventLoop();
+        Wheel wheel = entry.wheel;
+        if (wheel != null) {
+            wheel.cancel(entry);
+        }
+        wheel = wheels.get(executor);
+        if (wheel == null) {
+            wheel = new Wheel(executor);
+            wheels.put(executor, wheel);
+        }
+        wheel.schedule(entry, delayNanos);
+    }
+
+    /**
+     * Cancels the given {@link Entry} if it is scheduled. May be called from any thread.
+     */
+    void cancel(EventExecutor executor, final Entry entry) {
+        if (executor.inEventLoop()) {
+            Wheel wheel = entry.wheel;
+            if (wheel != null) {
+                wheel.cancel(entry);
+            }
+        } else {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Wheel wheel = entry.wheel;
+                    if (wheel != null) {
+                        wheel.cancel(entry);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * A task which can be scheduled with an {@link IdleSweeper}. An instance can only be scheduled once at a time.
+     */
+    abstract static class Entry implements Runnable {
+        // Only accessed by the EventExecutor.
+        private Wheel wheel;
+        private Entry prev;
+        private Entry next;
+        private Entry nextExpired;
+        private long deadlineTick;
+        private boolean expired;
+    }
+
+    /**
+     * The hashed wheel of a single {@link EventExecutor}, which only exists while entries are scheduled.
+     */
+    private final class Wheel implements Runnable {
+        private final EventExecutor executor;
+        private final Entry[] buckets = new Entry[WHEEL_SIZE];
+        private final long startTime = System.nanoTime();
+        private final ScheduledFuture<?> sweepFuture;
+        private long nextTick;
+        private int size;
+        private boolean sweeping;
+
+        Wheel(EventExecutor executor) {
+            this.executor = executor;
+            sweepFuture = executor.scheduleAtFixedRate(
+                    this, sweepIntervalNanos, sweepIntervalNanos, TimeUnit.NANOSECONDS);
+        }
+
+        void schedule(Entry entry, long delayNanos) {
+            long deadline = System.nanoTime() - startTime + Math.max(0, delayNanos);
+            // Round up so that the entry is never run before its deadline.
+            long deadlineTick = Math.max(nextTick, (deadline + sweepIntervalNanos - 1) / sweepIntervalNanos);
+
+            int bucket = (int) deadlineTick & WHEEL_MASK;
+            Entry head = buckets[bucket];
+            entry.next = head;
+            if (head != null) {
+                head.prev = entry;
+            }
+            buckets[bucket] = entry;
+            entry.deadlineTick = deadlineTick;
+            entry.wheel = this;
+            size++;
+        }
+
+        void cancel(Entry entry) {
+            if (entry.expired) {
+                // Already unlinked and waiting to be run by the current sweep.
+                entry.expired = false;
+            } else {
+                unlink(entry);
+            }
+            entry.wheel = null;
+            size--;
+            stopIfEmpty();
+        }
+
+        private void unlink(Entry entry) {
+            Entry prev = entry.prev;
+            Entry next = entry.next;
+            if (prev == null) {
+                buckets[(int) entry.deadlineTick & WHEEL_MASK] = next;
+            } else {
+                prev.next = next;
+            }
+            if (next != null) {
+                next.prev = prev;
+            }
+            entry.prev = null;
+            entry.next = null;
+        }
+
+        @Override
+        public void run() {
+            final long currentTick = (System.nanoTime() - startTime) / sweepIntervalNanos;
+            if (currentTick < nextTick) {
+                return;
+            }
+            // Every bucket needs to be visited at most once, even if some sweeps were missed.
+            final long lastTick = Math.min(currentTick, nextTick + WHEEL_MASK);
+
+            Entry expiredHead = null;
+            Entry expiredTail = null;
+            for (long tick = nextTick; tick <= lastTick; tick++) {
+                Entry entry = buckets[(int) tick & WHEEL_MASK];
+                while (entry != null) {
+                    Entry next = entry.next;
+                    if (entry.deadlineTick <= currentTick) {
+                        unlink(entry);
+                        entry.expired = true;
+                        if (expiredTail == null) {
+                            expiredHead = entry;
+                        } else {
+                            expiredTail.nextExpired = entry;
+                        }
+                        expiredTail = entry;
+                    }
+                    entry = next;
+                }
+            }
+            nextTick = currentTick + 1;
+
+            // Run the entries only after the buckets were visited, as they may schedule or cancel entries.
+            sweeping = true;
+            try {
+                Entry entry = expiredHead;
+                while (entry != null) {
+                    Entry next = entry.nextExpired;
+                    entry.nextExpired = null;
+                    if (entry.expired) {
+                        entry.expired = false;
+                        entry.wheel = null;
+                        size--;
+                        try {
+                            entry.run();
+                        } catch (Throwable t) {
+                            logger.warn("An exception was thrown by {}.", entry.getClass().getSimpleName(), t);
+                        }
+                    }
+                    entry = next;
+                }
+            } finally {
+                sweeping = false;
+            }
+            stopIfEmpty();
+        }
+
+        private void stopIfEmpty() {
+            if (size == 0 && !sweeping) {
+                sweepFuture.cancel(false);
+                wheels.remove(executor, this);
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
+import io.netty.util.internal.UnstableApi;
 
 import java.util.concurrent.TimeUnit;
 
@@ -58,6 +59,7 @@ import java.util.concurrent.TimeUnit;
  * </pre>
  * @see WriteTimeoutHandler
  * @see IdleStateHandler
+ * @see IdleSweeper
  * 当在一定时间内没有读取数据时，引发ReadTimeoutException。
  */
 public class ReadTimeoutHandler extends IdleStateHandler {
@@ -85,6 +87,22 @@ public class ReadTimeoutHandler extends IdleStateHandler {
         super(timeout, 0, 0, unit);
     }
 
+    /**
+     * Creates a new instance whose timeout is detected by the given {@link IdleSweeper}.
+     *
+     * @param sweeper
+     *        the {@link IdleSweeper} which detects the timeout, or {@code null}
+     *        to schedule a task per channel.
+     * @param timeout
+     *        read timeout
+     * @param unit
+     *        the {@link TimeUnit} of {@code timeout}
+     */
+    @UnstableApi
+    public ReadTimeoutHandler(IdleSweeper sweeper, long timeout, TimeUnit unit) {
+        super(sweeper, timeout, 0, 0, unit);
+    }
+
     @Override
     protected final void channelIdle(ChannelHandlerContext ctx, IdleStateEvent evt) throws Exception {
         assert evt.state() == IdleState.READER_IDLE;
@@ -24,6 +24,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
+import io.netty.util.internal.UnstableApi;
 
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -61,6 +62,7 @@ import java.util.concurrent.TimeUnit;
  * </pre>
  * @see ReadTimeoutHandler
  * @see IdleStateHandler
+ * @see IdleSweeper
  *
 当写操作无法在一定时间内完成时，引发一个WriteTimeoutException。
 //当写操作不能在30秒内完成时，连接就会关闭。
@@ -68,6 +70,7 @@ import java.util.concurrent.TimeUnit;
 public class WriteTimeoutHandler extends ChannelOutboundHandlerAdapter {
     private static final long MIN_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
 
+    private final IdleSweeper sweeper;
     private final long timeoutNanos;
 
     /**
@@ -97,9 +100,26 @@ public class WriteTimeoutHandler extends ChannelOutboundHandlerAdapter {
      *        the {@link TimeUnit} of {@code timeout}
      */
     public WriteTimeoutHandler(long timeout, TimeUnit unit) {
+        this(null, timeout, unit);
+    }
+
+    /**
+     * Creates a new instance whose timeouts are detected by the given {@link IdleSweeper}.
+     *
+     * @param sweeper
+     *        the {@link IdleSweeper} which detects the timeouts, or {@code null}
+     *        to schedule a task per write.
+     * @param timeout
+     *        write timeout
+     * @param unit
+     *        the {@link TimeUnit} of {@code timeout}
+     */
+    @UnstableApi
+    public WriteTimeoutHandler(IdleSweeper sweeper, long timeout, TimeUnit unit) {
         if (unit == null) {
             throw new NullPointerException("unit");
         }
+        this.sweeper = sweeper;
 
         if (timeout <= 0) {
             timeoutNanos = 0;
@@ -122,7 +142,7 @@ public class WriteTimeoutHandler extends ChannelOutboundHandlerAdapter {
         WriteTimeoutTask task = lastTask;
         lastTask = null;
         while (task != null) {
-            task.scheduledFuture.cancel(false);
+            task.cancel();
             WriteTimeoutTask prev = task.prev;
             task.prev = null;
             task.next = null;
@@ -133,6 +153,13 @@ public class WriteTimeoutHandler extends ChannelOutboundHandlerAdapter {
     private void scheduleTimeout(final ChannelHandlerContext ctx, final ChannelPromise promise) {
         // Schedule a timeout.
         final WriteTimeoutTask task = new WriteTimeoutTask(ctx, promise);
+        if (sweeper != null) {
+            // The sweeper never runs the task before it returns.
+            sweeper.schedule(ctx.executor(), task, timeoutNanos);
+            addWriteTimeoutTask(task);
+            promise.addListener(task);
+            return;
+        }
         task.scheduledFuture = ctx.executor().schedule(task, timeoutNanos, TimeUnit.NANOSECONDS);
 
         if (!task.scheduledFuture.isDone()) {
@@ -187,7 +214,7 @@ public class WriteTimeoutHandler extends ChannelOutboundHandlerAdapter {
         }
     }
 
-    private final class WriteTimeoutTask implements Runnable, ChannelFutureListener {
+    private final class WriteTimeoutTask extends IdleSweeper.Entry implements ChannelFutureListener {
 
         private final ChannelHandlerContext ctx;
         private final ChannelPromise promise;
@@ -220,9 +247,17 @@ public class WriteTimeoutHandler extends ChannelOutboundHandlerAdapter {
 
         @Override
         public void operationComplete(ChannelFuture future) throws Exception {
-            // scheduledFuture has already be set when reaching here
-            scheduledFuture.cancel(false);
+            // scheduledFuture has already be set when reaching here, unless the sweeper is used
+            cancel();
             removeWriteTimeoutTask(this);
         }
+
+        void cancel() {
+            if (scheduledFuture != null) {
+                scheduledFuture.cancel(false);
+            } else {
+                sweeper.cancel(ctx.executor(), this);
+            }
+        }
     }
 }
@@ -16,6 +16,7 @@
 package io.netty.handler.timeout;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -309,6 +310,28 @@ public class IdleStateHandlerTest {
         void run(EmbeddedChannel channel) throws Exception;
     }
 
+    @Test
+    public void testReschedulesWhenRegisteredAgain() throws Exception {
+        TestableIdleStateHandler idleStateHandler = new TestableIdleStateHandler(
+                false, 1L, 0L, 0L, TimeUnit.SECONDS);
+        EmbeddedChannel channel = new EmbeddedChannel(idleStateHandler);
+        try {
+            assertEquals(1000L, idleStateHandler.delay(TimeUnit.MILLISECONDS));
+            idleStateHandler.tick(400L, TimeUnit.MILLISECONDS);
+
+            channel.deregister().syncUninterruptibly();
+            channel.runPendingTasks();
+            assertFalse(channel.isRegistered());
+
+            // The remaining delay is kept, as if the channel was moved to another EventLoop.
+            idleStateHandler.tick(100L, TimeUnit.MILLISECONDS);
+            channel.register();
+            assertEquals(500L, idleStateHandler.delay(TimeUnit.MILLISECONDS));
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
     private static class TestableIdleStateHandler extends IdleStateHandler {
 
         private Runnable task;
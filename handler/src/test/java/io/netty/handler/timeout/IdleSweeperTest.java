@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.timeout;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IdleSweeperTest {
+
+    private final IdleSweeper sweeper = new IdleSweeper(10, TimeUnit.MILLISECONDS);
+
+    private static void sweep(EmbeddedChannel channel, long millis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(5);
+            channel.runScheduledPendingTasks();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleStateEvents() throws Exception {
+        final List<Object> events = new ArrayList<Object>();
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new IdleStateHandler(sweeper, 50, 0, 0, TimeUnit.MILLISECONDS),
+                new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+                        events.add(evt);
+                    }
+                });
+
+        sweep(channel, 20);
+        assertTrue(events.isEmpty());
+
+        sweep(channel, 130);
+        assertTrue(events.size() >= 2);
+        assertEquals(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT, events.get(0));
+        assertEquals(IdleStateEvent.READER_IDLE_STATE_EVENT, events.get(1));
+
+        // Removing the handler must also remove the periodic sweep.
+        channel.pipeline().removeFirst();
+        assertEquals(-1, channel.runScheduledPendingTasks());
+        assertFalse(channel.finish());
+    }
+
+    @Test(timeout = 10000)
+    public void testReadTimeout() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new ReadTimeoutHandler(sweeper, 50, TimeUnit.MILLISECONDS));
+        sweep(channel, 30);
+        channel.writeInbound(Unpooled.EMPTY_BUFFER);
+        sweep(channel, 30);
+        assertTrue(channel.isOpen());
+
+        sweep(channel, 100);
+        assertFalse(channel.isOpen());
+        try {
+            channel.checkException();
+            fail();
+        } catch (ReadTimeoutException expected) {
+            // expected
+        }
+        assertEquals(-1, channel.runScheduledPendingTasks());
+    }
+
+    @Test(timeout = 10000)
+    public void testWriteTimeout() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new WriteTimeoutHandler(sweeper, 50, TimeUnit.MILLISECONDS));
+
+        // A flushed write completes and so its timeout is cancelled.
+        assertTrue(channel.writeOutbound(Unpooled.EMPTY_BUFFER));
+        // A write which is never flushed times out.
+        ChannelFuture future = channel.write(Unpooled.EMPTY_BUFFER);
+
+        sweep(channel, 100);
+        assertFalse(future.isSuccess());
+        assertFalse(channel.isOpen());
+        try {
+            channel.checkException();
+            fail();
+        } catch (WriteTimeoutException expected) {
+            // expected
+        }
+        assertEquals(-1, channel.runScheduledPendingTasks());
+        channel.finish();
+        channel.releaseOutbound();
+    }
+}
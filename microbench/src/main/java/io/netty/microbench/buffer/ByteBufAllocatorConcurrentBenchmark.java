@@ -16,12 +16,14 @@
 package io.netty.microbench.buffer;
 
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.microbench.util.AbstractMicrobenchmark;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
@@ -29,16 +31,58 @@ import org.openjdk.jmh.annotations.Warmup;
 @State(Scope.Benchmark)
 @Warmup(iterations = 5)
 @Measurement(iterations = 10)
-@Threads(8)
 public class ByteBufAllocatorConcurrentBenchmark  extends AbstractMicrobenchmark {
 
     private static final ByteBufAllocator unpooledAllocator = new UnpooledByteBufAllocator(true, true);
 
-    @Param({ "00064", "00256", "01024", "04096" })
+    // A single arena without thread caches, so every allocation and release contends on the same arena.
+    private static final ByteBufAllocator pooledSingleArenaAllocator =
+            new PooledByteBufAllocator(true, 0, 1, 8192, 11, 0, 0, 0, true, 0, 1, 0, 0, null, true);
+
+    // The same, but tiny and small buffers are freed while holding the arena lock.
+    private static final ByteBufAllocator pooledSingleArenaLockedAllocator =
+            new PooledByteBufAllocator(true, 0, 1, 8192, 11, 0, 0, 0, true, 0, 1, 0, 0, null, false);
+
+    @Param({ "00064", "00256", "01024", "04096", "16384" })
     public int size;
 
+    @Param({ "unpooled", "pooledSingleArena", "pooledSingleArenaLocked" })
+    public String allocatorType;
+
+    private ByteBufAllocator allocator;
+
+    @Setup
+    public void setup() {
+        if ("unpooled".equals(allocatorType)) {
+            allocator = unpooledAllocator;
+        } else if ("pooledSingleArena".equals(allocatorType)) {
+            allocator = pooledSingleArenaAllocator;
+        } else {
+            allocator = pooledSingleArenaLockedAllocator;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean allocateRelease1Thread() {
+        return allocator.directBuffer(size).release();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean allocateRelease8Threads() {
+        return allocator.directBuffer(size).release();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public boolean allocateRelease32Threads() {
+        return allocator.directBuffer(size).release();
+    }
+
     @Benchmark
-    public boolean allocateRelease() {
-        return unpooledAllocator.directBuffer(size).release();
+    @Threads(64)
+    public boolean allocateRelease64Threads() {
+        return allocator.directBuffer(size).release();
     }
 }
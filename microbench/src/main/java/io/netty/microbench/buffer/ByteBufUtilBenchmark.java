@@ -19,6 +19,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.ByteProcessor;
 import io.netty.util.CharsetUtil;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Measurement;
@@ -39,6 +40,14 @@ public class
     private ByteBuf asciiBuffer;
     private ByteBuf utf8Buffer;
 
+    // A HTTP header block, the wrapped versions are no AbstractByteBuf and so are compared byte by byte.
+    private ByteBuf headers;
+    private ByteBuf headersWrapped;
+    private ByteBuf headersCopy;
+    private ByteBuf headersCopyWrapped;
+    private ByteBuf crlfCrlf;
+    private final ByteProcessor findLf = new ByteProcessor.IndexOfProcessor((byte) '\n');
+
     private StringBuilder asciiSequence;
     private String ascii;
 
@@ -67,6 +76,18 @@ public class
 
         asciiBuffer = Unpooled.copiedBuffer(ascii, CharsetUtil.US_ASCII);
         utf8Buffer = Unpooled.copiedBuffer(utf8, CharsetUtil.UTF_8);
+
+        StringBuilder headerBlock = new StringBuilder(1024);
+        while (headerBlock.length() < 1000) {
+            headerBlock.append("x-some-header-name: some-header-value-").append(headerBlock.length()).append(';');
+        }
+        headerBlock.append("\r\n\r\n");
+        headers = Unpooled.directBuffer(headerBlock.length()).writeBytes(
+                headerBlock.toString().getBytes(CharsetUtil.US_ASCII));
+        headersWrapped = Unpooled.unreleasableBuffer(headers);
+        headersCopy = headers.copy();
+        headersCopyWrapped = Unpooled.unreleasableBuffer(headersCopy);
+        crlfCrlf = Unpooled.copiedBuffer("\r\n\r\n", CharsetUtil.US_ASCII);
     }
 
     @TearDown
@@ -75,6 +96,9 @@ public class
         wrapped.release();
         asciiBuffer.release();
         utf8Buffer.release();
+        headers.release();
+        headersCopy.release();
+        crlfCrlf.release();
     }
 
     @Benchmark
@@ -182,4 +206,50 @@ public class
     public String decodeStringUtf8() {
         return utf8Buffer.toString(CharsetUtil.UTF_8);
     }
+
+    @Benchmark
+    public int indexOfByte() {
+        return headers.indexOf(headers.readerIndex(), headers.writerIndex(), (byte) '\n');
+    }
+
+    @Benchmark
+    public int forEachByteFindLf() {
+        return headers.forEachByte(ByteProcessor.FIND_LF);
+    }
+
+    @Benchmark
+    public int forEachByteBytewise() {
+        // Not one of the ByteProcessor.FIND_* constants, so the bytes are processed one by one.
+        return headers.forEachByte(findLf);
+    }
+
+    @Benchmark
+    public int indexOfCrlfCrlf() {
+        return ByteBufUtil.indexOf(crlfCrlf, headers);
+    }
+
+    @Benchmark
+    public int indexOfCrlfCrlfWrapped() {
+        return ByteBufUtil.indexOf(crlfCrlf, headersWrapped);
+    }
+
+    @Benchmark
+    public boolean equalsHeaders() {
+        return ByteBufUtil.equals(headers, headersCopy);
+    }
+
+    @Benchmark
+    public boolean equalsHeadersWrapped() {
+        return ByteBufUtil.equals(headersWrapped, headersCopyWrapped);
+    }
+
+    @Benchmark
+    public int hashCodeHeaders() {
+        return ByteBufUtil.hashCode(headers);
+    }
+
+    @Benchmark
+    public int hashCodeHeadersWrapped() {
+        return ByteBufUtil.hashCode(headersWrapped);
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.buffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds and reads {@link CompositeByteBuf}s with hundreds of small components, like a HTTP/2 proxy does when it
+ * aggregates DATA frames.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+public class CompositeByteBufWideBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "16", "256", "1024" })
+    public int components;
+
+    @Param({ "64", "1024" })
+    public int componentSize;
+
+    private ByteBuf[] slices;
+    private ByteBuf[] bulk;
+    private CompositeByteBuf composite;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        ByteBuf buffer = Unpooled.directBuffer(components * componentSize).writeZero(components * componentSize);
+        slices = new ByteBuf[components];
+        for (int i = 0; i < components; i++) {
+            slices[i] = buffer.slice(i * componentSize, componentSize);
+        }
+        bulk = new ByteBuf[components];
+        composite = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        for (ByteBuf slice: slices) {
+            composite.addComponent(true, slice.retain());
+        }
+        bytes = new byte[componentSize * 4];
+    }
+
+    @TearDown
+    public void tearDown() {
+        composite.release();
+        slices[0].release();
+    }
+
+    @Benchmark
+    public CompositeByteBuf addComponent() {
+        CompositeByteBuf buf = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        for (ByteBuf slice: slices) {
+            buf.addComponent(true, slice.retain());
+        }
+        buf.release();
+        return buf;
+    }
+
+    @Benchmark
+    public CompositeByteBuf addComponentsBulk() {
+        for (int i = 0; i < slices.length; i++) {
+            bulk[i] = slices[i].retain();
+        }
+        CompositeByteBuf buf = Unpooled.compositeBuffer(Integer.MAX_VALUE).addComponents(true, bulk);
+        buf.release();
+        return buf;
+    }
+
+    @Benchmark
+    public long sequentialGetLong() {
+        long sum = 0;
+        for (int i = 0, end = composite.capacity() - 8; i <= end; i += 8) {
+            sum += composite.getLong(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public byte[] spanningGetBytes() {
+        // Every read spans several components.
+        for (int i = 0, end = composite.capacity() - bytes.length; i <= end; i += bytes.length) {
+            composite.getBytes(i + componentSize / 2, bytes, 0, Math.min(bytes.length, end - i));
+        }
+        return bytes;
+    }
+}
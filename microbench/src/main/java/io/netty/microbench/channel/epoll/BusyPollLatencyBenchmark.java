@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.BusyPollSelectStrategyFactory;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultSelectStrategyFactory;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SelectStrategyFactory;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.net.InetAddress;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the round trip latency of a small message echoed over loopback with the NIO and the native epoll
+ * transport, with and without a {@link BusyPollSelectStrategyFactory}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BusyPollLatencyBenchmark extends AbstractMicrobenchmark {
+
+    public enum Transport {
+        NIO, EPOLL
+    }
+
+    @Param
+    public Transport transport;
+
+    /**
+     * The maximum spin time in microseconds, {@code 0} to use the {@link DefaultSelectStrategyFactory}.
+     */
+    @Param({ "0", "50" })
+    public int maxSpinMicros;
+
+    private EventLoopGroup group;
+    private Channel serverChan;
+    private Channel chan;
+    private ByteBuf ping;
+    private volatile ChannelPromise pong;
+
+    @Setup
+    public void setup() throws Exception {
+        SelectStrategyFactory strategyFactory = maxSpinMicros == 0 ? DefaultSelectStrategyFactory.INSTANCE :
+                new BusyPollSelectStrategyFactory(maxSpinMicros, TimeUnit.MICROSECONDS);
+        ServerBootstrap sb = new ServerBootstrap();
+        Bootstrap cb = new Bootstrap();
+        if (transport == Transport.EPOLL) {
+            group = new EpollEventLoopGroup(2, (ThreadFactory) null, strategyFactory);
+            sb.channel(EpollServerSocketChannel.class);
+            cb.channel(EpollSocketChannel.class);
+        } else {
+            group = new NioEventLoopGroup(2, (ThreadFactory) null, SelectorProvider.provider(), strategyFactory);
+            sb.channel(NioServerSocketChannel.class);
+            cb.channel(NioSocketChannel.class);
+        }
+
+        serverChan = sb.group(group)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ctx.writeAndFlush(msg);
+                    }
+                })
+                .bind(InetAddress.getLoopbackAddress(), 0).sync().channel();
+        chan = cb.group(group)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .handler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ReferenceCountUtil.release(msg);
+                        pong.trySuccess();
+                    }
+                })
+                .connect(serverChan.localAddress()).sync().channel();
+        ping = Unpooled.unreleasableBuffer(Unpooled.directBuffer(1).writeByte(1));
+    }
+
+    @TearDown
+    public void teardown() throws Exception {
+        chan.close().sync();
+        serverChan.close().sync();
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+    }
+
+    @Benchmark
+    public Object pingPong() throws Exception {
+        ChannelPromise pong = chan.newPromise();
+        this.pong = pong;
+        chan.writeAndFlush(ping.duplicate());
+        return pong.sync();
+    }
+}
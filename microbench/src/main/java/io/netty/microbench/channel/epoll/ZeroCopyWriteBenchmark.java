@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many messages of the given size can be written over loopback with the native epoll transport, with
+ * and without {@link EpollChannelOption#SO_ZEROCOPY}. Every operation writes one message and waits until the peer
+ * received all of it.
+ * <p>
+ * On loopback the kernel copies the data of {@code MSG_ZEROCOPY} writes anyway, so the channel stops using
+ * {@code MSG_ZEROCOPY} after the first completion notification. Run this against a remote peer to see the benefit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ZeroCopyWriteBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "16384", "65536", "262144", "1048576", "4194304" })
+    public int messageSize;
+
+    @Param({ "false", "true" })
+    public boolean zeroCopy;
+
+    private EventLoopGroup group;
+    private Channel serverChan;
+    private Channel chan;
+    private ByteBuf message;
+    private volatile ChannelPromise received;
+
+    @Setup
+    public void setup() throws Exception {
+        group = new EpollEventLoopGroup(2);
+        serverChan = new ServerBootstrap().group(group)
+                .channel(EpollServerSocketChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    private int bytes;
+
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        bytes += ((ByteBuf) msg).readableBytes();
+                        ReferenceCountUtil.release(msg);
+                        if (bytes >= messageSize) {
+                            bytes -= messageSize;
+                            received.trySuccess();
+                        }
+                    }
+                })
+                .bind(InetAddress.getLoopbackAddress(), 0).sync().channel();
+        chan = new Bootstrap().group(group)
+                .channel(EpollSocketChannel.class)
+                .option(EpollChannelOption.SO_ZEROCOPY, zeroCopy)
+                .option(EpollChannelOption.ZEROCOPY_THRESHOLD, 0)
+                .handler(new ChannelInboundHandlerAdapter())
+                .connect(serverChan.localAddress()).sync().channel();
+        message = Unpooled.directBuffer(messageSize).writeZero(messageSize);
+    }
+
+    @TearDown
+    public void teardown() throws Exception {
+        chan.close().sync();
+        serverChan.close().sync();
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        message.release();
+    }
+
+    @Benchmark
+    public Object write() throws Exception {
+        ChannelPromise received = chan.newPromise();
+        this.received = received;
+        chan.writeAndFlush(message.retainedDuplicate());
+        return received.sync();
+    }
+}
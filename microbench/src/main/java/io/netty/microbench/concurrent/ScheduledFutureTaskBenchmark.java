@@ -33,10 +33,23 @@ import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Benchmarks the scheduled-task store of a {@link DefaultEventLoop}, either the binary heap or the timing wheel.
+ */
 @State(Scope.Benchmark)
 public class ScheduledFutureTaskBenchmark extends AbstractMicrobenchmark {
 
-    static final EventLoop executor = new DefaultEventLoop();
+    @Param({ "false", "true" })
+    boolean scheduledTaskWheel;
+
+    EventLoop executor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        DefaultEventLoop executor = new DefaultEventLoop();
+        executor.setScheduledTaskWheelEnabled(scheduledTaskWheel);
+        this.executor = executor;
+    }
 
     @State(Scope.Thread)
     public static class FuturesHolder {
@@ -54,7 +67,8 @@ public class ScheduledFutureTaskBenchmark extends AbstractMicrobenchmark {
         final List<ScheduledFuture<Void>> futures = new ArrayList<ScheduledFuture<Void>>();
 
         @Setup(Level.Invocation)
-        public void reset() {
+        public void reset(ScheduledFutureTaskBenchmark benchmark) {
+            final EventLoop executor = benchmark.executor;
             futures.clear();
             executor.submit(new Runnable() {
                 @Override
@@ -84,6 +98,18 @@ public class ScheduledFutureTaskBenchmark extends AbstractMicrobenchmark {
         }).syncUninterruptibly();
     }
 
+    @Benchmark
+    public Future<?> scheduleAndCancel(final FuturesHolder futuresHolder) {
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= futuresHolder.num; i++) {
+                    executor.schedule(FuturesHolder.NO_OP, i, TimeUnit.SECONDS).cancel(false);
+                }
+            }
+        }).syncUninterruptibly();
+    }
+
     @Benchmark
     public Future<?> cancelInReverseOrder(final FuturesHolder futuresHolder) {
         return executor.submit(new Runnable() {
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.concurrent;
+
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.NonStickyEventExecutorGroup;
+import io.netty.util.concurrent.UnorderedThreadPoolEventExecutor;
+import io.netty.util.concurrent.WorkStealingEventExecutorGroup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes CPU-heavy tasks of a number of channels with different {@link EventExecutorGroup}s, optionally with most
+ * of the tasks belonging to two channels that were assigned to the same thread.
+ */
+@State(Scope.Benchmark)
+public class WorkStealingEventExecutorGroupBenchmark extends AbstractMicrobenchmark {
+
+    private static final int THREADS = 4;
+    private static final int CHANNELS = 16;
+    private static final int TASKS = 4096;
+    // Both are assigned to the first thread by the round-robin chooser.
+    private static final int[] HOT_CHANNELS = { 0, THREADS };
+
+    public enum GroupType {
+        PINNED, NON_STICKY, WORK_STEALING
+    }
+
+    @Param
+    public GroupType groupType;
+
+    @Param({ "0", "90" })
+    public int skewPercent;
+
+    @Param({ "100" })
+    public int tokens;
+
+    private EventExecutorGroup group;
+    private EventExecutor[] channels;
+    private int[] channelOfTask;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        switch (groupType) {
+            case PINNED:
+                group = new DefaultEventExecutorGroup(THREADS);
+                break;
+            case NON_STICKY:
+                group = new NonStickyEventExecutorGroup(new UnorderedThreadPoolEventExecutor(THREADS));
+                break;
+            case WORK_STEALING:
+                group = new WorkStealingEventExecutorGroup(THREADS);
+                break;
+            default:
+                throw new Error();
+        }
+        channels = new EventExecutor[CHANNELS];
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = group.next();
+        }
+        channelOfTask = new int[TASKS];
+        int hotTasks = TASKS * skewPercent / 100;
+        for (int i = 0; i < TASKS; i++) {
+            channelOfTask[i] = i < hotTasks ? HOT_CHANNELS[i % HOT_CHANNELS.length] : i % CHANNELS;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        group.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS).syncUninterruptibly();
+    }
+
+    @Benchmark
+    public void executeTasks() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(TASKS);
+        final int tokens = this.tokens;
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                Blackhole.consumeCPU(tokens);
+                latch.countDown();
+            }
+        };
+        for (int i = 0; i < TASKS; i++) {
+            channels[channelOfTask[i]].execute(task);
+        }
+        latch.await();
+    }
+}
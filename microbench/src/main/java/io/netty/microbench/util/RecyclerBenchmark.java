@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.util;
+
+import io.netty.util.NettyRuntime;
+import io.netty.util.Recycler;
+import io.netty.util.internal.PlatformDependent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Queue;
+
+/**
+ * Compares the {@link Recycler} which queues objects recycled by foreign threads for their owner with the one that
+ * puts them into a shared pool.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class RecyclerBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "false", "true" })
+    public boolean sharedPool;
+
+    private Recycler<DummyObject> recycler;
+
+    @Setup
+    public void setup() {
+        recycler = new Recycler<DummyObject>(4096, 2, 8, 2 * NettyRuntime.availableProcessors(), sharedPool) {
+            @Override
+            protected DummyObject newObject(Handle<DummyObject> handle) {
+                return new DummyObject(handle);
+            }
+        };
+    }
+
+    @Benchmark
+    @Threads(1)
+    public DummyObject sameThread() {
+        DummyObject object = recycler.get();
+        object.recycle();
+        return object;
+    }
+
+    @State(Scope.Group)
+    public static class HandOver {
+        final Queue<DummyObject> queue = PlatformDependent.newFixedMpmcQueue(1024);
+    }
+
+    /**
+     * Takes an object and hands it over to {@link #crossThreadRecycle(HandOver)}. If the consumer falls behind the
+     * object is recycled by this thread.
+     */
+    @Benchmark
+    @Group("crossThread")
+    @GroupThreads(1)
+    public DummyObject crossThreadGet(HandOver handOver) {
+        DummyObject object = recycler.get();
+        if (!handOver.queue.offer(object)) {
+            object.recycle();
+        }
+        return object;
+    }
+
+    @Benchmark
+    @Group("crossThread")
+    @GroupThreads(1)
+    public DummyObject crossThreadRecycle(HandOver handOver) {
+        DummyObject object = handOver.queue.poll();
+        if (object != null) {
+            object.recycle();
+        }
+        return object;
+    }
+
+    /**
+     * Every object is taken by one thread and recycled by another one, like in a setup where tasks are handed over
+     * between worker threads in both directions.
+     */
+    @Benchmark
+    @Group("pingPong")
+    @GroupThreads(2)
+    public DummyObject pingPong(HandOver handOver) {
+        DummyObject object = handOver.queue.poll();
+        if (object != null) {
+            object.recycle();
+        }
+        object = recycler.get();
+        if (!handOver.queue.offer(object)) {
+            object.recycle();
+        }
+        return object;
+    }
+
+    static final class DummyObject {
+        private final Recycler.Handle<DummyObject> handle;
+
+        DummyObject(Recycler.Handle<DummyObject> handle) {
+            this.handle = handle;
+        }
+
+        void recycle() {
+            handle.recycle(this);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.util;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.HierarchicalWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link HashedWheelTimer} with the {@link HierarchicalWheelTimer}, both with a tick of one
+ * millisecond and with a number of far-future timeouts already pending.
+ * <p>
+ * {@link #expire()} schedules a batch of timeouts with the same delay and waits until all of them expired, so the
+ * time above {@link #EXPIRE_DELAY_MILLIS} is the jitter of the expiry.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class TimerBenchmark extends AbstractMicrobenchmark {
+
+    private static final int EXPIRE_DELAY_MILLIS = 10;
+    private static final int EXPIRE_BATCH_SIZE = 1000;
+
+    private static final TimerTask NOOP = new TimerTask() {
+        @Override
+        public void run(Timeout timeout) {
+            // NOOP
+        }
+    };
+
+    public enum TimerType {
+        HASHED, HIERARCHICAL
+    }
+
+    @Param
+    public TimerType timerType;
+
+    @Param({ "0", "1000000" })
+    public int pendingTimeouts;
+
+    private Timer timer;
+
+    @Setup
+    public void setup() {
+        ThreadFactory threadFactory = new DefaultThreadFactory("timer", true);
+        if (timerType == TimerType.HASHED) {
+            timer = new HashedWheelTimer(threadFactory, 1, TimeUnit.MILLISECONDS, 512, false, -1);
+        } else {
+            timer = new HierarchicalWheelTimer(threadFactory, 1, TimeUnit.MILLISECONDS, 64, false, -1);
+        }
+        for (int i = 0; i < pendingTimeouts; i++) {
+            timer.newTimeout(NOOP, 1 + i % 3600, TimeUnit.SECONDS);
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        timer.stop();
+    }
+
+    @Benchmark
+    public boolean insertAndCancel() {
+        return timer.newTimeout(NOOP, 1, TimeUnit.MINUTES).cancel();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void expire() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(EXPIRE_BATCH_SIZE);
+        TimerTask task = new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                latch.countDown();
+            }
+        };
+        for (int i = 0; i < EXPIRE_BATCH_SIZE; i++) {
+            timer.newTimeout(task, EXPIRE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        latch.await();
+    }
+}
@@ -27,6 +27,10 @@
 #include <netinet/in.h>
 #include <sys/sendfile.h>
 #include <linux/tcp.h> // TCP_NOTSENT_LOWAT is a linux specific define
+#include <netinet/udp.h>
+#include <sys/socket.h>
+#include <linux/errqueue.h>
+#include <unistd.h>
 
 #include "netty_epoll_linuxsocket.h"
 #include "netty_unix_errors.h"
@@ -50,6 +54,33 @@
 #define TCP_NOTSENT_LOWAT 25
 #endif
 
+// SOL_UDP may not be defined by older libc versions. We define this here so older kernels can compile.
+#ifndef SOL_UDP
+#define SOL_UDP 17
+#endif
+
+// UDP_GRO is defined in linux 5.0. We define this here so older kernels can compile.
+#ifndef UDP_GRO
+#define UDP_GRO 104
+#endif
+
+// SO_ZEROCOPY and MSG_ZEROCOPY are defined in linux 4.14. We define these here so older kernels can compile.
+#ifndef SO_ZEROCOPY
+#define SO_ZEROCOPY 60
+#endif
+
+#ifndef MSG_ZEROCOPY
+#define MSG_ZEROCOPY 0x4000000
+#endif
+
+#ifndef SO_EE_ORIGIN_ZEROCOPY
+#define SO_EE_ORIGIN_ZEROCOPY 5
+#endif
+
+#ifndef SO_EE_CODE_ZEROCOPY_COPIED
+#define SO_EE_CODE_ZEROCOPY_COPIED 1
+#endif
+
 static jclass peerCredentialsClass = NULL;
 static jmethodID peerCredentialsMethodId = NULL;
 
@@ -107,6 +138,14 @@ static void netty_epoll_linuxsocket_setIpTransparent(JNIEnv* env, jclass clazz,
     netty_unix_socket_setOption(env, fd, SOL_IP, IP_TRANSPARENT, &optval, sizeof(optval));
 }
 
+static void netty_epoll_linuxsocket_setUdpGro(JNIEnv* env, jclass clazz, jint fd, jint optval) {
+    netty_unix_socket_setOption(env, fd, SOL_UDP, UDP_GRO, &optval, sizeof(optval));
+}
+
+static void netty_epoll_linuxsocket_setZeroCopy(JNIEnv* env, jclass clazz, jint fd, jint optval) {
+    netty_unix_socket_setOption(env, fd, SOL_SOCKET, SO_ZEROCOPY, &optval, sizeof(optval));
+}
+
 static void netty_epoll_linuxsocket_setTcpMd5Sig(JNIEnv* env, jclass clazz, jint fd, jbyteArray address, jint scopeId, jbyteArray key) {
     struct sockaddr_storage addr;
     socklen_t addrSize;
@@ -193,6 +232,22 @@ static jint netty_epoll_linuxsocket_isIpTransparent(JNIEnv* env, jclass clazz, j
      return optval;
 }
 
+static jint netty_epoll_linuxsocket_isUdpGro(JNIEnv* env, jclass clazz, jint fd) {
+     int optval;
+     if (netty_unix_socket_getOption(env, fd, SOL_UDP, UDP_GRO, &optval, sizeof(optval)) == -1) {
+         return -1;
+     }
+     return optval;
+}
+
+static jint netty_epoll_linuxsocket_isZeroCopy(JNIEnv* env, jclass clazz, jint fd) {
+     int optval;
+     if (netty_unix_socket_getOption(env, fd, SOL_SOCKET, SO_ZEROCOPY, &optval, sizeof(optval)) == -1) {
+         return -1;
+     }
+     return optval;
+}
+
 static void netty_epoll_linuxsocket_getTcpInfo(JNIEnv* env, jclass clazz, jint fd, jlongArray array) {
      struct tcp_info tcp_info;
      if (netty_unix_socket_getOption(env, fd, IPPROTO_TCP, TCP_INFO, &tcp_info, sizeof(tcp_info)) == -1) {
@@ -324,6 +379,70 @@ static jlong netty_epoll_linuxsocket_sendFile(JNIEnv* env, jclass clazz, jint fd
 
     return res;
 }
+static jlong netty_epoll_linuxsocket_sendmsgZeroCopy(JNIEnv* env, jclass clazz, jint fd, jlong memoryAddress, jint length) {
+    struct msghdr msg;
+    memset(&msg, 0, sizeof(msg));
+    msg.msg_iov = (struct iovec*) (intptr_t) memoryAddress;
+    msg.msg_iovlen = length;
+
+    ssize_t res;
+    int err;
+    do {
+       res = sendmsg(fd, &msg, MSG_ZEROCOPY);
+       // keep on writing if it was interrupted
+    } while (res == -1 && ((err = errno) == EINTR));
+
+    if (res < 0) {
+        return -err;
+    }
+    return (jlong) res;
+}
+
+static jint netty_epoll_linuxsocket_recvZeroCopyCompletion(JNIEnv* env, jclass clazz, jint fd, jintArray result) {
+    struct msghdr msg;
+    char control[CMSG_SPACE(sizeof(struct sock_extended_err) + sizeof(struct sockaddr_in6))];
+    memset(&msg, 0, sizeof(msg));
+    msg.msg_control = control;
+    msg.msg_controllen = sizeof(control);
+
+    ssize_t res;
+    int err;
+    do {
+       res = recvmsg(fd, &msg, MSG_ERRQUEUE);
+       // keep on reading if it was interrupted
+    } while (res == -1 && ((err = errno) == EINTR));
+
+    if (res < 0) {
+        return -err;
+    }
+
+    struct cmsghdr* cm;
+    for (cm = CMSG_FIRSTHDR(&msg); cm != NULL; cm = CMSG_NXTHDR(&msg, cm)) {
+        if ((cm->cmsg_level == SOL_IP && cm->cmsg_type == IP_RECVERR) ||
+                (cm->cmsg_level == SOL_IPV6 && cm->cmsg_type == IPV6_RECVERR)) {
+            struct sock_extended_err* serr = (struct sock_extended_err*) CMSG_DATA(cm);
+            if (serr->ee_errno == 0 && serr->ee_origin == SO_EE_ORIGIN_ZEROCOPY) {
+                // The notification covers all sends with an id between ee_info and ee_data (inclusive).
+                jint completion[3];
+                completion[0] = (jint) serr->ee_info;
+                completion[1] = (jint) serr->ee_data;
+                completion[2] = (serr->ee_code & SO_EE_CODE_ZEROCOPY_COPIED) != 0 ? 1 : 0;
+                (*env)->SetIntArrayRegion(env, result, 0, 3, completion);
+                return 1;
+            }
+        }
+    }
+    // Some other message was queued on the error queue.
+    return 2;
+}
+
+static jint netty_epoll_linuxsocket_dup(JNIEnv* env, jclass clazz, jint fd) {
+    int res = dup(fd);
+    if (res < 0) {
+        return -errno;
+    }
+    return res;
+}
 // JNI Registered Methods End
 
 // JNI Method Registration Table Begin
@@ -345,12 +464,19 @@ static const JNINativeMethod fixed_method_table[] = {
   { "setTcpUserTimeout", "(II)V", (void *) netty_epoll_linuxsocket_setTcpUserTimeout },
   { "setIpFreeBind", "(II)V", (void *) netty_epoll_linuxsocket_setIpFreeBind },
   { "setIpTransparent", "(II)V", (void *) netty_epoll_linuxsocket_setIpTransparent },
+  { "setUdpGro", "(II)V", (void *) netty_epoll_linuxsocket_setUdpGro },
+  { "setZeroCopy", "(II)V", (void *) netty_epoll_linuxsocket_setZeroCopy },
   { "getTcpKeepIdle", "(I)I", (void *) netty_epoll_linuxsocket_getTcpKeepIdle },
   { "getTcpKeepIntvl", "(I)I", (void *) netty_epoll_linuxsocket_getTcpKeepIntvl },
   { "getTcpKeepCnt", "(I)I", (void *) netty_epoll_linuxsocket_getTcpKeepCnt },
   { "getTcpUserTimeout", "(I)I", (void *) netty_epoll_linuxsocket_getTcpUserTimeout },
   { "isIpFreeBind", "(I)I", (void *) netty_epoll_linuxsocket_isIpFreeBind },
   { "isIpTransparent", "(I)I", (void *) netty_epoll_linuxsocket_isIpTransparent },
+  { "isUdpGro", "(I)I", (void *) netty_epoll_linuxsocket_isUdpGro },
+  { "isZeroCopy", "(I)I", (void *) netty_epoll_linuxsocket_isZeroCopy },
+  { "sendmsgZeroCopy", "(IJI)J", (void *) netty_epoll_linuxsocket_sendmsgZeroCopy },
+  { "recvZeroCopyCompletion", "(I[I)I", (void *) netty_epoll_linuxsocket_recvZeroCopyCompletion },
+  { "dup", "(I)I", (void *) netty_epoll_linuxsocket_dup },
   { "getTcpInfo", "(I[J)V", (void *) netty_epoll_linuxsocket_getTcpInfo },
   { "setTcpMd5Sig", "(I[BI[B)V", (void *) netty_epoll_linuxsocket_setTcpMd5Sig }
   // "sendFile" has a dynamic signature
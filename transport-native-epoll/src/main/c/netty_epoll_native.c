@@ -24,6 +24,7 @@
 #include <sys/un.h>
 #include <netinet/in.h>
 #include <netinet/tcp.h>
+#include <netinet/udp.h>
 #include <sys/types.h>
 #include <sys/socket.h>
 #include <sys/timerfd.h>
@@ -42,6 +43,7 @@
 #include "netty_unix_filedescriptor.h"
 #include "netty_unix_jni.h"
 #include "netty_unix_limits.h"
+#include "netty_unix_memory.h"
 #include "netty_unix_socket.h"
 #include "netty_unix_util.h"
 
@@ -50,6 +52,21 @@
 #define TCP_FASTOPEN 23
 #endif
 
+// SOL_UDP may not be defined by older libc versions. We define this here so older kernels can compile.
+#ifndef SOL_UDP
+#define SOL_UDP 17
+#endif
+
+// UDP_SEGMENT is defined in linux 4.18. We define this here so older kernels can compile.
+#ifndef UDP_SEGMENT
+#define UDP_SEGMENT 103
+#endif
+
+// UDP_GRO is defined in linux 5.0. We define this here so older kernels can compile.
+#ifndef UDP_GRO
+#define UDP_GRO 104
+#endif
+
 // optional
 extern int epoll_create1(int flags) __attribute__((weak));
 
@@ -64,12 +81,19 @@ struct mmsghdr {
 #endif
 #endif
 
+#ifdef IO_NETTY_RECVMMSG_NOT_FOUND
+extern int recvmmsg(int sockfd, struct mmsghdr* msgvec, unsigned int vlen, int flags, struct timespec* timeout) __attribute__((weak));
+#endif
+
 // Those are initialized in the init(...) method and cached for performance reasons
 jfieldID packetAddrFieldId = NULL;
 jfieldID packetScopeIdFieldId = NULL;
 jfieldID packetPortFieldId = NULL;
 jfieldID packetMemoryAddressFieldId = NULL;
 jfieldID packetCountFieldId = NULL;
+jfieldID packetAddrLenFieldId = NULL;
+jfieldID packetReceivedFieldId = NULL;
+jfieldID packetSegmentSizeFieldId = NULL;
 
 // util methods
 static int getSysctlValue(const char * property, int* returnValue) {
@@ -236,10 +260,13 @@ static jint netty_epoll_native_epollCtlDel0(JNIEnv* env, jclass clazz, jint efd,
 static jint netty_epoll_native_sendmmsg0(JNIEnv* env, jclass clazz, jint fd, jobjectArray packets, jint offset, jint len) {
     struct mmsghdr msg[len];
     struct sockaddr_storage addr[len];
+    // One control message buffer per datagram, used to pass the UDP_SEGMENT size if needed.
+    char control[len][CMSG_SPACE(sizeof(uint16_t))];
     socklen_t addrSize;
     int i;
 
     memset(msg, 0, sizeof(msg));
+    memset(control, 0, sizeof(control));
 
     for (i = 0; i < len; i++) {
 
@@ -257,6 +284,19 @@ static jint netty_epoll_native_sendmmsg0(JNIEnv* env, jclass clazz, jint fd, job
 
         msg[i].msg_hdr.msg_iov = (struct iovec*) (intptr_t) (*env)->GetLongField(env, packet, packetMemoryAddressFieldId);
         msg[i].msg_hdr.msg_iovlen = (*env)->GetIntField(env, packet, packetCountFieldId);;
+
+        jint segmentSize = (*env)->GetIntField(env, packet, packetSegmentSizeFieldId);
+        if (segmentSize > 0) {
+            // Let the kernel split the payload into datagrams of segmentSize bytes each.
+            msg[i].msg_hdr.msg_control = control[i];
+            msg[i].msg_hdr.msg_controllen = sizeof(control[i]);
+
+            struct cmsghdr* cm = CMSG_FIRSTHDR(&msg[i].msg_hdr);
+            cm->cmsg_level = SOL_UDP;
+            cm->cmsg_type = UDP_SEGMENT;
+            cm->cmsg_len = CMSG_LEN(sizeof(uint16_t));
+            *((uint16_t*) CMSG_DATA(cm)) = (uint16_t) segmentSize;
+        }
     }
 
     ssize_t res;
@@ -272,6 +312,84 @@ static jint netty_epoll_native_sendmmsg0(JNIEnv* env, jclass clazz, jint fd, job
     return (jint) res;
 }
 
+static jint netty_epoll_native_recvmmsg0(JNIEnv* env, jclass clazz, jint fd, jobjectArray packets, jint offset, jint len) {
+    struct mmsghdr msg[len];
+    struct sockaddr_storage addr[len];
+    // One control message buffer per datagram, used to receive the UDP_GRO segment size if any.
+    char control[len][CMSG_SPACE(sizeof(int))];
+    int i;
+
+    memset(msg, 0, sizeof(msg));
+
+    for (i = 0; i < len; i++) {
+        jobject packet = (*env)->GetObjectArrayElement(env, packets, i + offset);
+
+        msg[i].msg_hdr.msg_name = &addr[i];
+        msg[i].msg_hdr.msg_namelen = (socklen_t) sizeof(addr[i]);
+
+        msg[i].msg_hdr.msg_iov = (struct iovec*) (intptr_t) (*env)->GetLongField(env, packet, packetMemoryAddressFieldId);
+        msg[i].msg_hdr.msg_iovlen = (*env)->GetIntField(env, packet, packetCountFieldId);
+
+        msg[i].msg_hdr.msg_control = control[i];
+        msg[i].msg_hdr.msg_controllen = sizeof(control[i]);
+    }
+
+    ssize_t res;
+    int err;
+    do {
+       res = recvmmsg(fd, msg, len, 0, NULL);
+       // keep on reading if it was interrupted
+    } while (res == -1 && ((err = errno) == EINTR));
+
+    if (res < 0) {
+        return -err;
+    }
+
+    // Pass the sender and the number of received bytes of every datagram back to java.
+    for (i = 0; i < res; i++) {
+        jobject packet = (*env)->GetObjectArrayElement(env, packets, i + offset);
+        jbyteArray address = (jbyteArray) (*env)->GetObjectField(env, packet, packetAddrFieldId);
+
+        (*env)->SetIntField(env, packet, packetReceivedFieldId, (jint) msg[i].msg_len);
+
+        // If UDP_GRO is enabled the kernel may have coalesced multiple datagrams, in which case it tells us
+        // the size of the single datagrams.
+        jint segmentSize = 0;
+        struct cmsghdr* cm;
+        for (cm = CMSG_FIRSTHDR(&msg[i].msg_hdr); cm != NULL; cm = CMSG_NXTHDR(&msg[i].msg_hdr, cm)) {
+            if (cm->cmsg_level == SOL_UDP && cm->cmsg_type == UDP_GRO) {
+                segmentSize = *((int*) CMSG_DATA(cm));
+                break;
+            }
+        }
+        (*env)->SetIntField(env, packet, packetSegmentSizeFieldId, segmentSize);
+
+        if (addr[i].ss_family == AF_INET) {
+            struct sockaddr_in* ipaddr = (struct sockaddr_in*) &addr[i];
+
+            (*env)->SetByteArrayRegion(env, address, 0, 4, (jbyte*) &ipaddr->sin_addr.s_addr);
+            (*env)->SetIntField(env, packet, packetAddrLenFieldId, 4);
+            (*env)->SetIntField(env, packet, packetScopeIdFieldId, 0);
+            (*env)->SetIntField(env, packet, packetPortFieldId, ntohs(ipaddr->sin_port));
+        } else {
+            struct sockaddr_in6* ip6addr = (struct sockaddr_in6*) &addr[i];
+
+            if (IN6_IS_ADDR_V4MAPPED(&ip6addr->sin6_addr)) {
+                // IPv4-mapped-on-IPv6, only pass the IPv4 address.
+                (*env)->SetByteArrayRegion(env, address, 0, 4, (jbyte*) &ip6addr->sin6_addr.s6_addr[12]);
+                (*env)->SetIntField(env, packet, packetAddrLenFieldId, 4);
+                (*env)->SetIntField(env, packet, packetScopeIdFieldId, 0);
+            } else {
+                (*env)->SetByteArrayRegion(env, address, 0, 16, (jbyte*) &ip6addr->sin6_addr.s6_addr);
+                (*env)->SetIntField(env, packet, packetAddrLenFieldId, 16);
+                (*env)->SetIntField(env, packet, packetScopeIdFieldId, ip6addr->sin6_scope_id);
+            }
+            (*env)->SetIntField(env, packet, packetPortFieldId, ntohs(ip6addr->sin6_port));
+        }
+    }
+    return (jint) res;
+}
+
 static jstring netty_epoll_native_kernelVersion(JNIEnv* env, jclass clazz) {
     struct utsname name;
 
@@ -292,6 +410,28 @@ static jboolean netty_epoll_native_isSupportingSendmmsg(JNIEnv* env, jclass claz
     return JNI_FALSE;
 }
 
+static jboolean netty_epoll_native_isSupportingRecvmmsg(JNIEnv* env, jclass clazz) {
+    // Use & to avoid warnings with -Wtautological-pointer-compare when recvmmsg is
+    // not weakly defined.
+    if (&recvmmsg != NULL) {
+        return JNI_TRUE;
+    }
+    return JNI_FALSE;
+}
+
+static jboolean netty_epoll_native_isSupportingUdpSegment(JNIEnv* env, jclass clazz) {
+    // Older kernels do not know about UDP_SEGMENT and so fail the getsockopt(...) call.
+    int fd = socket(AF_INET, SOCK_DGRAM, 0);
+    if (fd == -1) {
+        return JNI_FALSE;
+    }
+    int optval;
+    socklen_t optlen = sizeof(optval);
+    int res = getsockopt(fd, SOL_UDP, UDP_SEGMENT, &optval, &optlen);
+    close(fd);
+    return res == 0 ? JNI_TRUE : JNI_FALSE;
+}
+
 static jboolean netty_epoll_native_isSupportingTcpFastopen(JNIEnv* env, jclass clazz) {
     int fastopen = 0;
     getSysctlValue("/proc/sys/net/ipv4/tcp_fastopen", &fastopen);
@@ -349,6 +489,10 @@ static jint netty_epoll_native_splice0(JNIEnv* env, jclass clazz, jint fd, jlong
     return (jint) res;
 }
 
+static jint netty_epoll_native_errnoENOBUFS(JNIEnv* env, jclass clazz) {
+    return ENOBUFS;
+}
+
 static jint netty_epoll_native_tcpMd5SigMaxKeyLen(JNIEnv* env, jclass clazz) {
     struct tcp_md5sig md5sig;
 
@@ -369,7 +513,10 @@ static const JNINativeMethod statically_referenced_fixed_method_table[] = {
   { "epollrdhup", "()I", (void *) netty_epoll_native_epollrdhup },
   { "epollerr", "()I", (void *) netty_epoll_native_epollerr },
   { "tcpMd5SigMaxKeyLen", "()I", (void *) netty_epoll_native_tcpMd5SigMaxKeyLen },
+  { "errnoENOBUFS", "()I", (void *) netty_epoll_native_errnoENOBUFS },
   { "isSupportingSendmmsg", "()Z", (void *) netty_epoll_native_isSupportingSendmmsg },
+  { "isSupportingRecvmmsg", "()Z", (void *) netty_epoll_native_isSupportingRecvmmsg },
+  { "isSupportingUdpSegment", "()Z", (void *) netty_epoll_native_isSupportingUdpSegment },
   { "isSupportingTcpFastopen", "()Z", (void *) netty_epoll_native_isSupportingTcpFastopen },
   { "kernelVersion", "()Ljava/lang/String;", (void *) netty_epoll_native_kernelVersion }
 };
@@ -386,6 +533,7 @@ static const JNINativeMethod fixed_method_table[] = {
   { "epollCtlMod0", "(III)I", (void *) netty_epoll_native_epollCtlMod0 },
   { "epollCtlDel0", "(II)I", (void *) netty_epoll_native_epollCtlDel0 },
   // "sendmmsg0" has a dynamic signature
+  // "recvmmsg0" has a dynamic signature
   { "sizeofEpollEvent", "()I", (void *) netty_epoll_native_sizeofEpollEvent },
   { "offsetofEpollData", "()I", (void *) netty_epoll_native_offsetofEpollData },
   { "splice0", "(IJIJJ)I", (void *) netty_epoll_native_splice0 }
@@ -393,7 +541,7 @@ static const JNINativeMethod fixed_method_table[] = {
 static const jint fixed_method_table_size = sizeof(fixed_method_table) / sizeof(fixed_method_table[0]);
 
 static jint dynamicMethodsTableSize() {
-    return fixed_method_table_size + 1; // 1 is for the dynamic method signatures.
+    return fixed_method_table_size + 2; // 2 is for the dynamic method signatures.
 }
 
 static JNINativeMethod* createDynamicMethodsTable(const char* packagePrefix) {
@@ -404,6 +552,10 @@ static JNINativeMethod* createDynamicMethodsTable(const char* packagePrefix) {
     dynamicMethod->name = "sendmmsg0";
     dynamicMethod->signature = netty_unix_util_prepend("(I[L", dynamicTypeName);
     dynamicMethod->fnPtr = (void *) netty_epoll_native_sendmmsg0;
+    ++dynamicMethod;
+    dynamicMethod->name = "recvmmsg0";
+    dynamicMethod->signature = netty_unix_util_prepend("(I[L", dynamicTypeName);
+    dynamicMethod->fnPtr = (void *) netty_epoll_native_recvmmsg0;
     free(dynamicTypeName);
     return dynamicMethods;
 }
@@ -443,6 +595,9 @@ static jint netty_epoll_native_JNI_OnLoad(JNIEnv* env, const char* packagePrefix
     if (netty_unix_limits_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
         return JNI_ERR;
     }
+    if (netty_unix_memory_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        return JNI_ERR;
+    }
     if (netty_unix_errors_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
         return JNI_ERR;
     }
@@ -492,12 +647,28 @@ static jint netty_epoll_native_JNI_OnLoad(JNIEnv* env, const char* packagePrefix
         netty_unix_errors_throwRuntimeException(env, "failed to get field ID: NativeDatagramPacket.count");
         return JNI_ERR;
     }
+    packetAddrLenFieldId = (*env)->GetFieldID(env, nativeDatagramPacketCls, "addrLen", "I");
+    if (packetAddrLenFieldId == NULL) {
+        netty_unix_errors_throwRuntimeException(env, "failed to get field ID: NativeDatagramPacket.addrLen");
+        return JNI_ERR;
+    }
+    packetReceivedFieldId = (*env)->GetFieldID(env, nativeDatagramPacketCls, "received", "I");
+    if (packetReceivedFieldId == NULL) {
+        netty_unix_errors_throwRuntimeException(env, "failed to get field ID: NativeDatagramPacket.received");
+        return JNI_ERR;
+    }
+    packetSegmentSizeFieldId = (*env)->GetFieldID(env, nativeDatagramPacketCls, "segmentSize", "I");
+    if (packetSegmentSizeFieldId == NULL) {
+        netty_unix_errors_throwRuntimeException(env, "failed to get field ID: NativeDatagramPacket.segmentSize");
+        return JNI_ERR;
+    }
 
     return NETTY_JNI_VERSION;
 }
 
 static void netty_epoll_native_JNI_OnUnLoad(JNIEnv* env) {
     netty_unix_limits_JNI_OnUnLoad(env);
+    netty_unix_memory_JNI_OnUnLoad(env);
     netty_unix_errors_JNI_OnUnLoad(env);
     netty_unix_filedescriptor_JNI_OnUnLoad(env);
     netty_unix_socket_JNI_OnUnLoad(env);
@@ -392,6 +392,15 @@ abstract class AbstractEpollChannel extends AbstractChannel implements UnixChann
          */
         abstract void epollInReady();
 
+        /**
+         * Called once an EPOLLERR event is ready to be processed. Returns {@code true} if the event signals an error
+         * of the socket, in which case {@link #epollOutReady()} and {@link #epollInReady()} are called for it to
+         * notify the user, {@code false} if the event was handled already.
+         */
+        boolean epollErrReady() {
+            return true;
+        }
+
         final void epollInBefore() { maybeMoreDataToRead = false; }
 //
         final void epollInFinally(ChannelConfig config) {
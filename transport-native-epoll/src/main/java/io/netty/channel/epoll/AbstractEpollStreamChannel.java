@@ -35,8 +35,11 @@ import io.netty.channel.unix.FileDescriptor;
 import io.netty.channel.unix.IovArray;
 import io.netty.channel.unix.SocketWritableByteChannel;
 import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.GlobalEventExecutor;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.ThrowableUtil;
 import io.netty.util.internal.UnstableApi;
 import io.netty.util.internal.logging.InternalLogger;
@@ -47,8 +50,12 @@ import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
 import java.util.Queue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static io.netty.channel.internal.ChannelUtils.MAX_BYTES_PER_GATHERING_WRITE_ATTEMPTED_LOW_THRESHOLD;
 import static io.netty.channel.internal.ChannelUtils.WRITE_STATUS_SNDBUF_FULL;
@@ -70,6 +77,10 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     private static final ClosedChannelException FAIL_SPLICE_IF_CLOSED_CLOSED_CHANNEL_EXCEPTION =
             ThrowableUtil.unknownStackTrace(new ClosedChannelException(),
             AbstractEpollStreamChannel.class, "failSpliceIfClosed(...)");
+    // How long a closed channel keeps waiting for its outstanding MSG_ZEROCOPY completions, see ZeroCopyCloseTask.
+    private static final long ZERO_COPY_CLOSE_TIMEOUT_MILLIS = Math.max(0,
+            SystemPropertyUtil.getLong("io.netty.epoll.zeroCopyCloseTimeoutMillis", 30000));
+    private static final long ZERO_COPY_CLOSE_POLL_INTERVAL_MILLIS = 10;
 //
     private final Runnable flushTask = new Runnable() {
         @Override
@@ -85,6 +96,9 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
     private WritableByteChannel byteChannel;
 
+    // Created on the first write with MSG_ZEROCOPY.
+    private ZeroCopyWrites zeroCopyWrites;
+
     protected AbstractEpollStreamChannel(Channel parent, int fd) {
         this(parent, new LinuxSocket(fd));
     }
@@ -232,6 +246,25 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         return promise;
     }
 
+    /**
+     * Splice everything this channel reads to the given {@link AbstractEpollStreamChannel} until one of them is
+     * closed. The bytes are moved through a pipe of the {@link EpollEventLoop}'s pool, which is only held while
+     * spliced bytes were not written to {@code ch} yet. Reading is paused until that happened. When the end of the
+     * input is reached this channel is shut down as if it was read with {@link ByteBuf}s.
+     *
+     * Both channels must be registered to the same {@link EventLoop} and this method must be called from it.
+     */
+    final ChannelFuture spliceRelayTo(AbstractEpollStreamChannel ch) {
+        assert eventLoop().inEventLoop() && ch.eventLoop() == eventLoop();
+        ChannelPromise promise = newPromise();
+        if (!isOpen()) {
+            promise.tryFailure(SPLICE_TO_CLOSED_CHANNEL_EXCEPTION);
+        } else {
+            addToSpliceQueue0(new SpliceInRelayTask(ch, promise));
+        }
+        return promise;
+    }
+
     private void failSpliceIfClosed(ChannelPromise promise) {
         if (!isOpen()) {
             // Seems like the Channel was closed in the meantime try to fail the promise to prevent any
@@ -269,6 +302,13 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             return 0;
         }
 
+        if (isZeroCopyWrite(readableBytes)) {
+            IovArray array = ((EpollEventLoop) eventLoop()).cleanArray();
+            array.maxBytes(config().getMaxBytesPerGatheringWrite());
+            array.add(buf);
+            return writeBytesZeroCopy(in, array);
+        }
+
         if (buf.hasMemoryAddress() || buf.nioBufferCount() == 1) {
             return doWriteBytes(in, buf);
         } else {
@@ -321,6 +361,106 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         return WRITE_STATUS_SNDBUF_FULL;
     }
 
+    /**
+     * Write multiple bytes via {@link IovArray} with {@code MSG_ZEROCOPY}. The written {@link ByteBuf}s are retained
+     * until the kernel notifies us that it no longer needs their memory, see {@link #processZeroCopyCompletions()}.
+     * @param in the collection which contains objects to write.
+     * @param array The array which contains the content to write.
+     * @return The value that should be decremented from the write quantum which starts at
+     * {@link ChannelConfig#getWriteSpinCount()}. The typical use cases are as follows:
+     * <ul>
+     *     <li>1 - if a single call to write data was made to the OS</li>
+     *     <li>{@link ChannelUtils#WRITE_STATUS_SNDBUF_FULL} - if an attempt to write data was made to the OS, but
+     *     no data was accepted</li>
+     * </ul>
+     * @throws Exception If an I/O exception occurs during write.
+     */
+    private int writeBytesZeroCopy(ChannelOutboundBuffer in, IovArray array) throws Exception {
+        final long expectedWrittenBytes = array.size();
+        assert expectedWrittenBytes != 0;
+        final int cnt = array.count();
+        assert cnt != 0;
+
+        final long localWrittenBytes = socket.sendmsgZeroCopy(array.memoryAddress(0), cnt);
+        if (localWrittenBytes < 0) {
+            // The kernel refused to pin more memory for this socket, so copy the data this time.
+            return writeBytesMultiple(in, array);
+        }
+        if (localWrittenBytes > 0) {
+            adjustMaxBytesPerGatheringWrite(expectedWrittenBytes, localWrittenBytes, array.maxBytes());
+            if (zeroCopyWrites == null) {
+                zeroCopyWrites = new ZeroCopyWrites();
+            }
+            // Retain the buffers before removeBytes(...) releases them.
+            zeroCopyWrites.add(in, localWrittenBytes);
+            in.removeBytes(localWrittenBytes);
+            return 1;
+        }
+        return WRITE_STATUS_SNDBUF_FULL;
+    }
+
+    /**
+     * Returns {@code true} if the given number of bytes should be written with {@code MSG_ZEROCOPY}.
+     */
+    private boolean isZeroCopyWrite(long bytes) {
+        if (!PlatformDependent.hasUnsafe()) {
+            // We need the memory addresses of the buffers.
+            return false;
+        }
+        int threshold = zeroCopyThreshold();
+        return threshold >= 0 && bytes >= threshold && (zeroCopyWrites == null || !zeroCopyWrites.copied);
+    }
+
+    /**
+     * Returns the minimum number of bytes a write must have to be done with {@code MSG_ZEROCOPY}, or {@code -1} if
+     * {@code MSG_ZEROCOPY} is not used.
+     */
+    int zeroCopyThreshold() {
+        return -1;
+    }
+
+    /**
+     * Release the {@link ByteBuf}s of all {@code MSG_ZEROCOPY} writes which the kernel completed.
+     */
+    private void processZeroCopyCompletions() throws IOException {
+        if (zeroCopyWrites != null) {
+            zeroCopyWrites.processCompletions(socket);
+        }
+    }
+
+    /**
+     * The kernel may still send from the memory of {@code MSG_ZEROCOPY} writes which did not complete yet, but we
+     * would not be notified about their completions anymore once the socket is closed. So shut down the output, which
+     * still sends the outstanding data, and let a {@link ZeroCopyCloseTask} wait for the completions on a duplicate of
+     * the file descriptor.
+     */
+    private void closeZeroCopyWrites() {
+        ZeroCopyWrites writes = zeroCopyWrites;
+        if (writes == null) {
+            return;
+        }
+        zeroCopyWrites = null;
+        LinuxSocket dup = null;
+        try {
+            writes.processCompletions(socket);
+            if (writes.isEmpty()) {
+                return;
+            }
+            if (!socket.isOutputShutdown()) {
+                try {
+                    socket.shutdown(false, true);
+                } catch (IOException ignore) {
+                    // The connection may have been reset already, the kernel then drops the outstanding data anyway.
+                }
+            }
+            dup = socket.dup();
+        } catch (IOException e) {
+            logger.debug("Failed to wait for the MSG_ZEROCOPY completions of {}", this, e);
+        }
+        EventExecutor executor = isRegistered() ? eventLoop() : GlobalEventExecutor.INSTANCE;
+        new ZeroCopyCloseTask(dup, writes, executor).schedule();
+    }
+
     /**
      * Write multiple bytes via {@link ByteBuffer} array.
      * @param in the collection which contains objects to write.
@@ -490,6 +630,12 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             }
             in.remove();
             return 1;
+        } else if (msg instanceof SpliceInRelayTask) {
+            if (!((SpliceInRelayTask) msg).spliceOut()) {
+                return WRITE_STATUS_SNDBUF_FULL;
+            }
+            in.remove();
+            return 1;
         } else {
             // Should never reach here.
             throw new Error();
@@ -518,6 +664,9 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             in.forEachFlushedMessage(array);
 
             if (array.count() >= 1) {
+                if (isZeroCopyWrite(array.size())) {
+                    return writeBytesZeroCopy(in, array);
+                }
                 // TODO: Handle the case where cnt == 1 specially.
                 return writeBytesMultiple(in, array);
             }
@@ -541,7 +690,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             return UnixChannelUtil.isBufferCopyNeededForWrite(buf)? newDirectBuffer(buf): buf;
         }
 
-        if (msg instanceof FileRegion || msg instanceof SpliceOutTask) {
+        if (msg instanceof FileRegion || msg instanceof SpliceOutTask || msg instanceof SpliceInRelayTask) {
             return msg;
         }
 
@@ -688,6 +837,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     @Override
     protected void doClose() throws Exception {
         try {
+            closeZeroCopyWrites();
             // Calling super.doClose() first so spliceTo(...) will fail on next call.
             super.doClose();
         } finally {
@@ -728,6 +878,23 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         protected Executor prepareToClose() {
             return super.prepareToClose();
         }
+
+        @Override
+        boolean epollErrReady() {
+            if (zeroCopyWrites == null) {
+                // Without MSG_ZEROCOPY writes EPOLLERR is only generated for socket errors.
+                return true;
+            }
+            try {
+                processZeroCopyCompletions();
+                // The completions alone also generate EPOLLERR, so check if there is an error left.
+                return socket.getSoError() != 0;
+            } catch (IOException e) {
+                pipeline().fireExceptionCaught(e);
+                close(voidPromise());
+                return false;
+            }
+        }
 //
         private void handleReadException(ChannelPipeline pipeline, ByteBuf byteBuf, Throwable cause, boolean close,
                 EpollRecvByteAllocatorHandle allocHandle) {
@@ -782,6 +949,11 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
                                 }
                                 continue;
                             } else {
+                                // The task sets a negative number of read bytes once it reached the end of the input.
+                                close = allocHandle.lastBytesRead() < 0;
+                                if (close) {
+                                    readPending = false;
+                                }
                                 break;
                             }
                         }
@@ -961,6 +1133,282 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         }
     }
 
+    /**
+     * Splices from this channel into a pipe, and from the pipe to the target channel by writing itself to it, see
+     * {@link #spliceRelayTo(AbstractEpollStreamChannel)}. Only one splice is in flight at a time.
+     */
+    private final class SpliceInRelayTask extends SpliceInTask implements ChannelFutureListener {
+        private final AbstractEpollStreamChannel ch;
+        private FileDescriptor[] pipe;
+        // The number of bytes in the pipe which were not spliced to the target channel yet.
+        private int pending;
+        private boolean autoReadPaused;
+
+        SpliceInRelayTask(AbstractEpollStreamChannel ch, ChannelPromise promise) {
+            super(Integer.MAX_VALUE, promise);
+            this.ch = ch;
+        }
+
+        @Override
+        boolean spliceIn(RecvByteBufAllocator.Handle handle) {
+            assert ch.eventLoop().inEventLoop();
+            if (promise.isDone()) {
+                return true;
+            }
+            if (pending != 0) {
+                // Still waiting for the target channel to accept the bytes of the last splice. There may be more
+                // to read once it did.
+                handle.attemptedBytesRead(0);
+                handle.lastBytesRead(0);
+                return false;
+            }
+            try {
+                if (pipe == null) {
+                    pipe = ((EpollEventLoop) eventLoop()).acquirePipe();
+                }
+                int splicedIn = 0;
+                boolean eof = false;
+                for (;;) {
+                    // Splice until either the socket has no more data or the pipe is full.
+                    int localSplicedIn = Native.spliceNonBlocking(
+                            socket.intValue(), pipe[1].intValue(), Integer.MAX_VALUE - splicedIn);
+                    if (localSplicedIn < 0) {
+                        break;
+                    }
+                    if (localSplicedIn == 0) {
+                        eof = true;
+                        break;
+                    }
+                    splicedIn += localSplicedIn;
+                }
+                // If something was spliced the socket may still have more data as the pipe may be full, which is
+                // the case if the read bytes match the attempted bytes.
+                handle.attemptedBytesRead(splicedIn == 0 ? 1 : splicedIn);
+                handle.lastBytesRead(eof ? -1 : splicedIn);
+                if (splicedIn == 0) {
+                    ((EpollEventLoop) eventLoop()).releasePipe(pipe);
+                    pipe = null;
+                    return false;
+                }
+                pending = splicedIn;
+                ((AbstractEpollUnsafe) unsafe()).readPending = false;
+
+                // Just call unsafe().write(...) and flush() as we not want to traverse the whole pipeline for this
+                // case.
+                ch.unsafe().write(this, ch.newPromise().addListener(this));
+                ch.unsafe().flush();
+                if (pending != 0 && config().isAutoRead()) {
+                    // The target channel is not writable, stop reading until it took everything from the pipe.
+                    autoReadPaused = true;
+                    config().setAutoRead(false);
+                }
+                return false;
+            } catch (Throwable cause) {
+                closePipe();
+                promise.tryFailure(cause);
+                return true;
+            }
+        }
+
+        boolean spliceOut() throws Exception {
+            assert ch.eventLoop().inEventLoop();
+            int splicedOut = Native.splice(pipe[0].intValue(), -1, ch.socket.intValue(), -1, pending);
+            pending -= splicedOut;
+            if (pending != 0) {
+                return false;
+            }
+            ((EpollEventLoop) eventLoop()).releasePipe(pipe);
+            pipe = null;
+            if (autoReadPaused) {
+                autoReadPaused = false;
+                config().setAutoRead(true);
+            } else {
+                // Reading was not paused by this task, for example as autoRead was off already when the splice was
+                // triggered by a read(). Nothing else reads for the relay, so re-arm reading to not miss the bytes
+                // which arrived in the meantime.
+                read();
+            }
+            return true;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) {
+            if (!future.isSuccess()) {
+                // The pipe may still contain data, so it can not be reused.
+                closePipe();
+                promise.tryFailure(future.cause());
+            }
+        }
+
+        private void closePipe() {
+            if (pipe != null) {
+                EpollEventLoop.closePipe(pipe);
+                pipe = null;
+                pending = 0;
+            }
+        }
+    }
+
+    /**
+     * The {@link ByteBuf}s written with {@code MSG_ZEROCOPY}, in the order of the ids the kernel assigned to the
+     * writes. Each successful {@code MSG_ZEROCOPY} write gets the next id, starting at {@code 0}.
+     */
+    private static final class ZeroCopyWrites implements ChannelOutboundBuffer.MessageProcessor {
+        private final ArrayDeque<ZeroCopyWrite> writes = new ArrayDeque<ZeroCopyWrite>();
+        final int[] completion = new int[3];
+        // Set once the kernel reported that it had to copy the data, so MSG_ZEROCOPY only adds overhead.
+        boolean copied;
+        private int nextId;
+        private long remaining;
+
+        boolean isEmpty() {
+            return writes.isEmpty();
+        }
+
+        int size() {
+            return writes.size();
+        }
+
+        /**
+         * Release the {@link ByteBuf}s of all writes which the kernel completed according to the error queue of the
+         * given socket.
+         */
+        void processCompletions(LinuxSocket socket) throws IOException {
+            while (!writes.isEmpty()) {
+                int res = socket.recvZeroCopyCompletion(completion);
+                if (res == 0) {
+                    break;
+                }
+                if (res == 1) {
+                    complete(completion[0], completion[1], completion[2] != 0);
+                }
+            }
+        }
+
+        /**
+         * Retain the {@link ByteBuf}s of the flushed messages which hold the given number of written bytes.
+         */
+        void add(ChannelOutboundBuffer in, long writtenBytes) throws Exception {
+            remaining = writtenBytes;
+            in.forEachFlushedMessage(this);
+            nextId++;
+        }
+
+        @Override
+        public boolean processMessage(Object msg) {
+            if (!(msg instanceof ByteBuf)) {
+                return false;
+            }
+            ByteBuf buf = (ByteBuf) msg;
+            int readableBytes = buf.readableBytes();
+            if (readableBytes == 0) {
+                return true;
+            }
+            writes.add(new ZeroCopyWrite(nextId, buf.retain()));
+            remaining -= readableBytes;
+            return remaining > 0;
+        }
+
+        /**
+         * Release the {@link ByteBuf}s of the writes with an id between {@code first} and {@code last}.
+         */
+        void complete(int first, int last, boolean copied) {
+            if (copied) {
+                this.copied = true;
+            }
+            Iterator<ZeroCopyWrite> iterator = writes.iterator();
+            while (iterator.hasNext()) {
+                ZeroCopyWrite write = iterator.next();
+                // Compare the difference so this also works once the ids wrap around.
+                if (write.id - last > 0) {
+                    break;
+                }
+                if (write.id - first >= 0) {
+                    iterator.remove();
+                    write.buf.release();
+                }
+            }
+        }
+
+        /**
+         * Forget about all writes without releasing their {@link ByteBuf}s, so their memory is never reused while
+         * the kernel may still send from it.
+         */
+        void abandon() {
+            writes.clear();
+        }
+    }
+
+    /**
+     * Polls a duplicate of the file descriptor of a closed channel until the kernel completed all of its outstanding
+     * {@code MSG_ZEROCOPY} writes, and then closes it. The {@link ByteBuf}s of writes which did not complete within
+     * {@code io.netty.epoll.zeroCopyCloseTimeoutMillis} are never released.
+     */
+    private static final class ZeroCopyCloseTask implements Runnable {
+        private final LinuxSocket socket;
+        private final ZeroCopyWrites writes;
+        private final EventExecutor executor;
+        private final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(
+                ZERO_COPY_CLOSE_TIMEOUT_MILLIS);
+
+        ZeroCopyCloseTask(LinuxSocket socket, ZeroCopyWrites writes, EventExecutor executor) {
+            this.socket = socket;
+            this.writes = writes;
+            this.executor = executor;
+        }
+
+        void schedule() {
+            if (socket != null) {
+                try {
+                    executor.schedule(this, ZERO_COPY_CLOSE_POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    logger.debug("Failed to wait for MSG_ZEROCOPY completions", e);
+                }
+            }
+            close();
+        }
+
+        @Override
+        public void run() {
+            try {
+                writes.processCompletions(socket);
+                if (!writes.isEmpty() && System.nanoTime() - deadlineNanos < 0) {
+                    schedule();
+                    return;
+                }
+            } catch (IOException e) {
+                logger.debug("Failed to read MSG_ZEROCOPY completions", e);
+            }
+            close();
+        }
+
+        private void close() {
+            if (!writes.isEmpty()) {
+                logger.debug("Never releasing {} buffer(s) of MSG_ZEROCOPY writes which did not complete in time",
+                        writes.size());
+                writes.abandon();
+            }
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    logger.debug("Failed to close a socket", e);
+                }
+            }
+        }
+    }
+
+    private static final class ZeroCopyWrite {
+        final int id;
+        final ByteBuf buf;
+
+        ZeroCopyWrite(int id, ByteBuf buf) {
+            this.id = id;
+            this.buf = buf;
+        }
+    }
+
     private final class SpliceOutTask {
         private final AbstractEpollStreamChannel ch;
         private final boolean autoRead;
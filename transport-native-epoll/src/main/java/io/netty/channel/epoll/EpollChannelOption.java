@@ -37,6 +37,13 @@ public final class EpollChannelOption<T> extends UnixChannelOption<T> {
     public static final ChannelOption<Integer> TCP_DEFER_ACCEPT =
             ChannelOption.valueOf(EpollChannelOption.class, "TCP_DEFER_ACCEPT");
     public static final ChannelOption<Boolean> TCP_QUICKACK = valueOf(EpollChannelOption.class, "TCP_QUICKACK");
+    public static final ChannelOption<Boolean> SO_ZEROCOPY = valueOf(EpollChannelOption.class, "SO_ZEROCOPY");
+    public static final ChannelOption<Integer> ZEROCOPY_THRESHOLD =
+            valueOf(EpollChannelOption.class, "ZEROCOPY_THRESHOLD");
+
+    public static final ChannelOption<Integer> RECVMMSG_BATCH_SIZE =
+            valueOf(EpollChannelOption.class, "RECVMMSG_BATCH_SIZE");
+    public static final ChannelOption<Boolean> UDP_GRO = valueOf(EpollChannelOption.class, "UDP_GRO");
 
     public static final ChannelOption<EpollMode> EPOLL_MODE =
             ChannelOption.valueOf(EpollChannelOption.class, "EPOLL_MODE");
@@ -39,6 +39,8 @@ import java.net.NetworkInterface;
 import java.net.SocketAddress;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import static io.netty.channel.epoll.LinuxSocket.newSocketDgram;
 
@@ -268,8 +270,9 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
             }
 
             try {
-                // Check if sendmmsg(...) is supported which is only the case for GLIBC 2.14+
-                if (Native.IS_SUPPORTING_SENDMMSG && in.size() > 1) {
+                // Check if sendmmsg(...) is supported which is only the case for GLIBC 2.14+. A SegmentedDatagramPacket
+                // is always written via sendmmsg(...) as it needs to pass the UDP_SEGMENT control message.
+                if (Native.IS_SUPPORTING_SENDMMSG && (in.size() > 1 || msg instanceof SegmentedDatagramPacket)) {
                     NativeDatagramPacketArray array = NativeDatagramPacketArray.getInstance(in);
                     int cnt = array.count();
 
@@ -373,6 +376,17 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
 
     @Override
     protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof SegmentedDatagramPacket) {
+            if (!SegmentedDatagramPacket.isSupported()) {
+                throw new UnsupportedOperationException(
+                        "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+            }
+            SegmentedDatagramPacket packet = (SegmentedDatagramPacket) msg;
+            ByteBuf content = packet.content();
+            return UnixChannelUtil.isBufferCopyNeededForWrite(content) ?
+                    packet.replace(newDirectBuffer(packet, content)) : msg;
+        }
+
         if (msg instanceof DatagramPacket) {
             DatagramPacket packet = (DatagramPacket) msg;
             ByteBuf content = packet.content();
@@ -429,6 +443,9 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
     }
 
     final class EpollDatagramChannelUnsafe extends AbstractEpollUnsafe {
+        // The datagrams received by one recvmmsg(...) call, which are fired through the pipeline once the
+        // NativeDatagramPacketArray is not needed anymore.
+        private final List<DatagramPacket> readBuf = new ArrayList<DatagramPacket>();
 
         @Override
         void epollInReady() {
@@ -446,11 +463,22 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
             allocHandle.reset(config);
             epollInBefore();
 
+            final int batchSize =
+                    Native.IS_SUPPORTING_RECVMMSG ? EpollDatagramChannel.this.config.getRecvmmsgBatchSize() : 1;
+            // Datagrams coalesced by UDP_GRO can only be split again if the segment size is known, which is only
+            // passed to us by recvmmsg(...).
+            final boolean useRecvmmsg = batchSize > 1 || EpollDatagramChannel.this.config.isUdpGro();
             Throwable exception = null;
             try {
                 ByteBuf data = null;
                 try {
                     do {
+                        if (useRecvmmsg) {
+                            if (!recvmmsg(allocHandle, allocator, pipeline, batchSize)) {
+                                break;
+                            }
+                            continue;
+                        }
                         data = allocHandle.allocate(allocator);
                         allocHandle.attemptedBytesRead(data.writableBytes());
                         final DatagramSocketAddress remoteAddress;
@@ -497,5 +525,92 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
                 epollInFinally(config);
             }
         }
+
+        /**
+         * Receive up to {@code batchSize} datagrams with one {@code recvmmsg(...)} call, each into its own buffer, and
+         * fire them through the pipeline. Returns {@code false} if there was nothing to receive.
+         */
+        private boolean recvmmsg(EpollRecvByteAllocatorHandle allocHandle, ByteBufAllocator allocator,
+                                 ChannelPipeline pipeline, int batchSize) throws IOException {
+            NativeDatagramPacketArray array = NativeDatagramPacketArray.getInstance();
+            boolean success = false;
+            try {
+                int attemptedBytes = 0;
+                for (int i = 0; i < batchSize; i++) {
+                    ByteBuf data = allocHandle.allocate(allocator);
+                    if (!data.isDirect()) {
+                        // The datagrams are received into the memory of the buffers directly.
+                        ByteBuf direct = allocator.directBuffer(data.writableBytes());
+                        data.release();
+                        data = direct;
+                    }
+                    int writable = data.writableBytes();
+                    if (!array.addWritable(data)) {
+                        data.release();
+                        break;
+                    }
+                    attemptedBytes += writable;
+                }
+                allocHandle.attemptedBytesRead(attemptedBytes);
+
+                int received = Native.recvmmsg(socket.intValue(), array.packets(), 0, array.count());
+                if (received == 0) {
+                    allocHandle.lastBytesRead(-1);
+                    success = true;
+                    return false;
+                }
+                int receivedBytes = 0;
+                for (int i = 0; i < received; i++) {
+                    receivedBytes += array.received(i);
+                }
+                allocHandle.lastBatchRead(received, receivedBytes, array.count());
+
+                InetSocketAddress localAddress = (InetSocketAddress) localAddress();
+                for (int i = 0; i < received; i++) {
+                    int segmentSize = array.segmentSize(i);
+                    DatagramPacket packet = array.newDatagramPacket(i, localAddress);
+                    if (segmentSize > 0 && packet.content().readableBytes() > segmentSize) {
+                        addSegments(packet, segmentSize);
+                    } else {
+                        readBuf.add(packet);
+                    }
+                }
+                success = true;
+            } finally {
+                // Release the buffers which were not used. This must be done before any datagram is fired through
+                // the pipeline, as a handler which writes to a channel of this thread reuses the array.
+                array.releaseReceiveBuffers();
+                if (!success) {
+                    for (int i = 0; i < readBuf.size(); i++) {
+                        readBuf.get(i).release();
+                    }
+                    readBuf.clear();
+                }
+            }
+
+            readPending = false;
+            int size = readBuf.size();
+            for (int i = 0; i < size; i++) {
+                pipeline.fireChannelRead(readBuf.get(i));
+            }
+            readBuf.clear();
+            return true;
+        }
+
+        /**
+         * Split the given {@link DatagramPacket}, which holds multiple datagrams that were coalesced by
+         * {@code UDP_GRO}, into one {@link DatagramPacket} per datagram.
+         */
+        private void addSegments(DatagramPacket packet, int segmentSize) {
+            ByteBuf content = packet.content();
+            try {
+                while (content.isReadable()) {
+                    ByteBuf segment = content.readRetainedSlice(Math.min(content.readableBytes(), segmentSize));
+                    readBuf.add(new DatagramPacket(segment, packet.recipient(), packet.sender()));
+                }
+            } finally {
+                packet.release();
+            }
+        }
     }
 }
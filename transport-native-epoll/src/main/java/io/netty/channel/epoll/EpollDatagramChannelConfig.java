@@ -28,10 +28,14 @@ import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.util.Map;
 
+import static io.netty.channel.unix.Limits.UIO_MAX_IOV;
+
 public final class EpollDatagramChannelConfig extends EpollChannelConfig implements DatagramChannelConfig {
     private static final RecvByteBufAllocator DEFAULT_RCVBUF_ALLOCATOR = new FixedRecvByteBufAllocator(2048);
     private final EpollDatagramChannel datagramChannel;
     private boolean activeOnOpen;
+    private volatile int recvmmsgBatchSize = 1;
+    private volatile boolean gro;
 
     EpollDatagramChannelConfig(EpollDatagramChannel channel) {
         super(channel);
@@ -48,7 +52,8 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
                 ChannelOption.SO_REUSEADDR, ChannelOption.IP_MULTICAST_LOOP_DISABLED,
                 ChannelOption.IP_MULTICAST_ADDR, ChannelOption.IP_MULTICAST_IF, ChannelOption.IP_MULTICAST_TTL,
                 ChannelOption.IP_TOS, ChannelOption.DATAGRAM_CHANNEL_ACTIVE_ON_REGISTRATION,
-                EpollChannelOption.SO_REUSEPORT);
+                EpollChannelOption.SO_REUSEPORT, EpollChannelOption.RECVMMSG_BATCH_SIZE,
+                EpollChannelOption.UDP_GRO);
     }
 
     @SuppressWarnings({ "unchecked", "deprecation" })
@@ -87,6 +92,12 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
         if (option == EpollChannelOption.SO_REUSEPORT) {
             return (T) Boolean.valueOf(isReusePort());
         }
+        if (option == EpollChannelOption.RECVMMSG_BATCH_SIZE) {
+            return (T) Integer.valueOf(getRecvmmsgBatchSize());
+        }
+        if (option == EpollChannelOption.UDP_GRO) {
+            return (T) Boolean.valueOf(isUdpGro());
+        }
         return super.getOption(option);
     }
 
@@ -117,6 +128,10 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
             setActiveOnOpen((Boolean) value);
         } else if (option == EpollChannelOption.SO_REUSEPORT) {
             setReusePort((Boolean) value);
+        } else if (option == EpollChannelOption.RECVMMSG_BATCH_SIZE) {
+            setRecvmmsgBatchSize((Integer) value);
+        } else if (option == EpollChannelOption.UDP_GRO) {
+            setUdpGro((Boolean) value);
         } else {
             return super.setOption(option, value);
         }
@@ -135,6 +150,56 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
         return activeOnOpen;
     }
 
+    /**
+     * Returns the maximum number of datagrams which are received with one {@code recvmmsg(...)} call. If {@code 1}
+     * every datagram is received with its own {@code recvfrom(...)} call.
+     */
+    public int getRecvmmsgBatchSize() {
+        return recvmmsgBatchSize;
+    }
+
+    /**
+     * Set the maximum number of datagrams which are received with one {@code recvmmsg(...)} call, each into its own
+     * buffer allocated by the {@link RecvByteBufAllocator}. The default is {@code 1}, which receives every datagram
+     * with its own {@code recvfrom(...)} call. This has no effect if {@code recvmmsg(...)} is not supported, see
+     * {@link Native#IS_SUPPORTING_RECVMMSG}.
+     */
+    public EpollDatagramChannelConfig setRecvmmsgBatchSize(int recvmmsgBatchSize) {
+        if (recvmmsgBatchSize < 1 || recvmmsgBatchSize > UIO_MAX_IOV) {
+            throw new IllegalArgumentException("recvmmsgBatchSize: " + recvmmsgBatchSize +
+                    " (expected: 1-" + UIO_MAX_IOV + ')');
+        }
+        this.recvmmsgBatchSize = recvmmsgBatchSize;
+        return this;
+    }
+
+    /**
+     * Returns {@code true} if the UDP_GRO option is set.
+     */
+    public boolean isUdpGro() {
+        return gro;
+    }
+
+    /**
+     * Set the UDP_GRO option on the underlying Channel. If set the kernel may coalesce datagrams of the same flow
+     * into one large buffer, which is split back into one {@link io.netty.channel.socket.DatagramPacket} per datagram
+     * before it is passed through the pipeline. This needs linux 5.0+ and is only supported if {@code recvmmsg(...)}
+     * is, see {@link Native#IS_SUPPORTING_RECVMMSG}. The {@link RecvByteBufAllocator} must allocate buffers which are
+     * large enough to hold the coalesced datagrams (up to 64KB), or they are truncated.
+     */
+    public EpollDatagramChannelConfig setUdpGro(boolean gro) {
+        if (gro && !Native.IS_SUPPORTING_RECVMMSG) {
+            throw new UnsupportedOperationException("UDP_GRO needs recvmmsg(...)");
+        }
+        try {
+            datagramChannel.socket.setUdpGro(gro);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+        this.gro = gro;
+        return this;
+    }
+
     @Override
     public EpollDatagramChannelConfig setMessageSizeEstimator(MessageSizeEstimator estimator) {
         super.setMessageSizeEstimator(estimator);
@@ -15,6 +15,7 @@
  */
 package io.netty.channel.epoll;
 
+import io.netty.channel.BusyPollSelectStrategy;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SelectStrategy;
@@ -22,16 +23,19 @@ import io.netty.channel.SingleThreadEventLoop;
 import io.netty.channel.epoll.AbstractEpollChannel.AbstractEpollUnsafe;
 import io.netty.channel.unix.FileDescriptor;
 import io.netty.channel.unix.IovArray;
+import io.netty.util.BooleanSupplier;
 import io.netty.util.IntSupplier;
 import io.netty.util.collection.IntObjectHashMap;
 import io.netty.util.collection.IntObjectMap;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Queue;
@@ -50,6 +54,8 @@ final class EpollEventLoop extends SingleThreadEventLoop {
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(EpollEventLoop.class);
     private static final AtomicIntegerFieldUpdater<EpollEventLoop> WAKEN_UP_UPDATER =
             AtomicIntegerFieldUpdater.newUpdater(EpollEventLoop.class, "wakenUp");
+    private static final int MAX_POOLED_PIPES = Math.max(0,
+            SystemPropertyUtil.getInt("io.netty.epoll.maxPooledPipes", 64));
 
     static {
         // Ensure JNI is initialized by the time this class is loaded by this time!
@@ -65,13 +71,22 @@ final class EpollEventLoop extends SingleThreadEventLoop {
     private final boolean allowGrowing;
     private final EpollEventArray events;
     private final IovArray iovArray = new IovArray();
+    // Empty pipes which are reused to splice between channels.
+    private final ArrayDeque<FileDescriptor[]> pipes = new ArrayDeque<FileDescriptor[]>();
     private final SelectStrategy selectStrategy;
+    private final BusyPollSelectStrategy busyPollStrategy;
     private final IntSupplier selectNowSupplier = new IntSupplier() {
         @Override
         public int get() throws Exception {
             return epollWaitNow();
         }
     };
+    private final BooleanSupplier hasTasksSupplier = new BooleanSupplier() {
+        @Override
+        public boolean get() {
+            return hasTasks();
+        }
+    };
     private final Callable<Integer> pendingTasksCallable = new Callable<Integer>() {
         @Override
         public Integer call() throws Exception {
@@ -85,6 +100,7 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                    SelectStrategy strategy, RejectedExecutionHandler rejectedExecutionHandler) {
         super(parent, executor, false, DEFAULT_MAX_PENDING_TASKS, rejectedExecutionHandler);
         selectStrategy = ObjectUtil.checkNotNull(strategy, "strategy");
+        busyPollStrategy = strategy instanceof BusyPollSelectStrategy ? (BusyPollSelectStrategy) strategy : null;
         if (maxEvents == 0) {
             allowGrowing = true;
             events = new EpollEventArray(4096);
@@ -146,6 +162,38 @@ final class EpollEventLoop extends SingleThreadEventLoop {
         return iovArray;
     }
 
+    /**
+     * Return an empty pipe from the pool of this {@link EventLoop}, or create a new one if the pool is empty.
+     */
+    FileDescriptor[] acquirePipe() throws IOException {
+        assert inEventLoop();
+        FileDescriptor[] pipe = pipes.pollLast();
+        return pipe != null ? pipe : FileDescriptor.pipe();
+    }
+
+    /**
+     * Give back a pipe which was returned by {@link #acquirePipe()}. The pipe must be empty, use
+     * {@link #closePipe(FileDescriptor[])} for a pipe which may still contain data.
+     */
+    void releasePipe(FileDescriptor[] pipe) {
+        assert inEventLoop();
+        if (pipes.size() < MAX_POOLED_PIPES) {
+            pipes.addLast(pipe);
+        } else {
+            closePipe(pipe);
+        }
+    }
+
+    static void closePipe(FileDescriptor[] pipe) {
+        for (FileDescriptor fd : pipe) {
+            try {
+                fd.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close a pipe.", e);
+            }
+        }
+    }
+
     @Override
     protected void wakeup(boolean inEventLoop) {
         if (!inEventLoop && WAKEN_UP_UPDATER.compareAndSet(this, 0, 1)) {
@@ -209,6 +257,11 @@ final class EpollEventLoop extends SingleThreadEventLoop {
             return submit(pendingTasksCallable).syncUninterruptibly().getNow();
         }
     }
+
+    @Override
+    public int registeredChannels() {
+        return channels.size();
+    }
     /**
      * Returns the percentage of the desired amount of time spent for I/O in the event loop.返回事件循环中I/O所需时间的百分比。
      */
@@ -247,6 +300,21 @@ final class EpollEventLoop extends SingleThreadEventLoop {
         return Native.epollWait(epollFd, events, timerFd, 0, 0);
     }
 
+    /**
+     * Spins on {@link #epollWaitNow()} if a {@link BusyPollSelectStrategy} is used. Returns the number of ready
+     * events, {@code 0} if there are tasks to run, or {@link SelectStrategy#SELECT} if a blocking wait should follow.
+     */
+    private int busyWait() throws Exception {
+        if (busyPollStrategy == null) {
+            return SelectStrategy.SELECT;
+        }
+        int ready = busyPollStrategy.busyWait(selectNowSupplier, hasTasksSupplier);
+        if (isMetricsEnabled()) {
+            recordBusyWaitTime(busyPollStrategy.lastSpinTime());
+        }
+        return ready;
+    }
+
     @Override
     protected void run() {
         for (;;) {
@@ -255,8 +323,26 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                 switch (strategy) {
                     case SelectStrategy.CONTINUE:
                         continue;
+                    case SelectStrategy.BUSY_WAIT:
+                        strategy = busyWait();
+                        if (strategy != SelectStrategy.SELECT) {
+                            break;
+                        }
+                        // fallthrough
                     case SelectStrategy.SELECT:
-                        strategy = epollWait(WAKEN_UP_UPDATER.getAndSet(this, 0) == 1);
+                        if (isMetricsEnabled() || busyPollStrategy != null) {
+                            final long waitStartTime = System.nanoTime();
+                            strategy = epollWait(WAKEN_UP_UPDATER.getAndSet(this, 0) == 1);
+                            final long waitTime = System.nanoTime() - waitStartTime;
+                            if (isMetricsEnabled()) {
+                                recordIoWaitTime(waitTime);
+                            }
+                            if (busyPollStrategy != null) {
+                                busyPollStrategy.parked(waitTime);
+                            }
+                        } else {
+                            strategy = epollWait(WAKEN_UP_UPDATER.getAndSet(this, 0) == 1);
+                        }
 
                         // 'wakenUp.compareAndSet(false, true)' is always evaluated
                         // before calling 'selector.wakeup()' to reduce the wake-up
@@ -294,7 +380,11 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                 }
 
                 final int ioRatio = this.ioRatio;
-                if (ioRatio == 100) {
+                final boolean metricsEnabled = isMetricsEnabled();
+                if (metricsEnabled) {
+                    recordIoRatio(ioRatio);
+                }
+                if (ioRatio == 100 && !metricsEnabled) {
                     try {
                         if (strategy > 0) {
                             processReady(events, strategy);
@@ -313,7 +403,14 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                     } finally {
                         // Ensure we always run tasks.
                         final long ioTime = System.nanoTime() - ioStartTime;
-                        runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                        if (metricsEnabled) {
+                            recordIoTime(ioTime);
+                        }
+                        if (ioRatio == 100) {
+                            runAllTasks();
+                        } else {
+                            runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                        }
                     }
                 }
                 if (allowGrowing && strategy == events.length()) {
@@ -388,6 +485,11 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                     // past.
                     AbstractEpollUnsafe unsafe = (AbstractEpollUnsafe) ch.unsafe();
 
+                    // Let the channel drain its error queue first, which holds the completion notifications of
+                    // writes done with MSG_ZEROCOPY. Only a remaining socket error needs to be handled as EPOLLOUT
+                    // and EPOLLIN below, otherwise a completion would read although no read is pending.
+                    final boolean socketError = (ev & Native.EPOLLERR) != 0 && unsafe.epollErrReady();
+
                     // First check for EPOLLOUT as we may need to fail the connect ChannelPromise before try
                     // to read from the file descriptor.
                     // See https://github.com/netty/netty/issues/3785
@@ -396,7 +498,7 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                     // In either case epollOutReady() will do the correct thing (finish connecting, or fail
                     // the connection).
                     // See https://github.com/netty/netty/issues/3848
-                    if ((ev & (Native.EPOLLERR | Native.EPOLLOUT)) != 0) {
+                    if (socketError || (ev & Native.EPOLLOUT) != 0) {
                         // Force flush of data as the epoll is writable again
                         unsafe.epollOutReady();
                     }
@@ -406,7 +508,7 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                     //
                     // If EPOLLIN or EPOLLERR was received and the channel is still open call epollInReady(). This will
                     // try to read from the underlying file descriptor and so notify the user about the error.
-                    if ((ev & (Native.EPOLLERR | Native.EPOLLIN)) != 0) {
+                    if (socketError || (ev & Native.EPOLLIN) != 0) {
                         // The Channel is still open and there is something to read. Do it now.
                         unsafe.epollInReady();
                     }
@@ -450,6 +552,13 @@ final class EpollEventLoop extends SingleThreadEventLoop {
             } catch (IOException e) {
                 logger.warn("Failed to close the timer fd.", e);
             }
+            for (;;) {
+                FileDescriptor[] pipe = pipes.poll();
+                if (pipe == null) {
+                    break;
+                }
+                closePipe(pipe);
+            }
         } finally {
             // release native memory
             iovArray.release();
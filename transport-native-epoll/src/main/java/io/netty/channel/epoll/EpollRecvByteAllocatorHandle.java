@@ -32,6 +32,9 @@ class EpollRecvByteAllocatorHandle implements RecvByteBufAllocator.ExtendedHandl
     };
     private boolean isEdgeTriggered;
     private boolean receivedRdHup;
+    // Set if the last read received a batch of datagrams, in which case batchFull tells if there may be more.
+    private boolean batchRead;
+    private boolean batchFull;
 //
     EpollRecvByteAllocatorHandle(RecvByteBufAllocator.ExtendedHandle handle) {
         this.delegate = ObjectUtil.checkNotNull(handle, "handle");
@@ -54,10 +57,22 @@ class EpollRecvByteAllocatorHandle implements RecvByteBufAllocator.ExtendedHandl
          * read, and will force a EPOLLIN ready event.
          */
         return (isEdgeTriggered && lastBytesRead() > 0) ||
-               (!isEdgeTriggered && lastBytesRead() == attemptedBytesRead()) ||
+               (!isEdgeTriggered && (batchRead ? batchFull : lastBytesRead() == attemptedBytesRead())) ||
                 receivedRdHup;
     }
 
+    /**
+     * Set the result of a read which received {@code numMessages} datagrams with {@code bytes} bytes in total into a
+     * batch of {@code batchSize} buffers, like {@code recvmmsg(...)} does. As the datagrams are usually smaller than
+     * the buffers, there may only be more to read if every buffer of the batch was used.
+     */
+    final void lastBatchRead(int numMessages, int bytes, int batchSize) {
+        incMessagesRead(numMessages);
+        delegate.lastBytesRead(bytes);
+        batchRead = true;
+        batchFull = numMessages == batchSize;
+    }
+
     final void edgeTriggered(boolean edgeTriggered) {
         isEdgeTriggered = edgeTriggered;
     }
@@ -88,6 +103,7 @@ class EpollRecvByteAllocatorHandle implements RecvByteBufAllocator.ExtendedHandl
 //
     @Override
     public final void lastBytesRead(int bytes) {
+        batchRead = false;
         delegate.lastBytesRead(bytes);
     }
 //
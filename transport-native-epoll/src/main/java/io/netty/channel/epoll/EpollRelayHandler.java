@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandler;
+import io.netty.channel.EventLoop;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Map;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * Relays all bytes read by the {@link Channel} it is added to, to another {@link Channel}, for example to build a TCP
+ * proxy. Add one to each of the two {@link Channel}s to relay in both directions.
+ * <p>
+ * If both {@link Channel}s are {@link AbstractEpollStreamChannel}s of the same {@link EventLoop} and nothing may
+ * transform the bytes on the way, the bytes are moved with {@code splice(...)} and never copied to user space.
+ * Nothing transforms the bytes if this handler is the first one of its pipeline and the pipeline of the other
+ * {@link Channel} contains no {@link ChannelOutboundHandler}. Otherwise, for example if one of the {@link Channel}s
+ * uses a {@code SslHandler}, the bytes are relayed as {@link ByteBuf}s. Which way is used is decided once, when the
+ * {@link Channel} becomes active or when this handler is added to an active {@link Channel}.
+ * <p>
+ * Either way reading from the {@link Channel} is paused while the other {@link Channel} can not keep up. If the bytes
+ * are copied, reading is resumed by the {@link EpollRelayHandler} of the other {@link Channel} once that one is
+ * writable again, so a handler must be added to both {@link Channel}s even to relay in one direction. Once one
+ * of the {@link Channel}s is closed, the other one is closed as soon as everything that was relayed to it is written.
+ */
+@UnstableApi
+public final class EpollRelayHandler extends ChannelInboundHandlerAdapter {
+    private final Channel target;
+    private Channel channel;
+    private boolean started;
+    // Set if reading from the channel was paused because the target was not writable, only used by its event loop.
+    private boolean readPaused;
+
+    /**
+     * Create a new instance which relays to the given {@link Channel}, which must be active already.
+     */
+    public EpollRelayHandler(Channel target) {
+        this.target = checkNotNull(target, "target");
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        channel = ctx.channel();
+        if (ctx.channel().isActive()) {
+            start(ctx);
+        }
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+        start(ctx);
+        ctx.fireChannelActive();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        target.write(msg);
+        if (!target.isWritable() && channel.config().isAutoRead()) {
+            // Stop reading until the target is writable again, see channelWritabilityChanged(...) of the handler
+            // which relays from the target.
+            readPaused = true;
+            channel.config().setAutoRead(false);
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (ctx.channel().isWritable()) {
+            // The channel is the target of the handler which relays in the other direction, let it read again.
+            final EpollRelayHandler relay = target.pipeline().get(EpollRelayHandler.class);
+            if (relay != null && relay.target == ctx.channel()) {
+                EventLoop loop = target.eventLoop();
+                if (loop.inEventLoop()) {
+                    relay.resumeReading();
+                } else {
+                    loop.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            relay.resumeReading();
+                        }
+                    });
+                }
+            }
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    private void resumeReading() {
+        if (readPaused) {
+            readPaused = false;
+            channel.config().setAutoRead(true);
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        target.flush();
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        closeOnFlush(target);
+        ctx.fireChannelInactive();
+    }
+
+    private void start(final ChannelHandlerContext ctx) {
+        if (started) {
+            return;
+        }
+        started = true;
+        target.closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                closeOnFlush(ctx.channel());
+            }
+        });
+        if (canSplice(ctx)) {
+            AbstractEpollStreamChannel channel = (AbstractEpollStreamChannel) ctx.channel();
+            AbstractEpollStreamChannel target = (AbstractEpollStreamChannel) this.target;
+            channel.spliceRelayTo(target).addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    if (!future.isSuccess() && ctx.channel().isOpen()) {
+                        ctx.fireExceptionCaught(future.cause());
+                        ctx.close();
+                    }
+                }
+            });
+        }
+    }
+
+    private boolean canSplice(ChannelHandlerContext ctx) {
+        Channel channel = ctx.channel();
+        if (!(channel instanceof AbstractEpollStreamChannel) || !(target instanceof AbstractEpollStreamChannel)
+                || !target.isActive() || channel.eventLoop() != target.eventLoop()) {
+            return false;
+        }
+        // Handlers in front of this one may transform the inbound bytes, and outbound handlers of the target may
+        // transform the bytes written to it. An SslHandler does both.
+        if (ctx.pipeline().first() != this) {
+            return false;
+        }
+        for (Map.Entry<String, ChannelHandler> entry : target.pipeline()) {
+            if (entry.getValue() instanceof ChannelOutboundHandler) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void closeOnFlush(Channel channel) {
+        if (channel.isActive()) {
+            channel.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+}
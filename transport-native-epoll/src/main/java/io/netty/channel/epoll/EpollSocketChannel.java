@@ -106,6 +106,11 @@ public final class EpollSocketChannel extends AbstractEpollStreamChannel impleme
         return (ServerSocketChannel) super.parent();
     }
 
+    @Override
+    int zeroCopyThreshold() {
+        return config.isZeroCopy() ? config.getZeroCopyThreshold() : -1;
+    }
+
     @Override
     protected AbstractEpollUnsafe newUnsafe() {
         return new EpollSocketChannelUnsafe();
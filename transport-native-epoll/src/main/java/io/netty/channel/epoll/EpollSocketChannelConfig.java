@@ -36,10 +36,15 @@ import static io.netty.channel.ChannelOption.SO_RCVBUF;
 import static io.netty.channel.ChannelOption.SO_REUSEADDR;
 import static io.netty.channel.ChannelOption.SO_SNDBUF;
 import static io.netty.channel.ChannelOption.TCP_NODELAY;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 //
 public final class EpollSocketChannelConfig extends EpollChannelConfig implements SocketChannelConfig {
+    // The kernel documentation states that MSG_ZEROCOPY is generally only effective for writes over around 10 KB.
+    private static final int DEFAULT_ZEROCOPY_THRESHOLD = 10 * 1024;
     private final EpollSocketChannel channel;
     private volatile boolean allowHalfClosure;
+    private volatile boolean zeroCopy;
+    private volatile int zeroCopyThreshold = DEFAULT_ZEROCOPY_THRESHOLD;
 
     /**
      * Creates a new instance.
@@ -62,7 +67,8 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
                 ALLOW_HALF_CLOSURE, EpollChannelOption.TCP_CORK, EpollChannelOption.TCP_NOTSENT_LOWAT,
                 EpollChannelOption.TCP_KEEPCNT, EpollChannelOption.TCP_KEEPIDLE, EpollChannelOption.TCP_KEEPINTVL,
                 EpollChannelOption.TCP_MD5SIG, EpollChannelOption.TCP_QUICKACK, EpollChannelOption.IP_TRANSPARENT,
-                EpollChannelOption.TCP_FASTOPEN_CONNECT);
+                EpollChannelOption.TCP_FASTOPEN_CONNECT, EpollChannelOption.SO_ZEROCOPY,
+                EpollChannelOption.ZEROCOPY_THRESHOLD);
     }
 
     @SuppressWarnings("unchecked")
@@ -119,6 +125,12 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
         if (option == EpollChannelOption.TCP_FASTOPEN_CONNECT) {
             return (T) Boolean.valueOf(isTcpFastOpenConnect());
         }
+        if (option == EpollChannelOption.SO_ZEROCOPY) {
+            return (T) Boolean.valueOf(isZeroCopy());
+        }
+        if (option == EpollChannelOption.ZEROCOPY_THRESHOLD) {
+            return (T) Integer.valueOf(getZeroCopyThreshold());
+        }
         return super.getOption(option);
     }
 
@@ -164,6 +176,10 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
             setTcpQuickAck((Boolean) value);
         } else if (option == EpollChannelOption.TCP_FASTOPEN_CONNECT) {
             setTcpFastOpenConnect((Boolean) value);
+        } else if (option == EpollChannelOption.SO_ZEROCOPY) {
+            setZeroCopy((Boolean) value);
+        } else if (option == EpollChannelOption.ZEROCOPY_THRESHOLD) {
+            setZeroCopyThreshold((Integer) value);
         } else {
             return super.setOption(option, value);
         }
@@ -550,6 +566,54 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
         }
     }
 
+    /**
+     * Set the {@code SO_ZEROCOPY} option on the socket and write all {@link io.netty.buffer.ByteBuf}s of at least
+     * {@link #getZeroCopyThreshold()} bytes with {@code MSG_ZEROCOPY}. Requires Linux kernel 4.14 or later. See
+     * <a href="https://www.kernel.org/doc/html/latest/networking/msg_zerocopy.html">MSG_ZEROCOPY</a> for more
+     * details.
+     * <p>
+     * The kernel then transmits the data from the memory of the buffers, so they are only released once the kernel
+     * notified the completion of the write, which may take until the data was acknowledged by the remote peer. The
+     * memory of the buffers must not be modified before. If the channel is closed before all writes completed, the
+     * remaining buffers are held until the kernel notified their completion, or until
+     * {@code io.netty.epoll.zeroCopyCloseTimeoutMillis} passed, in which case they are never released. If the kernel reports that it had to copy the data anyway, as is the
+     * case on loopback, the channel stops using {@code MSG_ZEROCOPY}.
+     */
+    public EpollSocketChannelConfig setZeroCopy(boolean zeroCopy) {
+        try {
+            channel.socket.setZeroCopy(zeroCopy);
+            this.zeroCopy = zeroCopy;
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Returns {@code true} if {@code SO_ZEROCOPY} is enabled and so large writes are done with {@code MSG_ZEROCOPY},
+     * {@code false} otherwise.
+     */
+    public boolean isZeroCopy() {
+        return zeroCopy;
+    }
+
+    /**
+     * Set the minimum number of bytes a write must have to be done with {@code MSG_ZEROCOPY} if
+     * {@link #isZeroCopy()} is {@code true}. Smaller writes are copied, as pinning the memory and processing the
+     * completion notification costs more than copying the data. The default is {@code 10240}.
+     */
+    public EpollSocketChannelConfig setZeroCopyThreshold(int zeroCopyThreshold) {
+        this.zeroCopyThreshold = checkPositiveOrZero(zeroCopyThreshold, "zeroCopyThreshold");
+        return this;
+    }
+
+    /**
+     * Returns the minimum number of bytes a write must have to be done with {@code MSG_ZEROCOPY}.
+     */
+    public int getZeroCopyThreshold() {
+        return zeroCopyThreshold;
+    }
+
     @Override
     public boolean isAllowHalfClosure() {
         return allowHalfClosure;
@@ -26,9 +26,11 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.nio.channels.ClosedChannelException;
 
+import static io.netty.channel.epoll.Native.ERRNO_ENOBUFS_NEGATIVE;
 import static io.netty.channel.unix.Errors.ERRNO_EPIPE_NEGATIVE;
 import static io.netty.channel.unix.Errors.ioResult;
 import static io.netty.channel.unix.Errors.newConnectionResetException;
+import static io.netty.channel.unix.Errors.newIOException;
 
 /**
  * A socket which provides access Linux native methods.提供访问Linux本机方法的套接字。
@@ -40,6 +42,14 @@ final class LinuxSocket extends Socket {
             newConnectionResetException("syscall:sendfile(...)", ERRNO_EPIPE_NEGATIVE);
     private static final ClosedChannelException SENDFILE_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
             new ClosedChannelException(), Native.class, "sendfile(...)");
+    private static final NativeIoException SENDMSG_CONNECTION_RESET_EXCEPTION =
+            newConnectionResetException("syscall:sendmsg(...)", ERRNO_EPIPE_NEGATIVE);
+    private static final ClosedChannelException SENDMSG_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new ClosedChannelException(), Native.class, "sendmsg(...)");
+    private static final NativeIoException RECVMSG_CONNECTION_RESET_EXCEPTION =
+            newConnectionResetException("syscall:recvmsg(...)", ERRNO_EPIPE_NEGATIVE);
+    private static final ClosedChannelException RECVMSG_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new ClosedChannelException(), Native.class, "recvmsg(...)");
 
     public LinuxSocket(int fd) {
         super(fd);
@@ -100,6 +110,14 @@ final class LinuxSocket extends Socket {
         setIpTransparent(intValue(), enabled ? 1 : 0);
     }
 
+    void setUdpGro(boolean enabled) throws IOException {
+        setUdpGro(intValue(), enabled ? 1 : 0);
+    }
+
+    void setZeroCopy(boolean enabled) throws IOException {
+        setZeroCopy(intValue(), enabled ? 1 : 0);
+    }
+
     void getTcpInfo(EpollTcpInfo info) throws IOException {
         getTcpInfo(intValue(), info.info);
     }
@@ -149,6 +167,14 @@ final class LinuxSocket extends Socket {
         return isIpTransparent(intValue()) != 0;
     }
 
+    boolean isUdpGro() throws IOException {
+        return isUdpGro(intValue()) != 0;
+    }
+
+    boolean isZeroCopy() throws IOException {
+        return isZeroCopy(intValue()) != 0;
+    }
+
     PeerCredentials getPeerCredentials() throws IOException {
         return getPeerCredentials(intValue());
     }
@@ -165,6 +191,49 @@ final class LinuxSocket extends Socket {
         return ioResult("sendfile", (int) res, SENDFILE_CONNECTION_RESET_EXCEPTION, SENDFILE_CLOSED_CHANNEL_EXCEPTION);
     }
 
+    /**
+     * Write the {@code length} {@code struct iovec}s at the given memory address with {@code MSG_ZEROCOPY}. Returns
+     * the number of bytes written, {@code 0} if the socket can not accept more data or {@code -1} if the kernel
+     * refused to pin more memory ({@code ENOBUFS}), in which case the data should be written without
+     * {@code MSG_ZEROCOPY}.
+     */
+    long sendmsgZeroCopy(long memoryAddress, int length) throws IOException {
+        long res = sendmsgZeroCopy(intValue(), memoryAddress, length);
+        if (res >= 0) {
+            return res;
+        }
+        if (res == ERRNO_ENOBUFS_NEGATIVE) {
+            return -1;
+        }
+        return ioResult("sendmsg", (int) res, SENDMSG_CONNECTION_RESET_EXCEPTION, SENDMSG_CLOSED_CHANNEL_EXCEPTION);
+    }
+
+    /**
+     * Read one message from the error queue of the socket. Returns {@code 1} if it was a {@code MSG_ZEROCOPY}
+     * completion notification, in which case {@code result} holds the first and last id of the completed sends and
+     * {@code 1} if the kernel copied the data nevertheless, {@code 2} if it was some other message or {@code 0} if the
+     * error queue is empty.
+     */
+    int recvZeroCopyCompletion(int[] result) throws IOException {
+        int res = recvZeroCopyCompletion(intValue(), result);
+        if (res >= 0) {
+            return res;
+        }
+        return ioResult("recvmsg", res, RECVMSG_CONNECTION_RESET_EXCEPTION, RECVMSG_CLOSED_CHANNEL_EXCEPTION);
+    }
+
+    /**
+     * Returns a new {@link LinuxSocket} which refers to the same socket, so the socket stays open until both are
+     * closed.
+     */
+    LinuxSocket dup() throws IOException {
+        int res = dup(intValue());
+        if (res < 0) {
+            throw newIOException("dup", res);
+        }
+        return new LinuxSocket(res);
+    }
+
     public static LinuxSocket newSocketStream() {
         return new LinuxSocket(newSocketStream0());
     }
@@ -190,6 +259,8 @@ final class LinuxSocket extends Socket {
     private static native int getTcpUserTimeout(int fd) throws IOException;
     private static native int isIpFreeBind(int fd) throws IOException;
     private static native int isIpTransparent(int fd) throws IOException;
+    private static native int isUdpGro(int fd) throws IOException;
+    private static native int isZeroCopy(int fd) throws IOException;
     private static native void getTcpInfo(int fd, long[] array) throws IOException;
     private static native PeerCredentials getPeerCredentials(int fd) throws IOException;
     private static native int isTcpFastOpenConnect(int fd) throws IOException;
@@ -206,5 +277,10 @@ final class LinuxSocket extends Socket {
     private static native void setTcpUserTimeout(int fd, int milliseconds)throws IOException;
     private static native void setIpFreeBind(int fd, int freeBind) throws IOException;
     private static native void setIpTransparent(int fd, int transparent) throws IOException;
+    private static native void setUdpGro(int fd, int gro) throws IOException;
+    private static native void setZeroCopy(int fd, int zeroCopy) throws IOException;
+    private static native long sendmsgZeroCopy(int fd, long memoryAddress, int length);
+    private static native int recvZeroCopyCompletion(int fd, int[] result);
+    private static native int dup(int fd);
     private static native void setTcpMd5Sig(int fd, byte[] address, int scopeId, byte[] key) throws IOException;
 }
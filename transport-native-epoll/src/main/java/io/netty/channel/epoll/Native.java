@@ -34,11 +34,17 @@ import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epolle
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollin;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollout;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollrdhup;
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.errnoENOBUFS;
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.isSupportingRecvmmsg;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.isSupportingSendmmsg;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.isSupportingTcpFastopen;
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.isSupportingUdpSegment;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.kernelVersion;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.tcpMd5SigMaxKeyLen;
+import static io.netty.channel.unix.Errors.ERRNO_EAGAIN_NEGATIVE;
+import static io.netty.channel.unix.Errors.ERRNO_ECONNRESET_NEGATIVE;
 import static io.netty.channel.unix.Errors.ERRNO_EPIPE_NEGATIVE;
+import static io.netty.channel.unix.Errors.ERRNO_EWOULDBLOCK_NEGATIVE;
 import static io.netty.channel.unix.Errors.ioResult;
 import static io.netty.channel.unix.Errors.newConnectionResetException;
 import static io.netty.channel.unix.Errors.newIOException;
@@ -73,22 +79,30 @@ public final class Native {
     public static final int EPOLLERR = epollerr();
 
     public static final boolean IS_SUPPORTING_SENDMMSG = isSupportingSendmmsg();
+    public static final boolean IS_SUPPORTING_RECVMMSG = isSupportingRecvmmsg();
+    public static final boolean IS_SUPPORTING_UDP_SEGMENT = isSupportingUdpSegment();
     public static final boolean IS_SUPPORTING_TCP_FASTOPEN = isSupportingTcpFastopen();
     public static final int TCP_MD5SIG_MAXKEYLEN = tcpMd5SigMaxKeyLen();
+    static final int ERRNO_ENOBUFS_NEGATIVE = -errnoENOBUFS();
     public static final String KERNEL_VERSION = kernelVersion();
 
     private static final NativeIoException SENDMMSG_CONNECTION_RESET_EXCEPTION;
     private static final NativeIoException SPLICE_CONNECTION_RESET_EXCEPTION;
+    private static final NativeIoException RECVMMSG_CONNECTION_RESET_EXCEPTION;
     private static final ClosedChannelException SENDMMSG_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
             new ClosedChannelException(), Native.class, "sendmmsg(...)");
     private static final ClosedChannelException SPLICE_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
             new ClosedChannelException(), Native.class, "splice(...)");
+    private static final ClosedChannelException RECVMMSG_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new ClosedChannelException(), Native.class, "recvmmsg(...)");
 
     static {
         SENDMMSG_CONNECTION_RESET_EXCEPTION = newConnectionResetException("syscall:sendmmsg(...)",
                 ERRNO_EPIPE_NEGATIVE);
         SPLICE_CONNECTION_RESET_EXCEPTION = newConnectionResetException("syscall:splice(...)",
                 ERRNO_EPIPE_NEGATIVE);
+        RECVMMSG_CONNECTION_RESET_EXCEPTION = newConnectionResetException("syscall:recvmmsg(...)",
+                ERRNO_ECONNRESET_NEGATIVE);
     }
 //
     public static FileDescriptor newEventFd() {
@@ -155,6 +169,21 @@ public final class Native {
         return ioResult("splice", res, SPLICE_CONNECTION_RESET_EXCEPTION, SPLICE_CLOSED_CHANNEL_EXCEPTION);
     }
 
+    /**
+     * Like {@link #splice(int, long, int, long, long)} but returns {@code -1} if nothing could be spliced because one
+     * of the file descriptors would block, so {@code 0} is only returned once the end of the input was reached.
+     */
+    static int spliceNonBlocking(int fd, int fdOut, long len) throws IOException {
+        int res = splice0(fd, -1, fdOut, -1, len);
+        if (res >= 0) {
+            return res;
+        }
+        if (res == ERRNO_EAGAIN_NEGATIVE || res == ERRNO_EWOULDBLOCK_NEGATIVE) {
+            return -1;
+        }
+        return ioResult("splice", res, SPLICE_CONNECTION_RESET_EXCEPTION, SPLICE_CLOSED_CHANNEL_EXCEPTION);
+    }
+
     private static native int splice0(int fd, long offIn, int fdOut, long offOut, long len);
 
     public static int sendmmsg(
@@ -169,6 +198,22 @@ public final class Native {
     private static native int sendmmsg0(
             int fd, NativeDatagramPacketArray.NativeDatagramPacket[] msgs, int offset, int len);
 
+    /**
+     * Receive up to {@code len} datagrams with one {@code recvmmsg(...)} call and return the number of received
+     * datagrams, or {@code 0} if there was nothing to receive.
+     */
+    public static int recvmmsg(
+            int fd, NativeDatagramPacketArray.NativeDatagramPacket[] msgs, int offset, int len) throws IOException {
+        int res = recvmmsg0(fd, msgs, offset, len);
+        if (res >= 0) {
+            return res;
+        }
+        return ioResult("recvmmsg", res, RECVMMSG_CONNECTION_RESET_EXCEPTION, RECVMMSG_CLOSED_CHANNEL_EXCEPTION);
+    }
+
+    private static native int recvmmsg0(
+            int fd, NativeDatagramPacketArray.NativeDatagramPacket[] msgs, int offset, int len);
+
     // epoll_event related
     public static native int sizeofEpollEvent();
     public static native int offsetofEpollData();
@@ -23,12 +23,14 @@ import io.netty.util.concurrent.FastThreadLocal;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
 
 import static io.netty.channel.unix.Limits.UIO_MAX_IOV;
 import static io.netty.channel.unix.NativeInetAddress.ipv4MappedIpv6Address;
 
 /**
- * Support <a href="http://linux.die.net/man/2/sendmmsg">sendmmsg(...)</a> on linux with GLIBC 2.14+
+ * Support <a href="http://linux.die.net/man/2/sendmmsg">sendmmsg(...)</a> on linux with GLIBC 2.14+ and
+ * <a href="http://man7.org/linux/man-pages/man2/recvmmsg.2.html">recvmmsg(...)</a> on linux with GLIBC 2.12+
  */
 final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessageProcessor {
 
@@ -46,11 +48,14 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
                     for (NativeDatagramPacket datagramPacket : packetsArray) {
                         datagramPacket.release();
                     }
+                    value.releaseReceiveBuffers();
                 }
             };
 
     // Use UIO_MAX_IOV as this is the maximum number we can write with one sendmmsg(...) call.
     private final NativeDatagramPacket[] packets = new NativeDatagramPacket[UIO_MAX_IOV];
+    // The buffers which datagrams are received into by recvmmsg(...), until they are passed on.
+    private final ByteBuf[] receiveBuffers = new ByteBuf[UIO_MAX_IOV];
     private int count;
 
     private NativeDatagramPacketArray() {
@@ -74,7 +79,9 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
         }
         NativeDatagramPacket p = packets[count];
         InetSocketAddress recipient = packet.recipient();
-        if (!p.init(content, recipient)) {
+        int segmentSize = packet instanceof SegmentedDatagramPacket ?
+                ((SegmentedDatagramPacket) packet).segmentSize() : 0;
+        if (!p.init(content, recipient, segmentSize)) {
             return false;
         }
 
@@ -82,6 +89,61 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
         return true;
     }
 
+    /**
+     * Try to add the writable bytes of the given direct {@link ByteBuf}, so a datagram can be received into it by
+     * {@link Native#recvmmsg(int, NativeDatagramPacket[], int, int)}. Returns {@code true} on success, in which case
+     * this {@link NativeDatagramPacketArray} holds the {@link ByteBuf} until it is passed on by
+     * {@link #newDatagramPacket(int, InetSocketAddress)} or released by {@link #releaseReceiveBuffers()}.
+     */
+    boolean addWritable(ByteBuf buf) {
+        if (count == packets.length || !packets[count].initReceive(buf)) {
+            return false;
+        }
+        receiveBuffers[count++] = buf;
+        return true;
+    }
+
+    /**
+     * Returns the {@link DatagramPacket} which was received into the {@link ByteBuf} at the given index. The caller
+     * takes over the ownership of the {@link ByteBuf}.
+     */
+    DatagramPacket newDatagramPacket(int index, InetSocketAddress recipient) throws UnknownHostException {
+        ByteBuf buf = receiveBuffers[index];
+        NativeDatagramPacket packet = packets[index];
+        InetSocketAddress sender = packet.sender();
+        receiveBuffers[index] = null;
+        return new DatagramPacket(buf.writerIndex(buf.writerIndex() + packet.received), recipient, sender);
+    }
+
+    /**
+     * Returns the number of bytes which were received into the {@link ByteBuf} at the given index.
+     */
+    int received(int index) {
+        return packets[index].received;
+    }
+
+    /**
+     * Returns the size of the single datagrams if the kernel coalesced multiple datagrams into the {@link ByteBuf} at
+     * the given index because {@code UDP_GRO} is enabled, or {@code 0} otherwise.
+     */
+    int segmentSize(int index) {
+        return packets[index].segmentSize;
+    }
+
+    /**
+     * Release the {@link ByteBuf}s which were added by {@link #addWritable(ByteBuf)} and not passed on.
+     */
+    void releaseReceiveBuffers() {
+        for (int i = 0; i < count; i++) {
+            ByteBuf buf = receiveBuffers[i];
+            if (buf != null) {
+                receiveBuffers[i] = null;
+                buf.release();
+            }
+        }
+        count = 0;
+    }
+
     @Override
     public boolean processMessage(Object msg) throws Exception {
         return msg instanceof DatagramPacket && add((DatagramPacket) msg);
@@ -112,6 +174,15 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
         return array;
     }
 
+    /**
+     * Returns an empty {@link NativeDatagramPacketArray} which can be filled by {@link #addWritable(ByteBuf)}.
+     */
+    static NativeDatagramPacketArray getInstance() {
+        NativeDatagramPacketArray array = ARRAY.get();
+        array.count = 0;
+        return array;
+    }
+
     /**
      * Used to pass needed data to JNI.
      */
@@ -130,6 +201,13 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
         private int scopeId;
         private int port;
 
+        // Set by recvmmsg(...) to the length of the sender address in addr and the number of received bytes.
+        private int addrLen;
+        private int received;
+
+        // The UDP_SEGMENT size passed to sendmmsg(...), or the UDP_GRO size set by recvmmsg(...). 0 if none.
+        private int segmentSize;
+
         private void release() {
             array.release();
         }
@@ -137,7 +215,7 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
         /**
          * Init this instance and return {@code true} if the init was successful.
          */
-        private boolean init(ByteBuf buf, InetSocketAddress recipient) {
+        private boolean init(ByteBuf buf, InetSocketAddress recipient, int segmentSize) {
             array.clear();
             if (!array.add(buf)) {
                 return false;
@@ -155,7 +233,40 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
                 scopeId = 0;
             }
             port = recipient.getPort();
+            this.segmentSize = segmentSize;
+            return true;
+        }
+
+        /**
+         * Init this instance to receive a datagram into the writable bytes of the given {@link ByteBuf} and return
+         * {@code true} if the init was successful.
+         */
+        private boolean initReceive(ByteBuf buf) {
+            array.clear();
+            if (!array.add(buf, buf.writerIndex(), buf.writableBytes())) {
+                return false;
+            }
+            memoryAddress = array.memoryAddress(0);
+            count = array.count();
+            if (addr == null || addr.length != 16) {
+                // Large enough for an IPv6 address.
+                addr = new byte[16];
+            }
+            received = 0;
+            segmentSize = 0;
             return true;
         }
+
+        private InetSocketAddress sender() throws UnknownHostException {
+            final InetAddress address;
+            if (addrLen == 4) {
+                byte[] ipv4 = new byte[4];
+                System.arraycopy(addr, 0, ipv4, 0, 4);
+                address = InetAddress.getByAddress(ipv4);
+            } else {
+                address = Inet6Address.getByAddress(null, addr.clone(), scopeId);
+            }
+            return new InetSocketAddress(address, port);
+        }
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.testsuite.transport.TestsuitePermutation;
+import io.netty.testsuite.transport.socket.DatagramUnicastTest;
+import io.netty.util.NetUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class EpollDatagramRecvmmsgTest extends DatagramUnicastTest {
+
+    @BeforeClass
+    public static void assumeRecvmmsgSupported() {
+        assumeTrue(Native.IS_SUPPORTING_RECVMMSG);
+    }
+
+    @Override
+    protected List<TestsuitePermutation.BootstrapComboFactory<Bootstrap, Bootstrap>> newFactories() {
+        return EpollSocketTestPermutation.INSTANCE.datagram();
+    }
+
+    @Override
+    protected void configure(Bootstrap bootstrap, Bootstrap bootstrap2, ByteBufAllocator allocator) {
+        super.configure(bootstrap, bootstrap2, allocator);
+        bootstrap.option(EpollChannelOption.RECVMMSG_BATCH_SIZE, 8);
+        bootstrap2.option(EpollChannelOption.RECVMMSG_BATCH_SIZE, 8);
+    }
+
+    @Test(timeout = 10000)
+    public void testEchoMultiplePacketsPerRead() throws Throwable {
+        final int numPackets = 16;
+        final CountDownLatch latch = new CountDownLatch(numPackets * 2);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final AtomicReference<SocketAddress> clientAddress = new AtomicReference<SocketAddress>();
+        // Use a single event loop, so the writes of the server and the reads share the NativeDatagramPacketArray.
+        EventLoopGroup group = new EpollEventLoopGroup(1);
+        Channel sc = null;
+        Channel cc = null;
+        try {
+            sc = new Bootstrap().group(group).channel(EpollDatagramChannel.class)
+                    .option(EpollChannelOption.RECVMMSG_BATCH_SIZE, 8)
+                    .handler(new SimpleChannelInboundHandler<DatagramPacket>() {
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) {
+                            try {
+                                assertEquals(clientAddress.get(), msg.sender());
+                            } catch (Throwable cause) {
+                                error.compareAndSet(null, cause);
+                            }
+                            // Echo every datagram twice, so the flush writes more than one datagram.
+                            ctx.write(new DatagramPacket(msg.content().retainedDuplicate(), msg.sender()));
+                            ctx.writeAndFlush(new DatagramPacket(msg.content().retainedDuplicate(), msg.sender()));
+                        }
+                    }).bind(NetUtil.LOCALHOST4, 0).sync().channel();
+
+            final InetSocketAddress serverAddress = (InetSocketAddress) sc.localAddress();
+            cc = new Bootstrap().group(group).channel(EpollDatagramChannel.class)
+                    .option(EpollChannelOption.RECVMMSG_BATCH_SIZE, 8)
+                    .handler(new SimpleChannelInboundHandler<DatagramPacket>() {
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) {
+                            try {
+                                assertEquals(serverAddress, msg.sender());
+                                assertEquals(4, msg.content().readableBytes());
+                            } catch (Throwable cause) {
+                                error.compareAndSet(null, cause);
+                            }
+                            latch.countDown();
+                        }
+                    }).bind(NetUtil.LOCALHOST4, 0).sync().channel();
+
+            clientAddress.set(cc.localAddress());
+            for (int i = 0; i < numPackets; i++) {
+                ByteBuf buf = Unpooled.directBuffer(4).writeInt(i);
+                cc.write(new DatagramPacket(buf, serverAddress));
+            }
+            cc.flush();
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            if (error.get() != null) {
+                throw error.get();
+            }
+        } finally {
+            if (cc != null) {
+                cc.close().sync();
+            }
+            if (sc != null) {
+                sc.close().sync();
+            }
+            group.shutdownGracefully();
+        }
+    }
+}
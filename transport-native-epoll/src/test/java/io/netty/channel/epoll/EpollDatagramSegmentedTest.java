@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.NetUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class EpollDatagramSegmentedTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+    private static final int NUM_SEGMENTS = 16;
+
+    private static EventLoopGroup group;
+
+    @BeforeClass
+    public static void beforeClass() {
+        assumeTrue(SegmentedDatagramPacket.isSupported());
+        group = new EpollEventLoopGroup(1);
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        if (group != null) {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testSendSegmented() throws Throwable {
+        testSegmented(false);
+    }
+
+    @Test(timeout = 10000)
+    public void testSendSegmentedReceiveGro() throws Throwable {
+        testSegmented(true);
+    }
+
+    private static void testSegmented(boolean gro) throws Throwable {
+        final CountDownLatch latch = new CountDownLatch(NUM_SEGMENTS);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Channel sc = null;
+        Channel cc = null;
+        try {
+            Bootstrap sb = new Bootstrap().group(group).channel(EpollDatagramChannel.class)
+                    // Large enough to hold the datagrams if the kernel coalesced them.
+                    .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(SEGMENT_SIZE * NUM_SEGMENTS))
+                    .handler(new SimpleChannelInboundHandler<DatagramPacket>() {
+                        private byte next;
+
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) {
+                            ByteBuf content = msg.content();
+                            try {
+                                assertEquals(SEGMENT_SIZE, content.readableBytes());
+                                // Every segment is filled with its index, so the order is preserved.
+                                for (int i = content.readerIndex(); i < content.writerIndex(); i++) {
+                                    assertEquals(next, content.getByte(i));
+                                }
+                                next++;
+                            } catch (Throwable cause) {
+                                error.compareAndSet(null, cause);
+                            }
+                            latch.countDown();
+                        }
+                    });
+            sc = sb.bind(NetUtil.LOCALHOST4, 0).sync().channel();
+            if (gro) {
+                try {
+                    ((EpollDatagramChannel) sc).config().setUdpGro(true);
+                } catch (Exception e) {
+                    // UDP_GRO is only supported on linux 5.0+.
+                    assumeTrue(false);
+                }
+                assertTrue(((EpollDatagramChannel) sc).config().isUdpGro());
+            }
+
+            cc = new Bootstrap().group(group).channel(EpollDatagramChannel.class)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .bind(NetUtil.LOCALHOST4, 0).sync().channel();
+
+            ByteBuf buf = Unpooled.directBuffer(SEGMENT_SIZE * NUM_SEGMENTS);
+            for (int i = 0; i < NUM_SEGMENTS; i++) {
+                for (int j = 0; j < SEGMENT_SIZE; j++) {
+                    buf.writeByte(i);
+                }
+            }
+            cc.writeAndFlush(new SegmentedDatagramPacket(buf, SEGMENT_SIZE, (InetSocketAddress) sc.localAddress()))
+                    .sync();
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            if (error.get() != null) {
+                throw error.get();
+            }
+        } finally {
+            if (cc != null) {
+                cc.close().sync();
+            }
+            if (sc != null) {
+                sc.close().sync();
+            }
+        }
+    }
+}
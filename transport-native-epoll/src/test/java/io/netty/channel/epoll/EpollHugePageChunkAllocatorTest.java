@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PoolChunkListMetric;
+import io.netty.buffer.PoolChunkMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.unix.HugePageChunkAllocator;
+import io.netty.util.internal.PlatformDependent;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static io.netty.channel.unix.HugePageChunkAllocator.HUGE_PAGE_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests the native part of {@link HugePageChunkAllocator}, which is registered when the epoll library is loaded.
+ */
+public class EpollHugePageChunkAllocatorTest {
+
+    @BeforeClass
+    public static void loadJNI() {
+        assumeTrue(Epoll.isAvailable());
+        assumeTrue(PlatformDependent.hasDirectBufferNoCleanerConstructor());
+    }
+
+    @Test
+    public void testTransparentHugePages() {
+        assumeTrue(new File("/sys/kernel/mm/transparent_hugepage/enabled").exists());
+        HugePageChunkAllocator chunkAllocator = HugePageChunkAllocator.transparentHugePages();
+        int capacity = 2 * HUGE_PAGE_SIZE + 4096;
+        ByteBuffer memory = chunkAllocator.allocate(capacity);
+        assertNotNull(memory);
+        try {
+            assertTrue(memory.isDirect());
+            assertEquals(capacity, memory.capacity());
+            // The mapping must be aligned, otherwise the kernel does not use huge pages for it.
+            assertEquals(0, PlatformDependent.directBufferAddress(memory) % HUGE_PAGE_SIZE);
+            memory.putLong(0, 1);
+            memory.putLong(capacity - 8, 2);
+            assertEquals(1, memory.getLong(0));
+            assertEquals(2, memory.getLong(capacity - 8));
+        } finally {
+            chunkAllocator.free(memory);
+        }
+    }
+
+    @Test
+    public void testPooledAllocatorUsesTransparentHugePages() {
+        assumeTrue(new File("/sys/kernel/mm/transparent_hugepage/enabled").exists());
+        // Release free chunks at once so they are unmapped when the buffer is released.
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 0, 1, 8192, 11, 0, 0, 0, true, 0, 1, 0,
+                Long.MAX_VALUE, HugePageChunkAllocator.transparentHugePages());
+        ByteBuf buffer = allocator.directBuffer(64 * 1024);
+        try {
+            assertEquals(Collections.singletonList("madvise-hugepage"), memoryBackings(allocator));
+            while (buffer.isWritable()) {
+                buffer.writeLong(buffer.writerIndex());
+            }
+            while (buffer.isReadable()) {
+                assertEquals(buffer.readerIndex(), buffer.readLong());
+            }
+        } finally {
+            assertTrue(buffer.release());
+        }
+        assertEquals(Collections.<String>emptyList(), memoryBackings(allocator));
+    }
+
+    @Test
+    public void testHugetlbFallsBackIfMappingFails() throws IOException {
+        // Without reserved huge pages mmap(MAP_HUGETLB) fails.
+        assumeTrue(freeHugePages() == 0);
+        HugePageChunkAllocator chunkAllocator = HugePageChunkAllocator.hugetlb();
+        assertNull(chunkAllocator.allocate(HUGE_PAGE_SIZE));
+
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 0, 1, 8192, 11, 0, 0, 0, true, 0, 1, 0, 0,
+                chunkAllocator);
+        ByteBuf buffer = allocator.directBuffer(64 * 1024);
+        try {
+            assertEquals(Collections.singletonList("direct"), memoryBackings(allocator));
+        } finally {
+            assertTrue(buffer.release());
+        }
+    }
+
+    private static long freeHugePages() throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader("/proc/meminfo"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("HugePages_Free:")) {
+                    return Long.parseLong(line.substring("HugePages_Free:".length()).trim());
+                }
+            }
+            return 0;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static List<String> memoryBackings(PooledByteBufAllocator allocator) {
+        List<String> backings = new ArrayList<String>();
+        for (PoolArenaMetric arena : allocator.metric().directArenas()) {
+            for (PoolChunkListMetric list : arena.chunkLists()) {
+                for (PoolChunkMetric chunk : list) {
+                    backings.add(chunk.memoryBacking());
+                }
+            }
+        }
+        return backings;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.AbstractByteBufAllocator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.NetUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EpollRelayHandlerTest {
+
+    private static final Random random = new Random();
+    private static final byte[] data = new byte[4 * 1024 * 1024];
+
+    static {
+        random.nextBytes(data);
+    }
+
+    private static EventLoopGroup group;
+
+    @BeforeClass
+    public static void setUp() {
+        group = new EpollEventLoopGroup(1);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        group.shutdownGracefully();
+    }
+
+    private enum Mode {
+        // Both directions are spliced.
+        SPLICE,
+        // The proxied channel transforms the bytes it reads, so only the other direction is spliced.
+        MIXED,
+        // The proxied channel transforms the bytes it reads and writes, so both directions copy.
+        COPY
+    }
+
+    @Test(timeout = 30000)
+    public void testRelayWithSplice() throws Throwable {
+        CountingAllocator allocator = new CountingAllocator();
+        assertArrayEquals(data, relay(Mode.SPLICE, allocator));
+        // Nothing was read into or copied to a buffer of the proxied channel.
+        assertEquals(0, allocator.directBuffers.get());
+    }
+
+    @Test(timeout = 30000)
+    public void testRelayWithSpliceAndCopy() throws Throwable {
+        CountingAllocator allocator = new CountingAllocator();
+        assertInverted(relay(Mode.MIXED, allocator));
+        assertTrue(allocator.directBuffers.get() > 0);
+    }
+
+    @Test(timeout = 30000)
+    public void testRelayWithCopy() throws Throwable {
+        CountingAllocator allocator = new CountingAllocator();
+        assertInverted(relay(Mode.COPY, allocator));
+        assertTrue(allocator.directBuffers.get() > 0);
+    }
+
+    private static void assertInverted(byte[] received) {
+        assertEquals(data.length, received.length);
+        for (int i = 0; i < data.length; i++) {
+            assertEquals((byte) ~data[i], received[i]);
+        }
+    }
+
+    /**
+     * Send {@link #data} through a proxy which relays it to an echo server and back, and return what was echoed.
+     * The proxied channel uses the given allocator.
+     */
+    private static byte[] relay(final Mode mode, final ByteBufAllocator allocator) throws Throwable {
+        final Channel echoServer = new ServerBootstrap().group(group)
+                .channel(EpollServerSocketChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ctx.write(msg);
+                    }
+
+                    @Override
+                    public void channelReadComplete(ChannelHandlerContext ctx) {
+                        ctx.flush();
+                    }
+                })
+                .bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+        final Bootstrap backend = new Bootstrap().channel(EpollSocketChannel.class)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        // Nothing to add, the relay is added once connected.
+                    }
+                });
+        final Channel proxy = new ServerBootstrap().group(group)
+                .channel(EpollServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(final Channel frontend) {
+                        frontend.config().setAutoRead(false);
+                        frontend.config().setAllocator(allocator);
+                        backend.clone(frontend.eventLoop()).connect(echoServer.localAddress())
+                                .addListener(new ChannelFutureListener() {
+                            @Override
+                            public void operationComplete(ChannelFuture future) {
+                                if (!future.isSuccess()) {
+                                    frontend.close();
+                                    return;
+                                }
+                                Channel backend = future.channel();
+                                if (mode != Mode.SPLICE) {
+                                    frontend.pipeline().addLast(new InvertHandler());
+                                }
+                                if (mode == Mode.COPY) {
+                                    // May transform the bytes written to the frontend, so the backend copies too.
+                                    frontend.pipeline().addLast(new ChannelOutboundHandlerAdapter());
+                                }
+                                frontend.pipeline().addLast(new EpollRelayHandler(backend));
+                                backend.pipeline().addLast(new EpollRelayHandler(frontend));
+                                frontend.config().setAutoRead(true);
+                            }
+                        });
+                    }
+                })
+                .bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        final ByteBuf received = Unpooled.buffer(data.length);
+        final CountDownLatch latch = new CountDownLatch(1);
+        Channel client = new Bootstrap().group(group)
+                .channel(EpollSocketChannel.class)
+                .handler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ByteBuf buf = (ByteBuf) msg;
+                        received.writeBytes(buf);
+                        buf.release();
+                        if (received.readableBytes() == data.length) {
+                            latch.countDown();
+                        }
+                    }
+                })
+                .connect(proxy.localAddress()).syncUninterruptibly().channel();
+        try {
+            for (int i = 0; i < data.length;) {
+                int length = Math.min(random.nextInt(1024 * 64), data.length - i);
+                client.writeAndFlush(Unpooled.wrappedBuffer(data, i, length));
+                i += length;
+            }
+            assertTrue(latch.await(20, TimeUnit.SECONDS));
+            byte[] bytes = new byte[received.readableBytes()];
+            received.readBytes(bytes);
+            return bytes;
+        } finally {
+            client.close().syncUninterruptibly();
+            proxy.close().syncUninterruptibly();
+            echoServer.close().syncUninterruptibly();
+            received.release();
+        }
+    }
+
+    private static final class CountingAllocator extends AbstractByteBufAllocator {
+        final AtomicInteger directBuffers = new AtomicInteger();
+
+        CountingAllocator() {
+            super(true);
+        }
+
+        @Override
+        protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+            return UnpooledByteBufAllocator.DEFAULT.heapBuffer(initialCapacity, maxCapacity);
+        }
+
+        @Override
+        protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+            directBuffers.incrementAndGet();
+            return UnpooledByteBufAllocator.DEFAULT.directBuffer(initialCapacity, maxCapacity);
+        }
+
+        @Override
+        public boolean isDirectBufferPooled() {
+            return false;
+        }
+    }
+
+    private static final class InvertHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf buf = (ByteBuf) msg;
+            for (int i = buf.readerIndex(); i < buf.writerIndex(); i++) {
+                buf.setByte(i, ~buf.getByte(i));
+            }
+            ctx.fireChannelRead(buf);
+        }
+    }
+}
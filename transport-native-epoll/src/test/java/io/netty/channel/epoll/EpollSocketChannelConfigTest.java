@@ -23,6 +23,7 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.ClosedChannelException;
 import java.util.Map;
@@ -134,6 +135,35 @@ public class EpollSocketChannelConfigTest {
         assertTrue(ch.config().isTcpQuickAck());
     }
 
+    @Test
+    public void testZeroCopy() throws IOException {
+        try {
+            ch.config().setZeroCopy(true);
+        } catch (ChannelException e) {
+            // SO_ZEROCOPY is only supported on linux 4.14+.
+            assumeNoException(e);
+        }
+        assertTrue(ch.config().isZeroCopy());
+        assertTrue(ch.socket.isZeroCopy());
+        ch.config().setZeroCopy(false);
+        assertFalse(ch.config().isZeroCopy());
+        assertFalse(ch.socket.isZeroCopy());
+    }
+
+    @Test
+    public void testZeroCopyThreshold() {
+        ch.config().setZeroCopyThreshold(0);
+        assertEquals(0, ch.config().getZeroCopyThreshold());
+        ch.config().setOption(EpollChannelOption.ZEROCOPY_THRESHOLD, 64 * 1024);
+        assertEquals(Integer.valueOf(64 * 1024), ch.config().getOption(EpollChannelOption.ZEROCOPY_THRESHOLD));
+        try {
+            ch.config().setZeroCopyThreshold(-1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
     @Test
     public void testSetOptionWhenClosed() {
         ch.close().syncUninterruptibly();
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.NetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+
+public class EpollSocketZeroCopyTest {
+
+    private static final int WRITE_SIZE = 64 * 1024;
+    private static final int NUM_WRITES = 64;
+    private static final Random random = new Random();
+    private static final byte[] data = new byte[WRITE_SIZE * NUM_WRITES];
+
+    private static EventLoopGroup group;
+
+    static {
+        random.nextBytes(data);
+    }
+
+    @BeforeClass
+    public static void beforeClass() {
+        group = new EpollEventLoopGroup(2);
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        group.shutdownGracefully();
+    }
+
+    @Test(timeout = 30000)
+    public void testWriteZeroCopy() throws Throwable {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final ByteBuf received = Unpooled.buffer(data.length);
+        Channel sc = null;
+        Channel cc = null;
+        try {
+            sc = new ServerBootstrap().group(group).channel(EpollServerSocketChannel.class)
+                    .childHandler(new SimpleChannelInboundHandler<ByteBuf>() {
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                            received.writeBytes(msg);
+                            if (received.readableBytes() == data.length) {
+                                latch.countDown();
+                            }
+                        }
+
+                        @Override
+                        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                            error.compareAndSet(null, cause);
+                        }
+                    }).bind(NetUtil.LOCALHOST, 0).sync().channel();
+
+            cc = new Bootstrap().group(group).channel(EpollSocketChannel.class)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(sc.localAddress()).sync().channel();
+            EpollSocketChannelConfig config = ((EpollSocketChannel) cc).config();
+            try {
+                config.setZeroCopy(true);
+            } catch (ChannelException e) {
+                // SO_ZEROCOPY is only supported on linux 4.14+.
+                assumeNoException(e);
+            }
+            config.setZeroCopyThreshold(0);
+
+            List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+            for (int i = 0; i < NUM_WRITES; i++) {
+                ByteBuf buf = Unpooled.directBuffer(WRITE_SIZE).writeBytes(data, i * WRITE_SIZE, WRITE_SIZE);
+                buffers.add(buf);
+                cc.write(buf);
+            }
+            cc.flush();
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            if (error.get() != null) {
+                throw error.get();
+            }
+            assertEquals(Unpooled.wrappedBuffer(data), received);
+
+            // All buffers are released once the kernel notified us that the writes completed.
+            for (ByteBuf buf : buffers) {
+                while (buf.refCnt() != 0) {
+                    Thread.sleep(10);
+                }
+            }
+        } finally {
+            received.release();
+            if (cc != null) {
+                cc.close().sync();
+            }
+            if (sc != null) {
+                sc.close().sync();
+            }
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testCompletionsDoNotReadIfAutoReadIsOff() throws Throwable {
+        final CountDownLatch readLatch = new CountDownLatch(1);
+        final AtomicInteger reads = new AtomicInteger();
+        Channel sc = null;
+        Channel cc = null;
+        try {
+            // The server sends some data right away, which the client must not read until it asks for it.
+            sc = new ServerBootstrap().group(group).channel(EpollServerSocketChannel.class)
+                    .childHandler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelActive(ChannelHandlerContext ctx) {
+                            ctx.writeAndFlush(Unpooled.wrappedBuffer(data, 0, 1024));
+                        }
+
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            ReferenceCountUtil.release(msg);
+                        }
+                    }).bind(NetUtil.LOCALHOST, 0).sync().channel();
+
+            cc = new Bootstrap().group(group).channel(EpollSocketChannel.class)
+                    .option(ChannelOption.AUTO_READ, false)
+                    .handler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            reads.incrementAndGet();
+                            ReferenceCountUtil.release(msg);
+                            readLatch.countDown();
+                        }
+                    })
+                    .connect(sc.localAddress()).sync().channel();
+            EpollSocketChannelConfig config = ((EpollSocketChannel) cc).config();
+            try {
+                config.setZeroCopy(true);
+            } catch (ChannelException e) {
+                // SO_ZEROCOPY is only supported on linux 4.14+.
+                assumeNoException(e);
+            }
+            config.setZeroCopyThreshold(0);
+
+            // Each write is completed via EPOLLERR, which must not trigger a read.
+            List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+            for (int i = 0; i < NUM_WRITES; i++) {
+                ByteBuf buf = Unpooled.directBuffer(WRITE_SIZE).writeBytes(data, i * WRITE_SIZE, WRITE_SIZE);
+                buffers.add(buf);
+                cc.writeAndFlush(buf).sync();
+            }
+            for (ByteBuf buf : buffers) {
+                while (buf.refCnt() != 0) {
+                    Thread.sleep(10);
+                }
+            }
+            // Let the event loop process anything that is still pending.
+            cc.eventLoop().submit(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            }).sync();
+            assertEquals(0, reads.get());
+
+            cc.read();
+            assertTrue(readLatch.await(10, TimeUnit.SECONDS));
+        } finally {
+            if (cc != null) {
+                cc.close().sync();
+            }
+            if (sc != null) {
+                sc.close().sync();
+            }
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testCloseWithOutstandingZeroCopyWrite() throws Throwable {
+        // A single arena without caches, so a released buffer is handed out again by the next allocation.
+        final PooledByteBufAllocator alloc = new PooledByteBufAllocator(true, 0, 1, 8192, 11, 0, 0, 0);
+        final int size = 512 * 1024;
+        final CountDownLatch inactiveLatch = new CountDownLatch(1);
+        final AtomicReference<Channel> accepted = new AtomicReference<Channel>();
+        final CountDownLatch acceptedLatch = new CountDownLatch(1);
+        final ByteBuf received = Unpooled.buffer(size);
+        ByteBuf keeper = null;
+        Channel sc = null;
+        Channel cc = null;
+        try {
+            // The server does not read until the client closed, so the written data is still queued in the kernel.
+            sc = new ServerBootstrap().group(group).channel(EpollServerSocketChannel.class)
+                    .option(ChannelOption.SO_RCVBUF, 16 * 1024)
+                    .childOption(ChannelOption.AUTO_READ, false)
+                    .childHandler(new SimpleChannelInboundHandler<ByteBuf>() {
+                        @Override
+                        public void channelActive(ChannelHandlerContext ctx) {
+                            accepted.set(ctx.channel());
+                            acceptedLatch.countDown();
+                        }
+
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                            received.writeBytes(msg);
+                        }
+
+                        @Override
+                        public void channelInactive(ChannelHandlerContext ctx) {
+                            inactiveLatch.countDown();
+                        }
+                    }).bind(NetUtil.LOCALHOST, 0).sync().channel();
+
+            cc = new Bootstrap().group(group).channel(EpollSocketChannel.class)
+                    .option(ChannelOption.SO_SNDBUF, 4 * size)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(sc.localAddress()).sync().channel();
+            EpollSocketChannelConfig config = ((EpollSocketChannel) cc).config();
+            try {
+                config.setZeroCopy(true);
+            } catch (ChannelException e) {
+                // SO_ZEROCOPY is only supported on linux 4.14+.
+                assumeNoException(e);
+            }
+            config.setZeroCopyThreshold(0);
+            assertTrue(acceptedLatch.await(10, TimeUnit.SECONDS));
+
+            // Allocate on the event loop, so the memory is given back to the pool as soon as the event loop releases
+            // the buffer. The second buffer keeps the chunk in use, so its memory stays in the pool.
+            final ByteBuf[] buffers = new ByteBuf[2];
+            final Channel client = cc;
+            cc.eventLoop().submit(new Runnable() {
+                @Override
+                public void run() {
+                    buffers[0] = alloc.directBuffer(size).writeBytes(data, 0, size);
+                    buffers[1] = alloc.directBuffer(size);
+                    client.writeAndFlush(buffers[0]).addListener(ChannelFutureListener.CLOSE);
+                }
+            }).sync();
+            keeper = buffers[1];
+            cc.closeFuture().addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    // Overwrite whatever memory the pool hands out now, which must not be the memory of the write.
+                    for (int i = 0; i < 4; i++) {
+                        ByteBuf garbage = alloc.directBuffer(size);
+                        garbage.setZero(0, garbage.capacity());
+                        garbage.release();
+                    }
+                }
+            }).sync();
+
+            Channel child = accepted.get();
+            assertNotNull(child);
+            child.config().setAutoRead(true);
+            assertTrue(inactiveLatch.await(10, TimeUnit.SECONDS));
+            assertEquals(Unpooled.wrappedBuffer(data, 0, size), received);
+
+            // The buffer is released once the kernel notified us that the write completed.
+            while (buffers[0].refCnt() != 0) {
+                Thread.sleep(10);
+            }
+        } finally {
+            received.release();
+            if (keeper != null) {
+                keeper.release();
+            }
+            if (cc != null) {
+                cc.close().sync();
+            }
+            if (sc != null) {
+                sc.close().sync();
+            }
+        }
+    }
+}
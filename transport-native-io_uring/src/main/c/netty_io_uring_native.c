@@ -0,0 +1,488 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+#define _GNU_SOURCE
+#include <jni.h>
+#include <stdint.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <errno.h>
+#include <fcntl.h>
+#include <poll.h>
+#include <unistd.h>
+#include <dlfcn.h>
+#include <sys/eventfd.h>
+#include <sys/mman.h>
+#include <sys/socket.h>
+#include <sys/syscall.h>
+#include <sys/utsname.h>
+
+#include "netty_unix_errors.h"
+#include "netty_unix_filedescriptor.h"
+#include "netty_unix_jni.h"
+#include "netty_unix_limits.h"
+#include "netty_unix_memory.h"
+#include "netty_unix_socket.h"
+#include "netty_unix_util.h"
+
+// The io_uring syscalls have the same number on all architectures which use the generic syscall table. We define them
+// and the structs of linux/io_uring.h here so we can compile against kernel headers which predate io_uring.
+#ifndef __NR_io_uring_setup
+#define __NR_io_uring_setup 425
+#endif
+#ifndef __NR_io_uring_enter
+#define __NR_io_uring_enter 426
+#endif
+#ifndef __NR_io_uring_register
+#define __NR_io_uring_register 427
+#endif
+
+#ifndef POLLRDHUP
+#define POLLRDHUP 0x2000
+#endif
+
+#define NETTY_IORING_OFF_SQ_RING 0ULL
+#define NETTY_IORING_OFF_CQ_RING 0x8000000ULL
+#define NETTY_IORING_OFF_SQES 0x10000000ULL
+#define NETTY_IORING_FEAT_SINGLE_MMAP (1U << 0)
+#define NETTY_IORING_REGISTER_PROBE 8
+#define NETTY_IO_URING_OP_SUPPORTED (1U << 0)
+#define NETTY_IO_URING_PROBE_OPS 256
+#define NETTY_IO_URING_SQE_SIZE 64
+#define NETTY_IO_URING_CQE_SIZE 16
+
+struct netty_io_sqring_offsets {
+    uint32_t head;
+    uint32_t tail;
+    uint32_t ring_mask;
+    uint32_t ring_entries;
+    uint32_t flags;
+    uint32_t dropped;
+    uint32_t array;
+    uint32_t resv1;
+    uint64_t resv2;
+};
+
+struct netty_io_cqring_offsets {
+    uint32_t head;
+    uint32_t tail;
+    uint32_t ring_mask;
+    uint32_t ring_entries;
+    uint32_t overflow;
+    uint32_t cqes;
+    uint32_t flags;
+    uint32_t resv1;
+    uint64_t resv2;
+};
+
+struct netty_io_uring_params {
+    uint32_t sq_entries;
+    uint32_t cq_entries;
+    uint32_t flags;
+    uint32_t sq_thread_cpu;
+    uint32_t sq_thread_idle;
+    uint32_t features;
+    uint32_t wq_fd;
+    uint32_t resv[3];
+    struct netty_io_sqring_offsets sq_off;
+    struct netty_io_cqring_offsets cq_off;
+};
+
+struct netty_io_uring_probe_op {
+    uint8_t op;
+    uint8_t resv;
+    uint16_t flags;
+    uint32_t resv2;
+};
+
+struct netty_io_uring_probe {
+    uint8_t last_op;
+    uint8_t ops_len;
+    uint16_t resv;
+    uint32_t resv2[3];
+    struct netty_io_uring_probe_op ops[];
+};
+
+// Must match the indices used by io.netty.channel.uring.Native.
+#define NETTY_IO_URING_RING_ARRAY_SIZE 20
+
+static int sys_io_uring_setup(unsigned entries, struct netty_io_uring_params* p) {
+    return (int) syscall(__NR_io_uring_setup, entries, p);
+}
+
+static int sys_io_uring_enter(int fd, unsigned toSubmit, unsigned minComplete, unsigned flags) {
+    return (int) syscall(__NR_io_uring_enter, fd, toSubmit, minComplete, flags, NULL, 0);
+}
+
+static int sys_io_uring_register(int fd, unsigned opcode, const void* arg, unsigned nrArgs) {
+    return (int) syscall(__NR_io_uring_register, fd, opcode, arg, nrArgs);
+}
+
+// JNI Registered Methods Begin
+static jlongArray netty_io_uring_native_ioUringSetup0(JNIEnv* env, jclass clazz, jint entries) {
+    struct netty_io_uring_params p;
+    memset(&p, 0, sizeof(p));
+
+    int ringFd = sys_io_uring_setup((unsigned) entries, &p);
+    if (ringFd < 0) {
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "io_uring_setup() failed: ", errno);
+        return NULL;
+    }
+
+    size_t sqRingSize = p.sq_off.array + p.sq_entries * sizeof(uint32_t);
+    size_t cqRingSize = p.cq_off.cqes + p.cq_entries * NETTY_IO_URING_CQE_SIZE;
+    int singleMmap = (p.features & NETTY_IORING_FEAT_SINGLE_MMAP) != 0;
+    if (singleMmap) {
+        // The completion ring shares the mapping of the submission ring.
+        if (cqRingSize > sqRingSize) {
+            sqRingSize = cqRingSize;
+        }
+        cqRingSize = sqRingSize;
+    }
+
+    void* sqRing = mmap(NULL, sqRingSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, ringFd,
+                        NETTY_IORING_OFF_SQ_RING);
+    if (sqRing == MAP_FAILED) {
+        int err = errno;
+        close(ringFd);
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "mmap() of the submission ring failed: ", err);
+        return NULL;
+    }
+    void* cqRing = sqRing;
+    if (!singleMmap) {
+        cqRing = mmap(NULL, cqRingSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, ringFd,
+                      NETTY_IORING_OFF_CQ_RING);
+        if (cqRing == MAP_FAILED) {
+            int err = errno;
+            munmap(sqRing, sqRingSize);
+            close(ringFd);
+            netty_unix_errors_throwChannelExceptionErrorNo(env, "mmap() of the completion ring failed: ", err);
+            return NULL;
+        }
+    }
+    size_t sqesSize = p.sq_entries * NETTY_IO_URING_SQE_SIZE;
+    void* sqes = mmap(NULL, sqesSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, ringFd,
+                      NETTY_IORING_OFF_SQES);
+    if (sqes == MAP_FAILED) {
+        int err = errno;
+        if (cqRing != sqRing) {
+            munmap(cqRing, cqRingSize);
+        }
+        munmap(sqRing, sqRingSize);
+        close(ringFd);
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "mmap() of the submission queue entries failed: ", err);
+        return NULL;
+    }
+
+    jlong ring[NETTY_IO_URING_RING_ARRAY_SIZE] = {
+        ringFd,
+        p.features,
+        (jlong) ((char*) sqRing + p.sq_off.head),
+        (jlong) ((char*) sqRing + p.sq_off.tail),
+        (jlong) ((char*) sqRing + p.sq_off.ring_mask),
+        (jlong) ((char*) sqRing + p.sq_off.ring_entries),
+        (jlong) ((char*) sqRing + p.sq_off.flags),
+        (jlong) ((char*) sqRing + p.sq_off.dropped),
+        (jlong) ((char*) sqRing + p.sq_off.array),
+        (jlong) sqes,
+        (jlong) sqRing,
+        (jlong) sqRingSize,
+        (jlong) ((char*) cqRing + p.cq_off.head),
+        (jlong) ((char*) cqRing + p.cq_off.tail),
+        (jlong) ((char*) cqRing + p.cq_off.ring_mask),
+        (jlong) ((char*) cqRing + p.cq_off.ring_entries),
+        (jlong) ((char*) cqRing + p.cq_off.overflow),
+        (jlong) ((char*) cqRing + p.cq_off.cqes),
+        (jlong) cqRing,
+        (jlong) cqRingSize
+    };
+    jlongArray array = (*env)->NewLongArray(env, NETTY_IO_URING_RING_ARRAY_SIZE);
+    if (array == NULL) {
+        // Out of memory, an exception is pending.
+        munmap(sqes, sqesSize);
+        if (cqRing != sqRing) {
+            munmap(cqRing, cqRingSize);
+        }
+        munmap(sqRing, sqRingSize);
+        close(ringFd);
+        return NULL;
+    }
+    (*env)->SetLongArrayRegion(env, array, 0, NETTY_IO_URING_RING_ARRAY_SIZE, ring);
+    return array;
+}
+
+static void netty_io_uring_native_ioUringExit0(JNIEnv* env, jclass clazz, jint ringFd, jlong sqRing, jlong sqRingSize,
+                                               jlong cqRing, jlong cqRingSize, jlong sqes, jint sqEntries) {
+    munmap((void*) sqes, (size_t) sqEntries * NETTY_IO_URING_SQE_SIZE);
+    if (cqRing != sqRing) {
+        munmap((void*) cqRing, (size_t) cqRingSize);
+    }
+    munmap((void*) sqRing, (size_t) sqRingSize);
+    close(ringFd);
+}
+
+static jint netty_io_uring_native_ioUringEnter0(JNIEnv* env, jclass clazz, jint ringFd, jint toSubmit,
+                                                jint minComplete, jint flags) {
+    int result = sys_io_uring_enter(ringFd, (unsigned) toSubmit, (unsigned) minComplete, (unsigned) flags);
+    if (result < 0) {
+        return -errno;
+    }
+    return result;
+}
+
+static jboolean netty_io_uring_native_ioUringProbe0(JNIEnv* env, jclass clazz, jint ringFd, jintArray ops) {
+    size_t probeSize = sizeof(struct netty_io_uring_probe) +
+            NETTY_IO_URING_PROBE_OPS * sizeof(struct netty_io_uring_probe_op);
+    struct netty_io_uring_probe* probe = calloc(1, probeSize);
+    if (probe == NULL) {
+        netty_unix_errors_throwOutOfMemoryError(env);
+        return JNI_FALSE;
+    }
+    if (sys_io_uring_register(ringFd, NETTY_IORING_REGISTER_PROBE, probe, NETTY_IO_URING_PROBE_OPS) < 0) {
+        // The kernel is older than 5.6, which is too old for the operations we need anyway.
+        free(probe);
+        return JNI_FALSE;
+    }
+    jboolean supported = JNI_TRUE;
+    jsize len = (*env)->GetArrayLength(env, ops);
+    jint* opsElements = (*env)->GetIntArrayElements(env, ops, NULL);
+    if (opsElements == NULL) {
+        free(probe);
+        netty_unix_errors_throwOutOfMemoryError(env);
+        return JNI_FALSE;
+    }
+    jsize i;
+    for (i = 0; i < len; ++i) {
+        jint op = opsElements[i];
+        if (op < 0 || op > probe->last_op || op >= NETTY_IO_URING_PROBE_OPS ||
+                (probe->ops[op].flags & NETTY_IO_URING_OP_SUPPORTED) == 0) {
+            supported = JNI_FALSE;
+            break;
+        }
+    }
+    (*env)->ReleaseIntArrayElements(env, ops, opsElements, JNI_ABORT);
+    free(probe);
+    return supported;
+}
+
+static jint netty_io_uring_native_eventFd(JNIEnv* env, jclass clazz) {
+    // The eventfd is read through the ring, so it stays blocking.
+    jint eventFD = eventfd(0, EFD_CLOEXEC);
+
+    if (eventFD < 0) {
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "eventfd() failed: ", errno);
+    }
+    return eventFD;
+}
+
+static void netty_io_uring_native_eventFdWrite(JNIEnv* env, jclass clazz, jint fd, jlong value) {
+    jint eventFD = eventfd_write(fd, (eventfd_t) value);
+
+    if (eventFD < 0) {
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "eventfd_write() failed: ", errno);
+    }
+}
+
+static jint netty_io_uring_native_setBlocking0(JNIEnv* env, jclass clazz, jint fd) {
+    int flags = fcntl(fd, F_GETFL);
+    if (flags < 0 || fcntl(fd, F_SETFL, flags & ~O_NONBLOCK) < 0) {
+        return -errno;
+    }
+    return 0;
+}
+
+static jint netty_io_uring_native_writeSockaddr0(JNIEnv* env, jclass clazz, jlong memoryAddress, jbyteArray address,
+                                                 jint scopeId, jint port) {
+    socklen_t addrSize;
+    if (netty_unix_socket_initSockaddr(env, address, scopeId, port, (struct sockaddr_storage*) memoryAddress,
+                                       &addrSize) == -1) {
+        // An exception is pending.
+        return -1;
+    }
+    return (jint) addrSize;
+}
+
+static jint netty_io_uring_native_sizeofSockaddrStorage(JNIEnv* env, jclass clazz) {
+    return sizeof(struct sockaddr_storage);
+}
+
+static jint netty_io_uring_native_ecanceled(JNIEnv* env, jclass clazz) {
+    return ECANCELED;
+}
+
+static jint netty_io_uring_native_etime(JNIEnv* env, jclass clazz) {
+    return ETIME;
+}
+
+static jint netty_io_uring_native_eintr(JNIEnv* env, jclass clazz) {
+    return EINTR;
+}
+
+static jint netty_io_uring_native_ebusy(JNIEnv* env, jclass clazz) {
+    return EBUSY;
+}
+
+static jint netty_io_uring_native_pollin(JNIEnv* env, jclass clazz) {
+    return POLLIN;
+}
+
+static jint netty_io_uring_native_pollout(JNIEnv* env, jclass clazz) {
+    return POLLOUT;
+}
+
+static jint netty_io_uring_native_pollrdhup(JNIEnv* env, jclass clazz) {
+    return POLLRDHUP;
+}
+
+static jint netty_io_uring_native_sockCloexec(JNIEnv* env, jclass clazz) {
+    return SOCK_CLOEXEC;
+}
+
+static jstring netty_io_uring_native_kernelVersion(JNIEnv* env, jclass clazz) {
+    struct utsname name;
+
+    int res = uname(&name);
+    if (res == 0) {
+        return (*env)->NewStringUTF(env, name.release);
+    }
+    netty_unix_errors_throwRuntimeExceptionErrorNo(env, "uname() failed: ", errno);
+    return NULL;
+}
+// JNI Registered Methods End
+
+// JNI Method Registration Table Begin
+static const JNINativeMethod statically_referenced_fixed_method_table[] = {
+  { "ecanceled", "()I", (void *) netty_io_uring_native_ecanceled },
+  { "etime", "()I", (void *) netty_io_uring_native_etime },
+  { "eintr", "()I", (void *) netty_io_uring_native_eintr },
+  { "ebusy", "()I", (void *) netty_io_uring_native_ebusy },
+  { "pollin", "()I", (void *) netty_io_uring_native_pollin },
+  { "pollout", "()I", (void *) netty_io_uring_native_pollout },
+  { "pollrdhup", "()I", (void *) netty_io_uring_native_pollrdhup },
+  { "sockCloexec", "()I", (void *) netty_io_uring_native_sockCloexec },
+  { "kernelVersion", "()Ljava/lang/String;", (void *) netty_io_uring_native_kernelVersion }
+};
+static const jint statically_referenced_fixed_method_table_size = sizeof(statically_referenced_fixed_method_table) / sizeof(statically_referenced_fixed_method_table[0]);
+static const JNINativeMethod fixed_method_table[] = {
+  { "ioUringSetup0", "(I)[J", (void *) netty_io_uring_native_ioUringSetup0 },
+  { "ioUringExit0", "(IJJJJJI)V", (void *) netty_io_uring_native_ioUringExit0 },
+  { "ioUringEnter0", "(IIII)I", (void *) netty_io_uring_native_ioUringEnter0 },
+  { "ioUringProbe0", "(I[I)Z", (void *) netty_io_uring_native_ioUringProbe0 },
+  { "eventFd", "()I", (void *) netty_io_uring_native_eventFd },
+  { "eventFdWrite0", "(IJ)V", (void *) netty_io_uring_native_eventFdWrite },
+  { "setBlocking0", "(I)I", (void *) netty_io_uring_native_setBlocking0 },
+  { "writeSockaddr0", "(J[BII)I", (void *) netty_io_uring_native_writeSockaddr0 },
+  { "sizeofSockaddrStorage", "()I", (void *) netty_io_uring_native_sizeofSockaddrStorage }
+};
+static const jint fixed_method_table_size = sizeof(fixed_method_table) / sizeof(fixed_method_table[0]);
+// JNI Method Registration Table End
+
+static jint netty_io_uring_native_JNI_OnLoad(JNIEnv* env, const char* packagePrefix) {
+    // We must register the statically referenced methods first!
+    if (netty_unix_util_register_natives(env,
+            packagePrefix,
+            "io/netty/channel/uring/NativeStaticallyReferencedJniMethods",
+            statically_referenced_fixed_method_table,
+            statically_referenced_fixed_method_table_size) != 0) {
+        return JNI_ERR;
+    }
+    if (netty_unix_util_register_natives(env,
+            packagePrefix,
+            "io/netty/channel/uring/Native",
+            fixed_method_table,
+            fixed_method_table_size) != 0) {
+        return JNI_ERR;
+    }
+    // Load all c modules that we depend upon
+    if (netty_unix_limits_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        return JNI_ERR;
+    }
+    if (netty_unix_memory_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        return JNI_ERR;
+    }
+    if (netty_unix_errors_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        return JNI_ERR;
+    }
+    if (netty_unix_filedescriptor_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        return JNI_ERR;
+    }
+    if (netty_unix_socket_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        return JNI_ERR;
+    }
+    return NETTY_JNI_VERSION;
+}
+
+static void netty_io_uring_native_JNI_OnUnLoad(JNIEnv* env) {
+    netty_unix_limits_JNI_OnUnLoad(env);
+    netty_unix_memory_JNI_OnUnLoad(env);
+    netty_unix_errors_JNI_OnUnLoad(env);
+    netty_unix_filedescriptor_JNI_OnUnLoad(env);
+    netty_unix_socket_JNI_OnUnLoad(env);
+}
+
+// Invoked by the JVM when statically linked
+jint JNI_OnLoad_netty_transport_native_io_uring(JavaVM* vm, void* reserved) {
+    JNIEnv* env;
+    if ((*vm)->GetEnv(vm, (void**) &env, NETTY_JNI_VERSION) != JNI_OK) {
+        return JNI_ERR;
+    }
+    char* packagePrefix = NULL;
+#ifndef NETTY_BUILD_STATIC
+    Dl_info dlinfo;
+    jint status = 0;
+    // We need to use an address of a function that is uniquely part of this library, so choose a static
+    // function. See https://github.com/netty/netty/issues/4840.
+    if (!dladdr((void*) netty_io_uring_native_JNI_OnUnLoad, &dlinfo)) {
+        fprintf(stderr, "FATAL: transport-native-io_uring JNI call to dladdr failed!\n");
+        return JNI_ERR;
+    }
+    packagePrefix = netty_unix_util_parse_package_prefix(dlinfo.dli_fname, "netty_transport_native_io_uring", &status);
+    if (status == JNI_ERR) {
+        fprintf(stderr, "FATAL: transport-native-io_uring JNI encountered unexpected dlinfo.dli_fname: %s\n", dlinfo.dli_fname);
+        return JNI_ERR;
+    }
+#endif /* NETTY_BUILD_STATIC */
+    jint ret = netty_io_uring_native_JNI_OnLoad(env, packagePrefix);
+
+    if (packagePrefix != NULL) {
+      free(packagePrefix);
+      packagePrefix = NULL;
+    }
+
+    return ret;
+}
+
+#ifndef NETTY_BUILD_STATIC
+JNIEXPORT jint JNI_OnLoad(JavaVM* vm, void* reserved) {
+    return JNI_OnLoad_netty_transport_native_io_uring(vm, reserved);
+}
+#endif /* NETTY_BUILD_STATIC */
+
+// Invoked by the JVM when statically linked
+void JNI_OnUnload_netty_transport_native_io_uring(JavaVM* vm, void* reserved) {
+    JNIEnv* env;
+    if ((*vm)->GetEnv(vm, (void**) &env, NETTY_JNI_VERSION) != JNI_OK) {
+        // Something is wrong but nothing we can do about this :(
+        return;
+    }
+    netty_io_uring_native_JNI_OnUnLoad(env);
+}
+
+#ifndef NETTY_BUILD_STATIC
+JNIEXPORT void JNI_OnUnload(JavaVM* vm, void* reserved) {
+  JNI_OnUnload_netty_transport_native_io_uring(vm, reserved);
+}
+#endif /* NETTY_BUILD_STATIC */
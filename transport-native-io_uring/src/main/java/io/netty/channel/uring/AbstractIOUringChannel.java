@@ -0,0 +1,619 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.AbstractChannel;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.EventLoop;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.Socket;
+import io.netty.channel.unix.UnixChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.ThrowableUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.AlreadyConnectedException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ConnectionPendingException;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import static io.netty.channel.unix.UnixChannelUtil.computeRemoteAddr;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+abstract class AbstractIOUringChannel extends AbstractChannel implements UnixChannel {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractIOUringChannel.class);
+    private static final ClosedChannelException DO_CLOSE_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new ClosedChannelException(), AbstractIOUringChannel.class, "doClose()");
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false);
+
+    // The operations which can be in flight for a channel, at most one of each kind.
+    static final int READ_SCHEDULED = 1;
+    static final int WRITE_SCHEDULED = 1 << 1;
+    static final int CONNECT_SCHEDULED = 1 << 2;
+    static final int ACCEPT_SCHEDULED = 1 << 3;
+    static final int POLL_IN_SCHEDULED = 1 << 4;
+    static final int POLL_OUT_SCHEDULED = 1 << 5;
+
+    // The states of the operations of a previous registration, whose completions are delivered to the previous
+    // IOUringEventLoop. The channel is only added to the ring of its new IOUringEventLoop once they all completed.
+    private static final int DRAINED = 0;
+    private static final int DRAINING = 1;
+    private static final int REGISTER_PENDING = 2;
+    private static final int CLOSED = 3;
+    private static final AtomicIntegerFieldUpdater<AbstractIOUringChannel> DRAIN_STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(AbstractIOUringChannel.class, "drainState");
+
+    final Socket socket;
+
+    // Only accessed by the IOUringEventLoop the channel is registered with.
+    int ringId;
+    boolean ringRemoved = true;
+    int ioState;
+    private volatile int drainState;
+
+    /**
+     * The future of the current connection attempt.  If not null, subsequent
+     * connection attempts will fail.
+     */
+    private ChannelPromise connectPromise;
+    private ScheduledFuture<?> connectTimeoutFuture;
+    private SocketAddress requestedRemoteAddress;
+    // The struct sockaddr of the connect operation which is in flight, the kernel may read it until it completed.
+    private long connectAddressMemory;
+
+    private volatile SocketAddress local;
+    private volatile SocketAddress remote;
+
+    boolean inputClosedSeenErrorOnRead;
+    protected volatile boolean active;
+
+    AbstractIOUringChannel(Channel parent, Socket fd, boolean active) {
+        super(parent);
+        socket = checkNotNull(fd, "fd");
+        this.active = active;
+        if (active) {
+            // Directly cache the remote and local addresses
+            // See https://github.com/netty/netty/issues/2359
+            local = fd.localAddress();
+            remote = fd.remoteAddress();
+        }
+    }
+
+    AbstractIOUringChannel(Channel parent, Socket fd, SocketAddress remote) {
+        super(parent);
+        socket = checkNotNull(fd, "fd");
+        active = true;
+        // Directly cache the remote and local addresses
+        // See https://github.com/netty/netty/issues/2359
+        this.remote = remote;
+        local = fd.localAddress();
+    }
+
+    final boolean isIoScheduled(int flag) {
+        return (ioState & flag) != 0;
+    }
+
+    final IOUringEventLoop ioUringEventLoop() {
+        return (IOUringEventLoop) eventLoop();
+    }
+
+    @Override
+    public final FileDescriptor fd() {
+        return socket;
+    }
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        active = false;
+        // Even if we allow half closed sockets we should give up on reading. Otherwise we may allow a read attempt on a
+        // socket which has not even been connected yet. This has been observed to block during unit tests.
+        inputClosedSeenErrorOnRead = true;
+        try {
+            ChannelPromise promise = connectPromise;
+            if (promise != null) {
+                // Use tryFailure() instead of setFailure() to avoid the race against cancel().
+                promise.tryFailure(DO_CLOSE_CLOSED_CHANNEL_EXCEPTION);
+                connectPromise = null;
+            }
+
+            ScheduledFuture<?> future = connectTimeoutFuture;
+            if (future != null) {
+                future.cancel(false);
+                connectTimeoutFuture = null;
+            }
+
+            if (isRegistered()) {
+                // Need to check if we are on the EventLoop as doClose() may be triggered by the GlobalEventExecutor
+                // if SO_LINGER is used.
+                //
+                // See https://github.com/netty/netty/issues/7159
+                EventLoop loop = eventLoop();
+                if (loop.inEventLoop()) {
+                    doDeregister();
+                } else {
+                    loop.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                doDeregister();
+                            } catch (Throwable cause) {
+                                pipeline().fireExceptionCaught(cause);
+                            }
+                        }
+                    });
+                }
+            }
+        } finally {
+            // The ring holds its own reference to the socket until the cancelled operations completed.
+            socket.close();
+            releaseDeferredCompletions();
+        }
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        doClose();
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof IOUringEventLoop;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return socket.isOpen();
+    }
+
+    @Override
+    protected void doRegister() throws Exception {
+        if (DRAIN_STATE_UPDATER.compareAndSet(this, DRAINING, REGISTER_PENDING)) {
+            // The cancelled operations of the previous registration still complete on the previous event loop, which
+            // calls drained() once they are done.
+            return;
+        }
+        ioUringEventLoop().add(this);
+        final AbstractIOUringUnsafe unsafe = (AbstractIOUringUnsafe) unsafe();
+        if (unsafe.hasDeferredCompletions()) {
+            // Processed once channelRegistered was fired.
+            eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!ringRemoved && eventLoop().inEventLoop()) {
+                        unsafe.ringAdded();
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    protected void doDeregister() throws Exception {
+        if (!DRAIN_STATE_UPDATER.compareAndSet(this, REGISTER_PENDING, DRAINING)) {
+            ioUringEventLoop().remove(this);
+        }
+    }
+
+    /**
+     * Called by the {@link IOUringEventLoop} which cancels the operations of this channel that are still in flight.
+     */
+    final void draining() {
+        drainState = DRAINING;
+    }
+
+    /**
+     * Called by the {@link IOUringEventLoop} once the cancelled operations of this channel completed. This is the
+     * event loop the channel was registered with before, which is not necessarily the current one.
+     */
+    final void drained() {
+        if (DRAIN_STATE_UPDATER.getAndSet(this, DRAINED) != REGISTER_PENDING) {
+            if (!isOpen()) {
+                releaseDeferredCompletions();
+            }
+            return;
+        }
+        try {
+            eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (ringRemoved && drainState == DRAINED && isOpen() && isRegistered() &&
+                            eventLoop().inEventLoop()) {
+                        ioUringEventLoop().add(AbstractIOUringChannel.this);
+                        ((AbstractIOUringUnsafe) unsafe()).ringAdded();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Failed to add {} to the ring of its event loop.", this, e);
+            releaseDeferredCompletions();
+        }
+    }
+
+    private void releaseDeferredCompletions() {
+        // Either called by doClose() or by drained(), whichever comes last.
+        if (DRAIN_STATE_UPDATER.compareAndSet(this, DRAINED, CLOSED)) {
+            ((AbstractIOUringUnsafe) unsafe()).releaseDeferredCompletions();
+        }
+    }
+
+    @Override
+    protected final void doBeginRead() throws Exception {
+        final AbstractIOUringUnsafe unsafe = (AbstractIOUringUnsafe) unsafe();
+        unsafe.readPending = true;
+        unsafe.scheduleRead();
+    }
+
+    final boolean shouldBreakReading() {
+        return socket.isInputShutdown() && (inputClosedSeenErrorOnRead || !isAllowHalfClosure());
+    }
+
+    boolean isAllowHalfClosure() {
+        return false;
+    }
+
+    @Override
+    protected abstract AbstractIOUringUnsafe newUnsafe();
+
+    /**
+     * Returns an off-heap copy of the specified {@link ByteBuf}, and releases the original one.
+     */
+    protected final ByteBuf newDirectBuffer(ByteBuf buf) {
+        return newDirectBuffer(buf, buf);
+    }
+
+    /**
+     * Returns an off-heap copy of the specified {@link ByteBuf}, and releases the specified holder.
+     * The caller must ensure that the holder releases the original {@link ByteBuf} when the holder is released by
+     * this method.
+     */
+    protected final ByteBuf newDirectBuffer(Object holder, ByteBuf buf) {
+        final int readableBytes = buf.readableBytes();
+        if (readableBytes == 0) {
+            ReferenceCountUtil.release(holder);
+            return Unpooled.EMPTY_BUFFER;
+        }
+
+        final ByteBufAllocator alloc = alloc();
+        if (alloc.isDirectBufferPooled()) {
+            return newDirectBuffer0(holder, buf, alloc, readableBytes);
+        }
+
+        final ByteBuf directBuf = ByteBufUtil.threadLocalDirectBuffer();
+        if (directBuf == null) {
+            return newDirectBuffer0(holder, buf, alloc, readableBytes);
+        }
+
+        directBuf.writeBytes(buf, buf.readerIndex(), readableBytes);
+        ReferenceCountUtil.safeRelease(holder);
+        return directBuf;
+    }
+
+    private static ByteBuf newDirectBuffer0(Object holder, ByteBuf buf, ByteBufAllocator alloc, int capacity) {
+        final ByteBuf directBuf = alloc.directBuffer(capacity);
+        directBuf.writeBytes(buf, buf.readerIndex(), capacity);
+        ReferenceCountUtil.safeRelease(holder);
+        return directBuf;
+    }
+
+    protected static void checkResolvable(InetSocketAddress addr) {
+        if (addr.isUnresolved()) {
+            throw new UnresolvedAddressException();
+        }
+    }
+
+    protected abstract class AbstractIOUringUnsafe extends AbstractUnsafe {
+        boolean readPending;
+
+        /**
+         * Schedules the operation which reads from the socket, unless it is already in flight.
+         */
+        abstract void scheduleRead();
+
+        /**
+         * Called by the {@link IOUringEventLoop} once the operation identified by the given flag completed with the
+         * given result, which is the negative errno if it failed. Operations complete with
+         * {@link Native#ERRNO_ECANCELED_NEGATIVE} after the channel was closed or deregistered, unless they were done
+         * before the cancellation arrived. If the channel was deregistered this may be called by the previous
+         * {@link IOUringEventLoop}, while the channel is registered with another one already.
+         */
+        void complete(int flag, int res) {
+            if (flag == CONNECT_SCHEDULED) {
+                connectComplete(res);
+            }
+        }
+
+        /**
+         * Returns {@code true} if operations completed while the channel was deregistered, whose results need to be
+         * processed by {@link #ringAdded()}.
+         */
+        boolean hasDeferredCompletions() {
+            return false;
+        }
+
+        /**
+         * Releases the results of the operations which completed while the channel was deregistered, as it was closed
+         * before it was registered again.
+         */
+        void releaseDeferredCompletions() {
+        }
+
+        /**
+         * Called once the channel was added to the ring of its {@link IOUringEventLoop} after it was registered again.
+         * Resumes reading and writing, which stopped while the channel was not part of any ring.
+         */
+        void ringAdded() {
+            if (readPending) {
+                scheduleRead();
+            }
+            flush0();
+        }
+
+        /**
+         * Returns {@code true} while a write to the socket is in flight, in which case {@link #flush0()} is a no-op as
+         * the outbound buffer is flushed again once the write completed.
+         */
+        boolean isWritePending() {
+            return false;
+        }
+
+        @Override
+        protected final void flush0() {
+            if (isWritePending()) {
+                return;
+            }
+            super.flush0();
+            if (isWritePending()) {
+                // Like with the other transports the data is written before flush() returns, and not only once the
+                // current loop iteration is done.
+                try {
+                    ioUringEventLoop().submitQueued();
+                } catch (IOException e) {
+                    pipeline().fireExceptionCaught(e);
+                    close(voidPromise());
+                }
+            }
+        }
+
+        /**
+         * Flushes the outbound buffer once a pending write completed.
+         */
+        final void flushNow() {
+            super.flush0();
+        }
+
+        @Override
+        public void connect(
+                final SocketAddress remoteAddress, final SocketAddress localAddress, final ChannelPromise promise) {
+            if (!promise.setUncancellable() || !ensureOpen(promise)) {
+                return;
+            }
+
+            try {
+                if (connectPromise != null) {
+                    throw new ConnectionPendingException();
+                }
+
+                boolean wasActive = isActive();
+                if (doConnect(remoteAddress, localAddress)) {
+                    fulfillConnectPromise(promise, wasActive);
+                } else {
+                    connectPromise = promise;
+                    requestedRemoteAddress = remoteAddress;
+
+                    // Schedule connect timeout.
+                    int connectTimeoutMillis = config().getConnectTimeoutMillis();
+                    if (connectTimeoutMillis > 0) {
+                        connectTimeoutFuture = eventLoop().schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                ChannelPromise connectPromise = AbstractIOUringChannel.this.connectPromise;
+                                ConnectTimeoutException cause =
+                                        new ConnectTimeoutException("connection timed out: " + remoteAddress);
+                                if (connectPromise != null && connectPromise.tryFailure(cause)) {
+                                    close(voidPromise());
+                                }
+                            }
+                        }, connectTimeoutMillis, TimeUnit.MILLISECONDS);
+                    }
+
+                    promise.addListener(new ChannelFutureListener() {
+                        @Override
+                        public void operationComplete(ChannelFuture future) throws Exception {
+                            if (future.isCancelled()) {
+                                if (connectTimeoutFuture != null) {
+                                    connectTimeoutFuture.cancel(false);
+                                }
+                                connectPromise = null;
+                                close(voidPromise());
+                            }
+                        }
+                    });
+                }
+            } catch (Throwable t) {
+                closeIfClosed();
+                promise.tryFailure(annotateConnectException(t, remoteAddress));
+            }
+        }
+
+        private void fulfillConnectPromise(ChannelPromise promise, boolean wasActive) {
+            if (promise == null) {
+                // Closed via cancellation and the promise has been notified already.
+                return;
+            }
+            active = true;
+
+            // Get the state as trySuccess() may trigger an ChannelFutureListener that will close the Channel.
+            // We still need to ensure we call fireChannelActive() in this case.
+            boolean active = isActive();
+
+            // trySuccess() will return false if a user cancelled the connection attempt.
+            boolean promiseSet = promise.trySuccess();
+
+            // Regardless if the connection attempt was cancelled, channelActive() event should be triggered,
+            // because what happened is what happened.
+            if (!wasActive && active) {
+                pipeline().fireChannelActive();
+            }
+
+            // If a user cancelled the connection attempt, close the channel, which is followed by channelInactive().
+            if (!promiseSet) {
+                close(voidPromise());
+            }
+        }
+
+        private void fulfillConnectPromise(ChannelPromise promise, Throwable cause) {
+            if (promise == null) {
+                // Closed via cancellation and the promise has been notified already.
+                return;
+            }
+
+            // Use tryFailure() instead of setFailure() to avoid the race against cancel().
+            promise.tryFailure(cause);
+            closeIfClosed();
+        }
+
+        private void connectComplete(int res) {
+            assert eventLoop().inEventLoop();
+            freeConnectAddress();
+            if (connectPromise == null) {
+                // Closed, timed out or cancelled, and the promise has been notified already.
+                return;
+            }
+            try {
+                boolean wasActive = isActive();
+                if (res < 0) {
+                    Errors.throwConnectException("connect", res);
+                }
+                if (requestedRemoteAddress instanceof InetSocketAddress) {
+                    remote = computeRemoteAddr((InetSocketAddress) requestedRemoteAddress, socket.remoteAddress());
+                }
+                local = socket.localAddress();
+                requestedRemoteAddress = null;
+                fulfillConnectPromise(connectPromise, wasActive);
+            } catch (Throwable t) {
+                fulfillConnectPromise(connectPromise, annotateConnectException(t, requestedRemoteAddress));
+            } finally {
+                // Check for null as the connectTimeoutFuture is only created if a connectTimeoutMillis > 0 is used
+                // See https://github.com/netty/netty/issues/1770
+                if (connectTimeoutFuture != null) {
+                    connectTimeoutFuture.cancel(false);
+                }
+                connectPromise = null;
+            }
+        }
+    }
+
+    @Override
+    protected void doBind(SocketAddress local) throws Exception {
+        if (local instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) local);
+        }
+        socket.bind(local);
+        this.local = socket.localAddress();
+    }
+
+    /**
+     * Connect to the remote peer. The connection is established by the ring, so this always returns {@code false}
+     * unless it is overridden.
+     */
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        if (localAddress instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) localAddress);
+        }
+        if (!(remoteAddress instanceof InetSocketAddress)) {
+            throw new UnsupportedOperationException("unsupported address type: " + remoteAddress);
+        }
+        InetSocketAddress remoteSocketAddr = (InetSocketAddress) remoteAddress;
+        checkResolvable(remoteSocketAddr);
+
+        if (remote != null) {
+            // Check if already connected before trying to connect. This is needed as connect(...) will not return -1
+            // and set errno to EISCONN if a previous connect(...) attempt was setup as non-blocking and completed
+            // later.
+            throw new AlreadyConnectedException();
+        }
+
+        boolean success = false;
+        try {
+            if (localAddress != null) {
+                socket.bind(localAddress);
+            }
+            long memoryAddress = PlatformDependent.allocateMemory(Native.SIZEOF_SOCKADDR_STORAGE);
+            connectAddressMemory = memoryAddress;
+            int addressLength = Native.writeSockaddr(memoryAddress, remoteSocketAddr);
+            ioUringEventLoop().enqueue(this, CONNECT_SCHEDULED, Native.IORING_OP_CONNECT, addressLength,
+                    memoryAddress, 0, 0);
+            success = true;
+            return false;
+        } finally {
+            if (!success) {
+                freeConnectAddress();
+                doClose();
+            }
+        }
+    }
+
+    private void freeConnectAddress() {
+        if (connectAddressMemory != 0) {
+            PlatformDependent.freeMemory(connectAddressMemory);
+            connectAddressMemory = 0;
+        }
+    }
+
+    final void setAddresses(SocketAddress local, SocketAddress remote) {
+        this.local = local;
+        this.remote = remote;
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        return local;
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return remote;
+    }
+}
@@ -0,0 +1,586 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.ChannelInputShutdownReadComplete;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.socket.SocketChannelConfig;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.IovArray;
+import io.netty.channel.unix.Socket;
+import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.ThrowableUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NotYetConnectedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static io.netty.channel.unix.Errors.ioResult;
+import static io.netty.channel.uring.Native.ERRNO_ECANCELED_NEGATIVE;
+
+/**
+ * A {@link DuplexChannel} which reads and writes with io_uring. The socket is in blocking mode, as the ring completes
+ * the operations once the socket is ready. At most one read and one write are in flight at any time.
+ */
+abstract class AbstractIOUringStreamChannel extends AbstractIOUringChannel implements DuplexChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+    private static final String EXPECTED_TYPES = " (expected: " + StringUtil.simpleClassName(ByteBuf.class) + ')';
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractIOUringStreamChannel.class);
+    private static final ClosedChannelException READ_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new ClosedChannelException(), AbstractIOUringStreamChannel.class, "read(..)");
+    private static final ClosedChannelException WRITE_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new ClosedChannelException(), AbstractIOUringStreamChannel.class, "write(..)");
+    private static final Errors.NativeIoException READ_CONNECTION_RESET_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            Errors.newConnectionResetException("syscall:read", Errors.ERRNO_ECONNRESET_NEGATIVE),
+            AbstractIOUringStreamChannel.class, "read(..)");
+    private static final Errors.NativeIoException WRITE_CONNECTION_RESET_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            Errors.newConnectionResetException("syscall:write", Errors.ERRNO_EPIPE_NEGATIVE),
+            AbstractIOUringStreamChannel.class, "write(..)");
+
+    AbstractIOUringStreamChannel(Channel parent, Socket fd) {
+        super(parent, fd, true);
+    }
+
+    AbstractIOUringStreamChannel(Socket fd, boolean active) {
+        super(null, fd, active);
+    }
+
+    AbstractIOUringStreamChannel(Channel parent, Socket fd, SocketAddress remote) {
+        super(parent, fd, remote);
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    boolean isAllowHalfClosure() {
+        ChannelConfig config = config();
+        return config instanceof SocketChannelConfig && ((SocketChannelConfig) config).isAllowHalfClosure();
+    }
+
+    @Override
+    protected AbstractIOUringUnsafe newUnsafe() {
+        return new IOUringStreamUnsafe();
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        ((IOUringStreamUnsafe) unsafe()).scheduleWrite(in);
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) msg;
+            return UnixChannelUtil.isBufferCopyNeededForWrite(buf)? newDirectBuffer(buf): buf;
+        }
+
+        throw new UnsupportedOperationException(
+                "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+    }
+
+    @Override
+    protected final void doShutdownOutput() throws Exception {
+        socket.shutdown(false, true);
+    }
+
+    private void shutdownInput0(final ChannelPromise promise) {
+        try {
+            socket.shutdown(true, false);
+            promise.setSuccess();
+        } catch (Throwable cause) {
+            promise.setFailure(cause);
+        }
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+        return socket.isOutputShutdown();
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+        return socket.isInputShutdown();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return socket.isShutdown();
+    }
+
+    @Override
+    public ChannelFuture shutdownOutput() {
+        return shutdownOutput(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdownOutput(final ChannelPromise promise) {
+        EventLoop loop = eventLoop();
+        if (loop.inEventLoop()) {
+            ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+                }
+            });
+        }
+
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture shutdownInput() {
+        return shutdownInput(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdownInput(final ChannelPromise promise) {
+        Executor closeExecutor = ((IOUringStreamUnsafe) unsafe()).prepareToClose();
+        if (closeExecutor != null) {
+            closeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    shutdownInput0(promise);
+                }
+            });
+        } else {
+            EventLoop loop = eventLoop();
+            if (loop.inEventLoop()) {
+                shutdownInput0(promise);
+            } else {
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        shutdownInput0(promise);
+                    }
+                });
+            }
+        }
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture shutdown() {
+        return shutdown(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdown(final ChannelPromise promise) {
+        ChannelFuture shutdownOutputFuture = shutdownOutput();
+        if (shutdownOutputFuture.isDone()) {
+            shutdownOutputDone(shutdownOutputFuture, promise);
+        } else {
+            shutdownOutputFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(final ChannelFuture shutdownOutputFuture) throws Exception {
+                    shutdownOutputDone(shutdownOutputFuture, promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    private void shutdownOutputDone(final ChannelFuture shutdownOutputFuture, final ChannelPromise promise) {
+        ChannelFuture shutdownInputFuture = shutdownInput();
+        if (shutdownInputFuture.isDone()) {
+            shutdownDone(shutdownOutputFuture, shutdownInputFuture, promise);
+        } else {
+            shutdownInputFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture shutdownInputFuture) throws Exception {
+                    shutdownDone(shutdownOutputFuture, shutdownInputFuture, promise);
+                }
+            });
+        }
+    }
+
+    private static void shutdownDone(ChannelFuture shutdownOutputFuture,
+                              ChannelFuture shutdownInputFuture,
+                              ChannelPromise promise) {
+        Throwable shutdownOutputCause = shutdownOutputFuture.cause();
+        Throwable shutdownInputCause = shutdownInputFuture.cause();
+        if (shutdownOutputCause != null) {
+            if (shutdownInputCause != null) {
+                logger.debug("Exception suppressed because a previous exception occurred.",
+                        shutdownInputCause);
+            }
+            promise.setFailure(shutdownOutputCause);
+        } else if (shutdownInputCause != null) {
+            promise.setFailure(shutdownInputCause);
+        } else {
+            promise.setSuccess();
+        }
+    }
+
+    class IOUringStreamUnsafe extends AbstractIOUringUnsafe {
+        // The buffers the kernel may read from or write into until the operation completed. They are retained, as the
+        // ChannelOutboundBuffer releases its messages when the channel is closed.
+        private ByteBuf readBuffer;
+        private final List<ByteBuf> writeBuffers = new ArrayList<ByteBuf>();
+        private IovArray writeIovArray;
+        private IOException writeException;
+        // Set while the completion of a read is processed, which schedules the next read itself.
+        private boolean readCompleting;
+
+        // The results of the operations which completed after the channel was deregistered, which are processed once
+        // it is registered again.
+        private ByteBuf deferredReadBuffer;
+        private int deferredReadResult;
+        private boolean writeDeferred;
+        private int deferredWriteResult;
+
+        // Overridden here just to be able to access this method from AbstractIOUringStreamChannel
+        @Override
+        protected Executor prepareToClose() {
+            return super.prepareToClose();
+        }
+
+        @Override
+        void complete(int flag, int res) {
+            if (flag == READ_SCHEDULED) {
+                readComplete(res);
+            } else if (flag == WRITE_SCHEDULED) {
+                writeComplete(res);
+            } else {
+                super.complete(flag, res);
+            }
+        }
+
+        @Override
+        boolean isWritePending() {
+            return isIoScheduled(WRITE_SCHEDULED);
+        }
+
+        @Override
+        boolean hasDeferredCompletions() {
+            return writeDeferred || deferredReadBuffer != null;
+        }
+
+        @Override
+        void releaseDeferredCompletions() {
+            writeDeferred = false;
+            if (deferredReadBuffer != null) {
+                deferredReadBuffer.release();
+                deferredReadBuffer = null;
+            }
+        }
+
+        @Override
+        void ringAdded() {
+            if (writeDeferred) {
+                writeDeferred = false;
+                writeResult(deferredWriteResult);
+            }
+            ByteBuf byteBuf = deferredReadBuffer;
+            if (byteBuf != null) {
+                deferredReadBuffer = null;
+                readBuffer = byteBuf;
+                readComplete(deferredReadResult);
+            }
+            super.ringAdded();
+        }
+
+        @Override
+        void scheduleRead() {
+            if (isIoScheduled(READ_SCHEDULED) || readCompleting || ringRemoved || deferredReadBuffer != null ||
+                    !isActive() || shouldBreakReading()) {
+                // The data which was read while the channel was deregistered is processed by ringAdded() first.
+                return;
+            }
+            try {
+                scheduleRead0(true);
+            } catch (IOException e) {
+                pipeline().fireExceptionCaught(e);
+                close(voidPromise());
+            }
+        }
+
+        private void scheduleRead0(boolean reset) throws IOException {
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            final ChannelConfig config = config();
+            if (reset) {
+                allocHandle.reset(config);
+            }
+            final ByteBufAllocator allocator = config.getAllocator();
+            ByteBuf byteBuf = allocHandle.allocate(allocator);
+            if (!byteBuf.isDirect()) {
+                // The kernel writes into the memory of the buffer directly.
+                byteBuf.release();
+                byteBuf = allocator.directBuffer(allocHandle.guess());
+            }
+            allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+            try {
+                ioUringEventLoop().enqueue(AbstractIOUringStreamChannel.this, READ_SCHEDULED, Native.IORING_OP_READ, 0,
+                        writerAddress(byteBuf), byteBuf.writableBytes(), 0);
+            } catch (IOException e) {
+                byteBuf.release();
+                throw e;
+            }
+            readBuffer = byteBuf;
+        }
+
+        private void readComplete(int res) {
+            ByteBuf byteBuf = readBuffer;
+            readBuffer = null;
+            if (res == ERRNO_ECANCELED_NEGATIVE || !isOpen()) {
+                // Closed, or deregistered before anything was read.
+                byteBuf.release();
+                return;
+            }
+            if (ringRemoved) {
+                // Deregistered after the data was read already.
+                deferredReadBuffer = byteBuf;
+                deferredReadResult = res;
+                return;
+            }
+            final ChannelConfig config = config();
+            final ChannelPipeline pipeline = pipeline();
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            boolean close = false;
+            readCompleting = true;
+            try {
+                if (res > 0) {
+                    byteBuf.writerIndex(byteBuf.writerIndex() + res);
+                    allocHandle.lastBytesRead(res);
+                    allocHandle.incMessagesRead(1);
+                    readPending = false;
+                    pipeline.fireChannelRead(byteBuf);
+                    byteBuf = null;
+
+                    if (!ringRemoved && !shouldBreakReading() && allocHandle.continueReading()) {
+                        // Continue the read loop without going through the pipeline, like the epoll transport does
+                        // while the socket is readable.
+                        scheduleRead0(false);
+                        return;
+                    }
+                } else {
+                    byteBuf.release();
+                    byteBuf = null;
+                    if (res == 0) {
+                        // There is nothing left to read as we received an EOF.
+                        allocHandle.lastBytesRead(-1);
+                        readPending = false;
+                        close = true;
+                    } else {
+                        allocHandle.lastBytesRead(ioResult("read", res, READ_CONNECTION_RESET_EXCEPTION,
+                                READ_CLOSED_CHANNEL_EXCEPTION));
+                    }
+                }
+
+                allocHandle.readComplete();
+                pipeline.fireChannelReadComplete();
+
+                if (close) {
+                    shutdownInput();
+                }
+            } catch (Throwable t) {
+                handleReadException(pipeline, byteBuf, t, close, allocHandle);
+            } finally {
+                readCompleting = false;
+                if (readPending || config.isAutoRead()) {
+                    scheduleRead();
+                }
+            }
+        }
+
+        private void handleReadException(ChannelPipeline pipeline, ByteBuf byteBuf, Throwable cause, boolean close,
+                RecvByteBufAllocator.Handle allocHandle) {
+            if (byteBuf != null) {
+                byteBuf.release();
+            }
+            allocHandle.readComplete();
+            pipeline.fireChannelReadComplete();
+            pipeline.fireExceptionCaught(cause);
+            if (close || cause instanceof IOException) {
+                shutdownInput();
+            }
+        }
+
+        /**
+         * Shutdown the input side of the channel.
+         */
+        private void shutdownInput() {
+            if (!socket.isInputShutdown()) {
+                if (isAllowHalfClosure()) {
+                    try {
+                        socket.shutdown(true, false);
+                    } catch (IOException ignored) {
+                        // We attempted to shutdown and failed, which means the input has already effectively been
+                        // shutdown.
+                        pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+                        close(voidPromise());
+                        return;
+                    } catch (NotYetConnectedException ignore) {
+                        // We attempted to shutdown and failed, which means the input has already effectively been
+                        // shutdown.
+                    }
+                    pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+                } else {
+                    close(voidPromise());
+                }
+            } else {
+                inputClosedSeenErrorOnRead = true;
+                pipeline().fireUserEventTriggered(ChannelInputShutdownReadComplete.INSTANCE);
+            }
+        }
+
+        void scheduleWrite(ChannelOutboundBuffer in) throws Exception {
+            if (writeException != null) {
+                IOException cause = writeException;
+                writeException = null;
+                throw cause;
+            }
+            if (isIoScheduled(WRITE_SCHEDULED) || ringRemoved || writeDeferred) {
+                // Flushed again once the write completed or the channel was added to the ring.
+                return;
+            }
+            for (;;) {
+                Object msg = in.current();
+                if (msg == null) {
+                    // Wrote all messages.
+                    return;
+                }
+                if (((ByteBuf) msg).isReadable()) {
+                    break;
+                }
+                in.remove();
+            }
+
+            final IOUringEventLoop loop = ioUringEventLoop();
+            ByteBuf buf = (ByteBuf) in.current();
+            if (in.size() == 1 && buf.hasMemoryAddress()) {
+                loop.enqueue(AbstractIOUringStreamChannel.this, WRITE_SCHEDULED, Native.IORING_OP_WRITE, 0,
+                        buf.memoryAddress() + buf.readerIndex(), buf.readableBytes(), 0);
+                writeBuffers.add(buf.retain());
+                return;
+            }
+
+            final IovArray array = loop.acquireIovArray();
+            boolean success = false;
+            try {
+                in.forEachFlushedMessage(new ChannelOutboundBuffer.MessageProcessor() {
+                    @Override
+                    public boolean processMessage(Object msg) throws Exception {
+                        if (!(msg instanceof ByteBuf)) {
+                            return false;
+                        }
+                        ByteBuf buf = (ByteBuf) msg;
+                        int count = array.count();
+                        boolean added = array.add(buf);
+                        if (array.count() != count) {
+                            writeBuffers.add(buf.retain());
+                        }
+                        return added;
+                    }
+                });
+                loop.enqueue(AbstractIOUringStreamChannel.this, WRITE_SCHEDULED, Native.IORING_OP_WRITEV, 0,
+                        array.memoryAddress(0), array.count(), 0);
+                writeIovArray = array;
+                success = true;
+            } finally {
+                if (!success) {
+                    releaseWriteBuffers();
+                    loop.releaseIovArray(array);
+                }
+            }
+        }
+
+        private void writeComplete(int res) {
+            releaseWriteBuffers();
+            if (writeIovArray != null) {
+                if (ringRemoved) {
+                    // The pool belongs to the event loop the channel is registered with, which may be another one than
+                    // the event loop which processes the completion.
+                    writeIovArray.release();
+                } else {
+                    ioUringEventLoop().releaseIovArray(writeIovArray);
+                }
+                writeIovArray = null;
+            }
+            if (res == ERRNO_ECANCELED_NEGATIVE || !isOpen()) {
+                // Closed, or deregistered before anything was written. The ChannelOutboundBuffer was failed already
+                // or is flushed once registered again.
+                return;
+            }
+            if (ringRemoved) {
+                // Deregistered after the data was written already.
+                writeDeferred = true;
+                deferredWriteResult = res;
+                return;
+            }
+            writeResult(res);
+            flushNow();
+        }
+
+        private void writeResult(int res) {
+            ChannelOutboundBuffer in = outboundBuffer();
+            if (in == null) {
+                return;
+            }
+            if (res >= 0) {
+                in.removeBytes(res);
+            } else {
+                try {
+                    ioResult("write", res, WRITE_CONNECTION_RESET_EXCEPTION, WRITE_CLOSED_CHANNEL_EXCEPTION);
+                } catch (IOException e) {
+                    // Rethrown by doWrite(...) so the ChannelOutboundBuffer is failed.
+                    writeException = e;
+                }
+            }
+        }
+
+        private void releaseWriteBuffers() {
+            for (int i = 0; i < writeBuffers.size(); i++) {
+                writeBuffers.get(i).release();
+            }
+            writeBuffers.clear();
+        }
+    }
+
+    private static long writerAddress(ByteBuf buf) {
+        if (buf.hasMemoryAddress()) {
+            return buf.memoryAddress() + buf.writerIndex();
+        }
+        ByteBuffer nioBuffer = buf.internalNioBuffer(buf.writerIndex(), buf.writableBytes());
+        return PlatformDependent.directBufferAddress(nioBuffer) + nioBuffer.position();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Tells if {@code netty-transport-native-io_uring} is supported. This requires Linux 5.7 or later, as the transport
+ * relies on the ring to retry operations on sockets once they are ready.
+ */
+@UnstableApi
+public final class IOUring {
+
+    private static final Throwable UNAVAILABILITY_CAUSE;
+
+    static {
+        Throwable cause = null;
+        RingBuffer ringBuffer = null;
+        try {
+            ringBuffer = Native.createRingBuffer(1);
+            if (!ringBuffer.isFeatureSupported(Native.IORING_FEAT_FAST_POLL)) {
+                cause = new UnsupportedOperationException(
+                        "io_uring fast poll is not supported by kernel " + Native.KERNEL_VERSION);
+            } else if (!Native.isSupported(ringBuffer.fd(), Native.REQUIRED_IORING_OPS)) {
+                cause = new UnsupportedOperationException(
+                        "required io_uring operations are not supported by kernel " + Native.KERNEL_VERSION);
+            }
+        } catch (Throwable t) {
+            cause = t;
+        } finally {
+            if (ringBuffer != null) {
+                try {
+                    ringBuffer.close();
+                } catch (Exception ignore) {
+                    // ignore
+                }
+            }
+        }
+
+        if (cause != null) {
+            UNAVAILABILITY_CAUSE = cause;
+        } else {
+            UNAVAILABILITY_CAUSE = PlatformDependent.hasUnsafe()
+                    ? null
+                    : new IllegalStateException(
+                            "sun.misc.Unsafe not available",
+                            PlatformDependent.getUnsafeUnavailabilityCause());
+        }
+    }
+
+    /**
+     * Returns {@code true} if and only if {@code netty-transport-native-io_uring} is available.
+     */
+    public static boolean isAvailable() {
+        return UNAVAILABILITY_CAUSE == null;
+    }
+
+    /**
+     * Ensure that {@code netty-transport-native-io_uring} is available.
+     *
+     * @throws UnsatisfiedLinkError if unavailable
+     */
+    public static void ensureAvailability() {
+        if (UNAVAILABILITY_CAUSE != null) {
+            throw (Error) new UnsatisfiedLinkError(
+                    "failed to load the required native library").initCause(UNAVAILABILITY_CAUSE);
+        }
+    }
+
+    /**
+     * Returns the cause of unavailability of {@code netty-transport-native-io_uring}.
+     *
+     * @return the cause if unavailable. {@code null} if available.
+     */
+    public static Throwable unavailabilityCause() {
+        return UNAVAILABILITY_CAUSE;
+    }
+
+    private IOUring() { }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * The completion queue of a {@link RingBuffer}.
+ */
+final class IOUringCompletionQueue {
+    private static final int CQE_SIZE = 16;
+
+    // Offsets of the fields of struct io_uring_cqe
+    private static final int CQE_USER_DATA_FIELD = 0;
+    private static final int CQE_RES_FIELD = 8;
+    private static final int CQE_FLAGS_FIELD = 12;
+
+    /**
+     * Called for every completion by {@link #process(IOUringCompletionQueueCallback)}.
+     */
+    interface IOUringCompletionQueueCallback {
+        void handle(int res, int flags, long userData);
+    }
+
+    private final long kHeadAddress;
+    private final long kTailAddress;
+    private final int ringMask;
+    private final int ringEntries;
+    private final long cqes;
+
+    private int head;
+
+    IOUringCompletionQueue(long kHeadAddress, long kTailAddress, int ringMask, int ringEntries, long cqes) {
+        this.kHeadAddress = kHeadAddress;
+        this.kTailAddress = kTailAddress;
+        this.ringMask = ringMask;
+        this.ringEntries = ringEntries;
+        this.cqes = cqes;
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+    }
+
+    boolean hasCompletions() {
+        return head != PlatformDependent.getIntVolatile(kTailAddress);
+    }
+
+    /**
+     * Calls the given callback for all available completions and returns their number.
+     */
+    int process(IOUringCompletionQueueCallback callback) {
+        int tail = PlatformDependent.getIntVolatile(kTailAddress);
+        int processed = 0;
+        while (head != tail) {
+            long cqe = cqes + (long) (head & ringMask) * CQE_SIZE;
+            long userData = PlatformDependent.getLong(cqe + CQE_USER_DATA_FIELD);
+            int res = PlatformDependent.getInt(cqe + CQE_RES_FIELD);
+            int flags = PlatformDependent.getInt(cqe + CQE_FLAGS_FIELD);
+
+            // Give the slot back to the kernel before calling back, as the callback may submit new entries.
+            head++;
+            PlatformDependent.putIntOrdered(kHeadAddress, head);
+            processed++;
+
+            callback.handle(res, flags, userData);
+
+            if (head == tail) {
+                tail = PlatformDependent.getIntVolatile(kTailAddress);
+            }
+        }
+        return processed;
+    }
+
+    int ringEntries() {
+        return ringEntries;
+    }
+}
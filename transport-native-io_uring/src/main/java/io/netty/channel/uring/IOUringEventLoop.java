@@ -0,0 +1,473 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SingleThreadEventLoop;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.IovArray;
+import io.netty.channel.uring.AbstractIOUringChannel.AbstractIOUringUnsafe;
+import io.netty.channel.uring.IOUringCompletionQueue.IOUringCompletionQueueCallback;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.RejectedExecutionHandler;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import static java.lang.Math.max;
+
+/**
+ * {@link SingleThreadEventLoop} implementation which uses {@code io_uring} under the covers. Only works on Linux!
+ * <p>
+ * The operations of all channels are queued in the submission queue while completions are processed and tasks are
+ * run, and are submitted together with a single {@code io_uring_enter(...)} call per loop iteration, which also waits
+ * for the next completions.
+ */
+final class IOUringEventLoop extends SingleThreadEventLoop implements IOUringCompletionQueueCallback {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(IOUringEventLoop.class);
+    private static final AtomicIntegerFieldUpdater<IOUringEventLoop> WAKEN_UP_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(IOUringEventLoop.class, "wakenUp");
+
+    static {
+        // Ensure JNI is initialized by the time this class is loaded by this time!
+        // We use unix-common methods in this class which are backed by JNI methods.
+        IOUring.ensureAvailability();
+    }
+
+    private static final int DEFAULT_RING_SIZE = max(64, SystemPropertyUtil.getInt("io.netty.iouring.ringSize", 4096));
+
+    // The channel id of the operations which belong to the event loop itself, and their flags.
+    private static final int LOOP_ID = 0;
+    private static final int EVENTFD_READ = 1;
+    private static final int TIMEOUT = 2;
+    private static final int TIMEOUT_REMOVE = 3;
+    private static final int CANCEL = 4;
+    private static final long NO_TIMEOUT = Long.MAX_VALUE;
+    private static final long CLEANUP_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final RingBuffer ringBuffer;
+    private final IOUringSubmissionQueue submissionQueue;
+    private final IOUringCompletionQueue completionQueue;
+    private final FileDescriptor eventFd;
+    // Channels are not keyed by their file descriptor, as it may be reused while the operations of a closed channel
+    // are still in flight.
+    private final IntObjectMap<AbstractIOUringChannel> channels =
+            new IntObjectHashMap<AbstractIOUringChannel>(4096);
+    private final Queue<IovArray> iovArrays = new ArrayDeque<IovArray>();
+    private final long eventFdReadBuffer;
+    private final long timeoutMemory;
+    private final Callable<Integer> pendingTasksCallable = new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+            return IOUringEventLoop.super.pendingTasks();
+        }
+    };
+
+    private int nextChannelId;
+    private int registeredChannels;
+    private boolean eventFdReadArmed;
+    private long timeoutDeadlineNanos = NO_TIMEOUT;
+    private short timeoutSequence;
+
+    private volatile int wakenUp;
+    private volatile int ioRatio = 50;
+
+    IOUringEventLoop(EventLoopGroup parent, Executor executor, int ringSize,
+                     RejectedExecutionHandler rejectedExecutionHandler) {
+        super(parent, executor, false, DEFAULT_MAX_PENDING_TASKS, rejectedExecutionHandler);
+        boolean success = false;
+        RingBuffer ringBuffer = null;
+        FileDescriptor eventFd = null;
+        try {
+            this.ringBuffer = ringBuffer = Native.createRingBuffer(ringSize == 0 ? DEFAULT_RING_SIZE : ringSize);
+            this.eventFd = eventFd = Native.newEventFd();
+            success = true;
+        } finally {
+            if (!success) {
+                if (ringBuffer != null) {
+                    ringBuffer.close();
+                }
+                if (eventFd != null) {
+                    try {
+                        eventFd.close();
+                    } catch (Exception e) {
+                        // ignore
+                    }
+                }
+            }
+        }
+        submissionQueue = ringBuffer.submissionQueue();
+        completionQueue = ringBuffer.completionQueue();
+        eventFdReadBuffer = PlatformDependent.allocateMemory(8);
+        // struct __kernel_timespec
+        timeoutMemory = PlatformDependent.allocateMemory(16);
+    }
+
+    /**
+     * Encodes the id of the channel, the flag which identifies the operation and additional data as the user data of
+     * a submission, which the kernel returns with its completion.
+     */
+    static long userData(int id, int flag, short data) {
+        return ((long) data << 48) | (((long) flag & 0xFFFF) << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    IovArray acquireIovArray() {
+        IovArray array = iovArrays.poll();
+        return array == null ? new IovArray() : array;
+    }
+
+    void releaseIovArray(IovArray array) {
+        array.clear();
+        iovArrays.add(array);
+    }
+
+    @Override
+    protected void wakeup(boolean inEventLoop) {
+        if (!inEventLoop && WAKEN_UP_UPDATER.compareAndSet(this, 0, 1)) {
+            // write to the eventfd which will then complete the read which is in flight while the loop waits.
+            Native.eventFdWrite(eventFd.intValue(), 1L);
+        }
+    }
+
+    /**
+     * Register the given channel with this {@link IOUringEventLoop}.
+     */
+    void add(AbstractIOUringChannel ch) {
+        assert inEventLoop();
+        int id;
+        do {
+            id = ++nextChannelId;
+        } while (id == LOOP_ID || channels.containsKey(id));
+        ch.ringId = id;
+        ch.ringRemoved = false;
+        channels.put(id, ch);
+        registeredChannels++;
+    }
+
+    /**
+     * Deregister the given channel from this {@link IOUringEventLoop}. Its operations which are still in flight are
+     * cancelled, and it stays known to the loop until they completed so their buffers can be released.
+     */
+    void remove(AbstractIOUringChannel ch) throws IOException {
+        assert inEventLoop();
+        if (ch.ringRemoved || channels.get(ch.ringId) != ch) {
+            return;
+        }
+        ch.ringRemoved = true;
+        registeredChannels--;
+        int ioState = ch.ioState;
+        if (ioState == 0) {
+            channels.remove(ch.ringId);
+            return;
+        }
+        ch.draining();
+        while (ioState != 0) {
+            int flag = Integer.lowestOneBit(ioState);
+            ioState &= ~flag;
+            // The operation to cancel is identified by its user data.
+            submissionQueue.enqueueSqe(Native.IORING_OP_ASYNC_CANCEL, -1, 0, userData(ch.ringId, flag, (short) 0), 0,
+                    0, userData(LOOP_ID, CANCEL, (short) 0));
+        }
+        // Submit the queued operations before the caller closes the file descriptor, as otherwise they may be
+        // executed on a new socket which got the same file descriptor in the meantime.
+        submissionQueue.submit();
+    }
+
+    /**
+     * Queues an operation on the socket of the given channel, which is submitted with the next loop iteration. The
+     * given flag is set in the {@link AbstractIOUringChannel#ioState} until the operation completed.
+     */
+    void enqueue(AbstractIOUringChannel ch, int flag, byte op, long offset, long address, int len, int rwFlags)
+            throws IOException {
+        assert inEventLoop();
+        assert (ch.ioState & flag) == 0;
+        submissionQueue.enqueueSqe(op, ch.socket.intValue(), offset, address, len, rwFlags,
+                userData(ch.ringId, flag, (short) 0));
+        ch.ioState |= flag;
+    }
+
+    /**
+     * Submits the queued operations right away instead of with the next loop iteration.
+     */
+    void submitQueued() throws IOException {
+        assert inEventLoop();
+        submissionQueue.submit();
+    }
+
+    @Override
+    protected Queue<Runnable> newTaskQueue(int maxPendingTasks) {
+        // This event loop never calls takeTask()
+        return maxPendingTasks == Integer.MAX_VALUE ? PlatformDependent.<Runnable>newMpscQueue()
+                                                    : PlatformDependent.<Runnable>newMpscQueue(maxPendingTasks);
+    }
+
+    @Override
+    public int pendingTasks() {
+        // As we use a MpscQueue we need to ensure pendingTasks() is only executed from within the EventLoop as
+        // otherwise we may see unexpected behavior (as size() is only allowed to be called by a single consumer).
+        // See https://github.com/netty/netty/issues/5297
+        if (inEventLoop()) {
+            return super.pendingTasks();
+        } else {
+            return submit(pendingTasksCallable).syncUninterruptibly().getNow();
+        }
+    }
+
+    @Override
+    public int registeredChannels() {
+        return registeredChannels;
+    }
+
+    /**
+     * Returns the percentage of the desired amount of time spent for I/O in the event loop.
+     */
+    public int getIoRatio() {
+        return ioRatio;
+    }
+
+    /**
+     * Sets the percentage of the desired amount of time spent for I/O in the event loop.  The default value is
+     * {@code 50}, which means the event loop will try to spend the same amount of time for I/O as for non-I/O tasks.
+     */
+    public void setIoRatio(int ioRatio) {
+        if (ioRatio <= 0 || ioRatio > 100) {
+            throw new IllegalArgumentException("ioRatio: " + ioRatio + " (expected: 0 < ioRatio <= 100)");
+        }
+        this.ioRatio = ioRatio;
+    }
+
+    private void ioUringWait(boolean oldWakeup) throws IOException {
+        // If a task was submitted when wakenUp value was 1, the task didn't get a chance to produce wakeup event.
+        // So we need to check task queue again before calling io_uring_enter(...). If we don't, the task might be
+        // pended until the call times out. It might be pended until idle timeout if IdleStateHandler existed in
+        // pipeline.
+        if (oldWakeup && hasTasks()) {
+            submissionQueue.submit();
+            return;
+        }
+        if (!eventFdReadArmed) {
+            eventFdReadArmed = true;
+            submissionQueue.enqueueSqe(Native.IORING_OP_READ, eventFd.intValue(), 0, eventFdReadBuffer, 8, 0,
+                    userData(LOOP_ID, EVENTFD_READ, (short) 0));
+        }
+        long currentTimeNanos = System.nanoTime();
+        armTimeout(currentTimeNanos, delayNanos(currentTimeNanos));
+        submissionQueue.submitAndWait();
+    }
+
+    /**
+     * Makes sure a timeout completes the wait in time for the next scheduled task. A timeout which fires earlier is
+     * kept, as waking up too early is cheaper than replacing the timeout for every wait.
+     */
+    private void armTimeout(long currentTimeNanos, long delayNanos) throws IOException {
+        long deadlineNanos = currentTimeNanos + delayNanos;
+        if (timeoutDeadlineNanos != NO_TIMEOUT) {
+            if (timeoutDeadlineNanos - deadlineNanos <= 0) {
+                return;
+            }
+            submissionQueue.enqueueSqe(Native.IORING_OP_TIMEOUT_REMOVE, -1, 0,
+                    userData(LOOP_ID, TIMEOUT, timeoutSequence), 0, 0, userData(LOOP_ID, TIMEOUT_REMOVE, (short) 0));
+        }
+        timeoutSequence++;
+        timeoutDeadlineNanos = deadlineNanos;
+        PlatformDependent.putLong(timeoutMemory, delayNanos / 1000000000L);
+        PlatformDependent.putLong(timeoutMemory + 8, delayNanos % 1000000000L);
+        // The kernel copies the timespec when the entry is submitted, so the memory can be reused afterwards.
+        submissionQueue.enqueueSqe(Native.IORING_OP_TIMEOUT, -1, 0, timeoutMemory, 1, 0,
+                userData(LOOP_ID, TIMEOUT, timeoutSequence));
+    }
+
+    @Override
+    protected void run() {
+        for (;;) {
+            try {
+                if (!hasTasks() && !completionQueue.hasCompletions()) {
+                    // 'wakenUp.compareAndSet(false, true)' is always evaluated
+                    // before calling 'selector.wakeup()' to reduce the wake-up
+                    // overhead. (Selector.wakeup() is an expensive operation.)
+                    //
+                    // See NioEventLoop.run() for the details.
+                    if (isMetricsEnabled()) {
+                        final long waitStartTime = System.nanoTime();
+                        ioUringWait(WAKEN_UP_UPDATER.getAndSet(this, 0) == 1);
+                        recordIoWaitTime(System.nanoTime() - waitStartTime);
+                    } else {
+                        ioUringWait(WAKEN_UP_UPDATER.getAndSet(this, 0) == 1);
+                    }
+                    if (wakenUp == 1) {
+                        Native.eventFdWrite(eventFd.intValue(), 1L);
+                    }
+                } else {
+                    submissionQueue.submit();
+                }
+
+                final int ioRatio = this.ioRatio;
+                final boolean metricsEnabled = isMetricsEnabled();
+                if (ioRatio == 100 && !metricsEnabled) {
+                    try {
+                        completionQueue.process(this);
+                    } finally {
+                        // Ensure we always run tasks.
+                        runAllTasks();
+                    }
+                } else {
+                    final long ioStartTime = System.nanoTime();
+
+                    try {
+                        completionQueue.process(this);
+                    } finally {
+                        // Ensure we always run tasks.
+                        final long ioTime = System.nanoTime() - ioStartTime;
+                        if (metricsEnabled) {
+                            recordIoTime(ioTime);
+                        }
+                        if (ioRatio == 100) {
+                            runAllTasks();
+                        } else {
+                            runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                        }
+                    }
+                }
+            } catch (Throwable t) {
+                handleLoopException(t);
+            }
+            // Always handle shutdown even if the loop processing threw an exception.
+            try {
+                if (isShuttingDown()) {
+                    closeAll();
+                    if (confirmShutdown()) {
+                        break;
+                    }
+                }
+            } catch (Throwable t) {
+                handleLoopException(t);
+            }
+        }
+    }
+
+    /**
+     * Visible only for testing!
+     */
+    void handleLoopException(Throwable t) {
+        logger.warn("Unexpected exception in the io_uring loop.", t);
+
+        // Prevent possible consecutive immediate failures that lead to
+        // excessive CPU consumption.
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            // Ignore.
+        }
+    }
+
+    @Override
+    public void handle(int res, int flags, long userData) {
+        int id = (int) userData;
+        int flag = (int) (userData >>> 32) & 0xFFFF;
+        if (id == LOOP_ID) {
+            if (flag == EVENTFD_READ) {
+                eventFdReadArmed = false;
+            } else if (flag == TIMEOUT && (short) (userData >>> 48) == timeoutSequence) {
+                timeoutDeadlineNanos = NO_TIMEOUT;
+            }
+            // Nothing to do for the completions of TIMEOUT_REMOVE and ASYNC_CANCEL.
+            return;
+        }
+        AbstractIOUringChannel ch = channels.get(id);
+        if (ch == null) {
+            return;
+        }
+        ch.ioState &= ~flag;
+        try {
+            ((AbstractIOUringUnsafe) ch.unsafe()).complete(flag, res);
+        } catch (Throwable t) {
+            logger.warn("Unexpected exception while processing the completion of {}.", ch, t);
+        }
+        if (ch.ringRemoved && ch.ioState == 0 && channels.get(id) == ch) {
+            channels.remove(id);
+            // The channel may be registered with another event loop in the meantime, which adds it to its ring now.
+            ch.drained();
+        }
+    }
+
+    private void closeAll() {
+        // Using the intermediate collection to prevent ConcurrentModificationException.
+        // In the `close()` method, the channel is deleted from `channels` map.
+        Collection<AbstractIOUringChannel> array = new ArrayList<AbstractIOUringChannel>(channels.size());
+
+        for (AbstractIOUringChannel channel: channels.values()) {
+            if (!channel.ringRemoved) {
+                array.add(channel);
+            }
+        }
+
+        for (AbstractIOUringChannel ch: array) {
+            ch.unsafe().close(ch.unsafe().voidPromise());
+        }
+    }
+
+    @Override
+    protected void cleanup() {
+        try {
+            // Wait for the cancelled operations of the closed channels to complete, so their buffers are released.
+            long deadlineNanos = System.nanoTime() + CLEANUP_TIMEOUT_NANOS;
+            for (;;) {
+                completionQueue.process(this);
+                long currentTimeNanos = System.nanoTime();
+                if (channels.isEmpty() || currentTimeNanos - deadlineNanos >= 0) {
+                    break;
+                }
+                armTimeout(currentTimeNanos, deadlineNanos - currentTimeNanos);
+                submissionQueue.submitAndWait();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to wait for the operations of the closed channels.", e);
+        } finally {
+            try {
+                // Cancels all operations which are still in flight.
+                ringBuffer.close();
+            } finally {
+                try {
+                    eventFd.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close the event fd.", e);
+                }
+                // release native memory
+                for (;;) {
+                    IovArray array = iovArrays.poll();
+                    if (array == null) {
+                        break;
+                    }
+                    array.release();
+                }
+                PlatformDependent.freeMemory(eventFdReadBuffer);
+                PlatformDependent.freeMemory(timeoutMemory);
+            }
+        }
+    }
+}
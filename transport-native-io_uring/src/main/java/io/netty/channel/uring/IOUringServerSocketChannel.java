@@ -0,0 +1,211 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.Socket;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import static io.netty.channel.uring.Native.ERRNO_ECANCELED_NEGATIVE;
+
+/**
+ * {@link ServerSocketChannel} implementation that uses io_uring. Connections are accepted one at a time by the ring.
+ */
+@UnstableApi
+public final class IOUringServerSocketChannel extends AbstractIOUringChannel implements ServerSocketChannel {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(IOUringServerSocketChannel.class);
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+
+    private final IOUringServerSocketChannelConfig config;
+
+    public IOUringServerSocketChannel() {
+        super(null, Native.newBlockingSocketStream(), false);
+        config = new IOUringServerSocketChannelConfig(this);
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        super.doBind(localAddress);
+        socket.listen(config.getBacklog());
+        active = true;
+    }
+
+    @Override
+    public InetSocketAddress remoteAddress() {
+        return null;
+    }
+
+    @Override
+    protected InetSocketAddress remoteAddress0() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress localAddress() {
+        return (InetSocketAddress) super.localAddress();
+    }
+
+    @Override
+    public IOUringServerSocketChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    protected AbstractIOUringUnsafe newUnsafe() {
+        return new IOUringServerSocketUnsafe();
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    final class IOUringServerSocketUnsafe extends AbstractIOUringUnsafe {
+        // The socket which was accepted after the channel was deregistered, or -1.
+        private int deferredAcceptFd = -1;
+
+        @Override
+        public void connect(SocketAddress socketAddress, SocketAddress socketAddress2, ChannelPromise channelPromise) {
+            // Connect not supported by ServerChannel implementations
+            channelPromise.setFailure(new UnsupportedOperationException());
+        }
+
+        @Override
+        void scheduleRead() {
+            if (isIoScheduled(ACCEPT_SCHEDULED) || ringRemoved || deferredAcceptFd != -1 || !isActive()) {
+                return;
+            }
+            try {
+                ioUringEventLoop().enqueue(IOUringServerSocketChannel.this, ACCEPT_SCHEDULED, Native.IORING_OP_ACCEPT,
+                        0, 0, 0, Native.SOCK_CLOEXEC);
+            } catch (IOException e) {
+                pipeline().fireExceptionCaught(e);
+                close(voidPromise());
+            }
+        }
+
+        @Override
+        void complete(int flag, int res) {
+            if (flag != ACCEPT_SCHEDULED) {
+                super.complete(flag, res);
+                return;
+            }
+            if (res >= 0 && !isOpen()) {
+                // Accepted while the cancellation was in flight.
+                closeAccepted(res);
+                return;
+            }
+            if (ringRemoved || res == ERRNO_ECANCELED_NEGATIVE) {
+                if (res >= 0) {
+                    // Accepted after the channel was deregistered, the child channel is created once registered again.
+                    deferredAcceptFd = res;
+                }
+                return;
+            }
+            acceptComplete(res);
+        }
+
+        @Override
+        boolean hasDeferredCompletions() {
+            return deferredAcceptFd != -1;
+        }
+
+        @Override
+        void releaseDeferredCompletions() {
+            if (deferredAcceptFd != -1) {
+                closeAccepted(deferredAcceptFd);
+                deferredAcceptFd = -1;
+            }
+        }
+
+        @Override
+        void ringAdded() {
+            int fd = deferredAcceptFd;
+            if (fd != -1) {
+                deferredAcceptFd = -1;
+                acceptComplete(fd);
+            }
+            super.ringAdded();
+        }
+
+        private void acceptComplete(int res) {
+            final ChannelPipeline pipeline = pipeline();
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            allocHandle.reset(config);
+            Throwable exception = null;
+            try {
+                if (res >= 0) {
+                    allocHandle.incMessagesRead(1);
+                    readPending = false;
+                    pipeline.fireChannelRead(newChildChannel(res));
+                } else {
+                    throw Errors.newIOException("accept", res);
+                }
+            } catch (Throwable t) {
+                exception = t;
+            }
+            allocHandle.readComplete();
+            pipeline.fireChannelReadComplete();
+
+            if (exception != null) {
+                pipeline.fireExceptionCaught(exception);
+            }
+            if (readPending || config.isAutoRead()) {
+                scheduleRead();
+            }
+        }
+
+        private Channel newChildChannel(int fd) {
+            return new IOUringSocketChannel(IOUringServerSocketChannel.this, new Socket(fd));
+        }
+
+        private void closeAccepted(int fd) {
+            try {
+                new Socket(fd).close();
+            } catch (IOException e) {
+                logger.debug("Failed to close a socket which was accepted after the channel was closed.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.IOException;
+
+import static io.netty.channel.unix.Errors.ERRNO_EAGAIN_NEGATIVE;
+import static io.netty.channel.unix.Errors.newIOException;
+import static io.netty.channel.uring.Native.ERRNO_EBUSY_NEGATIVE;
+import static io.netty.channel.uring.Native.ERRNO_EINTR_NEGATIVE;
+
+/**
+ * The submission queue of a {@link RingBuffer}. Entries are only made visible to the kernel by {@link #submit()} or
+ * {@link #submitAndWait()}, so all the entries which are added while processing completions and running tasks are
+ * submitted with a single {@code io_uring_enter(...)} call.
+ */
+final class IOUringSubmissionQueue {
+    private static final int SQE_SIZE = 64;
+    private static final int INT_SIZE = 4;
+
+    // Offsets of the fields of struct io_uring_sqe
+    private static final int SQE_OP_CODE_FIELD = 0;
+    private static final int SQE_FD_FIELD = 4;
+    private static final int SQE_OFFSET_FIELD = 8;
+    private static final int SQE_ADDRESS_FIELD = 16;
+    private static final int SQE_LEN_FIELD = 24;
+    private static final int SQE_RW_FLAGS_FIELD = 28;
+    private static final int SQE_USER_DATA_FIELD = 32;
+
+    private final int ringFd;
+    private final long kHeadAddress;
+    private final long kTailAddress;
+    private final int ringMask;
+    private final int ringEntries;
+    private final long sqes;
+
+    private int head;
+    private int tail;
+
+    IOUringSubmissionQueue(int ringFd, long kHeadAddress, long kTailAddress, int ringMask, int ringEntries,
+                           long arrayAddress, long sqes) {
+        this.ringFd = ringFd;
+        this.kHeadAddress = kHeadAddress;
+        this.kTailAddress = kTailAddress;
+        this.ringMask = ringMask;
+        this.ringEntries = ringEntries;
+        this.sqes = sqes;
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+        tail = PlatformDependent.getIntVolatile(kTailAddress);
+
+        // The entries are always used in order, so the indirection array maps every slot to the entry with the same
+        // index once and is never written again.
+        for (int i = 0; i < ringEntries; i++) {
+            PlatformDependent.putInt(arrayAddress + (long) i * INT_SIZE, i);
+        }
+    }
+
+    /**
+     * Adds an entry which will be submitted by the next {@link #submit()} or {@link #submitAndWait()}. If the queue is
+     * full the queued entries are submitted first.
+     */
+    void enqueueSqe(byte op, int fd, long offset, long address, int len, int rwFlags, long userData)
+            throws IOException {
+        if (tail - head == ringEntries) {
+            submit();
+            if (tail - head == ringEntries) {
+                throw new IOException("io_uring submission queue is full");
+            }
+        }
+        long sqe = sqes + (long) (tail & ringMask) * SQE_SIZE;
+        tail++;
+        PlatformDependent.setMemory(sqe, SQE_SIZE, (byte) 0);
+        PlatformDependent.putByte(sqe + SQE_OP_CODE_FIELD, op);
+        PlatformDependent.putInt(sqe + SQE_FD_FIELD, fd);
+        PlatformDependent.putLong(sqe + SQE_OFFSET_FIELD, offset);
+        PlatformDependent.putLong(sqe + SQE_ADDRESS_FIELD, address);
+        PlatformDependent.putInt(sqe + SQE_LEN_FIELD, len);
+        PlatformDependent.putInt(sqe + SQE_RW_FLAGS_FIELD, rwFlags);
+        PlatformDependent.putLong(sqe + SQE_USER_DATA_FIELD, userData);
+    }
+
+    /**
+     * Returns the number of entries which were added but not yet consumed by the kernel.
+     */
+    int count() {
+        return tail - head;
+    }
+
+    /**
+     * Submits all queued entries without waiting for completions.
+     */
+    int submit() throws IOException {
+        int toSubmit = tail - head;
+        return toSubmit == 0 ? 0 : submit(toSubmit, 0, 0);
+    }
+
+    /**
+     * Submits all queued entries and waits until at least one completion is available.
+     */
+    int submitAndWait() throws IOException {
+        return submit(tail - head, 1, Native.IORING_ENTER_GETEVENTS);
+    }
+
+    private int submit(int toSubmit, int minComplete, int flags) throws IOException {
+        PlatformDependent.putIntOrdered(kTailAddress, tail);
+        int ret = Native.ioUringEnter(ringFd, toSubmit, minComplete, flags);
+        // The kernel advances the head for every entry it consumed, even if it failed to wait afterwards.
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+        if (ret < 0) {
+            if (ret == ERRNO_EINTR_NEGATIVE || ret == ERRNO_EAGAIN_NEGATIVE || ret == ERRNO_EBUSY_NEGATIVE) {
+                // EBUSY means the completion queue overflowed. Try again with the next call once completions were
+                // processed, the entries which were not consumed stay queued.
+                return 0;
+            }
+            throw newIOException("io_uring_enter", ret);
+        }
+        return ret;
+    }
+
+    int ringEntries() {
+        return ringEntries;
+    }
+
+    long sqes() {
+        return sqes;
+    }
+}
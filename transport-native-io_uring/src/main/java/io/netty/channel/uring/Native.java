@@ -0,0 +1,224 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.ChannelException;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.NativeInetAddress;
+import io.netty.channel.unix.Socket;
+import io.netty.util.internal.NativeLibraryLoader;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.ThrowableUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ebusy;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ecanceled;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.eintr;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.etime;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.kernelVersion;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.pollin;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.pollout;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.pollrdhup;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sockCloexec;
+import static io.netty.channel.unix.Errors.newIOException;
+
+/**
+ * Native helper methods
+ * <p><strong>Internal usage only!</strong>
+ * <p>Static members which call JNI methods must be defined in {@link NativeStaticallyReferencedJniMethods}.
+ */
+final class Native {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Native.class);
+
+    static {
+        try {
+            // First, try calling a side-effect free JNI method to see if the library was already
+            // loaded by the application.
+            sizeofSockaddrStorage();
+        } catch (UnsatisfiedLinkError ignore) {
+            // The library was not previously loaded, load it now.
+            loadNativeLibrary();
+        }
+        Socket.initialize();
+    }
+
+    // As all our JNI methods return -errno on error we need to compare with the negative errno codes.
+    static final int ERRNO_ECANCELED_NEGATIVE = -ecanceled();
+    static final int ERRNO_ETIME_NEGATIVE = -etime();
+    static final int ERRNO_EINTR_NEGATIVE = -eintr();
+    static final int ERRNO_EBUSY_NEGATIVE = -ebusy();
+
+    static final int POLLIN = pollin();
+    static final int POLLOUT = pollout();
+    static final int POLLRDHUP = pollrdhup();
+    static final int SOCK_CLOEXEC = sockCloexec();
+    static final String KERNEL_VERSION = kernelVersion();
+    static final int SIZEOF_SOCKADDR_STORAGE = sizeofSockaddrStorage();
+
+    // Opcodes of the submission queue entries, see linux/io_uring.h
+    static final byte IORING_OP_WRITEV = 2;
+    static final byte IORING_OP_POLL_ADD = 6;
+    static final byte IORING_OP_TIMEOUT = 11;
+    static final byte IORING_OP_TIMEOUT_REMOVE = 12;
+    static final byte IORING_OP_ACCEPT = 13;
+    static final byte IORING_OP_ASYNC_CANCEL = 14;
+    static final byte IORING_OP_CONNECT = 16;
+    static final byte IORING_OP_READ = 22;
+    static final byte IORING_OP_WRITE = 23;
+
+    static final int IORING_ENTER_GETEVENTS = 1;
+    // Operations on sockets are retried once they are ready instead of blocking a kernel worker thread, since 5.7.
+    static final int IORING_FEAT_FAST_POLL = 1 << 5;
+
+    static final int[] REQUIRED_IORING_OPS = {
+            IORING_OP_WRITEV, IORING_OP_POLL_ADD, IORING_OP_TIMEOUT, IORING_OP_TIMEOUT_REMOVE, IORING_OP_ACCEPT,
+            IORING_OP_ASYNC_CANCEL, IORING_OP_CONNECT, IORING_OP_READ, IORING_OP_WRITE
+    };
+
+    // Indices of the array returned by ioUringSetup0(...), must match netty_io_uring_native.c
+    private static final int RING_FD = 0;
+    private static final int FEATURES = 1;
+    private static final int SQ_HEAD = 2;
+    private static final int SQ_TAIL = 3;
+    private static final int SQ_RING_MASK = 4;
+    private static final int SQ_RING_ENTRIES = 5;
+    private static final int SQ_ARRAY = 8;
+    private static final int SQES = 9;
+    private static final int SQ_RING_BASE = 10;
+    private static final int SQ_RING_SIZE = 11;
+    private static final int CQ_HEAD = 12;
+    private static final int CQ_TAIL = 13;
+    private static final int CQ_RING_MASK = 14;
+    private static final int CQ_RING_ENTRIES = 15;
+    private static final int CQES = 17;
+    private static final int CQ_RING_BASE = 18;
+    private static final int CQ_RING_SIZE = 19;
+
+    static RingBuffer createRingBuffer(int entries) {
+        long[] ring = ioUringSetup0(entries);
+        int ringFd = (int) ring[RING_FD];
+        IOUringSubmissionQueue submissionQueue = new IOUringSubmissionQueue(ringFd,
+                ring[SQ_HEAD], ring[SQ_TAIL], PlatformDependent.getInt(ring[SQ_RING_MASK]),
+                PlatformDependent.getInt(ring[SQ_RING_ENTRIES]), ring[SQ_ARRAY], ring[SQES]);
+        IOUringCompletionQueue completionQueue = new IOUringCompletionQueue(
+                ring[CQ_HEAD], ring[CQ_TAIL], PlatformDependent.getInt(ring[CQ_RING_MASK]),
+                PlatformDependent.getInt(ring[CQ_RING_ENTRIES]), ring[CQES]);
+        return new RingBuffer(ringFd, (int) ring[FEATURES], submissionQueue, completionQueue,
+                ring[SQ_RING_BASE], ring[SQ_RING_SIZE], ring[CQ_RING_BASE], ring[CQ_RING_SIZE]);
+    }
+
+    static void ioUringExit(RingBuffer ringBuffer) {
+        ioUringExit0(ringBuffer.fd(), ringBuffer.sqRingBase, ringBuffer.sqRingSize,
+                ringBuffer.cqRingBase, ringBuffer.cqRingSize, ringBuffer.submissionQueue().sqes(),
+                ringBuffer.submissionQueue().ringEntries());
+    }
+
+    /**
+     * Returns the number of submitted entries or the negative errno if {@code io_uring_enter(...)} failed.
+     */
+    static int ioUringEnter(int ringFd, int toSubmit, int minComplete, int flags) {
+        return ioUringEnter0(ringFd, toSubmit, minComplete, flags);
+    }
+
+    static boolean isSupported(int ringFd, int[] ops) {
+        return ioUringProbe0(ringFd, ops);
+    }
+
+    static FileDescriptor newEventFd() {
+        return new FileDescriptor(eventFd());
+    }
+
+    static void eventFdWrite(int fd, long value) {
+        eventFdWrite0(fd, value);
+    }
+
+    static Socket newBlockingSocketStream() {
+        Socket socket = Socket.newSocketStream();
+        try {
+            setBlocking(socket);
+        } catch (IOException e) {
+            try {
+                socket.close();
+            } catch (IOException ignore) {
+                // ignore
+            }
+            throw new ChannelException(e);
+        }
+        return socket;
+    }
+
+    /**
+     * Clears {@code O_NONBLOCK}, as operations on non-blocking sockets fail with {@code EAGAIN} instead of being
+     * completed by the ring once the socket is ready.
+     */
+    static void setBlocking(FileDescriptor fd) throws IOException {
+        int res = setBlocking0(fd.intValue());
+        if (res < 0) {
+            throw newIOException("fcntl", res);
+        }
+    }
+
+    /**
+     * Writes the given address as {@code struct sockaddr} to the given memory, which needs to have room for
+     * {@link #SIZEOF_SOCKADDR_STORAGE} bytes, and returns its length.
+     */
+    static int writeSockaddr(long memoryAddress, InetSocketAddress address) {
+        NativeInetAddress nativeAddress = NativeInetAddress.newInstance(address.getAddress());
+        return writeSockaddr0(memoryAddress, nativeAddress.address(), nativeAddress.scopeId(), address.getPort());
+    }
+
+    private static native long[] ioUringSetup0(int entries);
+    private static native void ioUringExit0(int ringFd, long sqRingBase, long sqRingSize, long cqRingBase,
+                                            long cqRingSize, long sqes, int sqEntries);
+    private static native int ioUringEnter0(int ringFd, int toSubmit, int minComplete, int flags);
+    private static native boolean ioUringProbe0(int ringFd, int[] ops);
+    private static native int eventFd();
+    private static native void eventFdWrite0(int fd, long value);
+    private static native int setBlocking0(int fd);
+    private static native int writeSockaddr0(long memoryAddress, byte[] address, int scopeId, int port);
+    private static native int sizeofSockaddrStorage();
+
+    private static void loadNativeLibrary() {
+        String name = SystemPropertyUtil.get("os.name").toLowerCase(Locale.UK).trim();
+        if (!name.startsWith("linux")) {
+            throw new IllegalStateException("Only supported on Linux");
+        }
+        String staticLibName = "netty_transport_native_io_uring";
+        String sharedLibName = staticLibName + '_' + PlatformDependent.normalizedArch();
+        ClassLoader cl = PlatformDependent.getClassLoader(Native.class);
+        try {
+            NativeLibraryLoader.load(sharedLibName, cl);
+        } catch (UnsatisfiedLinkError e1) {
+            try {
+                NativeLibraryLoader.load(staticLibName, cl);
+                logger.debug("Failed to load {}", sharedLibName, e1);
+            } catch (UnsatisfiedLinkError e2) {
+                ThrowableUtil.addSuppressed(e1, e2);
+                throw e1;
+            }
+        }
+    }
+
+    private Native() {
+        // utility
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+/**
+ * The submission and completion queues of an {@code io_uring} instance, which are shared with the kernel.
+ */
+final class RingBuffer {
+    private final int fd;
+    private final int features;
+    private final IOUringSubmissionQueue submissionQueue;
+    private final IOUringCompletionQueue completionQueue;
+    final long sqRingBase;
+    final long sqRingSize;
+    final long cqRingBase;
+    final long cqRingSize;
+    private boolean closed;
+
+    RingBuffer(int fd, int features, IOUringSubmissionQueue submissionQueue, IOUringCompletionQueue completionQueue,
+               long sqRingBase, long sqRingSize, long cqRingBase, long cqRingSize) {
+        this.fd = fd;
+        this.features = features;
+        this.submissionQueue = submissionQueue;
+        this.completionQueue = completionQueue;
+        this.sqRingBase = sqRingBase;
+        this.sqRingSize = sqRingSize;
+        this.cqRingBase = cqRingBase;
+        this.cqRingSize = cqRingSize;
+    }
+
+    int fd() {
+        return fd;
+    }
+
+    boolean isFeatureSupported(int feature) {
+        return (features & feature) != 0;
+    }
+
+    IOUringSubmissionQueue submissionQueue() {
+        return submissionQueue;
+    }
+
+    IOUringCompletionQueue completionQueue() {
+        return completionQueue;
+    }
+
+    /**
+     * Unmaps the queues and closes the ring. Operations which are still in flight are cancelled by the kernel.
+     */
+    void close() {
+        if (!closed) {
+            closed = true;
+            Native.ioUringExit(this);
+        }
+    }
+}
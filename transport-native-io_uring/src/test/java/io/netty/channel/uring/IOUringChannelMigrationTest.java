@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelMigration;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class IOUringChannelMigrationTest {
+
+    private EventLoopGroup group;
+    private Channel serverChannel;
+    private Channel clientChannel;
+    private final BlockingQueue<Channel> acceptedChannels = new LinkedBlockingQueue<Channel>();
+    private final BlockingQueue<Object> events = new LinkedBlockingQueue<Object>();
+
+    @BeforeClass
+    public static void assumeIOUringAvailable() {
+        assumeTrue(IOUring.isAvailable());
+    }
+
+    @Before
+    public void setUp() {
+        group = new IOUringEventLoopGroup(2);
+        serverChannel = new ServerBootstrap().group(group).channel(IOUringServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        acceptedChannels.add(ch);
+                        ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                ctx.writeAndFlush(msg);
+                            }
+                        });
+                    }
+                })
+                .bind(new InetSocketAddress("127.0.0.1", 0)).syncUninterruptibly().channel();
+        clientChannel = new Bootstrap().group(group).channel(IOUringSocketChannel.class)
+                .handler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelActive(ChannelHandlerContext ctx) {
+                        events.add("active");
+                    }
+
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ByteBuf buf = (ByteBuf) msg;
+                        events.add(ctx.channel().eventLoop().inEventLoop() ? buf.toString(CharsetUtil.US_ASCII)
+                                                                           : "wrong thread");
+                        buf.release();
+                    }
+                })
+                .connect(serverChannel.localAddress()).syncUninterruptibly().channel();
+    }
+
+    @After
+    public void tearDown() {
+        if (clientChannel != null) {
+            clientChannel.close().syncUninterruptibly();
+        }
+        if (serverChannel != null) {
+            serverChannel.close().syncUninterruptibly();
+        }
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private EventLoop otherEventLoop(Channel channel) {
+        for (EventExecutor executor: group) {
+            if (executor != channel.eventLoop()) {
+                return (EventLoop) executor;
+            }
+        }
+        throw new AssertionError();
+    }
+
+    @Test(timeout = 10000)
+    public void testMigrateWithReadInFlight() throws Exception {
+        assertEquals("active", events.take());
+
+        // The client reads with auto-read, so its read is in flight and cancelled by the migration.
+        EventLoop target = otherEventLoop(clientChannel);
+        ChannelMigration.migrate(clientChannel, target).syncUninterruptibly();
+        assertSame(target, clientChannel.eventLoop());
+        assertTrue(clientChannel.isActive());
+
+        clientChannel.writeAndFlush(Unpooled.copiedBuffer("ping", CharsetUtil.US_ASCII)).syncUninterruptibly();
+        assertEquals("ping", events.take());
+    }
+
+    @Test(timeout = 10000)
+    public void testMigrateWhileReceiving() throws Exception {
+        assertEquals("active", events.take());
+        Channel acceptedChannel = acceptedChannels.take();
+
+        // The reads complete with data while they are cancelled from time to time, which must be delivered after the
+        // channel was registered with the new event loop.
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            String message = String.valueOf((char) ('a' + i % 26));
+            expected.append(message);
+            acceptedChannel.writeAndFlush(Unpooled.copiedBuffer(message, CharsetUtil.US_ASCII));
+            ChannelMigration.migrate(clientChannel, otherEventLoop(clientChannel)).syncUninterruptibly();
+        }
+
+        StringBuilder received = new StringBuilder();
+        while (received.length() < expected.length()) {
+            Object event = events.take();
+            assertTrue(event instanceof String && !"wrong thread".equals(event));
+            received.append(event);
+        }
+        assertEquals(expected.toString(), received.toString());
+        assertTrue(clientChannel.isActive());
+    }
+}
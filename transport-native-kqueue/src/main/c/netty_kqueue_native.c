@@ -32,6 +32,7 @@
 #include "netty_unix_filedescriptor.h"
 #include "netty_unix_jni.h"
 #include "netty_unix_limits.h"
+#include "netty_unix_memory.h"
 #include "netty_unix_socket.h"
 #include "netty_unix_util.h"
 
@@ -284,6 +285,9 @@ static jint netty_kqueue_native_JNI_OnLoad(JNIEnv* env, const char* packagePrefi
     if (netty_unix_limits_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
         return JNI_ERR;
     }
+    if (netty_unix_memory_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        return JNI_ERR;
+    }
     if (netty_unix_errors_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
         return JNI_ERR;
     }
@@ -311,6 +315,7 @@ static jint netty_kqueue_native_JNI_OnLoad(JNIEnv* env, const char* packagePrefi
 
 static void netty_kqueue_native_JNI_OnUnLoad(JNIEnv* env) {
     netty_unix_limits_JNI_OnUnLoad(env);
+    netty_unix_memory_JNI_OnUnLoad(env);
     netty_unix_errors_JNI_OnUnLoad(env);
     netty_unix_filedescriptor_JNI_OnUnLoad(env);
     netty_unix_socket_JNI_OnUnLoad(env);
@@ -214,6 +214,8 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
                 switch (strategy) {
                     case SelectStrategy.CONTINUE:
                         continue;
+                    case SelectStrategy.BUSY_WAIT:
+                        // Busy polling is not supported with kqueue, so just block.
                     case SelectStrategy.SELECT:
                         strategy = kqueueWait(WAKEN_UP_UPDATER.getAndSet(this, 0) == 1);
 
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.kqueue;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.BusyPollSelectStrategyFactory;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.NetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class KQueueEventLoopTest {
+    @BeforeClass
+    public static void loadJNI() {
+        assumeTrue(KQueue.isAvailable());
+    }
+
+    @Test(timeout = 10000)
+    public void testBusyPollSelectStrategyFallsBackToSelect() throws Exception {
+        // kqueue can not busy poll, so it must still wait for and process I/O when asked to.
+        EventLoopGroup group = new KQueueEventLoopGroup(1,
+                new BusyPollSelectStrategyFactory(1, TimeUnit.MILLISECONDS));
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            Channel server = new ServerBootstrap().group(group)
+                    .channel(KQueueServerSocketChannel.class)
+                    .childHandler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            ReferenceCountUtil.release(msg);
+                            latch.countDown();
+                        }
+                    })
+                    .bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+            Channel client = new Bootstrap().group(group)
+                    .channel(KQueueSocketChannel.class)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(server.localAddress()).syncUninterruptibly().channel();
+            ByteBuf buf = Unpooled.wrappedBuffer(new byte[] { 1 });
+            client.writeAndFlush(buf).syncUninterruptibly();
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            client.close().syncUninterruptibly();
+            server.close().syncUninterruptibly();
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+#include <errno.h>
+#include <stdint.h>
+#include <sys/mman.h>
+#include "netty_unix_jni.h"
+#include "netty_unix_memory.h"
+#include "netty_unix_util.h"
+
+#define HUGE_PAGE_SIZE (2 * 1024 * 1024)
+
+// JNI Registered Methods Begin
+static jlong netty_unix_memory_mmapHugePages(JNIEnv* env, jclass clazz, jlong size, jboolean hugetlb) {
+    if (hugetlb == JNI_TRUE) {
+#ifdef MAP_HUGETLB
+        // The pages are taken from the hugetlbfs pool, so the mapping is aligned to the huge page size already.
+        void* addr = mmap(NULL, (size_t) size, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS | MAP_HUGETLB, -1, 0);
+        if (addr == MAP_FAILED) {
+            return -errno;
+        }
+        return (jlong) (intptr_t) addr;
+#else
+        return -ENOSYS;
+#endif /* MAP_HUGETLB */
+    }
+#ifdef MADV_HUGEPAGE
+    // Transparent huge pages are only used for regions that are aligned to the huge page size, so map one huge page
+    // more than needed and unmap what is not needed on both sides.
+    size_t mapSize = (size_t) size + HUGE_PAGE_SIZE;
+    char* region = mmap(NULL, mapSize, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS, -1, 0);
+    if (region == MAP_FAILED) {
+        return -errno;
+    }
+    char* aligned = (char*) (((uintptr_t) region + HUGE_PAGE_SIZE - 1) & ~((uintptr_t) HUGE_PAGE_SIZE - 1));
+    size_t head = aligned - region;
+    size_t tail = mapSize - head - (size_t) size;
+    if (head > 0) {
+        munmap(region, head);
+    }
+    if (tail > 0) {
+        munmap(aligned + size, tail);
+    }
+    if (madvise(aligned, (size_t) size, MADV_HUGEPAGE) != 0) {
+        int err = errno;
+        munmap(aligned, (size_t) size);
+        return -err;
+    }
+    return (jlong) (intptr_t) aligned;
+#else
+    return -ENOSYS;
+#endif /* MADV_HUGEPAGE */
+}
+
+static jint netty_unix_memory_munmap(JNIEnv* env, jclass clazz, jlong address, jlong size) {
+    if (munmap((void*) (intptr_t) address, (size_t) size) != 0) {
+        return -errno;
+    }
+    return 0;
+}
+// JNI Registered Methods End
+
+// JNI Method Registration Table Begin
+static const JNINativeMethod method_table[] = {
+  { "mmapHugePages", "(JZ)J", (void *) netty_unix_memory_mmapHugePages },
+  { "munmap", "(JJ)I", (void *) netty_unix_memory_munmap }
+};
+static const jint method_table_size = sizeof(method_table) / sizeof(method_table[0]);
+// JNI Method Registration Table End
+
+jint netty_unix_memory_JNI_OnLoad(JNIEnv* env, const char* packagePrefix) {
+    if (netty_unix_util_register_natives(env, packagePrefix, "io/netty/channel/unix/HugePageChunkAllocator", method_table, method_table_size) != 0) {
+        return JNI_ERR;
+    }
+    return NETTY_JNI_VERSION;
+}
+
+void netty_unix_memory_JNI_OnUnLoad(JNIEnv* env) { }
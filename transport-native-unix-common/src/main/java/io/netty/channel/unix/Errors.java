@@ -112,6 +112,14 @@ public final class Errors {
         throw new ConnectException(method + "(..) failed: " + ERRORS[-err]);
     }
 
+    /**
+     * Throws the exception which matches the given negative errno of a failed {@code connect(...)}, for transports
+     * which do not connect via {@link Socket#connect(java.net.SocketAddress)}.
+     */
+    public static void throwConnectException(String method, int err) throws IOException {
+        throwConnectException(method, new NativeConnectException(method, ERROR_ECONNREFUSED_NEGATIVE), err);
+    }
+
     public static NativeIoException newConnectionResetException(String method, int errnoNegative) {
         NativeIoException exception = newIOException(method, errnoNegative);
         exception.setStackTrace(EmptyArrays.EMPTY_STACK_TRACE);
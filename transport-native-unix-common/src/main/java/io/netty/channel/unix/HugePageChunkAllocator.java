@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.unix;
+
+import io.netty.buffer.DirectChunkAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link DirectChunkAllocator} which backs the chunks of the direct arenas of a {@link PooledByteBufAllocator} by
+ * 2 MiB huge pages to reduce TLB misses.
+ * <p>
+ * The native library of a transport (for example epoll) must be loaded before this can be used. If it is not loaded
+ * or the huge pages can not be mapped {@link #allocate(int)} returns {@code null} and the
+ * {@link PooledByteBufAllocator} falls back to the default direct memory.
+ * <p>
+ * The memory is not accounted in {@link PlatformDependent#usedDirectMemory()} and not limited by
+ * {@code -XX:MaxDirectMemorySize}.
+ */
+public final class HugePageChunkAllocator implements DirectChunkAllocator {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(HugePageChunkAllocator.class);
+
+    /**
+     * The size of a huge page, memory is always mapped in multiples of it.
+     */
+    public static final int HUGE_PAGE_SIZE = 2 * 1024 * 1024;
+
+    private final boolean hugetlb;
+    private volatile boolean unavailable;
+
+    private HugePageChunkAllocator(boolean hugetlb) {
+        this.hugetlb = hugetlb;
+    }
+
+    /**
+     * Returns a new instance which maps anonymous memory aligned to {@link #HUGE_PAGE_SIZE} and advises the kernel to
+     * back it by transparent huge pages via {@code madvise(MADV_HUGEPAGE)}. This needs transparent huge pages to be
+     * enabled in {@code madvise} or {@code always} mode.
+     */
+    public static HugePageChunkAllocator transparentHugePages() {
+        return new HugePageChunkAllocator(false);
+    }
+
+    /**
+     * Returns a new instance which maps the memory from the pool of reserved huge pages via {@code MAP_HUGETLB}. This
+     * needs huge pages to be reserved, for example via {@code /proc/sys/vm/nr_hugepages}.
+     */
+    public static HugePageChunkAllocator hugetlb() {
+        return new HugePageChunkAllocator(true);
+    }
+
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        if (unavailable) {
+            return null;
+        }
+        if (!PlatformDependent.hasDirectBufferNoCleanerConstructor()) {
+            logger.debug("Can not wrap mapped memory in a ByteBuffer, disable {}", this);
+            unavailable = true;
+            return null;
+        }
+        final long address;
+        try {
+            address = mmapHugePages(mapSize(capacity), hugetlb);
+        } catch (UnsatisfiedLinkError e) {
+            logger.debug("Native library is not loaded, disable {}", this, e);
+            unavailable = true;
+            return null;
+        }
+        if (address < 0) {
+            // Most likely there are no huge pages left, try again with the next chunk.
+            logger.debug("Failed to map {} bytes for {}, errno: {}", capacity, this, -address);
+            return null;
+        }
+        return PlatformDependent.directBuffer(address, capacity);
+    }
+
+    @Override
+    public void free(ByteBuffer memory) {
+        int res = munmap(PlatformDependent.directBufferAddress(memory), mapSize(memory.capacity()));
+        if (res < 0) {
+            logger.warn("Failed to unmap {} bytes for {}, errno: {}", memory.capacity(), this, -res);
+        }
+    }
+
+    @Override
+    public String memoryBacking() {
+        return hugetlb ? "hugetlb" : "madvise-hugepage";
+    }
+
+    @Override
+    public String toString() {
+        return "HugePageChunkAllocator(" + memoryBacking() + ')';
+    }
+
+    private static long mapSize(int capacity) {
+        return ((long) capacity + HUGE_PAGE_SIZE - 1) & ~(long) (HUGE_PAGE_SIZE - 1);
+    }
+
+    private static native long mmapHugePages(long size, boolean hugetlb);
+    private static native int munmap(long address, long size);
+}
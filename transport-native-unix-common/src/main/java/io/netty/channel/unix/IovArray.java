@@ -88,17 +88,31 @@ public final class IovArray implements MessageProcessor {
      * have been added.
      */
     public boolean add(ByteBuf buf) {
+        return add(buf, buf.readerIndex(), buf.readableBytes());
+    }
+
+    /**
+     * Add the given region of a {@link ByteBuf} to this {@link IovArray}, regardless of its reader and writer index.
+     * This allows to add the writable bytes of a {@link ByteBuf} so data can be read into it.
+     * @param buf The {@link ByteBuf} to add.
+     * @param offset The index of the first byte to add.
+     * @param len The number of bytes to add.
+     * @return {@code true} if the entire region has been added to this {@link IovArray}. Note in the event
+     * that {@link ByteBuf} is a {@link CompositeByteBuf} {@code false} may be returned even if some of the components
+     * have been added.
+     */
+    public boolean add(ByteBuf buf, int offset, int len) {
         if (count == IOV_MAX) {
             // No more room!
             return false;
         } else if (buf.nioBufferCount() == 1) {
-            final int len = buf.readableBytes();
-            return len == 0 || add(buf.memoryAddress(), buf.readerIndex(), len);
+            return len == 0 || add(buf.memoryAddress(), offset, len);
         } else {
-            ByteBuffer[] buffers = buf.nioBuffers();
+            ByteBuffer[] buffers = buf.nioBuffers(offset, len);
             for (ByteBuffer nioBuffer : buffers) {
-                final int len = nioBuffer.remaining();
-                if (len != 0 && (!add(directBufferAddress(nioBuffer), nioBuffer.position(), len) || count == IOV_MAX)) {
+                final int remaining = nioBuffer.remaining();
+                if (remaining != 0 &&
+                        (!add(directBufferAddress(nioBuffer), nioBuffer.position(), remaining) || count == IOV_MAX)) {
                     return false;
                 }
             }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.unix;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PoolChunkListMetric;
+import io.netty.buffer.PoolChunkMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HugePageChunkAllocatorTest {
+
+    @Test
+    public void testMemoryBacking() {
+        assertEquals("madvise-hugepage", HugePageChunkAllocator.transparentHugePages().memoryBacking());
+        assertEquals("hugetlb", HugePageChunkAllocator.hugetlb().memoryBacking());
+    }
+
+    @Test
+    public void testAllocateWithoutNativeLibrary() {
+        // No transport is loaded in this module, so the native methods are not registered.
+        HugePageChunkAllocator chunkAllocator = HugePageChunkAllocator.transparentHugePages();
+        assertNull(chunkAllocator.allocate(HugePageChunkAllocator.HUGE_PAGE_SIZE));
+        assertNull(chunkAllocator.allocate(HugePageChunkAllocator.HUGE_PAGE_SIZE));
+    }
+
+    @Test
+    public void testPooledAllocatorFallsBackWithoutNativeLibrary() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 0, 1, 8192, 11, 0, 0, 0, true, 0, 1, 0, 0,
+                HugePageChunkAllocator.transparentHugePages());
+        ByteBuf buffer = allocator.directBuffer(64 * 1024);
+        try {
+            buffer.writeLong(1);
+            assertEquals(1, buffer.readLong());
+            assertEquals(Collections.singletonList("direct"), memoryBackings(allocator));
+        } finally {
+            assertTrue(buffer.release());
+        }
+    }
+
+    private static List<String> memoryBackings(PooledByteBufAllocator allocator) {
+        List<String> backings = new ArrayList<String>();
+        for (PoolArenaMetric arena : allocator.metric().directArenas()) {
+            for (PoolChunkListMetric list : arena.chunkLists()) {
+                for (PoolChunkMetric chunk : list) {
+                    backings.add(chunk.memoryBacking());
+                }
+            }
+        }
+        return backings;
+    }
+}
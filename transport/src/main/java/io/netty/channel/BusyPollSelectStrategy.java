@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.BooleanSupplier;
+import io.netty.util.IntSupplier;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * A {@link SelectStrategy} which lets the event loop spin on a non-blocking select for some time before it parks in
+ * a blocking select. This trades CPU time for a lower latency, as the thread does not need to be woken up.
+ * <p>
+ * The spin budget adapts to the load: it is halved every time a spin ends without finding any work, down to zero
+ * when the event loop is idle, and it is doubled, up to the configured maximum, every time a spin finds work or a
+ * blocking select returns within the maximum spin time.
+ * <p>
+ * A new instance must be used per event loop, see {@link BusyPollSelectStrategyFactory}.
+ */
+@UnstableApi
+public final class BusyPollSelectStrategy implements SelectStrategy {
+
+    private static final int MIN_SPIN_BUDGET_SHIFT = 4;
+
+    private final long maxSpinNanos;
+    private final long minSpinNanos;
+
+    // Only written by the event loop.
+    private volatile long spinBudgetNanos;
+    private volatile long spinTime;
+    private volatile long lastSpinTime;
+
+    BusyPollSelectStrategy(long maxSpinNanos) {
+        this.maxSpinNanos = maxSpinNanos;
+        minSpinNanos = maxSpinNanos >>> MIN_SPIN_BUDGET_SHIFT;
+        spinBudgetNanos = maxSpinNanos;
+    }
+
+    @Override
+    public int calculateStrategy(IntSupplier selectSupplier, boolean hasTasks) throws Exception {
+        return hasTasks ? selectSupplier.get() : SelectStrategy.BUSY_WAIT;
+    }
+
+    /**
+     * Spins on the given non-blocking select for at most the current spin budget. Must be called by the event loop
+     * after {@link #calculateStrategy(IntSupplier, boolean)} returned {@link SelectStrategy#BUSY_WAIT}.
+     *
+     * @param selectNowSupplier the supplier which does a non-blocking select and returns the number of ready events.
+     * @param hasTasksSupplier the supplier which returns {@code true} if tasks are waiting to be processed.
+     * @return the number of ready events, {@code 0} if tasks are waiting to be processed, or
+     *         {@link SelectStrategy#SELECT} if the spin budget was used up and a blocking select should follow.
+     */
+    public int busyWait(IntSupplier selectNowSupplier, BooleanSupplier hasTasksSupplier) throws Exception {
+        final long spinBudgetNanos = this.spinBudgetNanos;
+        if (spinBudgetNanos == 0) {
+            lastSpinTime = 0;
+            return SelectStrategy.SELECT;
+        }
+
+        final long startTime = System.nanoTime();
+        int ready = SelectStrategy.SELECT;
+        long elapsed;
+        do {
+            int selected = selectNowSupplier.get();
+            if (selected > 0) {
+                ready = selected;
+            } else if (hasTasksSupplier.get()) {
+                ready = 0;
+            }
+            elapsed = System.nanoTime() - startTime;
+        } while (ready == SelectStrategy.SELECT && elapsed < spinBudgetNanos);
+
+        lastSpinTime = elapsed;
+        spinTime += elapsed;
+        if (ready == SelectStrategy.SELECT) {
+            // Nothing to do within the budget, so back off.
+            long newBudget = spinBudgetNanos >>> 1;
+            this.spinBudgetNanos = newBudget < minSpinNanos ? 0 : newBudget;
+        } else {
+            grow(spinBudgetNanos);
+        }
+        return ready;
+    }
+
+    /**
+     * Must be called by the event loop with the time it spent in the blocking select which followed a
+     * {@link #busyWait(IntSupplier, BooleanSupplier)} that returned {@link SelectStrategy#SELECT}.
+     */
+    public void parked(long nanos) {
+        if (nanos < maxSpinNanos) {
+            // Spinning would have avoided the park, so spin again.
+            grow(spinBudgetNanos);
+        }
+    }
+
+    private void grow(long spinBudgetNanos) {
+        if (spinBudgetNanos < maxSpinNanos) {
+            this.spinBudgetNanos = Math.min(maxSpinNanos, Math.max(minSpinNanos, spinBudgetNanos << 1));
+        }
+    }
+
+    /**
+     * Returns the maximum time in nanoseconds a single spin may take.
+     */
+    public long maxSpinNanos() {
+        return maxSpinNanos;
+    }
+
+    /**
+     * Returns the time in nanoseconds the next spin may take at most.
+     */
+    public long spinBudgetNanos() {
+        return spinBudgetNanos;
+    }
+
+    /**
+     * Returns the total time in nanoseconds that was spent spinning.
+     */
+    public long spinTime() {
+        return spinTime;
+    }
+
+    /**
+     * Returns the time in nanoseconds the last spin took.
+     */
+    public long lastSpinTime() {
+        return lastSpinTime;
+    }
+}
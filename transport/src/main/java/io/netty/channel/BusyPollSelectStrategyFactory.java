@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.UnstableApi;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Factory which creates a new {@link BusyPollSelectStrategy} for every event loop.
+ */
+@UnstableApi
+public final class BusyPollSelectStrategyFactory implements SelectStrategyFactory {
+
+    private final long maxSpinNanos;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxSpinTime the maximum time a single spin may take before the event loop parks.
+     * @param unit the {@link TimeUnit} of {@code maxSpinTime}.
+     */
+    public BusyPollSelectStrategyFactory(long maxSpinTime, TimeUnit unit) {
+        if (maxSpinTime <= 0) {
+            throw new IllegalArgumentException("maxSpinTime: " + maxSpinTime + " (expected: > 0)");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        maxSpinNanos = unit.toNanos(maxSpinTime);
+    }
+
+    @Override
+    public SelectStrategy newSelectStrategy() {
+        return new BusyPollSelectStrategy(maxSpinNanos);
+    }
+}
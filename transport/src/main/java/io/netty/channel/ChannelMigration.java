@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * Moves a registered {@link Channel} to another {@link EventLoop} of the same {@link EventLoopGroup}, for example to
+ * even out the load of {@link EventLoop}s which serve long-lived connections.
+ * <p>
+ * The {@link Channel} is deregistered from its current {@link EventLoop} and registered with the new one, which keeps
+ * its {@link ChannelPipeline} and all its handlers. The handlers see a {@code channelUnregistered} event on the old
+ * {@link EventLoop}, followed by a {@code channelRegistered} event on the new one, but no {@code channelInactive} or
+ * {@code channelActive} events. Handlers which schedule tasks on the {@link EventLoop} need to cancel them in
+ * {@code channelUnregistered} and schedule them again in {@code channelRegistered}, like the
+ * {@code IdleStateHandler} does. Reading continues on the new {@link EventLoop} if auto-read is enabled.
+ * <p>
+ * Only quiescent {@link Channel}s can be moved, that is {@link Channel}s without messages in their
+ * {@link ChannelOutboundBuffer}. The caller also needs to make sure that no other thread submits work for the
+ * {@link Channel} to the old {@link EventLoop} while it is moved. This is supported for the NIO, epoll and
+ * io_uring transports.
+ */
+@UnstableApi
+public final class ChannelMigration {
+
+    private ChannelMigration() { }
+
+    /**
+     * Moves the given {@link Channel} to the given {@link EventLoop}. The returned {@link ChannelFuture} is notified
+     * once the {@link Channel} is registered with the new {@link EventLoop}. It fails without moving the
+     * {@link Channel} if the {@link Channel} has pending writes, is not registered or the {@link EventLoop} does not
+     * belong to the same {@link EventLoopGroup}.
+     */
+    public static ChannelFuture migrate(final Channel channel, final EventLoop target) {
+        ObjectUtil.checkNotNull(channel, "channel");
+        ObjectUtil.checkNotNull(target, "target");
+        final ChannelPromise promise = channel.newPromise();
+        if (!channel.isRegistered()) {
+            return promise.setFailure(new IllegalStateException("channel not registered to an event loop"));
+        }
+        final EventLoop current = channel.eventLoop();
+        if (current == target) {
+            return promise.setSuccess();
+        }
+        if (current.parent() != target.parent()) {
+            return promise.setFailure(new IllegalArgumentException(
+                    "target does not belong to the event loop group of the channel"));
+        }
+        if (current.inEventLoop()) {
+            migrate0(channel, target, promise);
+        } else {
+            current.execute(new Runnable() {
+                @Override
+                public void run() {
+                    migrate0(channel, target, promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    private static void migrate0(final Channel channel, final EventLoop target, final ChannelPromise promise) {
+        if (!channel.isOpen()) {
+            promise.setFailure(new ClosedChannelException());
+            return;
+        }
+        if (!channel.isRegistered()) {
+            promise.setFailure(new IllegalStateException("channel not registered to an event loop"));
+            return;
+        }
+        ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+        if (buffer != null && (!buffer.isEmpty() || buffer.totalPendingWriteBytes() != 0)) {
+            promise.setFailure(new IllegalStateException("channel has pending writes"));
+            return;
+        }
+        if (target.isShuttingDown()) {
+            promise.setFailure(new IllegalStateException("target event loop is shutting down"));
+            return;
+        }
+        channel.deregister().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (future.isSuccess()) {
+                    target.register(promise);
+                } else {
+                    promise.setFailure(future.cause());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.DefaultEventExecutorChooserFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorChooserFactory;
+import io.netty.util.concurrent.EventExecutorMetric;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link EventExecutorChooserFactory} which chooses the less loaded of two randomly picked {@link EventLoop}s,
+ * instead of using round-robin like the {@link DefaultEventExecutorChooserFactory}. As every new {@link Channel} is
+ * registered with the {@link EventLoop} returned by {@link EventLoopGroup#next()}, this keeps long-lived
+ * connections with very different traffic from piling up on a few {@link EventLoop}s, both for the child
+ * {@link Channel}s of a server and for clients which use the same {@link EventLoopGroup}.
+ * <p>
+ * Every {@link EventLoop} samples its load periodically by itself, so that choosing does not need to access the
+ * internals of the {@link EventLoop}s from another thread. The load is made up of:
+ * <ul>
+ *     <li>the number of registered {@link Channel}s, see {@link SingleThreadEventLoop#registeredChannels()}, plus
+ *     the number of times the {@link EventLoop} was chosen since it was sampled,</li>
+ *     <li>the number of pending tasks,</li>
+ *     <li>the share of the last sample interval the {@link EventLoop} was busy with I/O and tasks. It is only known
+ *     while the {@link EventExecutorMetric} is enabled, see
+ *     {@link SingleThreadEventExecutor#setMetricsEnabled(boolean)}, but an {@link EventLoop} which is so busy that it
+ *     fails to take its samples is always considered busy.</li>
+ * </ul>
+ * The number of channels and pending tasks is scaled by {@code 1 / (1 - busy share)}, which is how the response time
+ * of a queue grows with its utilization.
+ *
+ * <pre>
+ * {@link EventLoopGroup} group = new NioEventLoopGroup(0, null, new {@link LoadAwareEventLoopChooserFactory}(),
+ *         SelectorProvider.provider(), DefaultSelectStrategyFactory.INSTANCE);
+ * </pre>
+ */
+@UnstableApi
+public final class LoadAwareEventLoopChooserFactory implements EventExecutorChooserFactory {
+
+    private static final long DEFAULT_SAMPLE_INTERVAL_MILLIS = 100;
+    // Keeps a busy EventLoop from looking infinitely loaded, so that its channel count still counts.
+    private static final double MAX_BUSY = 0.95;
+
+    private final long sampleIntervalNanos;
+
+    /**
+     * Creates a new instance which samples the load every 100 milliseconds.
+     */
+    public LoadAwareEventLoopChooserFactory() {
+        this(DEFAULT_SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param sampleInterval the interval in which the {@link EventLoop}s sample their load.
+     * @param unit the {@link TimeUnit} of {@code sampleInterval}.
+     */
+    public LoadAwareEventLoopChooserFactory(long sampleInterval, TimeUnit unit) {
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        if (sampleInterval <= 0) {
+            throw new IllegalArgumentException("sampleInterval: " + sampleInterval + " (expected: > 0)");
+        }
+        sampleIntervalNanos = unit.toNanos(sampleInterval);
+    }
+
+    @Override
+    public EventExecutorChooser newChooser(EventExecutor[] executors) {
+        return new LoadAwareEventExecutorChooser(executors, sampleIntervalNanos);
+    }
+
+    private static final class LoadAwareEventExecutorChooser implements EventExecutorChooser {
+        private final EventExecutor[] executors;
+        private final Load[] loads;
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        LoadAwareEventExecutorChooser(EventExecutor[] executors, long sampleIntervalNanos) {
+            this.executors = executors;
+            loads = new Load[executors.length];
+            for (int i = 0; i < executors.length; i++) {
+                loads[i] = new Load(executors[i], sampleIntervalNanos);
+            }
+        }
+
+        @Override
+        public EventExecutor next() {
+            if (!started.get() && started.compareAndSet(false, true)) {
+                // Only start sampling once the group is used, as it starts the threads.
+                for (Load load: loads) {
+                    load.start();
+                }
+            }
+            final int length = executors.length;
+            if (length == 1) {
+                return executors[0];
+            }
+            Random random = PlatformDependent.threadLocalRandom();
+            int first = random.nextInt(length);
+            int second = random.nextInt(length - 1);
+            if (second >= first) {
+                second++;
+            }
+            final long now = System.nanoTime();
+            int chosen = loads[second].score(now) < loads[first].score(now) ? second : first;
+            loads[chosen].chosen.incrementAndGet();
+            return executors[chosen];
+        }
+    }
+
+    /**
+     * The load of a single {@link EventExecutor}, which is sampled by a task that runs on it.
+     */
+    private static final class Load implements Runnable {
+        private final EventExecutor executor;
+        private final long sampleIntervalNanos;
+        final AtomicInteger chosen = new AtomicInteger();
+
+        private volatile int channels;
+        private volatile int pendingTasks;
+        private volatile double busy;
+        private volatile long lastSampleTime = System.nanoTime();
+
+        // Only accessed by the EventExecutor.
+        private long lastBusyTime = -1;
+
+        Load(EventExecutor executor, long sampleIntervalNanos) {
+            this.executor = executor;
+            this.sampleIntervalNanos = sampleIntervalNanos;
+        }
+
+        void start() {
+            lastSampleTime = System.nanoTime();
+            try {
+                executor.scheduleAtFixedRate(this, 0, sampleIntervalNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException ignore) {
+                // Shutting down.
+            }
+        }
+
+        double score(long now) {
+            double busy = this.busy;
+            if (now - lastSampleTime > 2 * sampleIntervalNanos) {
+                // The EventLoop did not manage to take its last sample in time.
+                busy = MAX_BUSY;
+            }
+            return (channels + chosen.get() + pendingTasks + 1) / (1 - Math.min(busy, MAX_BUSY));
+        }
+
+        @Override
+        public void run() {
+            final long now = System.nanoTime();
+            if (executor instanceof SingleThreadEventLoop) {
+                channels = Math.max(0, ((SingleThreadEventLoop) executor).registeredChannels());
+            }
+            if (executor instanceof SingleThreadEventExecutor) {
+                SingleThreadEventExecutor singleThreadExecutor = (SingleThreadEventExecutor) executor;
+                pendingTasks = singleThreadExecutor.pendingTasks();
+                if (singleThreadExecutor.isMetricsEnabled()) {
+                    EventExecutorMetric metric = singleThreadExecutor.metric();
+                    long busyTime = metric.ioTime() + Math.max(metric.runAllTasksTime(), metric.taskTime());
+                    if (lastBusyTime >= 0) {
+                        busy = (double) (busyTime - lastBusyTime) / Math.max(1, now - lastSampleTime);
+                    }
+                    lastBusyTime = busyTime;
+                } else {
+                    busy = 0;
+                    lastBusyTime = -1;
+                }
+            }
+            chosen.set(0);
+            lastSampleTime = now;
+        }
+    }
+}
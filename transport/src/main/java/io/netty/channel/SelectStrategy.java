@@ -34,6 +34,13 @@ public interface SelectStrategy {
      * Indicates the IO loop should be retried, no blocking select to follow directly.指示IO循环应重试，无阻塞选择直接跟随。
      */
     int CONTINUE = -2;
+    /**
+     * Indicates the IO loop should spin on a non-blocking select before it does a blocking select. Event loops which
+     * do not support it treat it like {@link #SELECT}.
+     *
+     * @see BusyPollSelectStrategy
+     */
+    int BUSY_WAIT = -3;
 
     /**
      * The {@link SelectStrategy} can be used to steer the outcome of a potential select
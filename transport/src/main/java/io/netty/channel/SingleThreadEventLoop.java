@@ -152,6 +152,16 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
         return super.pendingTasks() + tailTasks.size();
     }
 
+    /**
+     * Returns the number of {@link Channel}s registered with this {@link EventLoop} or {@code -1}
+     * if operation is not supported. The returned value is not guaranteed to be exact accurate and
+     * should be viewed as a best effort. Must be called from the {@link EventLoop}.
+     */
+    @UnstableApi
+    public int registeredChannels() {
+        return -1;
+    }
+
     /**
      * Marker interface for {@link Runnable} that will not trigger an {@link #wakeup(boolean)} in all cases.
      * 可运行的标记接口，在所有情况下不会触发唤醒(布尔)。
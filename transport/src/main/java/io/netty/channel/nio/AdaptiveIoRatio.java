@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.nio;
+
+/**
+ * Adjusts the I/O ratio of a {@link NioEventLoop} after every iteration of its loop, so that neither the ready
+ * {@link java.nio.channels.SelectionKey}s nor the pending tasks wait longer than their latency goals.
+ * <p>
+ * The I/O events are late if keys were selected and the tasks ran longer than the I/O latency goal, as the keys
+ * which become ready while the tasks run are only selected afterwards. The tasks are late if some are still pending
+ * after the tasks ran and the iteration took longer than the task latency goal, as they have to wait at least for
+ * another iteration. The ratio moves one step towards whichever is late, and stays if both or none are.
+ */
+final class AdaptiveIoRatio {
+
+    static final int MIN_IO_RATIO = 5;
+    static final int MAX_IO_RATIO = 95;
+
+    private final long ioLatencyGoalNanos;
+    private final long taskLatencyGoalNanos;
+
+    // Only written by the event loop.
+    private volatile int ioRatio;
+
+    AdaptiveIoRatio(int initialIoRatio, long ioLatencyGoalNanos, long taskLatencyGoalNanos) {
+        this.ioLatencyGoalNanos = ioLatencyGoalNanos;
+        this.taskLatencyGoalNanos = taskLatencyGoalNanos;
+        ioRatio = Math.max(MIN_IO_RATIO, Math.min(MAX_IO_RATIO, initialIoRatio));
+    }
+
+    /**
+     * Returns the I/O ratio to use for the next iteration.
+     */
+    int ioRatio() {
+        return ioRatio;
+    }
+
+    long ioLatencyGoalNanos() {
+        return ioLatencyGoalNanos;
+    }
+
+    long taskLatencyGoalNanos() {
+        return taskLatencyGoalNanos;
+    }
+
+    /**
+     * Records an iteration of the event loop.
+     *
+     * @param selectedKeys the number of selected keys that were processed.
+     * @param ioTime the time it took to process them.
+     * @param taskTime the time it took to run the tasks afterwards.
+     * @param pendingTasks the number of tasks that are still pending.
+     */
+    void record(int selectedKeys, long ioTime, long taskTime, int pendingTasks) {
+        final boolean ioLate = selectedKeys > 0 && taskTime > ioLatencyGoalNanos;
+        final boolean tasksLate = pendingTasks > 0 && ioTime + taskTime > taskLatencyGoalNanos;
+        if (ioLate == tasksLate) {
+            return;
+        }
+        final int ioRatio = this.ioRatio;
+        if (ioLate) {
+            if (ioRatio < MAX_IO_RATIO) {
+                this.ioRatio = ioRatio + 1;
+            }
+        } else if (ioRatio > MIN_IO_RATIO) {
+            this.ioRatio = ioRatio - 1;
+        }
+    }
+}
@@ -15,12 +15,14 @@
  */
 package io.netty.channel.nio;
 
+import io.netty.channel.BusyPollSelectStrategy;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelException;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopException;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SingleThreadEventLoop;
+import io.netty.util.BooleanSupplier;
 import io.netty.util.IntSupplier;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.internal.PlatformDependent;
@@ -73,6 +75,12 @@ public final class NioEventLoop extends SingleThreadEventLoop {
             return selectNow();
         }
     };
+    private final BooleanSupplier hasTasksSupplier = new BooleanSupplier() {
+        @Override
+        public boolean get() {
+            return hasTasks();
+        }
+    };
     private final Callable<Integer> pendingTasksCallable = new Callable<Integer>() {
         @Override
         public Integer call() throws Exception {
@@ -139,8 +147,10 @@ public final class NioEventLoop extends SingleThreadEventLoop {
 
 //    selector选择器行为，默认实现有事件就开始事件监听，如果没有就阻塞等到事件到来
     private final SelectStrategy selectStrategy;
+    private final BusyPollSelectStrategy busyPollStrategy;
 
     private volatile int ioRatio = 50;
+    private volatile AdaptiveIoRatio adaptiveIoRatio;
     private int cancelledKeys;
     private boolean needsToSelectAgain;
 
@@ -160,6 +170,7 @@ public final class NioEventLoop extends SingleThreadEventLoop {
         selector = selectorTuple.selector;
         unwrappedSelector = selectorTuple.unwrappedSelector;
         selectStrategy = strategy;
+        busyPollStrategy = strategy instanceof BusyPollSelectStrategy ? (BusyPollSelectStrategy) strategy : null;
     }
 
     private static final class SelectorTuple {
@@ -286,6 +297,11 @@ public final class NioEventLoop extends SingleThreadEventLoop {
         }
     }
 
+    @Override
+    public int registeredChannels() {
+        return selector.keys().size() - cancelledKeys;
+    }
+
     /**
      * Registers an arbitrary {@link SelectableChannel}, not necessarily created by Netty, to the {@link Selector}
      * of this event loop.  Once the specified {@link SelectableChannel} is registered, the specified {@code task} will
@@ -336,6 +352,46 @@ public final class NioEventLoop extends SingleThreadEventLoop {
             throw new IllegalArgumentException("ioRatio: " + ioRatio + " (expected: 0 < ioRatio <= 100)");
         }
         this.ioRatio = ioRatio;
+        adaptiveIoRatio = null;
+    }
+
+    /**
+     * Lets the event loop adjust the percentage of time spent for I/O at runtime, starting from
+     * {@link #getIoRatio()}, instead of using a fixed one. It is moved towards I/O when keys were selected and the
+     * tasks ran longer than {@code ioLatencyGoal}, and towards the tasks when tasks are still pending after an
+     * iteration that took longer than {@code taskLatencyGoal}. Calling {@link #setIoRatio(int)} disables it again.
+     *
+     * @see #effectiveIoRatio()
+     */
+    public void setAdaptiveIoRatio(long ioLatencyGoal, long taskLatencyGoal, TimeUnit unit) {
+        if (ioLatencyGoal <= 0) {
+            throw new IllegalArgumentException("ioLatencyGoal: " + ioLatencyGoal + " (expected: > 0)");
+        }
+        if (taskLatencyGoal <= 0) {
+            throw new IllegalArgumentException("taskLatencyGoal: " + taskLatencyGoal + " (expected: > 0)");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        adaptiveIoRatio = new AdaptiveIoRatio(ioRatio, unit.toNanos(ioLatencyGoal), unit.toNanos(taskLatencyGoal));
+    }
+
+    /**
+     * Returns {@code true} if the percentage of time spent for I/O is adjusted at runtime.
+     *
+     * @see #setAdaptiveIoRatio(long, long, TimeUnit)
+     */
+    public boolean isAdaptiveIoRatio() {
+        return adaptiveIoRatio != null;
+    }
+
+    /**
+     * Returns the percentage of time spent for I/O that is currently used by the event loop. This is the
+     * {@link #getIoRatio()} unless {@link #setAdaptiveIoRatio(long, long, TimeUnit)} is used.
+     */
+    public int effectiveIoRatio() {
+        AdaptiveIoRatio adaptiveIoRatio = this.adaptiveIoRatio;
+        return adaptiveIoRatio != null ? adaptiveIoRatio.ioRatio() : ioRatio;
     }
 
     /**
@@ -432,8 +488,25 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                 switch (selectStrategy.calculateStrategy(selectNowSupplier, hasTasks())) {
                     case SelectStrategy.CONTINUE:
                         continue;
+                    case SelectStrategy.BUSY_WAIT:
+                        if (busyWait()) {
+                            break;
+                        }
+                        // fall through
                     case SelectStrategy.SELECT:
-                        select(wakenUp.getAndSet(false));
+                        if (isMetricsEnabled() || busyPollStrategy != null) {
+                            final long selectStartTime = System.nanoTime();
+                            select(wakenUp.getAndSet(false));
+                            final long selectTime = System.nanoTime() - selectStartTime;
+                            if (isMetricsEnabled()) {
+                                recordIoWaitTime(selectTime);
+                            }
+                            if (busyPollStrategy != null) {
+                                busyPollStrategy.parked(selectTime);
+                            }
+                        } else {
+                            select(wakenUp.getAndSet(false));
+                        }
 //                        监听事件
 
                         // 'wakenUp.compareAndSet(false, true)' is always evaluated
@@ -499,9 +572,14 @@ public final class NioEventLoop extends SingleThreadEventLoop {
 
                 cancelledKeys = 0;
                 needsToSelectAgain = false;
-                final int ioRatio = this.ioRatio;
+                final AdaptiveIoRatio adaptiveIoRatio = this.adaptiveIoRatio;
+                final int ioRatio = adaptiveIoRatio != null ? adaptiveIoRatio.ioRatio() : this.ioRatio;
+                final boolean metricsEnabled = isMetricsEnabled();
+                if (metricsEnabled) {
+                    recordIoRatio(ioRatio);
+                }
 //                io使用时间百分比
-                if (ioRatio == 100) {
+                if (ioRatio == 100 && !metricsEnabled) {
                     try {
 //                        处理选择键
                         processSelectedKeys();
@@ -510,13 +588,25 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                         runAllTasks();
                     }
                 } else {
+                    final int selectedKeyCount = adaptiveIoRatio != null ? selectedKeyCount() : 0;
                     final long ioStartTime = System.nanoTime();
                     try {
                         processSelectedKeys();
                     } finally {
                         // Ensure we always run tasks.
                         final long ioTime = System.nanoTime() - ioStartTime;
-                        runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                        if (metricsEnabled) {
+                            recordIoTime(ioTime);
+                        }
+                        if (ioRatio == 100) {
+                            runAllTasks();
+                        } else {
+                            runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                        }
+                        if (adaptiveIoRatio != null) {
+                            adaptiveIoRatio.record(selectedKeyCount, ioTime,
+                                    System.nanoTime() - ioStartTime - ioTime, super.pendingTasks());
+                        }
                     }
                 }
             } catch (Throwable t) {
@@ -537,6 +627,25 @@ public final class NioEventLoop extends SingleThreadEventLoop {
         }
     }
 
+    /**
+     * Spins on {@link #selectNow()} if a {@link BusyPollSelectStrategy} is used and returns {@code true} if it found
+     * ready keys or tasks, so no blocking select is needed.
+     */
+    private boolean busyWait() throws Exception {
+        if (busyPollStrategy == null) {
+            return false;
+        }
+        // Reset the wake-up state, as the blocking select which normally does it is skipped as long as the spin finds
+        // work. Otherwise every selectNow() of the spin would call selector.wakeup() again. A task added while
+        // spinning is seen through hasTasks(), so no wake-up is lost.
+        wakenUp.set(false);
+        int ready = busyPollStrategy.busyWait(selectNowSupplier, hasTasksSupplier);
+        if (isMetricsEnabled()) {
+            recordBusyWaitTime(busyPollStrategy.lastSpinTime());
+        }
+        return ready != SelectStrategy.SELECT;
+    }
+
     private static void handleLoopException(Throwable t) {
         logger.warn("Unexpected exception in the selector loop.", t);
 
@@ -549,6 +658,10 @@ public final class NioEventLoop extends SingleThreadEventLoop {
         }
     }
 
+    private int selectedKeyCount() {
+        return selectedKeys != null ? selectedKeys.size : selector.selectedKeys().size();
+    }
+
     private void processSelectedKeys() {
         if (selectedKeys != null) {
 //           最selectionKey做优化
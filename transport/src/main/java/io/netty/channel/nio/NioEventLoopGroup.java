@@ -29,6 +29,7 @@ import java.nio.channels.Selector;
 import java.nio.channels.spi.SelectorProvider;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * {@link MultithreadEventLoopGroup} implementations which is used for NIO {@link Selector} based {@link Channel}s.用于基于NIO选择器的通道的MultithreadEventLoopGroup实现。
@@ -116,6 +117,17 @@ public class NioEventLoopGroup extends MultithreadEventLoopGroup {
         }
     }
 
+    /**
+     * Lets the child event loops adjust the percentage of time spent for I/O at runtime.
+     *
+     * @see NioEventLoop#setAdaptiveIoRatio(long, long, TimeUnit)
+     */
+    public void setAdaptiveIoRatio(long ioLatencyGoal, long taskLatencyGoal, TimeUnit unit) {
+        for (EventExecutor e: this) {
+            ((NioEventLoop) e).setAdaptiveIoRatio(ioLatencyGoal, taskLatencyGoal, unit);
+        }
+    }
+
     /**
      * Replaces the current {@link Selector}s of the child event loops with newly created {@link Selector}s to work
      * around the  infamous epoll 100% CPU bug.
@@ -24,7 +24,7 @@ import java.net.InetSocketAddress;
 /**
  * The message container that is used for {@link DatagramChannel} to communicate with the remote peer.用于DatagramChannel与远程对等点通信的消息容器。
  */
-public final class DatagramPacket
+public class DatagramPacket
         extends DefaultAddressedEnvelope<ByteBuf, InetSocketAddress> implements ByteBufHolder {
 
     /**
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.BooleanSupplier;
+import io.netty.util.IntSupplier;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BusyPollSelectStrategyTest {
+
+    private static final long MAX_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(160);
+
+    private static IntSupplier selected(final int selected) {
+        return new IntSupplier() {
+            @Override
+            public int get() {
+                return selected;
+            }
+        };
+    }
+
+    private static BusyPollSelectStrategy newStrategy() {
+        return (BusyPollSelectStrategy) new BusyPollSelectStrategyFactory(MAX_SPIN_NANOS, TimeUnit.NANOSECONDS)
+                .newSelectStrategy();
+    }
+
+    @Test
+    public void testCalculateStrategy() throws Exception {
+        BusyPollSelectStrategy strategy = newStrategy();
+        assertEquals(SelectStrategy.BUSY_WAIT, strategy.calculateStrategy(selected(1), false));
+        assertEquals(1, strategy.calculateStrategy(selected(1), true));
+    }
+
+    @Test
+    public void testReturnsReadyEvents() throws Exception {
+        BusyPollSelectStrategy strategy = newStrategy();
+        assertEquals(3, strategy.busyWait(selected(3), BooleanSupplier.FALSE_SUPPLIER));
+        assertEquals(0, strategy.busyWait(selected(0), BooleanSupplier.TRUE_SUPPLIER));
+        assertEquals(MAX_SPIN_NANOS, strategy.spinBudgetNanos());
+    }
+
+    @Test
+    public void testBacksOffWhenIdle() throws Exception {
+        BusyPollSelectStrategy strategy = newStrategy();
+        long budget = MAX_SPIN_NANOS;
+        for (int i = 0; i < 5; i++) {
+            assertEquals(budget, strategy.spinBudgetNanos());
+            assertEquals(SelectStrategy.SELECT, strategy.busyWait(selected(0), BooleanSupplier.FALSE_SUPPLIER));
+            assertTrue(strategy.lastSpinTime() >= budget);
+            budget >>>= 1;
+        }
+        // Idle, so no spinning at all anymore.
+        assertEquals(0, strategy.spinBudgetNanos());
+        assertEquals(SelectStrategy.SELECT, strategy.busyWait(selected(0), BooleanSupplier.FALSE_SUPPLIER));
+        assertEquals(0, strategy.lastSpinTime());
+        assertTrue(strategy.spinTime() >= MAX_SPIN_NANOS);
+
+        // A long park does not make it spin again.
+        strategy.parked(MAX_SPIN_NANOS);
+        assertEquals(0, strategy.spinBudgetNanos());
+
+        // A short park does.
+        strategy.parked(MAX_SPIN_NANOS - 1);
+        assertEquals(MAX_SPIN_NANOS >>> 4, strategy.spinBudgetNanos());
+        assertEquals(1, strategy.busyWait(selected(1), BooleanSupplier.FALSE_SUPPLIER));
+        assertEquals(MAX_SPIN_NANOS >>> 3, strategy.spinBudgetNanos());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelMigrationTest {
+
+    private EventLoopGroup group;
+    private Channel serverChannel;
+    private Channel clientChannel;
+    private final BlockingQueue<Object> events = new LinkedBlockingQueue<Object>();
+
+    @Before
+    public void setUp() {
+        group = new NioEventLoopGroup(2);
+        serverChannel = new ServerBootstrap().group(group).channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ctx.writeAndFlush(msg);
+                    }
+                })
+                .register().syncUninterruptibly().channel();
+        serverChannel.bind(new InetSocketAddress("127.0.0.1", 0)).syncUninterruptibly();
+        clientChannel = new Bootstrap().group(group).channel(NioSocketChannel.class)
+                .handler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelActive(ChannelHandlerContext ctx) {
+                        events.add("active");
+                    }
+
+                    @Override
+                    public void channelRegistered(ChannelHandlerContext ctx) {
+                        events.add(ctx.channel().eventLoop().inEventLoop() ? "registered" : "wrong thread");
+                    }
+
+                    @Override
+                    public void channelUnregistered(ChannelHandlerContext ctx) {
+                        events.add("unregistered");
+                    }
+
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ByteBuf buf = (ByteBuf) msg;
+                        events.add(ctx.channel().eventLoop().inEventLoop() ? buf.toString(CharsetUtil.US_ASCII)
+                                                                           : "wrong thread");
+                        buf.release();
+                    }
+                })
+                .connect(serverChannel.localAddress()).syncUninterruptibly().channel();
+    }
+
+    @After
+    public void tearDown() {
+        if (clientChannel != null) {
+            clientChannel.close().syncUninterruptibly();
+        }
+        if (serverChannel != null) {
+            serverChannel.close().syncUninterruptibly();
+        }
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private EventLoop otherEventLoop(Channel channel) {
+        for (EventExecutor executor: group) {
+            if (executor != channel.eventLoop()) {
+                return (EventLoop) executor;
+            }
+        }
+        throw new AssertionError();
+    }
+
+    @Test(timeout = 10000)
+    public void testMigrate() throws Exception {
+        assertEquals("registered", events.take());
+        assertEquals("active", events.take());
+
+        EventLoop target = otherEventLoop(clientChannel);
+        ChannelMigration.migrate(clientChannel, target).syncUninterruptibly();
+        assertSame(target, clientChannel.eventLoop());
+        assertTrue(clientChannel.isActive());
+        assertEquals("unregistered", events.take());
+        assertEquals("registered", events.take());
+
+        clientChannel.writeAndFlush(Unpooled.copiedBuffer("ping", CharsetUtil.US_ASCII)).syncUninterruptibly();
+        assertEquals("ping", events.take());
+        assertTrue(events.isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void testMigrateFailsWithPendingWrites() throws Exception {
+        final EventLoop current = clientChannel.eventLoop();
+        final EventLoop target = otherEventLoop(clientChannel);
+        // Written but not flushed.
+        current.submit(new Runnable() {
+            @Override
+            public void run() {
+                clientChannel.write(Unpooled.copiedBuffer("ping", CharsetUtil.US_ASCII));
+            }
+        }).syncUninterruptibly();
+
+        ChannelFuture future = ChannelMigration.migrate(clientChannel, target).awaitUninterruptibly();
+        assertFalse(future.isSuccess());
+        assertTrue(future.cause() instanceof IllegalStateException);
+        assertSame(current, clientChannel.eventLoop());
+        assertTrue(clientChannel.isRegistered());
+
+        clientChannel.flush();
+        events.take();
+        events.take();
+        assertEquals("ping", events.take());
+    }
+
+    @Test
+    public void testMigrateFailsForEventLoopOfOtherGroup() {
+        EventLoop current = clientChannel.eventLoop();
+        EventLoopGroup otherGroup = new DefaultEventLoopGroup(1);
+        try {
+            ChannelFuture future = ChannelMigration.migrate(clientChannel, otherGroup.next());
+            assertTrue(future.cause() instanceof IllegalArgumentException);
+            assertSame(current, clientChannel.eventLoop());
+            assertTrue(clientChannel.isRegistered());
+        } finally {
+            otherGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.Test;
+
+import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertSame;
+
+public class LoadAwareEventLoopChooserFactoryTest {
+
+    private static final LoadAwareEventLoopChooserFactory FACTORY =
+            new LoadAwareEventLoopChooserFactory(10, TimeUnit.MILLISECONDS);
+
+    private static final class TestEventLoopGroup extends MultithreadEventLoopGroup {
+        TestEventLoopGroup() {
+            super(2, (Executor) null, FACTORY);
+        }
+
+        @Override
+        protected EventLoop newChild(Executor executor, Object... args) {
+            return new DefaultEventLoop(this, executor);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testAvoidsBlockedEventLoop() throws Exception {
+        EventLoopGroup group = new TestEventLoopGroup();
+        final CountDownLatch unblock = new CountDownLatch(1);
+        try {
+            Iterator<EventExecutor> loops = group.iterator();
+            EventExecutor blocked = loops.next();
+            EventExecutor idle = loops.next();
+            group.next();
+
+            blocked.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        unblock.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            // Long enough for the blocked EventLoop to miss its samples.
+            Thread.sleep(100);
+
+            for (int i = 0; i < 10; i++) {
+                assertSame(idle, group.next());
+            }
+        } finally {
+            unblock.countDown();
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testPrefersEventLoopWithFewerChannels() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(2, null, FACTORY, SelectorProvider.provider(),
+                DefaultSelectStrategyFactory.INSTANCE);
+        List<Channel> channels = new ArrayList<Channel>();
+        try {
+            Iterator<EventExecutor> loops = group.iterator();
+            EventLoop loaded = (EventLoop) loops.next();
+            EventLoop idle = (EventLoop) loops.next();
+            group.next();
+
+            for (int i = 0; i < 10; i++) {
+                Channel channel = new NioSocketChannel();
+                channels.add(channel);
+                loaded.register(channel).syncUninterruptibly();
+            }
+            // Long enough for both EventLoops to take a new sample.
+            Thread.sleep(100);
+
+            for (int i = 0; i < 5; i++) {
+                assertSame(idle, group.next());
+            }
+        } finally {
+            for (Channel channel: channels) {
+                channel.close().syncUninterruptibly();
+            }
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.nio;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveIoRatioTest {
+
+    @Test
+    public void testInitialIoRatioIsBounded() {
+        assertEquals(AdaptiveIoRatio.MAX_IO_RATIO, new AdaptiveIoRatio(100, 1000, 1000).ioRatio());
+        assertEquals(AdaptiveIoRatio.MIN_IO_RATIO, new AdaptiveIoRatio(1, 1000, 1000).ioRatio());
+    }
+
+    @Test
+    public void testMovesTowardsIoWhenIoIsLate() {
+        AdaptiveIoRatio ratio = new AdaptiveIoRatio(50, 1000, 1000);
+        ratio.record(1, 10, 1001, 0);
+        assertEquals(51, ratio.ioRatio());
+
+        // No keys were selected, so nothing waited for the tasks.
+        ratio.record(0, 10, 1001, 0);
+        assertEquals(51, ratio.ioRatio());
+
+        for (int i = 0; i < 100; i++) {
+            ratio.record(1, 10, 1001, 0);
+        }
+        assertEquals(AdaptiveIoRatio.MAX_IO_RATIO, ratio.ioRatio());
+    }
+
+    @Test
+    public void testMovesTowardsTasksWhenTasksAreLate() {
+        AdaptiveIoRatio ratio = new AdaptiveIoRatio(50, 1000, 1000);
+        ratio.record(1, 600, 500, 1);
+        assertEquals(49, ratio.ioRatio());
+
+        // Nothing is pending anymore.
+        ratio.record(1, 600, 500, 0);
+        assertEquals(49, ratio.ioRatio());
+
+        // The pending tasks only waited for a short iteration.
+        ratio.record(1, 400, 500, 1);
+        assertEquals(49, ratio.ioRatio());
+
+        for (int i = 0; i < 100; i++) {
+            ratio.record(1, 1000, 500, 1);
+        }
+        assertEquals(AdaptiveIoRatio.MIN_IO_RATIO, ratio.ioRatio());
+    }
+
+    @Test
+    public void testStaysWhenBothAreLate() {
+        AdaptiveIoRatio ratio = new AdaptiveIoRatio(50, 1000, 1000);
+        ratio.record(1, 10, 2000, 1);
+        assertEquals(50, ratio.ioRatio());
+    }
+}
@@ -16,6 +16,7 @@
 package io.netty.channel.nio;
 
 import io.netty.channel.AbstractEventLoopTest;
+import io.netty.channel.BusyPollSelectStrategyFactory;
 import io.netty.channel.Channel;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.socket.ServerSocketChannel;
@@ -23,6 +24,9 @@ import io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.junit.Test;
 
 import java.nio.channels.Selector;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -68,4 +72,67 @@ public class NioEventLoopTest extends AbstractEventLoopTest {
             group.shutdownGracefully();
         }
     }
+
+    @Test(timeout = 10000)
+    public void testBusyPollSelectStrategy() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(1, (ThreadFactory) null, SelectorProvider.provider(),
+                new BusyPollSelectStrategyFactory(1, TimeUnit.MILLISECONDS));
+        final NioEventLoop loop = (NioEventLoop) group.next();
+        try {
+            loop.setMetricsEnabled(true);
+            for (int i = 0; i < 10; i++) {
+                loop.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Noop.
+                    }
+                }, 100, TimeUnit.MICROSECONDS).syncUninterruptibly();
+            }
+            assertTrue(loop.metric().busyWaitTime() > 0);
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testAdaptiveIoRatio() {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        NioEventLoop loop = (NioEventLoop) group.next();
+        try {
+            assertFalse(loop.isAdaptiveIoRatio());
+            assertEquals(50, loop.effectiveIoRatio());
+
+            group.setAdaptiveIoRatio(1, 1, TimeUnit.MILLISECONDS);
+            assertTrue(loop.isAdaptiveIoRatio());
+            assertEquals(50, loop.getIoRatio());
+
+            loop.setIoRatio(70);
+            assertFalse(loop.isAdaptiveIoRatio());
+            assertEquals(70, loop.effectiveIoRatio());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testIoRatioMetric() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        NioEventLoop loop = (NioEventLoop) group.next();
+        try {
+            assertEquals(-1, loop.metric().ioRatio());
+            loop.setMetricsEnabled(true);
+            loop.setIoRatio(70);
+            // The ratio is recorded on each iteration of the loop, before the tasks are run.
+            loop.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // Noop.
+                }
+            }).sync();
+            assertEquals(70, loop.metric().ioRatio());
+            assertEquals(70, group.metric().ioRatio());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
 }